@@ -7,15 +7,23 @@
  */
 package com.sitewhere.batch;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+
 import com.sitewhere.batch.handler.BatchCommandInvocationHandler;
 import com.sitewhere.batch.spi.IBatchOperationHandler;
 import com.sitewhere.batch.spi.IBatchOperationManager;
@@ -30,6 +38,7 @@ import com.sitewhere.grpc.client.batch.BatchModelConverter;
 import com.sitewhere.grpc.client.batch.BatchModelMarshaler;
 import com.sitewhere.microservice.kafka.UnprocessedBatchElementsConsumer;
 import com.sitewhere.microservice.kafka.UnprocessedBatchOperationsConsumer;
+import com.sitewhere.microservice.security.SystemUserCallable;
 import com.sitewhere.microservice.security.SystemUserRunnable;
 import com.sitewhere.rest.model.batch.kafka.UnprocessedBatchElement;
 import com.sitewhere.rest.model.batch.kafka.UnprocessedBatchOperation;
@@ -42,6 +51,7 @@ import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.batch.BatchOperationStatus;
 import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
+import com.sitewhere.spi.batch.IBatchElementCreateResult;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
 import com.sitewhere.spi.batch.kafka.IUnprocessedBatchElement;
@@ -54,21 +64,43 @@ import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 
 /**
  * Default implementation of {@link IBatchOperationManager}. Uses multiple
- * threads to process batch operations.
+ * threads to process batch operations. Batch operations are initialized in
+ * chunks of device tokens. Elements for a chunk are created with a single bulk
+ * call and sent to Kafka together, and progress is saved on the batch operation
+ * after each chunk so that initialization resumes where it left off if the
+ * unprocessed operation is delivered again after a restart or a failure.
  * 
  * @author Derek
  */
 public class BatchOperationManager extends TenantEngineLifecycleComponent implements IBatchOperationManager {
 
-    /** Number of threads used for batch operation processing */
-    private static final int BATCH_PROCESSOR_THREAD_COUNT = 10;
+    /** Default number of threads used for batch operation processing */
+    public static final int DEFAULT_PROCESSOR_THREAD_COUNT = 10;
+
+    /** Number of device tokens initialized in each chunk */
+    public static final int INITIALIZATION_CHUNK_SIZE = 1000;
+
+    /** Metadata field holding number of device tokens already initialized */
+    public static final String META_INITIALIZED_COUNT = "initializedCount";
+
+    /** Metadata field holding number of elements that failed initialization */
+    public static final String META_INITIALIZATION_ERRORS = "initializationErrors";
+
+    /** Max number of seconds to wait for Kafka to acknowledge a chunk */
+    private static final int SEND_TIMEOUT_SECS = 30;
 
     /** Thread pool for processing events */
     private ExecutorService processorPool;
 
+    /** Number of threads used for batch operation processing */
+    private int processorThreadCount = DEFAULT_PROCESSOR_THREAD_COUNT;
+
     /** Throttling delay in milliseconds */
     private long throttleDelayMs;
 
+    /** Limits rate of element processing based on throttling delay */
+    private TokenBucketRateLimiter rateLimiter;
+
     /** Map of handlers by operation type */
     private Map<String, IBatchOperationHandler> handlersByOperationType = new HashMap<String, IBatchOperationHandler>();
 
@@ -132,7 +164,10 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	if (getProcessorPool() != null) {
 	    getProcessorPool().shutdownNow();
 	}
-	processorPool = Executors.newFixedThreadPool(BATCH_PROCESSOR_THREAD_COUNT, new ProcessorsThreadFactory());
+	processorPool = Executors.newFixedThreadPool(Math.max(1, getProcessorThreadCount()),
+		new ProcessorsThreadFactory());
+	this.rateLimiter = (getThrottleDelayMs() > 0) ? new TokenBucketRateLimiter(1000.0 / getThrottleDelayMs())
+		: null;
 
 	// Create step that will start components.
 	ICompositeLifecycleStep start = new CompositeLifecycleStep("Start " + getComponentName());
@@ -218,7 +253,15 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
      */
     @Override
     public void initializeBatchOperation(IUnprocessedBatchOperation operation) throws SiteWhereException {
-	getProcessorPool().execute(new BatchOperationInitializer(operation));
+	// Run on the calling consumer lane so the operation is not acknowledged
+	// until done.
+	try {
+	    new BatchOperationInitializer(operation).call();
+	} catch (SiteWhereException e) {
+	    throw e;
+	} catch (Exception e) {
+	    throw new SiteWhereException("Unable to initialize batch operation.", e);
+	}
     }
 
     /*
@@ -256,6 +299,14 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	this.throttleDelayMs = throttleDelayMs;
     }
 
+    public int getProcessorThreadCount() {
+	return processorThreadCount;
+    }
+
+    public void setProcessorThreadCount(int processorThreadCount) {
+	this.processorThreadCount = processorThreadCount;
+    }
+
     /**
      * Creates an unprocessed batch operation in a separate thread.
      * 
@@ -305,11 +356,12 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
     }
 
     /**
-     * Initializes a batch operation in a separate thread.
+     * Initializes a batch operation as the system user. Failures are thrown to
+     * the caller so that the unprocessed operation is delivered again.
      * 
      * @author Derek
      */
-    private class BatchOperationInitializer extends SystemUserRunnable {
+    private class BatchOperationInitializer extends SystemUserCallable<Void> {
 
 	/** Operation being processed */
 	private IUnprocessedBatchOperation unprocessed;
@@ -320,46 +372,138 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	    this.unprocessed = unprocessed;
 	}
 
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserCallable#runAsSystemUser()
+	 */
 	@Override
-	public void runAsSystemUser() throws SiteWhereException {
-	    getLogger()
-		    .info("Initializing batch operation: " + getUnprocessed().getBatchOperation().getId().toString());
-	    try {
+	public Void runAsSystemUser() throws SiteWhereException {
+	    UUID operationId = getUnprocessed().getBatchOperation().getId();
+	    IBatchOperation operation = getBatchManagement().getBatchOperation(operationId);
+	    if (operation == null) {
+		getLogger().warn("Batch operation no longer exists: " + operationId.toString());
+		return null;
+	    }
+	    if ((operation.getProcessingStatus() == BatchOperationStatus.InitializedSuccessfully)
+		    || (operation.getProcessingStatus() == BatchOperationStatus.InitializedWithErrors)) {
+		getLogger().info("Batch operation already initialized: " + operationId.toString());
+		return null;
+	    }
+
+	    // Pick up from last checkpoint if operation was partially initialized.
+	    Map<String, String> metadata = new HashMap<String, String>();
+	    if (operation.getMetadata() != null) {
+		metadata.putAll(operation.getMetadata());
+	    }
+	    int initialized = getCheckpointValue(metadata, META_INITIALIZED_COUNT);
+	    int errorCount = getCheckpointValue(metadata, META_INITIALIZATION_ERRORS);
+	    if (initialized > 0) {
+		getLogger().info("Resuming initialization of batch operation " + operationId.toString() + " after "
+			+ initialized + " devices.");
+	    } else {
+		getLogger().info("Initializing batch operation: " + operationId.toString());
 		BatchOperationUpdateRequest request = new BatchOperationUpdateRequest();
 		request.setProcessingStatus(BatchOperationStatus.Initializing);
 		request.setProcessingStartedDate(new Date());
-		getBatchManagement().updateBatchOperation(getUnprocessed().getBatchOperation().getId(), request);
-
-		int errorCount = 0;
-		for (String deviceToken : getUnprocessed().getDeviceTokens()) {
-		    BatchElementCreateRequest element = new BatchElementCreateRequest();
-		    element.setDeviceToken(deviceToken);
-		    element.setProcessingStatus(ElementProcessingStatus.Unprocessed);
-		    element.setProcessedDate(null);
-		    try {
-			IBatchElement created = getBatchManagement()
-				.createBatchElement(getUnprocessed().getBatchOperation().getId(), element);
-			sendUnprocessedBatchElement(created);
-		    } catch (SiteWhereException e) {
-			getLogger().error("Unable to create batch element.", e);
-			sendFailedBatchElementRequest(element);
-			errorCount++;
-		    }
-
-		    // Potentially pause or throttle batch element processing.
-		    handlePauseAndThrottle();
-		}
+		getBatchManagement().updateBatchOperation(operationId, request);
+	    }
 
-		// Update operation to reflect processing results.
-		request = new BatchOperationUpdateRequest();
-		request.setProcessingStatus(BatchOperationStatus.InitializedSuccessfully);
-		request.setProcessingEndedDate(new Date());
-		if (errorCount > 0) {
-		    request.setProcessingStatus(BatchOperationStatus.InitializedWithErrors);
+	    List<String> deviceTokens = getUnprocessed().getDeviceTokens();
+	    while (initialized < deviceTokens.size()) {
+		// Potentially pause batch element creation.
+		handlePause();
+
+		List<String> chunk = deviceTokens.subList(initialized,
+			Math.min(deviceTokens.size(), initialized + INITIALIZATION_CHUNK_SIZE));
+		errorCount += initializeChunk(operationId, chunk);
+		initialized += chunk.size();
+
+		// Save progress once elements for chunk have been sent.
+		metadata.put(META_INITIALIZED_COUNT, String.valueOf(initialized));
+		metadata.put(META_INITIALIZATION_ERRORS, String.valueOf(errorCount));
+		BatchOperationUpdateRequest checkpoint = new BatchOperationUpdateRequest();
+		checkpoint.setMetadata(metadata);
+		getBatchManagement().updateBatchOperation(operationId, checkpoint);
+	    }
+
+	    // Update operation to reflect processing results.
+	    metadata.remove(META_INITIALIZED_COUNT);
+	    metadata.remove(META_INITIALIZATION_ERRORS);
+	    BatchOperationUpdateRequest request = new BatchOperationUpdateRequest();
+	    request.setProcessingStatus(BatchOperationStatus.InitializedSuccessfully);
+	    request.setProcessingEndedDate(new Date());
+	    request.setMetadata(metadata);
+	    if (errorCount > 0) {
+		request.setProcessingStatus(BatchOperationStatus.InitializedWithErrors);
+	    }
+	    getBatchManagement().updateBatchOperation(operationId, request);
+	    return null;
+	}
+
+	/**
+	 * Create elements for a chunk of device tokens and send them to Kafka,
+	 * waiting until all records have been acknowledged. Elements that already
+	 * existed from an earlier attempt are sent again only if they have not been
+	 * processed. Returns the number of elements that could not be created.
+	 * 
+	 * @param operationId
+	 * @param deviceTokens
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected int initializeChunk(UUID operationId, List<String> deviceTokens) throws SiteWhereException {
+	    List<IBatchElementCreateRequest> requests = new ArrayList<>(deviceTokens.size());
+	    for (String deviceToken : deviceTokens) {
+		BatchElementCreateRequest element = new BatchElementCreateRequest();
+		element.setDeviceToken(deviceToken);
+		element.setProcessingStatus(ElementProcessingStatus.Unprocessed);
+		element.setProcessedDate(null);
+		requests.add(element);
+	    }
+	    List<IBatchElementCreateResult> created = getBatchManagement().createBatchElements(operationId, requests);
+
+	    int errorCount = 0;
+	    List<Future<RecordMetadata>> sends = new ArrayList<>(requests.size());
+	    for (int i = 0; i < requests.size(); i++) {
+		IBatchElement element = created.get(i).getElement();
+		if (element == null) {
+		    getLogger().error("Unable to create batch element for device: " + requests.get(i).getDeviceToken(),
+			    created.get(i).getError());
+		    sends.add(sendFailedBatchElementRequest(requests.get(i)));
+		    errorCount++;
+		} else if (element.getProcessingStatus() == ElementProcessingStatus.Unprocessed) {
+		    sends.add(sendUnprocessedBatchElement(element));
 		}
-		getBatchManagement().updateBatchOperation(getUnprocessed().getBatchOperation().getId(), request);
-	    } catch (SiteWhereException e) {
-		getLogger().error("Error processing batch operation.", e);
+	    }
+	    for (Future<RecordMetadata> send : sends) {
+		try {
+		    send.get(SEND_TIMEOUT_SECS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new SiteWhereException("Interrupted while sending batch elements.", e);
+		} catch (ExecutionException | TimeoutException e) {
+		    throw new SiteWhereException("Unable to send batch elements.", e);
+		}
+	    }
+	    return errorCount;
+	}
+
+	/**
+	 * Get a checkpoint value stored in batch operation metadata.
+	 * 
+	 * @param metadata
+	 * @param key
+	 * @return
+	 */
+	protected int getCheckpointValue(Map<String, String> metadata, String key) {
+	    String value = metadata.get(key);
+	    if (value == null) {
+		return 0;
+	    }
+	    try {
+		return Integer.parseInt(value);
+	    } catch (NumberFormatException e) {
+		getLogger().warn("Ignoring invalid batch operation checkpoint value: " + value);
+		return 0;
 	    }
 	}
 
@@ -367,12 +511,13 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	 * Send unprocessed batch element to Kafka topic.
 	 * 
 	 * @param element
+	 * @return
 	 * @throws SiteWhereException
 	 */
-	protected void sendUnprocessedBatchElement(IBatchElement element) throws SiteWhereException {
+	protected Future<RecordMetadata> sendUnprocessedBatchElement(IBatchElement element) throws SiteWhereException {
 	    UnprocessedBatchElement unprocessedElement = new UnprocessedBatchElement();
 	    unprocessedElement.setBatchElement(element);
-	    getUnprocessedBatchElementsProducer().send(element.getDeviceId().toString(),
+	    return getUnprocessedBatchElementsProducer().send(element.getDeviceId().toString(),
 		    BatchModelMarshaler.buildUnprocessedBatchElementPayloadMessage(
 			    BatchModelConverter.asGrpcUnprocessedBatchElement(unprocessedElement)));
 	}
@@ -381,10 +526,12 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	 * Send failed batch element request to Kafka topic.
 	 * 
 	 * @param request
+	 * @return
 	 * @throws SiteWhereException
 	 */
-	protected void sendFailedBatchElementRequest(IBatchElementCreateRequest request) throws SiteWhereException {
-	    getFailedBatchElementsProducer().send(request.getDeviceToken(), MarshalUtils.marshalJson(request));
+	protected Future<RecordMetadata> sendFailedBatchElementRequest(IBatchElementCreateRequest request)
+		throws SiteWhereException {
+	    return getFailedBatchElementsProducer().send(request.getDeviceToken(), MarshalUtils.marshalJson(request));
 	}
 
 	protected IUnprocessedBatchOperation getUnprocessed() {
@@ -461,16 +608,24 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
     /**
      * Handle case where batch operation manager has been paused.
      */
-    protected void handlePauseAndThrottle() {
+    protected void handlePause() {
 	while (getLifecycleStatus() == LifecycleStatus.Paused) {
 	    try {
 		Thread.sleep(1000);
 	    } catch (InterruptedException e) {
 	    }
 	}
-	if (getThrottleDelayMs() > 0) {
+    }
+
+    /**
+     * Handle case where batch operation manager has been paused and limit element
+     * processing to the rate allowed by the throttling delay.
+     */
+    protected void handlePauseAndThrottle() {
+	handlePause();
+	if (getRateLimiter() != null) {
 	    try {
-		Thread.sleep(getThrottleDelayMs());
+		getRateLimiter().acquire();
 	    } catch (InterruptedException e) {
 		getLogger().warn("Throttle timer interrupted.");
 	    }
@@ -489,6 +644,10 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	return processorPool;
     }
 
+    protected TokenBucketRateLimiter getRateLimiter() {
+	return rateLimiter;
+    }
+
     protected IUnprocessedBatchElementsProducer getUnprocessedBatchElementsProducer() {
 	return ((IBatchOperationsTenantEngine) getTenantEngine()).getUnprocessedBatchElementsProducer();
     }
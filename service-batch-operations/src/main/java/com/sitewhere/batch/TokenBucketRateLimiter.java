@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.batch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all threads that need to be limited to an overall
+ * rate. Tokens are added continuously at the configured rate up to a capacity
+ * of one second worth of tokens. Callers that find the bucket empty reserve a
+ * token anyway and sleep until it would have been added, so waiting callers
+ * are released in order at the configured rate rather than all at once.
+ *
+ * @author Derek
+ */
+public class TokenBucketRateLimiter {
+
+    /** Nanoseconds between tokens */
+    private double nanosPerToken;
+
+    /** Maximum number of tokens that can accumulate */
+    private double capacity;
+
+    /** Tokens currently available (negative if reserved ahead) */
+    private double tokens;
+
+    /** Time tokens were last added */
+    private long lastRefill;
+
+    public TokenBucketRateLimiter(double tokensPerSecond) {
+	this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+	this.capacity = Math.max(1, tokensPerSecond);
+	this.tokens = 1;
+	this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take a token, waiting until one is available.
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+	long wait = reserve();
+	if (wait > 0) {
+	    TimeUnit.NANOSECONDS.sleep(wait);
+	}
+    }
+
+    /**
+     * Reserve a token and return the number of nanoseconds until it is
+     * available.
+     *
+     * @return
+     */
+    protected synchronized long reserve() {
+	long now = System.nanoTime();
+	tokens = Math.min(capacity, tokens + ((now - lastRefill) / nanosPerToken));
+	lastRefill = now;
+	tokens -= 1;
+	return (tokens >= 0) ? 0 : (long) (-tokens * nanosPerToken);
+    }
+
+    public double getTokensPerSecond() {
+	return TimeUnit.SECONDS.toNanos(1) / nanosPerToken;
+    }
+}
@@ -101,6 +101,11 @@ public class BatchOperationsModelProvider extends ConfigurationModelProvider {
 			.description("Number of milliseconds to wait between processing elements in a "
 				+ "batch operation. This throttles the output to prevent overloading the system.")
 			.defaultValue("0").build()));
+	builder.attribute((new AttributeNode.Builder("Processor threads", "processorThreadCount",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of threads used to initialize batch operations and process "
+				+ "batch elements.")
+			.defaultValue("10").build()));
 	return builder.build();
     }
 }
\ No newline at end of file
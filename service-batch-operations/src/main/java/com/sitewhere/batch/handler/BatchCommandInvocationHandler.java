@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.sitewhere.batch.BatchOperationManager;
 import com.sitewhere.batch.BatchOperationTypes;
 import com.sitewhere.batch.spi.IBatchOperationHandler;
 import com.sitewhere.batch.spi.microservice.IBatchOperationsMicroservice;
@@ -95,7 +96,7 @@ public class BatchCommandInvocationHandler extends TenantEngineLifecycleComponen
 	request.setInitiatorId(operation.getId().toString());
 	request.setTarget(CommandTarget.Assignment);
 	request.setTargetId(target.getToken());
-	request.setParameterValues(operation.getMetadata());
+	request.setParameterValues(getParameterValues(operation));
 	Map<String, String> metadata = new HashMap<String, String>();
 	metadata.put(IBatchOperationCreateRequest.META_BATCH_OPERATION_TOKEN, operation.getToken());
 	request.setMetadata(metadata);
@@ -109,6 +110,23 @@ public class BatchCommandInvocationHandler extends TenantEngineLifecycleComponen
 	return ElementProcessingStatus.Succeeded;
     }
 
+    /**
+     * Get command parameter values from batch operation metadata, leaving out
+     * initialization progress stored while the operation is initializing.
+     * 
+     * @param operation
+     * @return
+     */
+    protected Map<String, String> getParameterValues(IBatchOperation operation) {
+	Map<String, String> values = new HashMap<String, String>();
+	if (operation.getMetadata() != null) {
+	    values.putAll(operation.getMetadata());
+	}
+	values.remove(BatchOperationManager.META_INITIALIZED_COUNT);
+	values.remove(BatchOperationManager.META_INITIALIZATION_ERRORS);
+	return values;
+    }
+
     public IDeviceManagementApiChannel<?> getDeviceManagement() {
 	return ((IBatchOperationsMicroservice) getMicroservice()).getDeviceManagementApiChannel();
     }
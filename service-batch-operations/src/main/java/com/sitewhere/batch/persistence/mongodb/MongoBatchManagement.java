@@ -7,13 +7,23 @@
  */
 package com.sitewhere.batch.persistence.mongodb;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bson.Document;
 
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.sitewhere.batch.BatchElementCreateResult;
 import com.sitewhere.batch.persistence.BatchManagementPersistence;
 import com.sitewhere.batch.spi.microservice.IBatchOperationsMicroservice;
 import com.sitewhere.mongodb.IMongoConverterLookup;
@@ -26,6 +36,7 @@ import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.batch.IBatchElement;
+import com.sitewhere.spi.batch.IBatchElementCreateResult;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
 import com.sitewhere.spi.batch.request.IBatchCommandInvocationRequest;
@@ -36,6 +47,7 @@ import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.microservice.ServiceNotAvailableException;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.search.batch.IBatchOperationSearchCriteria;
 import com.sitewhere.spi.search.device.IBatchElementSearchCriteria;
@@ -43,6 +55,9 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMongoClient> implements IBatchManagement {
 
+    /** MongoDB error code for duplicate key */
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
     /** Converter lookup */
     private static IMongoConverterLookup LOOKUP = new MongoConverters();
 
@@ -201,6 +216,151 @@ public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMo
 	return element;
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElementCreateResult> createBatchElements(UUID batchOperationId,
+	    List<IBatchElementCreateRequest> requests) throws SiteWhereException {
+	MongoCollection<Document> elements = getMongoClient().getBatchOperationElementsCollection();
+	IBatchOperation operation = MongoBatchOperation.fromDocument(assertBatchOperation(batchOperationId));
+	Map<String, SiteWhereException> errors = new HashMap<>();
+	Map<String, IDevice> devices = resolveDevices(requests, errors);
+
+	// Build documents for elements whose devices could be resolved.
+	List<IBatchElementCreateResult> results = new ArrayList<>(requests.size());
+	List<Document> inserts = new ArrayList<>(requests.size());
+	List<Integer> positions = new ArrayList<>(requests.size());
+	for (IBatchElementCreateRequest request : requests) {
+	    String deviceToken = request.getDeviceToken();
+	    IDevice device = devices.get(deviceToken);
+	    if (device == null) {
+		results.add(new BatchElementCreateResult(deviceToken, errors.get(deviceToken)));
+		continue;
+	    }
+	    BatchElement element = BatchManagementPersistence.batchElementCreateLogic(operation, device);
+	    results.add(new BatchElementCreateResult(deviceToken, element));
+	    inserts.add(MongoBatchElement.toDocument(element));
+	    positions.add(results.size() - 1);
+	}
+	if (inserts.isEmpty()) {
+	    return results;
+	}
+
+	// Elements that already exist are replaced with the stored versions.
+	Set<Integer> duplicates = new HashSet<>();
+	try {
+	    elements.insertMany(inserts, new InsertManyOptions().ordered(false));
+	} catch (MongoBulkWriteException e) {
+	    Map<Integer, SiteWhereException> failed = new HashMap<>();
+	    for (BulkWriteError error : e.getWriteErrors()) {
+		if (error.getCode() == DUPLICATE_KEY_ERROR) {
+		    duplicates.add(error.getIndex());
+		} else {
+		    failed.put(error.getIndex(),
+			    new SiteWhereException("Unable to insert batch element: " + error.getMessage()));
+		}
+	    }
+	    if (e.getWriteConcernError() != null) {
+		for (int i = 0; i < inserts.size(); i++) {
+		    if (!duplicates.contains(i) && !failed.containsKey(i)) {
+			failed.put(i, new SiteWhereException("Unable to insert batch element.", e));
+		    }
+		}
+	    }
+	    for (Map.Entry<Integer, SiteWhereException> entry : failed.entrySet()) {
+		int position = positions.get(entry.getKey());
+		results.set(position,
+			new BatchElementCreateResult(requests.get(position).getDeviceToken(), entry.getValue()));
+	    }
+	    if (!failed.isEmpty()) {
+		getLogger().error("Unable to insert all batch elements.", e);
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+	if (!duplicates.isEmpty()) {
+	    Map<UUID, BatchElement> existing = getExistingBatchElements(batchOperationId, inserts, duplicates);
+	    for (Integer index : duplicates) {
+		int position = positions.get(index);
+		String deviceToken = requests.get(position).getDeviceToken();
+		BatchElement element = existing.get((UUID) inserts.get(index).get(MongoBatchElement.PROP_DEVICE_ID));
+		results.set(position, (element != null) ? new BatchElementCreateResult(deviceToken, element)
+			: new BatchElementCreateResult(deviceToken,
+				new SiteWhereSystemException(ErrorCode.DuplicateBatchElement, ErrorLevel.ERROR)));
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Resolve devices for a chunk of element requests. Each distinct token is
+     * looked up once through the cached device management API (there is no bulk
+     * device lookup call). Tokens that could not be resolved are added to the
+     * errors map.
+     * 
+     * @param requests
+     * @param errors
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Map<String, IDevice> resolveDevices(List<IBatchElementCreateRequest> requests,
+	    Map<String, SiteWhereException> errors) throws SiteWhereException {
+	Map<String, IDevice> devices = new HashMap<>();
+	for (IBatchElementCreateRequest request : requests) {
+	    String token = request.getDeviceToken();
+	    if (devices.containsKey(token) || errors.containsKey(token)) {
+		continue;
+	    }
+	    try {
+		IDevice device = getCachedDeviceManagement().getDeviceByToken(token);
+		if (device != null) {
+		    devices.put(token, device);
+		} else {
+		    errors.put(token, new SiteWhereSystemException(ErrorCode.InvalidDeviceToken, ErrorLevel.ERROR));
+		}
+	    } catch (ServiceNotAvailableException e) {
+		throw e;
+	    } catch (SiteWhereException e) {
+		errors.put(token, e);
+	    }
+	}
+	return devices;
+    }
+
+    /**
+     * Load stored elements for inserts that failed because the element already
+     * exists. Elements are mapped by device id.
+     * 
+     * @param batchOperationId
+     * @param inserts
+     * @param duplicates
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Map<UUID, BatchElement> getExistingBatchElements(UUID batchOperationId, List<Document> inserts,
+	    Set<Integer> duplicates) throws SiteWhereException {
+	List<UUID> deviceIds = new ArrayList<>(duplicates.size());
+	for (Integer index : duplicates) {
+	    deviceIds.add((UUID) inserts.get(index).get(MongoBatchElement.PROP_DEVICE_ID));
+	}
+	Document query = new Document(MongoBatchElement.PROP_BATCH_OPERATION_ID, batchOperationId)
+		.append(MongoBatchElement.PROP_DEVICE_ID, new Document("$in", deviceIds));
+	Map<UUID, BatchElement> existing = new HashMap<>();
+	try {
+	    MongoCollection<Document> elements = getMongoClient().getBatchOperationElementsCollection();
+	    for (Document match : elements.find(query)) {
+		BatchElement element = MongoBatchElement.fromDocument(match);
+		existing.put(element.getDeviceId(), element);
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+	return existing;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#updateBatchElement(java.util.UUID,
@@ -344,6 +504,10 @@ public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMo
 	return ((IBatchOperationsMicroservice) getTenantEngine().getMicroservice()).getDeviceManagementApiChannel();
     }
 
+    public IDeviceManagement getCachedDeviceManagement() {
+	return ((IBatchOperationsMicroservice) getTenantEngine().getMicroservice()).getCachedDeviceManagement();
+    }
+
     /*
      * @see com.sitewhere.mongodb.MongoTenantComponent#getMongoClient()
      */
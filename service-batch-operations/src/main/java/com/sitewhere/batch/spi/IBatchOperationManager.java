@@ -35,7 +35,8 @@ public interface IBatchOperationManager extends ITenantEngineLifecycleComponent
 	    throws SiteWhereException;
 
     /**
-     * Initialize an unprocessed batch operation.
+     * Initialize an unprocessed batch operation. Blocks the calling thread until
+     * all elements have been created and sent for processing.
      * 
      * @param operation
      * @throws SiteWhereException
@@ -113,6 +113,11 @@ public class BatchOperationsParser extends AbstractBeanDefinitionParser {
 	    manager.addPropertyValue("throttleDelayMs", throttleDelayMs.getValue());
 	}
 
+	Attr processorThreadCount = element.getAttributeNode("processorThreadCount");
+	if (processorThreadCount != null) {
+	    manager.addPropertyValue("processorThreadCount", processorThreadCount.getValue());
+	}
+
 	context.getRegistry().registerBeanDefinition(BatchManagementBeans.BEAN_BATCH_OPERATION_MANAGER,
 		manager.getBeanDefinition());
     }
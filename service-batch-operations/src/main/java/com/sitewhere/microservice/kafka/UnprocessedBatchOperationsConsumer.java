@@ -21,16 +21,27 @@ import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.grpc.client.batch.BatchModelConverter;
 import com.sitewhere.grpc.client.batch.BatchModelMarshaler;
 import com.sitewhere.grpc.model.BatchModel.GUnprocessedBatchOperation;
-import com.sitewhere.microservice.kafka.DirectKafkaConsumer;
 import com.sitewhere.rest.model.batch.kafka.UnprocessedBatchOperation;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.kafka.KafkaBatchProcessingException;
 
 /**
- * Listens on Kafka topic for unprocessed batch operations.
+ * Listens on Kafka topic for unprocessed batch operations. Operations are
+ * initialized on worker lanes so the polling thread keeps the consumer in its
+ * group while a large operation is being initialized. Offsets are only
+ * committed once initialization completes, and partitions are paused while
+ * lanes are busy, so an operation interrupted by a restart is delivered again
+ * and resumes from its last checkpoint.
  */
-public class UnprocessedBatchOperationsConsumer extends DirectKafkaConsumer
+public class UnprocessedBatchOperationsConsumer extends MicroserviceKafkaConsumer
 	implements IUnprocessedBatchOperationsConsumer {
 
+    /** Number of lanes used to initialize batch operations */
+    private static final int INITIALIZATION_LANE_COUNT = 4;
+
+    /** Max number of batch operations delivered but not yet initialized */
+    private static final int MAX_PENDING_OPERATIONS = 8;
+
     /** Consumer id */
     private static String CONSUMER_ID = UUID.randomUUID().toString();
 
@@ -67,37 +78,61 @@ public class UnprocessedBatchOperationsConsumer extends DirectKafkaConsumer
 	return topics;
     }
 
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * getProcessingLaneCount()
+     */
+    @Override
+    protected int getProcessingLaneCount() {
+	return INITIALIZATION_LANE_COUNT;
+    }
+
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * getMaxInFlightRecords()
+     */
+    @Override
+    protected int getMaxInFlightRecords() {
+	return MAX_PENDING_OPERATIONS;
+    }
+
     /*
      * @see
-     * com.sitewhere.microservice.kafka.DirectKafkaConsumer#attemptToProcess(org.
+     * com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#process(org.
      * apache.kafka.common.TopicPartition, java.util.List)
      */
     @Override
-    public void attemptToProcess(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records)
-	    throws SiteWhereException {
+    public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
 	for (ConsumerRecord<String, byte[]> record : records) {
 	    received(record.key(), record.value());
 	}
     }
 
     /**
-     * Handle processing of a single record.
+     * Handle processing of a single record. Blocks until the batch operation has
+     * been initialized.
      * 
      * @param key
      * @param message
-     * @throws SiteWhereException
      */
-    public void received(String key, byte[] message) throws SiteWhereException {
+    public void received(String key, byte[] message) {
+	UnprocessedBatchOperation unprocessed;
 	try {
 	    GUnprocessedBatchOperation grpc = BatchModelMarshaler.parseUnprocessedBatchOperationPayloadMessage(message);
-	    UnprocessedBatchOperation unprocessed = BatchModelConverter.asApiUnprocessedBatchOperation(grpc);
+	    unprocessed = BatchModelConverter.asApiUnprocessedBatchOperation(grpc);
 	    if (getLogger().isDebugEnabled()) {
 		getLogger().debug("Received unprocessed batch operation payload:\n\n"
 			+ MarshalUtils.marshalJsonAsPrettyString(unprocessed));
 	    }
-	    getBatchOperationManager().initializeBatchOperation(unprocessed);
 	} catch (SiteWhereException e) {
 	    getLogger().error("Unable to parse batch operation payload.", e);
+	    return;
+	}
+	try {
+	    getBatchOperationManager().initializeBatchOperation(unprocessed);
+	} catch (SiteWhereException e) {
+	    // Partition is paused and initialization retried until it succeeds.
+	    throw new KafkaBatchProcessingException("Unable to initialize batch operation.", e);
 	}
     }
 
@@ -9,18 +9,23 @@ package com.sitewhere.device;
 
 import java.util.UUID;
 
+import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.device.spi.kafka.IDeviceInteractionEventsProducer;
+import com.sitewhere.device.spi.kafka.IDeviceManagementUpdatesProducer;
 import com.sitewhere.device.spi.microservice.IDeviceManagementTenantEngine;
 import com.sitewhere.grpc.client.event.EventModelMarshaler;
 import com.sitewhere.rest.model.device.event.kafka.DecodedEventPayload;
 import com.sitewhere.rest.model.device.event.request.DeviceStateChangeCreateRequest;
+import com.sitewhere.rest.model.device.kafka.DeviceManagementUpdate;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+import com.sitewhere.spi.device.kafka.DeviceManagementUpdateType;
 import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceCreateRequest;
 
 /**
  * Adds triggers for processing related to device management API calls.
@@ -57,6 +62,7 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 	state.setAttribute(IDeviceStateChangeCreateRequest.ATTRIBUTE_ASSIGNMENT);
 	state.setType("create");
 	produceEvent(device, state);
+	produceUpdate(DeviceManagementUpdateType.AssignmentCreated, device, created);
 	return created;
     }
 
@@ -75,6 +81,7 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 	state.setAttribute(IDeviceStateChangeCreateRequest.ATTRIBUTE_ASSIGNMENT);
 	state.setType("update");
 	produceEvent(device, state);
+	produceUpdate(DeviceManagementUpdateType.AssignmentUpdated, device, updated);
 	return updated;
     }
 
@@ -92,9 +99,47 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 	state.setAttribute(IDeviceStateChangeCreateRequest.ATTRIBUTE_ASSIGNMENT);
 	state.setType("end");
 	produceEvent(device, state);
+	produceUpdate(DeviceManagementUpdateType.AssignmentEnded, device, updated);
 	return updated;
     }
 
+    /*
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#deleteDeviceAssignment(java.
+     * util.UUID)
+     */
+    @Override
+    public IDeviceAssignment deleteDeviceAssignment(UUID id) throws SiteWhereException {
+	IDeviceAssignment deleted = super.deleteDeviceAssignment(id);
+	IDevice device = super.getDevice(deleted.getDeviceId());
+	if (device != null) {
+	    produceUpdate(DeviceManagementUpdateType.AssignmentDeleted, device, deleted);
+	}
+	return deleted;
+    }
+
+    /*
+     * @see com.sitewhere.device.DeviceManagementDecorator#updateDevice(java.util.
+     * UUID, com.sitewhere.spi.device.request.IDeviceCreateRequest)
+     */
+    @Override
+    public IDevice updateDevice(UUID id, IDeviceCreateRequest request) throws SiteWhereException {
+	IDevice updated = super.updateDevice(id, request);
+	produceUpdate(DeviceManagementUpdateType.DeviceUpdated, updated, null);
+	return updated;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#deleteDevice(java.util.UUID)
+     */
+    @Override
+    public IDevice deleteDevice(UUID id) throws SiteWhereException {
+	IDevice deleted = super.deleteDevice(id);
+	produceUpdate(DeviceManagementUpdateType.DeviceDeleted, deleted, null);
+	return deleted;
+    }
+
     /**
      * Produce event to Kafka topic for creation by event management.
      * 
@@ -112,10 +157,36 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 	getDeviceInteractionEventsProducer().send(device.getToken(), marshaled);
     }
 
+    /**
+     * Produce device management update to Kafka topic so that microservices can
+     * invalidate cached data for the device.
+     * 
+     * @param type
+     * @param device
+     * @param assignment
+     * @throws SiteWhereException
+     */
+    protected void produceUpdate(DeviceManagementUpdateType type, IDevice device, IDeviceAssignment assignment)
+	    throws SiteWhereException {
+	DeviceManagementUpdate update = new DeviceManagementUpdate();
+	update.setType(type);
+	update.setDeviceId(device.getId());
+	update.setDeviceToken(device.getToken());
+	if (assignment != null) {
+	    update.setDeviceAssignmentId(assignment.getId());
+	    update.setDeviceAssignmentToken(assignment.getToken());
+	}
+	getDeviceManagementUpdatesProducer().send(device.getId().toString(), MarshalUtils.marshalJson(update));
+    }
+
     protected IDeviceInteractionEventsProducer getDeviceInteractionEventsProducer() {
 	return getDeviceManagementTenantEngine().getDeviceInteractionEventsProducer();
     }
 
+    protected IDeviceManagementUpdatesProducer getDeviceManagementUpdatesProducer() {
+	return getDeviceManagementTenantEngine().getDeviceManagementUpdatesProducer();
+    }
+
     protected IDeviceManagementTenantEngine getDeviceManagementTenantEngine() {
 	return deviceManagementTenantEngine;
     }
@@ -16,12 +16,14 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import com.sitewhere.device.DeviceManagementTriggers;
 import com.sitewhere.device.initializer.GroovyDeviceModelInitializer;
 import com.sitewhere.device.spi.kafka.IDeviceInteractionEventsProducer;
+import com.sitewhere.device.spi.kafka.IDeviceManagementUpdatesProducer;
 import com.sitewhere.device.spi.microservice.IDeviceManagementMicroservice;
 import com.sitewhere.device.spi.microservice.IDeviceManagementTenantEngine;
 import com.sitewhere.grpc.service.DeviceManagementGrpc;
 import com.sitewhere.microservice.groovy.GroovyConfiguration;
 import com.sitewhere.microservice.grpc.DeviceManagementImpl;
 import com.sitewhere.microservice.kafka.DeviceInteractionEventsProducer;
+import com.sitewhere.microservice.kafka.DeviceManagementUpdatesProducer;
 import com.sitewhere.microservice.multitenant.MicroserviceTenantEngine;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.server.lifecycle.LifecycleProgressContext;
@@ -55,6 +57,9 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
     /** Produces events generated by device interactions */
     private IDeviceInteractionEventsProducer deviceInteractionEventsProducer;
 
+    /** Produces device and assignment changes */
+    private IDeviceManagementUpdatesProducer deviceManagementUpdatesProducer;
+
     public DeviceManagementTenantEngine(ITenant tenant) {
 	super(tenant);
     }
@@ -78,6 +83,9 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
 	// Device interaction events producer.
 	this.deviceInteractionEventsProducer = new DeviceInteractionEventsProducer();
 
+	// Device management updates producer.
+	this.deviceManagementUpdatesProducer = new DeviceManagementUpdatesProducer();
+
 	// Create step that will initialize components.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getComponentName());
 
@@ -90,6 +98,9 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
 	// Initialize device interaction events producer.
 	init.addInitializeStep(this, getDeviceInteractionEventsProducer(), true);
 
+	// Initialize device management updates producer.
+	init.addInitializeStep(this, getDeviceManagementUpdatesProducer(), true);
+
 	// Execute initialization steps.
 	init.execute(monitor);
     }
@@ -114,6 +125,9 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
 	// Start device interaction events producer.
 	start.addStartStep(this, getDeviceInteractionEventsProducer(), true);
 
+	// Start device management updates producer.
+	start.addStartStep(this, getDeviceManagementUpdatesProducer(), true);
+
 	// Execute startup steps.
 	start.execute(monitor);
     }
@@ -178,6 +192,9 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
 	// Stop device interaction events producer.
 	stop.addStopStep(this, getDeviceInteractionEventsProducer());
 
+	// Stop device management updates producer.
+	stop.addStopStep(this, getDeviceManagementUpdatesProducer());
+
 	// Stop device management persistence.
 	stop.addStopStep(this, getDeviceManagement());
 
@@ -231,6 +248,19 @@ public class DeviceManagementTenantEngine extends MicroserviceTenantEngine imple
 	this.deviceInteractionEventsProducer = deviceInteractionEventsProducer;
     }
 
+    /*
+     * @see com.sitewhere.device.spi.microservice.IDeviceManagementTenantEngine#
+     * getDeviceManagementUpdatesProducer()
+     */
+    @Override
+    public IDeviceManagementUpdatesProducer getDeviceManagementUpdatesProducer() {
+	return deviceManagementUpdatesProducer;
+    }
+
+    public void setDeviceManagementUpdatesProducer(IDeviceManagementUpdatesProducer deviceManagementUpdatesProducer) {
+	this.deviceManagementUpdatesProducer = deviceManagementUpdatesProducer;
+    }
+
     public IAssetManagement getAssetManagement() {
 	return ((IDeviceManagementMicroservice) getMicroservice()).getCachedAssetManagement();
     }
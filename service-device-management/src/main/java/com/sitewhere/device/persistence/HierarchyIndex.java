@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.sitewhere.rest.model.search.TreeNode;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.common.IBrandedTreeEntity;
+
+/**
+ * Immutable snapshot of a hierarchy of entities (such as areas or customers)
+ * that allows children and the full tree to be resolved without querying the
+ * underlying datastore. The tree is built once when the snapshot
+ * is created, so entities and tree nodes returned from the snapshot are shared
+ * and must not be modified.
+ *
+ * @author Derek
+ */
+public class HierarchyIndex<T extends IBrandedTreeEntity> {
+
+    /** All entities in original order */
+    private List<T> entities;
+
+    /** Entities by id */
+    private Map<UUID, T> byId = new HashMap<>();
+
+    /** Children by parent id */
+    private Map<UUID, List<T>> childrenByParentId = new HashMap<>();
+
+    /** Tree built from entities */
+    private List<TreeNode> tree;
+
+    /** Time snapshot was created */
+    private long created = System.currentTimeMillis();
+
+    public HierarchyIndex(List<T> entities) throws SiteWhereException {
+	this.entities = Collections.unmodifiableList(new ArrayList<T>(entities));
+	for (T entity : entities) {
+	    byId.put(entity.getId(), entity);
+	    UUID parentId = (entity.getParentId() != null) ? entity.getParentId() : TreeBuilder.ROOT;
+	    List<T> children = childrenByParentId.get(parentId);
+	    if (children == null) {
+		children = new ArrayList<T>();
+		childrenByParentId.put(parentId, children);
+	    }
+	    children.add(entity);
+	}
+	this.tree = Collections.unmodifiableList(TreeBuilder.buildTree(entities));
+    }
+
+    /**
+     * Get entity by id.
+     *
+     * @param id
+     * @return entity or null if not found
+     */
+    public T getEntity(UUID id) {
+	return byId.get(id);
+    }
+
+    /**
+     * Get direct children of an entity.
+     *
+     * @param id
+     * @return
+     */
+    public List<T> getChildren(UUID id) {
+	List<T> children = childrenByParentId.get(id);
+	return (children != null) ? Collections.unmodifiableList(children) : Collections.emptyList();
+    }
+
+    /**
+     * Get all entities in the order they were loaded.
+     *
+     * @return
+     */
+    public List<T> getEntities() {
+	return entities;
+    }
+
+    /**
+     * Get tree of entities starting at root entities.
+     *
+     * @return
+     */
+    public List<TreeNode> getTree() {
+	return tree;
+    }
+
+    /**
+     * Get time snapshot was created.
+     *
+     * @return
+     */
+    public long getCreated() {
+	return created;
+    }
+}
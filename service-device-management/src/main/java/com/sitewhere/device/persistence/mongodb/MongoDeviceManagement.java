@@ -12,6 +12,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.bson.Document;
@@ -26,7 +27,7 @@ import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.device.DeviceManagementUtils;
 import com.sitewhere.device.microservice.DeviceManagementMicroservice;
 import com.sitewhere.device.persistence.DeviceManagementPersistence;
-import com.sitewhere.device.persistence.TreeBuilder;
+import com.sitewhere.device.persistence.HierarchyIndex;
 import com.sitewhere.mongodb.IMongoConverterLookup;
 import com.sitewhere.mongodb.MongoPersistence;
 import com.sitewhere.mongodb.MongoTenantComponent;
@@ -115,9 +116,28 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
     /** Converter lookup */
     private static IMongoConverterLookup LOOKUP = new MongoConverters();
 
+    /**
+     * Max age in milliseconds of hierarchy snapshots. Snapshots are discarded
+     * on local writes, so this only limits how long changes made by other
+     * instances go unseen.
+     */
+    private static final long HIERARCHY_SNAPSHOT_MAX_AGE = 30 * 1000;
+
     /** Injected with global SiteWhere Mongo client */
     private DeviceManagementMongoClient mongoClient;
 
+    /** Snapshot of area hierarchy */
+    private volatile HierarchyIndex<IArea> areaHierarchy;
+
+    /** Incremented when area hierarchy changes */
+    private AtomicLong areaHierarchyVersion = new AtomicLong();
+
+    /** Snapshot of customer hierarchy */
+    private volatile HierarchyIndex<ICustomer> customerHierarchy;
+
+    /** Incremented when customer hierarchy changes */
+    private AtomicLong customerHierarchyVersion = new AtomicLong();
+
     public MongoDeviceManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -1381,6 +1401,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	Document created = MongoCustomer.toDocument(customer);
 	MongoPersistence.insert(customers, created, ErrorCode.DuplicateCustomerToken);
+	invalidateCustomerHierarchy();
 	return MongoCustomer.fromDocument(created);
     }
 
@@ -1446,6 +1467,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	Document query = new Document(MongoPersistentEntity.PROP_ID, id);
 	MongoPersistence.update(customers, query, updated);
+	invalidateCustomerHierarchy();
 	return MongoCustomer.fromDocument(updated);
     }
 
@@ -1456,6 +1478,11 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public ISearchResults<ICustomer> listCustomers(ICustomerSearchCriteria criteria) throws SiteWhereException {
+	if ((criteria.getPageSize() == 0) && (!Boolean.TRUE.equals(criteria.getRootOnly()))
+		&& (criteria.getParentCustomerToken() == null) && (criteria.getCustomerTypeToken() == null)) {
+	    List<ICustomer> all = getCustomerHierarchy().getEntities();
+	    return new SearchResults<ICustomer>(new ArrayList<ICustomer>(all), all.size());
+	}
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	Document query = new Document();
 	if ((criteria.getRootOnly() != null) && (criteria.getRootOnly().booleanValue() == true)) {
@@ -1483,8 +1510,45 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public List<TreeNode> getCustomersTree() throws SiteWhereException {
-	ISearchResults<ICustomer> all = listCustomers(new CustomerSearchCriteria(1, 0));
-	return TreeBuilder.buildTree(all.getResults());
+	return getCustomerHierarchy().getTree();
+    }
+
+    /**
+     * Get snapshot of customer hierarchy, loading all customers if there is no
+     * current snapshot.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected HierarchyIndex<ICustomer> getCustomerHierarchy() throws SiteWhereException {
+	HierarchyIndex<ICustomer> index = customerHierarchy;
+	if ((index != null) && (System.currentTimeMillis() - index.getCreated() < HIERARCHY_SNAPSHOT_MAX_AGE)) {
+	    return index;
+	}
+	long version = customerHierarchyVersion.get();
+	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
+	Document sort = new Document(MongoCustomer.PROP_NAME, 1);
+	SearchResults<ICustomer> all = MongoPersistence.search(ICustomer.class, customers, new Document(), sort,
+		new CustomerSearchCriteria(1, 0), LOOKUP);
+	index = new HierarchyIndex<ICustomer>(all.getResults());
+
+	// Do not keep a snapshot that may have missed a concurrent change.
+	synchronized (customerHierarchyVersion) {
+	    if (customerHierarchyVersion.get() == version) {
+		customerHierarchy = index;
+	    }
+	}
+	return index;
+    }
+
+    /**
+     * Discard customer hierarchy snapshot after a change.
+     */
+    protected void invalidateCustomerHierarchy() {
+	synchronized (customerHierarchyVersion) {
+	    customerHierarchyVersion.incrementAndGet();
+	    customerHierarchy = null;
+	}
     }
 
     /*
@@ -1499,6 +1563,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	}
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	MongoPersistence.delete(customers, existing);
+	invalidateCustomerHierarchy();
 	return MongoCustomer.fromDocument(existing);
     }
 
@@ -1619,6 +1684,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	Document created = MongoArea.toDocument(area);
 	MongoPersistence.insert(areas, created, ErrorCode.DuplicateAreaToken);
+	invalidateAreaHierarchy();
 	return MongoArea.fromDocument(created);
     }
 
@@ -1682,6 +1748,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	Document query = new Document(MongoPersistentEntity.PROP_ID, id);
 	MongoPersistence.update(areas, query, updated);
+	invalidateAreaHierarchy();
 	return MongoArea.fromDocument(updated);
     }
 
@@ -1692,6 +1759,11 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public SearchResults<IArea> listAreas(IAreaSearchCriteria criteria) throws SiteWhereException {
+	if ((criteria.getPageSize() == 0) && (!Boolean.TRUE.equals(criteria.getRootOnly()))
+		&& (criteria.getParentAreaToken() == null) && (criteria.getAreaTypeToken() == null)) {
+	    List<IArea> all = getAreaHierarchy().getEntities();
+	    return new SearchResults<IArea>(new ArrayList<IArea>(all), all.size());
+	}
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	Document query = new Document();
 	if ((criteria.getRootOnly() != null) && (criteria.getRootOnly().booleanValue() == true)) {
@@ -1713,8 +1785,45 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public List<TreeNode> getAreasTree() throws SiteWhereException {
-	ISearchResults<IArea> all = listAreas(new AreaSearchCriteria(1, 0));
-	return TreeBuilder.buildTree(all.getResults());
+	return getAreaHierarchy().getTree();
+    }
+
+    /**
+     * Get snapshot of area hierarchy, loading all areas if there is no current
+     * snapshot.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected HierarchyIndex<IArea> getAreaHierarchy() throws SiteWhereException {
+	HierarchyIndex<IArea> index = areaHierarchy;
+	if ((index != null) && (System.currentTimeMillis() - index.getCreated() < HIERARCHY_SNAPSHOT_MAX_AGE)) {
+	    return index;
+	}
+	long version = areaHierarchyVersion.get();
+	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
+	Document sort = new Document(MongoArea.PROP_NAME, 1);
+	SearchResults<IArea> all = MongoPersistence.search(IArea.class, areas, new Document(), sort,
+		new AreaSearchCriteria(1, 0), LOOKUP);
+	index = new HierarchyIndex<IArea>(all.getResults());
+
+	// Do not keep a snapshot that may have missed a concurrent change.
+	synchronized (areaHierarchyVersion) {
+	    if (areaHierarchyVersion.get() == version) {
+		areaHierarchy = index;
+	    }
+	}
+	return index;
+    }
+
+    /**
+     * Discard area hierarchy snapshot after a change.
+     */
+    protected void invalidateAreaHierarchy() {
+	synchronized (areaHierarchyVersion) {
+	    areaHierarchyVersion.incrementAndGet();
+	    areaHierarchy = null;
+	}
     }
 
     /*
@@ -1728,6 +1837,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	}
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	MongoPersistence.delete(areas, existing);
+	invalidateAreaHierarchy();
 	return MongoArea.fromDocument(existing);
     }
 
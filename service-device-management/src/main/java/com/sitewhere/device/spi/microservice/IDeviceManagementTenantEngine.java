@@ -8,6 +8,7 @@
 package com.sitewhere.device.spi.microservice;
 
 import com.sitewhere.device.spi.kafka.IDeviceInteractionEventsProducer;
+import com.sitewhere.device.spi.kafka.IDeviceManagementUpdatesProducer;
 import com.sitewhere.grpc.service.DeviceManagementGrpc;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.microservice.multitenant.IMicroserviceTenantEngine;
@@ -40,4 +41,11 @@ public interface IDeviceManagementTenantEngine extends IMicroserviceTenantEngine
      * @return
      */
     public IDeviceInteractionEventsProducer getDeviceInteractionEventsProducer();
+
+    /**
+     * Get Kafka producer for device and assignment changes.
+     * 
+     * @return
+     */
+    public IDeviceManagementUpdatesProducer getDeviceManagementUpdatesProducer();
 }
\ No newline at end of file
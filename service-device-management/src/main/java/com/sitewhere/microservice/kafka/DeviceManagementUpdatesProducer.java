@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import com.sitewhere.device.spi.kafka.IDeviceManagementUpdatesProducer;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Kafka producer that sends device and assignment changes so that other
+ * microservices can invalidate cached data.
+ */
+public class DeviceManagementUpdatesProducer extends MicroserviceKafkaProducer
+	implements IDeviceManagementUpdatesProducer {
+
+    public DeviceManagementUpdatesProducer() {
+	super(AckPolicy.Leader);
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaProducer#
+     * getTargetTopicName()
+     */
+    @Override
+    public String getTargetTopicName() throws SiteWhereException {
+	return getMicroservice().getKafkaTopicNaming().getDeviceManagementUpdatesTopic(getTenantEngine().getTenant());
+    }
+}
@@ -81,7 +81,20 @@ public class DeviceStateModelProvider extends ConfigurationModelProvider {
 		"question-circle", DeviceStateRoleKeys.DeviceState, this);
 
 	builder.description("Records device state persistence and presence management.");
+	builder.attributeGroup(ConfigurationModelProvider.ATTR_GROUP_GENERAL);
 
+	builder.attribute((new AttributeNode.Builder("State flush interval (ms)", "stateFlushInterval",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of milliseconds between bulk writes of updated device state.")
+			.defaultValue("1000").build()));
+	builder.attribute((new AttributeNode.Builder("Max dirty states", "maxDirtyStates", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of updated device states waiting to be written before event "
+				+ "processing blocks until the next write.")
+			.defaultValue("10000").build()));
+	builder.attribute((new AttributeNode.Builder("Max cached states", "maxCachedStates", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of device states kept in memory.").defaultValue("100000").build()));
 	return builder.build();
     }
 
@@ -110,6 +123,19 @@ public class DeviceStateModelProvider extends ConfigurationModelProvider {
 			.description("Time duration (ISO8601 or \"2d 5h 10m\" format) that indicates amount of time to "
 				+ "since last interaction with a device to consider it non-present.")
 			.defaultValue("8h").build()));
+	builder.attribute((new AttributeNode.Builder("Check chunk size", "checkChunkSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of device states read and processed together during a presence check.")
+			.defaultValue("1000").build()));
+	builder.attribute((new AttributeNode.Builder("Check concurrency", "checkConcurrency", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of chunks of device states processed in parallel during a presence check.")
+			.defaultValue("4").build()));
+	builder.attribute((new AttributeNode.Builder("In-memory tracking", "inMemoryTracking", AttributeType.Boolean,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Track presence deadlines in memory and detect missing devices as soon as "
+				+ "their deadline passes rather than by periodic queries.")
+			.defaultValue("false").build()));
 	return builder.build();
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import com.sitewhere.devicestate.spi.IDevicePresenceManager;
 import com.sitewhere.devicestate.spi.kafka.IDeviceStateEnrichedEventsConsumer;
 import com.sitewhere.devicestate.spi.microservice.IDeviceStateMicroservice;
 import com.sitewhere.devicestate.spi.microservice.IDeviceStateTenantEngine;
+import com.sitewhere.devicestate.spi.processing.IDeviceStateProcessingLogic;
 import com.sitewhere.grpc.service.DeviceStateGrpc;
 import com.sitewhere.microservice.grpc.DeviceStateImpl;
 import com.sitewhere.microservice.kafka.DeviceStateEnrichedEventsConsumer;
@@ -64,7 +65,9 @@ public class DeviceStateTenantEngine extends MicroserviceTenantEngine implements
 		getDeviceStateManagement());
 
 	// Create enriched events consumer for building device state.
-	this.deviceStateEnrichedEventsConsumer = new DeviceStateEnrichedEventsConsumer();
+	IDeviceStateProcessingLogic processingLogic = (IDeviceStateProcessingLogic) getModuleContext()
+		.getBean(DeviceStateManagementBeans.BEAN_DEVICE_STATE_PROCESSING_LOGIC);
+	this.deviceStateEnrichedEventsConsumer = new DeviceStateEnrichedEventsConsumer(processingLogic);
 
 	// Create presence manager.
 	this.devicePresenceManager = (IDevicePresenceManager) getModuleContext()
@@ -9,13 +9,19 @@ package com.sitewhere.devicestate.persistence.mongodb;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.bson.Document;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClientException;
+import com.mongodb.MongoServerException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.sitewhere.devicestate.microservice.DeviceStateMicroservice;
 import com.sitewhere.devicestate.persistence.DeviceStatePersistence;
 import com.sitewhere.mongodb.IMongoConverterLookup;
@@ -143,6 +149,30 @@ public class MongoDeviceStateManagement extends TenantEngineLifecycleComponent i
 	return null;
     }
 
+    /*
+     * @see com.sitewhere.spi.device.state.IDeviceStateManagement#
+     * getDeviceStatesByDeviceAssignmentIds(java.util.List)
+     */
+    @Override
+    public List<IDeviceState> getDeviceStatesByDeviceAssignmentIds(List<UUID> assignmentIds)
+	    throws SiteWhereException {
+	List<IDeviceState> results = new ArrayList<>(assignmentIds.size());
+	if (assignmentIds.isEmpty()) {
+	    return results;
+	}
+	MongoCollection<Document> states = getMongoClient().getDeviceStatesCollection();
+	try {
+	    Document query = new Document(MongoDeviceState.PROP_DEVICE_ASSIGNMENT_ID,
+		    new Document("$in", assignmentIds));
+	    for (Document match : states.find(query)) {
+		results.add(MongoDeviceState.fromDocument(match));
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.state.IDeviceStateManagement#updateDeviceState(java.
@@ -164,6 +194,43 @@ public class MongoDeviceStateManagement extends TenantEngineLifecycleComponent i
 	return MongoDeviceState.fromDocument(updated);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.state.IDeviceStateManagement#updateDeviceStates(java
+     * .util.Map)
+     */
+    @Override
+    public List<IDeviceState> updateDeviceStates(Map<UUID, IDeviceStateCreateRequest> requests)
+	    throws SiteWhereException {
+	List<IDeviceState> results = new ArrayList<>(requests.size());
+	if (requests.isEmpty()) {
+	    return results;
+	}
+	MongoCollection<Document> states = getMongoClient().getDeviceStatesCollection();
+	try {
+	    // Load all states with one query and apply updates with one bulk write.
+	    Document query = new Document(MongoDeviceState.PROP_ID,
+		    new Document("$in", new ArrayList<>(requests.keySet())));
+	    List<WriteModel<Document>> writes = new ArrayList<>(requests.size());
+	    for (Document match : states.find(query)) {
+		DeviceState deviceState = MongoDeviceState.fromDocument(match);
+		DeviceStatePersistence.deviceStateUpdateLogic(requests.get(deviceState.getId()), deviceState);
+		Document updated = MongoDeviceState.toDocument(deviceState);
+		writes.add(new UpdateOneModel<Document>(new Document(MongoDeviceState.PROP_ID, deviceState.getId()),
+			new Document("$set", updated)));
+		results.add(MongoDeviceState.fromDocument(updated));
+	    }
+	    if (!writes.isEmpty()) {
+		states.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	} catch (MongoServerException e) {
+	    throw new SiteWhereException("Error during MongoDB bulk update.", e);
+	}
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.state.IDeviceStateManagement#searchDeviceStates(com.
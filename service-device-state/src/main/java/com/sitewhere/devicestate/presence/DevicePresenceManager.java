@@ -7,9 +7,20 @@
  */
 package com.sitewhere.devicestate.presence;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.joda.time.Period;
 import org.joda.time.format.ISOPeriodFormat;
@@ -22,25 +33,41 @@ import com.sitewhere.devicestate.spi.microservice.IDeviceStateMicroservice;
 import com.sitewhere.devicestate.spi.microservice.IDeviceStateTenantEngine;
 import com.sitewhere.grpc.client.event.BlockingDeviceEventManagement;
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
+import com.sitewhere.microservice.security.SystemUserCallable;
 import com.sitewhere.microservice.security.SystemUserRunnable;
 import com.sitewhere.rest.model.device.event.request.DeviceStateChangeCreateRequest;
 import com.sitewhere.rest.model.device.state.request.DeviceStateCreateRequest;
-import com.sitewhere.rest.model.search.device.DeviceStateSearchCriteria;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.state.PresenceState;
 import com.sitewhere.spi.device.state.IDeviceState;
 import com.sitewhere.spi.device.state.IDeviceStateManagement;
+import com.sitewhere.spi.device.state.request.IDeviceStateCreateRequest;
 import com.sitewhere.spi.microservice.IMicroservice;
+import com.sitewhere.spi.search.IKeysetSearchResults;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 import com.sitewhere.spi.tenant.ITenant;
 
+import io.prometheus.client.Histogram;
+
 /**
- * Monitors assignment state to detect device presence information.
+ * Monitors assignment state to detect device presence information. Each check
+ * walks device states with a last interaction date older than the missing
+ * interval in chunks (oldest first) using keyset paging on the indexed date.
+ * Chunks are handed to a pool of workers that create presence events and
+ * update device states in bulk, while the number of chunks in flight is
+ * bounded so memory use does not grow with the number of devices.
+ * 
+ * When in-memory tracking is enabled, the deadline for each assignment is kept
+ * in a {@link PresenceTimerWheel} that is rebuilt from stored device states at
+ * startup (retrying with backoff until the states can be loaded) and re-armed
+ * as events are processed, so devices are detected as missing as soon as their
+ * deadline passes without querying for them.
  * 
  * @author Derek
  */
@@ -52,6 +79,26 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
     /** Default presence missing interval (1 hour) */
     private static final String DEFAULT_PRESENCE_MISSING_INTERVAL = "8h";
 
+    /** Default number of device states processed in each chunk */
+    private static final int DEFAULT_PRESENCE_CHECK_CHUNK_SIZE = 1000;
+
+    /** Default number of chunks processed concurrently */
+    private static final int DEFAULT_PRESENCE_CHECK_CONCURRENCY = 4;
+
+    /** Resolution of timer wheel used for in-memory tracking */
+    private static final long WHEEL_TICK_MILLIS = 1000;
+
+    /** Delay before first retry of a failed timer wheel rebuild (doubled on each attempt) */
+    private static final long REBUILD_RETRY_BACKOFF_MS = 1000;
+
+    /** Maximum delay between retries of a failed timer wheel rebuild */
+    private static final long MAX_REBUILD_RETRY_BACKOFF_MS = 60000;
+
+    /** Histogram for duration of presence checks */
+    private static final Histogram PRESENCE_CHECK_DURATION = createHistogramMetric("presence_check_duration",
+	    "Time taken to check presence for all devices", new double[] { 0.1, 0.5, 1, 5, 10, 30, 60, 120, 300, 600,
+		    1800, 3600 });
+
     /** Used to format durations for output */
     private static final PeriodFormatter PERIOD_FORMATTER = new PeriodFormatterBuilder().appendWeeks().appendSuffix("w")
 	    .appendSeparator(" ").appendDays().appendSuffix("d").appendSeparator(" ").appendHours().appendSuffix("h")
@@ -64,6 +111,15 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
     /** Presence missing interval */
     private String presenceMissingInterval = DEFAULT_PRESENCE_MISSING_INTERVAL;
 
+    /** Number of device states processed in each chunk */
+    private int presenceCheckChunkSize = DEFAULT_PRESENCE_CHECK_CHUNK_SIZE;
+
+    /** Number of chunks processed concurrently */
+    private int presenceCheckConcurrency = DEFAULT_PRESENCE_CHECK_CONCURRENCY;
+
+    /** Indicates whether presence deadlines are tracked in memory */
+    private boolean inMemoryTracking = false;
+
     /**
      * Chooses how presence state is stored and how often notifications are sent
      */
@@ -72,6 +128,15 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
     /** Executor service for threading */
     private ExecutorService executor;
 
+    /** Workers that process chunks of device states */
+    private ExecutorService workers;
+
+    /** Presence deadlines if tracking in memory */
+    private volatile PresenceTimerWheel wheel;
+
+    /** Presence missing interval in milliseconds */
+    private long missingIntervalMillis;
+
     public DevicePresenceManager() {
 	super(LifecycleComponentType.DevicePresenceManager);
     }
@@ -85,7 +150,17 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	this.executor = Executors.newSingleThreadExecutor();
-	executor.execute(new PresenceChecker(getMicroservice(), getTenantEngine().getTenant()));
+	this.workers = Executors.newFixedThreadPool(Math.max(1, getPresenceCheckConcurrency()),
+		new PresenceWorkerThreadFactory());
+	this.missingIntervalMillis = parseInterval(getPresenceMissingInterval()).toStandardSeconds().getSeconds()
+		* 1000L;
+	if (isInMemoryTracking()) {
+	    this.wheel = new PresenceTimerWheel(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+	    executor.execute(new PresenceTracker(getMicroservice(), getTenantEngine().getTenant()));
+	} else {
+	    this.wheel = null;
+	    executor.execute(new PresenceChecker(getMicroservice(), getTenantEngine().getTenant()));
+	}
     }
 
     /*
@@ -100,6 +175,37 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
 	if (executor != null) {
 	    executor.shutdownNow();
 	}
+	if (workers != null) {
+	    workers.shutdownNow();
+	}
+	this.wheel = null;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.devicestate.spi.IDevicePresenceManager#onDeviceInteraction(
+     * java.util.UUID, java.util.Date)
+     */
+    @Override
+    public void onDeviceInteraction(UUID deviceAssignmentId, Date interactionDate) throws SiteWhereException {
+	PresenceTimerWheel current = wheel;
+	if ((current != null) && (deviceAssignmentId != null) && (interactionDate != null)) {
+	    current.schedule(deviceAssignmentId, interactionDate.getTime() + missingIntervalMillis);
+	}
+    }
+
+    /**
+     * Parse an interval in ISO8601 or "1h 10m 30s" format.
+     * 
+     * @param value
+     * @return
+     */
+    protected static Period parseInterval(String value) {
+	try {
+	    return Period.parse(value, ISOPeriodFormat.standard());
+	} catch (IllegalArgumentException e) {
+	    return PERIOD_FORMATTER.parsePeriod(value);
+	}
     }
 
     /**
@@ -115,20 +221,10 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
 
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
-	    Period missingInterval;
-	    try {
-		missingInterval = Period.parse(getPresenceMissingInterval(), ISOPeriodFormat.standard());
-	    } catch (IllegalArgumentException e) {
-		missingInterval = PERIOD_FORMATTER.parsePeriod(getPresenceMissingInterval());
-	    }
+	    Period missingInterval = parseInterval(getPresenceMissingInterval());
 	    int missingIntervalSecs = missingInterval.toStandardSeconds().getSeconds();
 
-	    Period checkInterval;
-	    try {
-		checkInterval = Period.parse(getPresenceCheckInterval(), ISOPeriodFormat.standard());
-	    } catch (IllegalArgumentException e) {
-		checkInterval = PERIOD_FORMATTER.parsePeriod(getPresenceCheckInterval());
-	    }
+	    Period checkInterval = parseInterval(getPresenceCheckInterval());
 	    int checkIntervalSecs = checkInterval.toStandardSeconds().getSeconds();
 
 	    getLogger().info("Presence manager checking every " + PERIOD_FORMATTER.print(checkInterval) + " ("
@@ -137,32 +233,8 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
 
 	    while (true) {
 		try {
-		    // TODO: For performance/memory consumption, this should be done in batches.
 		    Date endDate = new Date(System.currentTimeMillis() - (missingIntervalSecs * 1000));
-		    DeviceStateSearchCriteria criteria = new DeviceStateSearchCriteria(1, 0);
-		    criteria.setLastInteractionDateBefore(endDate);
-		    ISearchResults<IDeviceState> missing = getDeviceStateManagement().searchDeviceStates(criteria);
-
-		    if (missing.getNumResults() > 0) {
-			getLogger()
-				.info("Presence manager detected " + missing.getNumResults() + " non-present devices.");
-		    } else {
-			getLogger().info("No non-present devices detected.");
-		    }
-		    for (IDeviceState deviceState : missing.getResults()) {
-			if (sendPresenceMissing(deviceState)) {
-			    try {
-				DeviceStateCreateRequest update = new DeviceStateCreateRequest();
-				update.setDeviceId(deviceState.getDeviceId());
-				update.setDeviceAssignmentId(deviceState.getDeviceAssignmentId());
-				update.setPresenceMissingDate(new Date());
-				update.setLastInteractionDate(deviceState.getLastInteractionDate());
-				getDeviceStateManagement().updateDeviceState(deviceState.getId(), update);
-			    } catch (SiteWhereException e) {
-				getLogger().warn("Unable to update presence missing date.", e);
-			    }
-			}
-		    }
+		    checkPresence(endDate);
 		} catch (SiteWhereException e) {
 		    getLogger().error("Error processing presence query.", e);
 		}
@@ -171,35 +243,339 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
 		    Thread.sleep(checkIntervalSecs * 1000);
 		} catch (InterruptedException e) {
 		    getLogger().info("Presence check thread shut down.");
+		    return;
 		}
 	    }
 	}
 
 	/**
-	 * Create state change event to indicate device not present.
+	 * Walk device states with a last interaction date before the given date and
+	 * process them in chunks. A new chunk is only read once there is room for it
+	 * in the worker pool.
 	 * 
-	 * @param deviceState
+	 * @param endDate
 	 * @throws SiteWhereException
 	 */
-	protected boolean sendPresenceMissing(IDeviceState deviceState) {
-	    DeviceStateChangeCreateRequest create = new DeviceStateChangeCreateRequest();
-	    create.setAttribute(IDeviceStateChangeCreateRequest.ATTRIBUTE_PRESENCE);
-	    create.setType("automated");
-	    create.setPreviousState(PresenceState.PRESENT.name());
-	    create.setNewState(PresenceState.NOT_PRESENT.name());
+	protected void checkPresence(Date endDate) throws SiteWhereException {
+	    Histogram.Timer timer = PRESENCE_CHECK_DURATION.labels(buildLabels()).startTimer();
+	    int checked = 0;
+	    int missing = 0;
+	    LinkedList<Future<Integer>> pending = new LinkedList<>();
+	    try {
+		String continuationToken = null;
+		do {
+		    DeviceStateKeysetSearchCriteria criteria = new DeviceStateKeysetSearchCriteria(
+			    getPresenceCheckChunkSize(), continuationToken);
+		    criteria.setLastInteractionDateBefore(endDate);
+		    ISearchResults<IDeviceState> chunk = getDeviceStateManagement().searchDeviceStates(criteria);
+		    continuationToken = (chunk instanceof IKeysetSearchResults)
+			    ? ((IKeysetSearchResults<IDeviceState>) chunk).getContinuationToken()
+			    : null;
+		    if (chunk.getResults().isEmpty()) {
+			break;
+		    }
+		    checked += chunk.getResults().size();
+
+		    while (pending.size() >= Math.max(1, getPresenceCheckConcurrency())) {
+			missing += waitForChunk(pending.removeFirst());
+		    }
+		    pending.add(workers.submit(new PresenceChunkProcessor(getMicroservice(),
+			    getTenantEngine().getTenant(), chunk.getResults())));
+		} while (continuationToken != null);
+
+		while (!pending.isEmpty()) {
+		    missing += waitForChunk(pending.removeFirst());
+		}
+	    } finally {
+		for (Future<Integer> future : pending) {
+		    future.cancel(true);
+		}
+		double elapsed = timer.observeDuration();
+		if (missing > 0) {
+		    getLogger().info("Presence manager detected " + missing + " non-present devices out of " + checked
+			    + " checked in " + String.format("%.1f", elapsed) + " seconds.");
+		} else {
+		    getLogger().info("No non-present devices detected.");
+		}
+	    }
+	}
+
+	/**
+	 * Wait for a chunk to finish processing and return the number of devices
+	 * marked as non-present.
+	 * 
+	 * @param future
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected int waitForChunk(Future<Integer> future) throws SiteWhereException {
+	    try {
+		return future.get();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted while checking device presence.", e);
+	    } catch (ExecutionException e) {
+		getLogger().error("Unable to process chunk of device states for presence.", e.getCause());
+		return 0;
+	    }
+	}
+    }
+
+    /**
+     * Thread that rebuilds the timer wheel from stored device states and then
+     * advances it, processing assignments whose deadline has passed.
+     * 
+     * @author Derek
+     */
+    private class PresenceTracker extends SystemUserRunnable {
+
+	public PresenceTracker(IMicroservice<?> microservice, ITenant tenant) {
+	    super(microservice, tenant);
+	}
+
+	@Override
+	public void runAsSystemUser() throws SiteWhereException {
+	    PresenceTimerWheel tracked = wheel;
+	    boolean loaded = false;
+	    long rebuildBackoff = REBUILD_RETRY_BACKOFF_MS;
+	    long nextRebuild = 0;
+	    while (true) {
+		// Keep retrying until stored states are loaded. Deadlines armed by
+		// processed events still expire in the meantime.
+		if (!loaded && (System.currentTimeMillis() >= nextRebuild)) {
+		    try {
+			rebuild(tracked);
+			loaded = true;
+		    } catch (Throwable e) {
+			getLogger().error("Unable to load device states for presence tracking. Retrying in "
+				+ rebuildBackoff + "ms.", e);
+			nextRebuild = System.currentTimeMillis() + rebuildBackoff;
+			rebuildBackoff = Math.min(rebuildBackoff * 2, MAX_REBUILD_RETRY_BACKOFF_MS);
+		    }
+		}
+		try {
+		    Thread.sleep(tracked.getTickMillis());
+		} catch (InterruptedException e) {
+		    getLogger().info("Presence tracking thread shut down.");
+		    return;
+		}
+		List<UUID> expired = tracked.advance(System.currentTimeMillis());
+		if (!expired.isEmpty()) {
+		    try {
+			processExpired(expired);
+		    } catch (SiteWhereException e) {
+			getLogger().error("Error processing expired presence deadlines.", e);
+		    }
+		}
+	    }
+	}
+
+	/**
+	 * Schedule a deadline for every device state not already marked as missing.
+	 * 
+	 * @param tracked
+	 * @throws SiteWhereException
+	 */
+	protected void rebuild(PresenceTimerWheel tracked) throws SiteWhereException {
+	    long start = System.currentTimeMillis();
+	    String continuationToken = null;
+	    do {
+		DeviceStateKeysetSearchCriteria criteria = new DeviceStateKeysetSearchCriteria(
+			getPresenceCheckChunkSize(), continuationToken);
+		ISearchResults<IDeviceState> chunk = getDeviceStateManagement().searchDeviceStates(criteria);
+		continuationToken = (chunk instanceof IKeysetSearchResults)
+			? ((IKeysetSearchResults<IDeviceState>) chunk).getContinuationToken()
+			: null;
+		for (IDeviceState deviceState : chunk.getResults()) {
+		    if ((deviceState.getPresenceMissingDate() == null)
+			    && (deviceState.getLastInteractionDate() != null)) {
+			tracked.schedule(deviceState.getDeviceAssignmentId(),
+				deviceState.getLastInteractionDate().getTime() + missingIntervalMillis);
+		    }
+		}
+		if (chunk.getResults().isEmpty()) {
+		    break;
+		}
+	    } while (continuationToken != null);
+	    getLogger().info("Presence tracking loaded " + tracked.size() + " device states in "
+		    + (System.currentTimeMillis() - start) + "ms.");
+	}
 
+	/**
+	 * Process assignments with expired deadlines in chunks.
+	 * 
+	 * @param expired
+	 * @throws SiteWhereException
+	 */
+	protected void processExpired(List<UUID> expired) throws SiteWhereException {
+	    int chunkSize = Math.max(1, getPresenceCheckChunkSize());
+	    List<Future<Integer>> pending = new ArrayList<>();
+	    int missing = 0;
 	    try {
-		// Only send an event if the strategy permits it.
-		if (getPresenceNotificationStrategy().shouldGenerateEvent(deviceState, create)) {
-		    IDeviceEventManagement eventManagement = new BlockingDeviceEventManagement(
-			    getDeviceEventManagementApiChannel());
-		    eventManagement.addDeviceStateChanges(deviceState.getDeviceAssignmentId(), create);
-		    return true;
+		for (int i = 0; i < expired.size(); i += chunkSize) {
+		    List<UUID> chunk = expired.subList(i, Math.min(expired.size(), i + chunkSize));
+		    pending.add(workers.submit(new ExpiredPresenceProcessor(getMicroservice(),
+			    getTenantEngine().getTenant(), new ArrayList<>(chunk))));
+		}
+		for (Future<Integer> future : pending) {
+		    try {
+			missing += future.get();
+		    } catch (ExecutionException e) {
+			getLogger().error("Unable to process expired presence deadlines.", e.getCause());
+		    }
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted while processing device presence.", e);
+	    } finally {
+		for (Future<Integer> future : pending) {
+		    future.cancel(true);
+		}
+	    }
+	    if (missing > 0) {
+		getLogger().info("Presence manager detected " + missing + " non-present devices.");
+	    }
+	}
+    }
+
+    /**
+     * Looks up current state for assignments with expired deadlines with a single
+     * query per chunk. States that were updated since the deadline was set (for
+     * instance by another instance of the microservice) are re-armed rather than
+     * marked as missing.
+     * 
+     * @author Derek
+     */
+    private class ExpiredPresenceProcessor extends SystemUserCallable<Integer> {
+
+	/** Ids of assignments with expired deadlines */
+	private List<UUID> deviceAssignmentIds;
+
+	public ExpiredPresenceProcessor(IMicroservice<?> microservice, ITenant tenant,
+		List<UUID> deviceAssignmentIds) {
+	    super(microservice, tenant);
+	    this.deviceAssignmentIds = deviceAssignmentIds;
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserCallable#runAsSystemUser()
+	 */
+	@Override
+	public Integer runAsSystemUser() throws SiteWhereException {
+	    long now = System.currentTimeMillis();
+	    List<IDeviceState> stale = new ArrayList<>();
+	    for (IDeviceState deviceState : getDeviceStateManagement()
+		    .getDeviceStatesByDeviceAssignmentIds(deviceAssignmentIds)) {
+		if ((deviceState.getPresenceMissingDate() != null) || (deviceState.getLastInteractionDate() == null)) {
+		    continue;
+		}
+		long deadline = deviceState.getLastInteractionDate().getTime() + missingIntervalMillis;
+		if (deadline > now) {
+		    onDeviceInteraction(deviceState.getDeviceAssignmentId(), deviceState.getLastInteractionDate());
+		} else {
+		    stale.add(deviceState);
 		}
+	    }
+	    if (stale.isEmpty()) {
+		return 0;
+	    }
+	    return new PresenceChunkProcessor(getMicroservice(), getTenant(), stale).runAsSystemUser();
+	}
+    }
+
+    /**
+     * Creates presence events and updates device state for a chunk of device
+     * states that have not interacted within the missing interval.
+     * 
+     * @author Derek
+     */
+    private class PresenceChunkProcessor extends SystemUserCallable<Integer> {
+
+	/** Device states to process */
+	private List<IDeviceState> deviceStates;
+
+	public PresenceChunkProcessor(IMicroservice<?> microservice, ITenant tenant, List<IDeviceState> deviceStates) {
+	    super(microservice, tenant);
+	    this.deviceStates = deviceStates;
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserCallable#runAsSystemUser()
+	 */
+	@Override
+	public Integer runAsSystemUser() throws SiteWhereException {
+	    // Only send events for states the strategy permits.
+	    Map<UUID, List<IDeviceEventCreateRequest>> events = new HashMap<>();
+	    Map<UUID, IDeviceStateCreateRequest> updates = new HashMap<>();
+	    Date now = new Date();
+	    for (IDeviceState deviceState : deviceStates) {
+		IDeviceStateChangeCreateRequest create = createPresenceMissing();
+		if (!getPresenceNotificationStrategy().shouldGenerateEvent(deviceState, create)) {
+		    continue;
+		}
+		List<IDeviceEventCreateRequest> forAssignment = events.get(deviceState.getDeviceAssignmentId());
+		if (forAssignment == null) {
+		    forAssignment = new ArrayList<>();
+		    events.put(deviceState.getDeviceAssignmentId(), forAssignment);
+		}
+		forAssignment.add(create);
+
+		DeviceStateCreateRequest update = new DeviceStateCreateRequest();
+		update.setDeviceId(deviceState.getDeviceId());
+		update.setDeviceAssignmentId(deviceState.getDeviceAssignmentId());
+		update.setPresenceMissingDate(now);
+		update.setLastInteractionDate(deviceState.getLastInteractionDate());
+		updates.put(deviceState.getId(), update);
+	    }
+	    if (updates.isEmpty()) {
+		return 0;
+	    }
+
+	    // The event management API has no bulk call, so events are created one
+	    // assignment at a time. Only record missing date for assignments whose
+	    // events were created so that a partial failure is neither repeated nor
+	    // lost on the next sweep.
+	    IDeviceEventManagement eventManagement = new BlockingDeviceEventManagement(
+		    getDeviceEventManagementApiChannel());
+	    Map<UUID, IDeviceStateCreateRequest> created = new HashMap<>();
+	    for (IDeviceState deviceState : deviceStates) {
+		IDeviceStateCreateRequest update = updates.get(deviceState.getId());
+		if (update == null) {
+		    continue;
+		}
+		UUID deviceAssignmentId = deviceState.getDeviceAssignmentId();
+		try {
+		    eventManagement.addDeviceEvents(
+			    Collections.singletonMap(deviceAssignmentId, events.get(deviceAssignmentId)), null);
+		    created.put(deviceState.getId(), update);
+		} catch (SiteWhereException e) {
+		    getLogger().error("Unable to create state change events for presence missing on assignment "
+			    + deviceAssignmentId + ".", e);
+		}
+	    }
+	    if (created.isEmpty()) {
+		return 0;
+	    }
+	    try {
+		getDeviceStateManagement().updateDeviceStates(created);
 	    } catch (SiteWhereException e) {
-		getLogger().error("Unable to create state change event for presence missing.", e);
+		getLogger().warn("Unable to update presence missing date.", e);
 	    }
-	    return false;
+	    return created.size();
+	}
+
+	/**
+	 * Create state change event to indicate device not present.
+	 * 
+	 * @return
+	 */
+	protected IDeviceStateChangeCreateRequest createPresenceMissing() {
+	    DeviceStateChangeCreateRequest create = new DeviceStateChangeCreateRequest();
+	    create.setAttribute(IDeviceStateChangeCreateRequest.ATTRIBUTE_PRESENCE);
+	    create.setType("automated");
+	    create.setPreviousState(PresenceState.PRESENT.name());
+	    create.setNewState(PresenceState.NOT_PRESENT.name());
+	    return create;
 	}
     }
 
@@ -233,6 +609,30 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
 	this.presenceMissingInterval = presenceMissingInterval;
     }
 
+    public int getPresenceCheckChunkSize() {
+	return presenceCheckChunkSize;
+    }
+
+    public void setPresenceCheckChunkSize(int presenceCheckChunkSize) {
+	this.presenceCheckChunkSize = presenceCheckChunkSize;
+    }
+
+    public int getPresenceCheckConcurrency() {
+	return presenceCheckConcurrency;
+    }
+
+    public void setPresenceCheckConcurrency(int presenceCheckConcurrency) {
+	this.presenceCheckConcurrency = presenceCheckConcurrency;
+    }
+
+    public boolean isInMemoryTracking() {
+	return inMemoryTracking;
+    }
+
+    public void setInMemoryTracking(boolean inMemoryTracking) {
+	this.inMemoryTracking = inMemoryTracking;
+    }
+
     private IDeviceStateManagement getDeviceStateManagement() {
 	return ((IDeviceStateTenantEngine) getTenantEngine()).getDeviceStateManagement();
     }
@@ -240,4 +640,15 @@ public class DevicePresenceManager extends TenantEngineLifecycleComponent implem
     private IDeviceEventManagementApiChannel<?> getDeviceEventManagementApiChannel() {
 	return ((IDeviceStateMicroservice) getMicroservice()).getDeviceEventManagementApiChannel();
     }
+
+    /** Used for naming presence worker threads */
+    private class PresenceWorkerThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Presence Check " + counter.incrementAndGet());
+	}
+    }
 }
\ No newline at end of file
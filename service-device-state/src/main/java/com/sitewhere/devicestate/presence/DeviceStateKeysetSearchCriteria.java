@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.devicestate.presence;
+
+import java.util.Date;
+
+import com.sitewhere.rest.model.search.device.DeviceStateSearchCriteria;
+import com.sitewhere.spi.search.IKeysetSearchCriteria;
+
+/**
+ * Device state search criteria that page by seeking past the last state of the
+ * previous page. Used to walk large numbers of device states in order of last
+ * interaction date without the cost of skipping over earlier pages.
+ *
+ * @author Derek
+ */
+public class DeviceStateKeysetSearchCriteria extends DeviceStateSearchCriteria implements IKeysetSearchCriteria {
+
+    /** Token from previous page */
+    private String continuationToken;
+
+    /** Indicates whether exact count is required */
+    private boolean exactCount = false;
+
+    public DeviceStateKeysetSearchCriteria(int pageSize, String continuationToken) {
+	super(1, pageSize);
+	this.continuationToken = continuationToken;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IDateRangeSearchCriteria#getStartDate()
+     */
+    @Override
+    public Date getStartDate() {
+	return null;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IDateRangeSearchCriteria#getEndDate()
+     */
+    @Override
+    public Date getEndDate() {
+	return null;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IKeysetSearchCriteria#getContinuationToken()
+     */
+    @Override
+    public String getContinuationToken() {
+	return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+	this.continuationToken = continuationToken;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IKeysetSearchCriteria#isExactCount()
+     */
+    @Override
+    public boolean isExactCount() {
+	return exactCount;
+    }
+
+    public void setExactCount(boolean exactCount) {
+	this.exactCount = exactCount;
+    }
+}
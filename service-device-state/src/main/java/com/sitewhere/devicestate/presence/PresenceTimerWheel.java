@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.devicestate.presence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hierarchical timing wheel that tracks a deadline for each device assignment.
+ * Scheduling, rescheduling and cancelling a deadline are constant time, and
+ * advancing the wheel only touches entries whose slot is reached, so the cost
+ * of detecting expired deadlines is proportional to the number of deadlines
+ * rather than the number of tracked assignments.
+ *
+ * The wheel has four levels of 64 slots. Level 0 holds deadlines within 64
+ * ticks, and each higher level covers 64 times the range of the level below.
+ * When level 0 wraps, the next slot of level 1 is cascaded down, and so on.
+ * Deadlines past the range of the top level are parked in the top level and
+ * placed again each time they are cascaded.
+ *
+ * Entries are kept in parallel primitive arrays (assignment id as two longs,
+ * deadline tick, slot and list links) with an open-addressed index from id to
+ * entry, so each tracked assignment costs 40 to 48 bytes and creates no
+ * objects. All methods are synchronized since events and the wheel timer run
+ * on different threads.
+ *
+ * @author Derek
+ */
+public class PresenceTimerWheel {
+
+    /** Number of bits for slot index in a level */
+    private static final int SLOT_BITS = 6;
+
+    /** Number of slots per level */
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    /** Mask for slot index */
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /** Number of levels */
+    private static final int LEVELS = 4;
+
+    /** Maximum number of ticks a deadline can be placed ahead */
+    private static final long MAX_RANGE = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /** Marker for no entry */
+    private static final int NONE = -1;
+
+    /** Initial entry capacity */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Milliseconds per tick */
+    private long tickMillis;
+
+    /** Time corresponding to tick zero */
+    private long epochMillis;
+
+    /** Last tick that was processed */
+    private long currentTick;
+
+    /** High bits of assignment id for each entry */
+    private long[] idHigh;
+
+    /** Low bits of assignment id for each entry */
+    private long[] idLow;
+
+    /** Deadline tick for each entry */
+    private int[] deadlines;
+
+    /** Slot holding each entry ({@link #NONE} if entry is free) */
+    private int[] slots;
+
+    /** Next entry in slot list (or in free list for free entries) */
+    private int[] next;
+
+    /** Previous entry in slot list */
+    private int[] previous;
+
+    /** First entry for each slot */
+    private int[] heads = new int[LEVELS * SLOTS];
+
+    /** Open-addressed index from id to entry number plus one (zero is empty) */
+    private int[] index;
+
+    /** First free entry */
+    private int free = NONE;
+
+    /** Number of entries that have been used */
+    private int used;
+
+    /** Number of tracked assignments */
+    private int size;
+
+    public PresenceTimerWheel(long tickMillis, long nowMillis) {
+	this.tickMillis = Math.max(1, tickMillis);
+	this.epochMillis = nowMillis;
+	this.currentTick = 0;
+	Arrays.fill(heads, NONE);
+	allocate(INITIAL_CAPACITY);
+	this.index = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Set the time at which an assignment expires, replacing any existing
+     * deadline. Deadlines that have already passed expire on the next call to
+     * {@link #advance(long)}.
+     *
+     * @param assignmentId
+     * @param deadlineMillis
+     */
+    public synchronized void schedule(UUID assignmentId, long deadlineMillis) {
+	long high = assignmentId.getMostSignificantBits();
+	long low = assignmentId.getLeastSignificantBits();
+	int entry = find(high, low);
+	if (entry == NONE) {
+	    entry = newEntry(high, low);
+	} else {
+	    unlink(entry);
+	}
+	long deadline = (long) Math.ceil((double) (deadlineMillis - epochMillis) / tickMillis);
+	deadlines[entry] = (int) Math.min(Integer.MAX_VALUE, Math.max(deadline, currentTick + 1));
+	place(entry);
+    }
+
+    /**
+     * Stop tracking an assignment.
+     *
+     * @param assignmentId
+     * @return true if the assignment was being tracked
+     */
+    public synchronized boolean cancel(UUID assignmentId) {
+	int entry = find(assignmentId.getMostSignificantBits(), assignmentId.getLeastSignificantBits());
+	if (entry == NONE) {
+	    return false;
+	}
+	unlink(entry);
+	release(entry);
+	return true;
+    }
+
+    /**
+     * Advance the wheel to the given time and remove all assignments whose
+     * deadline has been reached.
+     *
+     * @param nowMillis
+     * @return ids of expired assignments
+     */
+    public synchronized List<UUID> advance(long nowMillis) {
+	List<UUID> expired = new ArrayList<>();
+	long target = (nowMillis - epochMillis) / tickMillis;
+	while (currentTick < target) {
+	    currentTick++;
+	    if ((currentTick & SLOT_MASK) == 0) {
+		cascade(1);
+	    }
+	    int slot = (int) (currentTick & SLOT_MASK);
+	    int entry = heads[slot];
+	    heads[slot] = NONE;
+	    while (entry != NONE) {
+		int following = next[entry];
+		if (deadlines[entry] <= currentTick) {
+		    expired.add(new UUID(idHigh[entry], idLow[entry]));
+		    release(entry);
+		} else {
+		    place(entry);
+		}
+		entry = following;
+	    }
+	}
+	return expired;
+    }
+
+    /**
+     * Move entries from the current slot of a level into lower levels. When the
+     * level itself wraps, the next level up is cascaded first.
+     *
+     * @param level
+     */
+    protected void cascade(int level) {
+	if (level >= LEVELS) {
+	    return;
+	}
+	int slotIndex = (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK);
+	if (slotIndex == 0) {
+	    cascade(level + 1);
+	}
+	int slot = (level * SLOTS) + slotIndex;
+	int entry = heads[slot];
+	heads[slot] = NONE;
+	while (entry != NONE) {
+	    int following = next[entry];
+	    place(entry);
+	    entry = following;
+	}
+    }
+
+    /**
+     * Add an entry to the slot for its deadline.
+     *
+     * @param entry
+     */
+    protected void place(int entry) {
+	long deadline = deadlines[entry];
+	long delta = deadline - currentTick;
+	int slot;
+	if (delta > MAX_RANGE) {
+	    deadline = currentTick + MAX_RANGE;
+	    delta = MAX_RANGE;
+	}
+	int level = 0;
+	while ((level < LEVELS - 1) && (delta >= (1L << (SLOT_BITS * (level + 1))))) {
+	    level++;
+	}
+	slot = (level * SLOTS) + (int) ((deadline >> (SLOT_BITS * level)) & SLOT_MASK);
+	slots[entry] = slot;
+	previous[entry] = NONE;
+	next[entry] = heads[slot];
+	if (heads[slot] != NONE) {
+	    previous[heads[slot]] = entry;
+	}
+	heads[slot] = entry;
+    }
+
+    /**
+     * Remove an entry from its slot list.
+     *
+     * @param entry
+     */
+    protected void unlink(int entry) {
+	int slot = slots[entry];
+	if (previous[entry] != NONE) {
+	    next[previous[entry]] = next[entry];
+	} else if (heads[slot] == entry) {
+	    heads[slot] = next[entry];
+	}
+	if (next[entry] != NONE) {
+	    previous[next[entry]] = previous[entry];
+	}
+	next[entry] = NONE;
+	previous[entry] = NONE;
+    }
+
+    /**
+     * Find entry for an id.
+     *
+     * @param high
+     * @param low
+     * @return entry or {@link #NONE}
+     */
+    protected int find(long high, long low) {
+	int mask = index.length - 1;
+	for (int i = hash(high, low) & mask;; i = (i + 1) & mask) {
+	    int entry = index[i] - 1;
+	    if (entry == NONE) {
+		return NONE;
+	    }
+	    if ((idHigh[entry] == high) && (idLow[entry] == low)) {
+		return entry;
+	    }
+	}
+    }
+
+    /**
+     * Allocate an entry for a new id and add it to the index.
+     *
+     * @param high
+     * @param low
+     * @return
+     */
+    protected int newEntry(long high, long low) {
+	int entry;
+	if (free != NONE) {
+	    entry = free;
+	    free = next[entry];
+	} else {
+	    if (used == idHigh.length) {
+		allocate(idHigh.length * 2);
+	    }
+	    entry = used++;
+	}
+	idHigh[entry] = high;
+	idLow[entry] = low;
+	slots[entry] = 0;
+	next[entry] = NONE;
+	previous[entry] = NONE;
+	size++;
+	if (size * 2 > index.length) {
+	    rehash(index.length * 2);
+	} else {
+	    insertIndex(entry);
+	}
+	return entry;
+    }
+
+    /**
+     * Return an entry to the free list and remove it from the index.
+     *
+     * @param entry
+     */
+    protected void release(int entry) {
+	removeIndex(entry);
+	slots[entry] = NONE;
+	previous[entry] = NONE;
+	next[entry] = free;
+	free = entry;
+	size--;
+    }
+
+    /**
+     * Add an entry to the index.
+     *
+     * @param entry
+     */
+    protected void insertIndex(int entry) {
+	int mask = index.length - 1;
+	int i = hash(idHigh[entry], idLow[entry]) & mask;
+	while (index[i] != 0) {
+	    i = (i + 1) & mask;
+	}
+	index[i] = entry + 1;
+    }
+
+    /**
+     * Remove an entry from the index, shifting back later entries in the same
+     * probe sequence so lookups never stop early.
+     *
+     * @param entry
+     */
+    protected void removeIndex(int entry) {
+	int mask = index.length - 1;
+	int i = hash(idHigh[entry], idLow[entry]) & mask;
+	while (index[i] != entry + 1) {
+	    i = (i + 1) & mask;
+	}
+	int gap = i;
+	for (int j = (gap + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+	    int other = index[j] - 1;
+	    int home = hash(idHigh[other], idLow[other]) & mask;
+	    if (((j - home) & mask) >= ((j - gap) & mask)) {
+		index[gap] = index[j];
+		gap = j;
+	    }
+	}
+	index[gap] = 0;
+    }
+
+    /**
+     * Rebuild the index with a new capacity.
+     *
+     * @param capacity
+     */
+    protected void rehash(int capacity) {
+	index = new int[capacity];
+	for (int entry = 0; entry < used; entry++) {
+	    if (slots[entry] != NONE) {
+		insertIndex(entry);
+	    }
+	}
+    }
+
+    /**
+     * Grow entry arrays.
+     *
+     * @param capacity
+     */
+    protected void allocate(int capacity) {
+	idHigh = (idHigh == null) ? new long[capacity] : Arrays.copyOf(idHigh, capacity);
+	idLow = (idLow == null) ? new long[capacity] : Arrays.copyOf(idLow, capacity);
+	deadlines = (deadlines == null) ? new int[capacity] : Arrays.copyOf(deadlines, capacity);
+	slots = (slots == null) ? new int[capacity] : Arrays.copyOf(slots, capacity);
+	next = (next == null) ? new int[capacity] : Arrays.copyOf(next, capacity);
+	previous = (previous == null) ? new int[capacity] : Arrays.copyOf(previous, capacity);
+    }
+
+    /**
+     * Hash an id.
+     *
+     * @param high
+     * @param low
+     * @return
+     */
+    protected static int hash(long high, long low) {
+	long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+    }
+
+    public synchronized int size() {
+	return size;
+    }
+
+    public long getTickMillis() {
+	return tickMillis;
+    }
+}
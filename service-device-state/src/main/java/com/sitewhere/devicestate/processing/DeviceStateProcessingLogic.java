@@ -29,12 +29,15 @@ import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurement;
 import com.sitewhere.spi.device.state.IDeviceState;
 import com.sitewhere.spi.device.state.IDeviceStateManagement;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 import io.prometheus.client.Counter;
 
 /**
  * Processing logic applied to enriched inbound event payloads in order to
- * capture device state.
+ * capture device state. Updates to existing state go through a
+ * {@link WriteBehindDeviceStateStore} so that frequent events for the same
+ * device are merged and written in bulk.
  * 
  * @author Derek
  */
@@ -44,6 +47,42 @@ public class DeviceStateProcessingLogic extends TenantEngineLifecycleComponent i
     private static final Counter PROCESSED_EVENTS = TenantEngineLifecycleComponent
 	    .createCounterMetric("processed_event_count", "Count of total events processed by consumer");
 
+    /** Number of milliseconds between writes of cached device state */
+    private int stateFlushInterval = WriteBehindDeviceStateStore.DEFAULT_FLUSH_INTERVAL;
+
+    /** Max number of device states waiting to be written */
+    private int maxDirtyStates = WriteBehindDeviceStateStore.DEFAULT_MAX_DIRTY;
+
+    /** Max number of cached device states */
+    private int maxCachedStates = WriteBehindDeviceStateStore.DEFAULT_MAX_CACHED;
+
+    /** Caches device state and writes updates in bulk */
+    private WriteBehindDeviceStateStore deviceStateStore;
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.deviceStateStore = new WriteBehindDeviceStateStore(this, getDeviceStateManagement(),
+		getStateFlushInterval(), getMaxDirtyStates(), getMaxCachedStates());
+	getDeviceStateStore().start();
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getDeviceStateStore() != null) {
+	    getDeviceStateStore().stop();
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.devicestate.spi.processing.IDeviceStateProcessingLogic#process(
@@ -105,16 +144,18 @@ public class DeviceStateProcessingLogic extends TenantEngineLifecycleComponent i
 	// Only process events that affect state.
 	IDeviceEvent event = payload.getEvent();
 	IDeviceEventContext context = payload.getEventContext();
-	IDeviceState original = getDeviceStateManagement()
-		.getDeviceStateByDeviceAssignmentId(event.getDeviceAssignmentId());
+	IDeviceState original;
 	switch (event.getEventType()) {
 	case Alert:
 	case Location:
 	case Measurement: {
+	    original = getDeviceStateStore().getDeviceState(event.getDeviceAssignmentId());
 	    break;
 	}
 	default: {
-	    // Allow other events to trigger presence detected.
+	    // Allow other events to trigger presence detected. Presence missing date
+	    // is set outside of the store, so check persisted value.
+	    original = getDeviceStateManagement().getDeviceStateByDeviceAssignmentId(event.getDeviceAssignmentId());
 	    if ((original == null) || (original.getPresenceMissingDate() == null)) {
 		return;
 	    }
@@ -141,10 +182,14 @@ public class DeviceStateProcessingLogic extends TenantEngineLifecycleComponent i
 
 	// Create or update device state.
 	if (original != null) {
-	    getDeviceStateManagement().updateDeviceState(original.getId(), request);
+	    getDeviceStateStore().updateDeviceState(original, request);
 	} else {
-	    getDeviceStateManagement().createDeviceState(request);
+	    getDeviceStateStore().addDeviceState(getDeviceStateManagement().createDeviceState(request));
 	}
+
+	// Let presence manager know device is present.
+	((IDeviceStateTenantEngine) getTenantEngine()).getDevicePresenceManager()
+		.onDeviceInteraction(event.getDeviceAssignmentId(), request.getLastInteractionDate());
     }
 
     /**
@@ -167,9 +212,6 @@ public class DeviceStateProcessingLogic extends TenantEngineLifecycleComponent i
      * @param request
      */
     protected void mergeDeviceAlert(IDeviceAlert alert, IDeviceState original, DeviceStateCreateRequest request) {
-	if (original != null) {
-	    request.getLastAlertEventIds().putAll(original.getLastAlertEventIds());
-	}
 	request.getLastAlertEventIds().put(alert.getType(), alert.getId());
     }
 
@@ -182,12 +224,37 @@ public class DeviceStateProcessingLogic extends TenantEngineLifecycleComponent i
      */
     protected void mergeDeviceMeasurements(IDeviceMeasurement mx, IDeviceState original,
 	    DeviceStateCreateRequest request) {
-	if (original != null) {
-	    request.getLastMeasurementEventIds().putAll(original.getLastMeasurementEventIds());
-	}
 	request.getLastMeasurementEventIds().put(mx.getName(), mx.getId());
     }
 
+    public int getStateFlushInterval() {
+	return stateFlushInterval;
+    }
+
+    public void setStateFlushInterval(int stateFlushInterval) {
+	this.stateFlushInterval = stateFlushInterval;
+    }
+
+    public int getMaxDirtyStates() {
+	return maxDirtyStates;
+    }
+
+    public void setMaxDirtyStates(int maxDirtyStates) {
+	this.maxDirtyStates = maxDirtyStates;
+    }
+
+    public int getMaxCachedStates() {
+	return maxCachedStates;
+    }
+
+    public void setMaxCachedStates(int maxCachedStates) {
+	this.maxCachedStates = maxCachedStates;
+    }
+
+    protected WriteBehindDeviceStateStore getDeviceStateStore() {
+	return deviceStateStore;
+    }
+
     protected IDeviceStateManagement getDeviceStateManagement() {
 	return ((IDeviceStateTenantEngine) getTenantEngine()).getDeviceStateManagement();
     }
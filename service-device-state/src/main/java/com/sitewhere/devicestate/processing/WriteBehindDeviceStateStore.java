@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.devicestate.processing;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sitewhere.devicestate.persistence.DeviceStatePersistence;
+import com.sitewhere.rest.model.device.state.DeviceState;
+import com.sitewhere.rest.model.device.state.request.DeviceStateCreateRequest;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.state.IDeviceState;
+import com.sitewhere.spi.device.state.IDeviceStateManagement;
+import com.sitewhere.spi.device.state.request.IDeviceStateCreateRequest;
+import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+/**
+ * Caches device state by device assignment and writes updates back to the
+ * underlying {@link IDeviceStateManagement} in bulk. Updates for an assignment
+ * are merged into a single pending request until the next flush, so a device
+ * that sends many events between flushes results in a single write. States are
+ * read through from persistence on a cache miss and the least recently used
+ * clean states are evicted once the cache is full. If the number of states
+ * waiting to be written reaches the limit, callers block until a flush makes
+ * room.
+ *
+ * Updates only ever add to the maps of last event ids, so a cached state that
+ * is out of date does not overwrite newer values when it is written. Updates
+ * that fail to be written are logged and dropped.
+ *
+ * @author Derek
+ */
+public class WriteBehindDeviceStateStore {
+
+    /** Static logger instance */
+    private static Log LOGGER = LogFactory.getLog(WriteBehindDeviceStateStore.class);
+
+    /** Max number of seconds to wait for final flush on shutdown */
+    private static final int SHUTDOWN_TIMEOUT_SECS = 10;
+
+    /** Default number of milliseconds between flushes */
+    public static final int DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /** Default max number of states waiting to be written */
+    public static final int DEFAULT_MAX_DIRTY = 10000;
+
+    /** Default max number of cached states */
+    public static final int DEFAULT_MAX_CACHED = 100000;
+
+    /** Histogram for bulk write latency */
+    private static final Histogram FLUSH_LATENCY = TenantEngineLifecycleComponent
+	    .createHistogramMetric("device_state_flush_latency", "Latency of device state bulk writes");
+
+    /** Counter for updates merged into a pending write */
+    private static final Counter COALESCED_UPDATES = TenantEngineLifecycleComponent.createCounterMetric(
+	    "device_state_coalesced_updates", "Count of device state updates merged into a pending write");
+
+    /** Counter for states that could not be written */
+    private static final Counter FAILED_WRITES = TenantEngineLifecycleComponent.createCounterMetric(
+	    "device_state_failed_writes", "Count of device state updates that could not be written");
+
+    /** Component that owns the store */
+    private ITenantEngineLifecycleComponent parent;
+
+    /** Device state persistence */
+    private IDeviceStateManagement deviceStateManagement;
+
+    /** Number of milliseconds between flushes */
+    private int flushInterval;
+
+    /** Max number of states waiting to be written */
+    private int maxDirty;
+
+    /** Max number of cached states */
+    private int maxCached;
+
+    /** Cached states by device assignment in least recently used order */
+    private Map<UUID, CachedState> cache;
+
+    /** Cached states with updates waiting to be written */
+    private Map<UUID, CachedState> dirty = new LinkedHashMap<>();
+
+    /** Runs the flush thread */
+    private ExecutorService executor;
+
+    /** Metric labels for owning component */
+    private String[] labels;
+
+    /** Indicates whether store is accepting updates */
+    private volatile boolean running = false;
+
+    public WriteBehindDeviceStateStore(ITenantEngineLifecycleComponent parent,
+	    IDeviceStateManagement deviceStateManagement) {
+	this(parent, deviceStateManagement, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_DIRTY, DEFAULT_MAX_CACHED);
+    }
+
+    public WriteBehindDeviceStateStore(ITenantEngineLifecycleComponent parent,
+	    IDeviceStateManagement deviceStateManagement, int flushInterval, int maxDirty, int maxCached) {
+	this.parent = parent;
+	this.deviceStateManagement = deviceStateManagement;
+	this.flushInterval = Math.max(1, flushInterval);
+	this.maxDirty = Math.max(1, maxDirty);
+	this.maxCached = Math.max(this.maxDirty, maxCached);
+	this.cache = new LinkedHashMap<UUID, CachedState>(16, 0.75f, true) {
+
+	    private static final long serialVersionUID = 7427457370683476651L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<UUID, CachedState> eldest) {
+		int excess = size() - WriteBehindDeviceStateStore.this.maxCached;
+		if (excess > 0) {
+		    evictClean(this, excess);
+		}
+		return false;
+	    }
+	};
+    }
+
+    /**
+     * Evict the least recently used states that have no update waiting to be
+     * written. There are never more states waiting to be written than the cache
+     * can hold, so enough clean states can always be found.
+     *
+     * @param cache
+     * @param count
+     */
+    protected static void evictClean(Map<UUID, CachedState> cache, int count) {
+	Iterator<CachedState> states = cache.values().iterator();
+	while ((count > 0) && states.hasNext()) {
+	    if (states.next().getPending() == null) {
+		states.remove();
+		count--;
+	    }
+	}
+    }
+
+    /**
+     * Start the flush thread.
+     *
+     * @throws SiteWhereException
+     */
+    public void start() throws SiteWhereException {
+	this.labels = parent.buildLabels();
+	this.executor = Executors.newSingleThreadExecutor(new FlushThreadFactory());
+	this.running = true;
+	executor.execute(new StateWriter());
+    }
+
+    /**
+     * Stop accepting updates and write any that are pending.
+     *
+     * @throws SiteWhereException
+     */
+    public void stop() throws SiteWhereException {
+	synchronized (this) {
+	    this.running = false;
+	    notifyAll();
+	}
+	if (executor != null) {
+	    executor.shutdown();
+	    try {
+		if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    LOGGER.warn("Device state store did not flush within timeout period.");
+		    executor.shutdownNow();
+		}
+	    } catch (InterruptedException e) {
+		executor.shutdownNow();
+		Thread.currentThread().interrupt();
+	    }
+	}
+	synchronized (this) {
+	    cache.clear();
+	    dirty.clear();
+	}
+    }
+
+    /**
+     * Get current state for a device assignment, loading it from persistence if
+     * not cached. The returned state must not be modified.
+     *
+     * @param deviceAssignmentId
+     * @return state or null if none exists
+     * @throws SiteWhereException
+     */
+    public IDeviceState getDeviceState(UUID deviceAssignmentId) throws SiteWhereException {
+	synchronized (this) {
+	    CachedState cached = cache.get(deviceAssignmentId);
+	    if (cached != null) {
+		return cached.getState();
+	    }
+	}
+	IDeviceState stored = deviceStateManagement.getDeviceStateByDeviceAssignmentId(deviceAssignmentId);
+	if (stored == null) {
+	    return null;
+	}
+	synchronized (this) {
+	    CachedState cached = cache.get(deviceAssignmentId);
+	    if (cached == null) {
+		cached = new CachedState(copy(stored));
+		cache.put(deviceAssignmentId, cached);
+	    }
+	    return cached.getState();
+	}
+    }
+
+    /**
+     * Add a state that was just created in persistence to the cache.
+     *
+     * @param created
+     */
+    public synchronized void addDeviceState(IDeviceState created) {
+	if (running) {
+	    cache.put(created.getDeviceAssignmentId(), new CachedState(copy(created)));
+	}
+    }
+
+    /**
+     * Apply an update to an existing state. The cached copy is updated right
+     * away and the update is written with the next flush, merged with any other
+     * updates for the same assignment. Blocks while too many states are waiting
+     * to be written.
+     *
+     * @param current
+     * @param request
+     * @throws SiteWhereException
+     */
+    public synchronized void updateDeviceState(IDeviceState current, IDeviceStateCreateRequest request)
+	    throws SiteWhereException {
+	UUID deviceAssignmentId = current.getDeviceAssignmentId();
+	try {
+	    while (running && (dirty.size() >= maxDirty) && !dirty.containsKey(deviceAssignmentId)) {
+		notifyAll();
+		wait();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting to update device state.", e);
+	}
+	if (!running) {
+	    throw new SiteWhereException("Device state store is not accepting updates.");
+	}
+
+	CachedState cached = cache.get(deviceAssignmentId);
+	if (cached == null) {
+	    cached = new CachedState(copy(current));
+	    cache.put(deviceAssignmentId, cached);
+	}
+	DeviceState updated = copy(cached.getState());
+	DeviceStatePersistence.deviceStateUpdateLogic(request, updated);
+	cached.setState(updated);
+
+	if (cached.getPending() == null) {
+	    DeviceStateCreateRequest pending = new DeviceStateCreateRequest();
+	    pending.setDeviceId(updated.getDeviceId());
+	    pending.setDeviceAssignmentId(deviceAssignmentId);
+	    cached.setPending(pending);
+	    dirty.put(deviceAssignmentId, cached);
+	} else {
+	    COALESCED_UPDATES.labels(labels).inc();
+	}
+	merge(request, cached.getPending());
+    }
+
+    /**
+     * Remove all pending updates, waiting for the flush interval unless the
+     * store is full or stopping.
+     *
+     * @return pending updates by device state id
+     * @throws InterruptedException
+     */
+    protected synchronized Map<UUID, IDeviceStateCreateRequest> drain() throws InterruptedException {
+	long deadline = System.currentTimeMillis() + flushInterval;
+	long remaining = flushInterval;
+	while (running && (dirty.size() < maxDirty) && (remaining > 0)) {
+	    wait(remaining);
+	    remaining = deadline - System.currentTimeMillis();
+	}
+	Map<UUID, IDeviceStateCreateRequest> batch = new HashMap<>(dirty.size());
+	for (CachedState cached : dirty.values()) {
+	    batch.put(cached.getState().getId(), cached.getPending());
+	    cached.setPending(null);
+	}
+	dirty.clear();
+	notifyAll();
+	return batch;
+    }
+
+    /**
+     * Write a batch of updates in bulk.
+     *
+     * @param batch
+     */
+    protected void flush(Map<UUID, IDeviceStateCreateRequest> batch) {
+	if (batch.isEmpty()) {
+	    return;
+	}
+	LOGGER.debug("Writing " + batch.size() + " device state updates.");
+	Histogram.Timer timer = FLUSH_LATENCY.labels(labels).startTimer();
+	try {
+	    deviceStateManagement.updateDeviceStates(batch);
+	} catch (Throwable e) {
+	    FAILED_WRITES.labels(labels).inc(batch.size());
+	    LOGGER.error("Unable to write " + batch.size() + " device state updates.", e);
+	} finally {
+	    timer.observeDuration();
+	}
+    }
+
+    /**
+     * Merge an update into a pending request. Later values replace earlier ones
+     * and last event ids are accumulated.
+     *
+     * @param source
+     * @param target
+     */
+    protected static void merge(IDeviceStateCreateRequest source, DeviceStateCreateRequest target) {
+	target.setLastInteractionDate(source.getLastInteractionDate());
+	target.setPresenceMissingDate(source.getPresenceMissingDate());
+	if (source.getDeviceTypeId() != null) {
+	    target.setDeviceTypeId(source.getDeviceTypeId());
+	}
+	if (source.getCustomerId() != null) {
+	    target.setCustomerId(source.getCustomerId());
+	}
+	if (source.getAreaId() != null) {
+	    target.setAreaId(source.getAreaId());
+	}
+	if (source.getAssetId() != null) {
+	    target.setAssetId(source.getAssetId());
+	}
+	if (source.getLastLocationEventId() != null) {
+	    target.setLastLocationEventId(source.getLastLocationEventId());
+	}
+	if (source.getLastMeasurementEventIds() != null) {
+	    target.getLastMeasurementEventIds().putAll(source.getLastMeasurementEventIds());
+	}
+	if (source.getLastAlertEventIds() != null) {
+	    target.getLastAlertEventIds().putAll(source.getLastAlertEventIds());
+	}
+    }
+
+    /**
+     * Copy a state so the cached value is never shared with callers that may
+     * modify it.
+     *
+     * @param source
+     * @return
+     */
+    protected static DeviceState copy(IDeviceState source) {
+	DeviceState state = new DeviceState();
+	state.setId(source.getId());
+	state.setDeviceId(source.getDeviceId());
+	state.setDeviceTypeId(source.getDeviceTypeId());
+	state.setDeviceAssignmentId(source.getDeviceAssignmentId());
+	state.setCustomerId(source.getCustomerId());
+	state.setAreaId(source.getAreaId());
+	state.setAssetId(source.getAssetId());
+	state.setLastInteractionDate(source.getLastInteractionDate());
+	state.setPresenceMissingDate(source.getPresenceMissingDate());
+	state.setLastLocationEventId(source.getLastLocationEventId());
+	state.setLastMeasurementEventIds((source.getLastMeasurementEventIds() != null)
+		? new HashMap<String, UUID>(source.getLastMeasurementEventIds())
+		: new HashMap<String, UUID>());
+	state.setLastAlertEventIds((source.getLastAlertEventIds() != null)
+		? new HashMap<String, UUID>(source.getLastAlertEventIds())
+		: new HashMap<String, UUID>());
+	return state;
+    }
+
+    /**
+     * Cached state along with the update waiting to be written for it.
+     *
+     * @author Derek
+     */
+    private static class CachedState {
+
+	/** Current state */
+	private DeviceState state;
+
+	/** Merged update not yet written */
+	private DeviceStateCreateRequest pending;
+
+	public CachedState(DeviceState state) {
+	    this.state = state;
+	}
+
+	public DeviceState getState() {
+	    return state;
+	}
+
+	public void setState(DeviceState state) {
+	    this.state = state;
+	}
+
+	public DeviceStateCreateRequest getPending() {
+	    return pending;
+	}
+
+	public void setPending(DeviceStateCreateRequest pending) {
+	    this.pending = pending;
+	}
+    }
+
+    /**
+     * Thread that periodically writes pending updates.
+     *
+     * @author Derek
+     */
+    private class StateWriter implements Runnable {
+
+	@Override
+	public void run() {
+	    try {
+		while (running) {
+		    flush(drain());
+		}
+		flush(drain());
+	    } catch (InterruptedException e) {
+		LOGGER.warn("Device state store stopped before pending updates were written.");
+	    }
+	}
+    }
+
+    /** Used for naming flush thread */
+    private class FlushThreadFactory implements ThreadFactory {
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Device State Writer");
+	}
+    }
+}
@@ -7,6 +7,10 @@
  */
 package com.sitewhere.devicestate.spi;
 
+import java.util.Date;
+import java.util.UUID;
+
+import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 
 /**
@@ -24,4 +28,14 @@ public interface IDevicePresenceManager extends ITenantEngineLifecycleComponent
      * @return
      */
     public IPresenceNotificationStrategy getPresenceNotificationStrategy();
+
+    /**
+     * Called when device state is updated based on an interaction with a device
+     * assignment.
+     * 
+     * @param deviceAssignmentId
+     * @param interactionDate
+     * @throws SiteWhereException
+     */
+    public void onDeviceInteraction(UUID deviceAssignmentId, Date interactionDate) throws SiteWhereException;
 }
\ No newline at end of file
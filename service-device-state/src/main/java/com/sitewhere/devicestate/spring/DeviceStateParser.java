@@ -25,6 +25,7 @@ import com.sitewhere.configuration.parser.IDeviceStateManagementParser.Elements;
 import com.sitewhere.devicestate.persistence.mongodb.DeviceStateManagementMongoClient;
 import com.sitewhere.devicestate.persistence.mongodb.MongoDeviceStateManagement;
 import com.sitewhere.devicestate.presence.DevicePresenceManager;
+import com.sitewhere.devicestate.processing.DeviceStateProcessingLogic;
 import com.sitewhere.spi.microservice.spring.DeviceStateManagementBeans;
 
 /**
@@ -64,9 +65,38 @@ public class DeviceStateParser extends AbstractBeanDefinitionParser {
 	    }
 	    }
 	}
+	parseDeviceStateProcessingLogic(element, context);
 	return null;
     }
 
+    /**
+     * Parse configuration for device state processing logic.
+     * 
+     * @param element
+     * @param context
+     */
+    protected void parseDeviceStateProcessingLogic(Element element, ParserContext context) {
+	BeanDefinitionBuilder logic = BeanDefinitionBuilder.rootBeanDefinition(DeviceStateProcessingLogic.class);
+
+	Attr stateFlushInterval = element.getAttributeNode("stateFlushInterval");
+	if (stateFlushInterval != null) {
+	    logic.addPropertyValue("stateFlushInterval", stateFlushInterval.getValue());
+	}
+
+	Attr maxDirtyStates = element.getAttributeNode("maxDirtyStates");
+	if (maxDirtyStates != null) {
+	    logic.addPropertyValue("maxDirtyStates", maxDirtyStates.getValue());
+	}
+
+	Attr maxCachedStates = element.getAttributeNode("maxCachedStates");
+	if (maxCachedStates != null) {
+	    logic.addPropertyValue("maxCachedStates", maxCachedStates.getValue());
+	}
+
+	context.getRegistry().registerBeanDefinition(DeviceStateManagementBeans.BEAN_DEVICE_STATE_PROCESSING_LOGIC,
+		logic.getBeanDefinition());
+    }
+
     /**
      * Parse device state datastore element.
      * 
@@ -125,6 +155,21 @@ public class DeviceStateParser extends AbstractBeanDefinitionParser {
 	    presence.addPropertyValue("presenceMissingInterval", presenceMissingInterval.getValue());
 	}
 
+	Attr checkChunkSize = element.getAttributeNode("checkChunkSize");
+	if (checkChunkSize != null) {
+	    presence.addPropertyValue("presenceCheckChunkSize", checkChunkSize.getValue());
+	}
+
+	Attr checkConcurrency = element.getAttributeNode("checkConcurrency");
+	if (checkConcurrency != null) {
+	    presence.addPropertyValue("presenceCheckConcurrency", checkConcurrency.getValue());
+	}
+
+	Attr inMemoryTracking = element.getAttributeNode("inMemoryTracking");
+	if (inMemoryTracking != null) {
+	    presence.addPropertyValue("inMemoryTracking", inMemoryTracking.getValue());
+	}
+
 	context.getRegistry().registerBeanDefinition(DeviceStateManagementBeans.BEAN_PRESENCE_MANAGER,
 		presence.getBeanDefinition());
     }
@@ -17,7 +17,6 @@ import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
 
-import com.sitewhere.devicestate.processing.DeviceStateProcessingLogic;
 import com.sitewhere.devicestate.spi.kafka.IDeviceStateEnrichedEventsConsumer;
 import com.sitewhere.devicestate.spi.processing.IDeviceStateProcessingLogic;
 import com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer;
@@ -46,6 +45,10 @@ public class DeviceStateEnrichedEventsConsumer extends MicroserviceKafkaConsumer
     /** Device state processing logic */
     private IDeviceStateProcessingLogic deviceStateProcessingLogic;
 
+    public DeviceStateEnrichedEventsConsumer(IDeviceStateProcessingLogic deviceStateProcessingLogic) {
+	this.deviceStateProcessingLogic = deviceStateProcessingLogic;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#
      * getConsumerId()
@@ -84,9 +87,6 @@ public class DeviceStateEnrichedEventsConsumer extends MicroserviceKafkaConsumer
     public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	super.initialize(monitor);
 
-	// Create processing logic component.
-	this.deviceStateProcessingLogic = new DeviceStateProcessingLogic();
-
 	// Create step that will initialize components.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getComponentName());
 
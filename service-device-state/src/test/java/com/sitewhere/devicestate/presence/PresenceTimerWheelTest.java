@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.devicestate.presence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class PresenceTimerWheelTest {
+
+    @Test
+    public void testCascadeAcrossLevels() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1, 0);
+
+	// One deadline on each level of the wheel.
+	long[] deadlines = { 10, 100, 5000, 300000 };
+	List<UUID> ids = new ArrayList<>();
+	for (long deadline : deadlines) {
+	    UUID id = UUID.randomUUID();
+	    ids.add(id);
+	    wheel.schedule(id, deadline);
+	}
+	assertEquals(4, wheel.size());
+
+	// Each deadline expires exactly on its tick after being cascaded down.
+	for (int i = 0; i < deadlines.length; i++) {
+	    assertTrue(wheel.advance(deadlines[i] - 1).isEmpty());
+	    assertEquals(Collections.singletonList(ids.get(i)), wheel.advance(deadlines[i]));
+	    assertEquals(deadlines.length - i - 1, wheel.size());
+	}
+    }
+
+    @Test
+    public void testPastDeadlineExpiresOnNextTick() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1000, 50000);
+	UUID id = UUID.randomUUID();
+	wheel.schedule(id, 1000);
+	assertTrue(wheel.advance(50999).isEmpty());
+	assertEquals(Collections.singletonList(id), wheel.advance(51000));
+    }
+
+    @Test
+    public void testReschedule() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1, 0);
+	UUID id = UUID.randomUUID();
+	wheel.schedule(id, 10);
+
+	// Moving the deadline later replaces the original one.
+	wheel.schedule(id, 5000);
+	assertEquals(1, wheel.size());
+	assertTrue(wheel.advance(4999).isEmpty());
+
+	// Moving the deadline earlier takes effect as well.
+	wheel.schedule(id, 6000);
+	wheel.schedule(id, 5005);
+	assertTrue(wheel.advance(5004).isEmpty());
+	assertEquals(Collections.singletonList(id), wheel.advance(5005));
+	assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1, 0);
+	UUID cancelled = UUID.randomUUID();
+	UUID kept = UUID.randomUUID();
+	wheel.schedule(cancelled, 100);
+	wheel.schedule(kept, 100);
+
+	assertTrue(wheel.cancel(cancelled));
+	assertFalse(wheel.cancel(cancelled));
+	assertFalse(wheel.cancel(UUID.randomUUID()));
+	assertEquals(1, wheel.size());
+	assertEquals(Collections.singletonList(kept), wheel.advance(1000));
+    }
+
+    @Test
+    public void testDeadlineBeyondTopLevel() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1, 0);
+	UUID id = UUID.randomUUID();
+
+	// Past the range of the top level, so parked and placed again on cascade.
+	long deadline = (1L << 24) + (1L << 20) + 7;
+	wheel.schedule(id, deadline);
+	assertTrue(wheel.advance(1L << 24).isEmpty());
+	assertTrue(wheel.advance(deadline - 1).isEmpty());
+	assertEquals(Collections.singletonList(id), wheel.advance(deadline));
+    }
+
+    @Test
+    public void testIndexRemovalKeepsProbeSequence() {
+	PresenceTimerWheel wheel = new PresenceTimerWheel(1, 0);
+
+	// Ids with equal high and low bits share a home slot in the index.
+	List<UUID> colliding = new ArrayList<>();
+	for (int i = 0; i < 200; i++) {
+	    UUID id = new UUID(i, i);
+	    colliding.add(id);
+	    wheel.schedule(id, 100);
+	}
+
+	// Also fill the index enough to rehash several times.
+	List<UUID> others = new ArrayList<>();
+	for (int i = 0; i < 5000; i++) {
+	    UUID id = UUID.randomUUID();
+	    others.add(id);
+	    wheel.schedule(id, 100);
+	}
+
+	// Remove ids from the middle of probe sequences in random order.
+	List<UUID> all = new ArrayList<>(colliding);
+	all.addAll(others);
+	Collections.shuffle(all, new Random(42));
+	Set<UUID> removed = new HashSet<>(all.subList(0, all.size() / 2));
+	for (UUID id : removed) {
+	    assertTrue(wheel.cancel(id));
+	}
+	assertEquals(all.size() - removed.size(), wheel.size());
+
+	// Remaining ids are still found, so rescheduling does not add entries.
+	for (UUID id : all) {
+	    if (!removed.contains(id)) {
+		wheel.schedule(id, 200);
+	    }
+	}
+	assertEquals(all.size() - removed.size(), wheel.size());
+
+	assertTrue(wheel.advance(199).isEmpty());
+	Set<UUID> expired = new HashSet<>(wheel.advance(200));
+	assertEquals(all.size() - removed.size(), expired.size());
+	for (UUID id : removed) {
+	    assertFalse(expired.contains(id));
+	}
+	assertEquals(0, wheel.size());
+    }
+}
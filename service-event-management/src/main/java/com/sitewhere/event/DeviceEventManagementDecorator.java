@@ -8,6 +8,7 @@
 package com.sitewhere.event;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponentDecorator;
@@ -26,6 +27,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -57,6 +59,17 @@ public class DeviceEventManagementDecorator extends TenantEngineLifecycleCompone
 	return getDelegate().addDeviceEventBatch(deviceAssignmentId, batch);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEvents(java.
+     * util.Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	return getDelegate().addDeviceEvents(requests, eventIds);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceEventById(java
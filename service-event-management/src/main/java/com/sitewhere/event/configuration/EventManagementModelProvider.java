@@ -10,7 +10,9 @@ package com.sitewhere.event.configuration;
 import com.sitewhere.configuration.model.CommonDatastoreProvider;
 import com.sitewhere.configuration.model.ConfigurationModelProvider;
 import com.sitewhere.configuration.parser.IEventManagementParser;
+import com.sitewhere.rest.model.configuration.AttributeNode;
 import com.sitewhere.rest.model.configuration.ElementNode;
+import com.sitewhere.spi.microservice.configuration.model.AttributeType;
 import com.sitewhere.spi.microservice.configuration.model.IConfigurationRoleProvider;
 
 /**
@@ -57,6 +59,52 @@ public class EventManagementModelProvider extends ConfigurationModelProvider {
 		"exchange-alt", EventManagementRoleKeys.EventManagement, this);
 
 	builder.description("Handles operations related to the device event management model including persistence.");
+	builder.attribute((new AttributeNode.Builder("Processing thread count", "processingThreadCount",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of lanes used to persist inbound events in parallel.").defaultValue("25")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Max in-flight records", "maxInFlightRecords",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of inbound records awaiting persistence before the consumer pauses.")
+			.defaultValue("5000").build()));
+	builder.attribute((new AttributeNode.Builder("Use bulk event inserts", "useBulkEventInserts",
+		AttributeType.Boolean, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Buffer events and write them to MongoDB with bulk inserts.").defaultValue("true")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Bulk insert max chunk size", "bulkInsertMaxChunkSize",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of events written to MongoDB in a single bulk insert.")
+			.defaultValue("200").build()));
+	builder.attribute((new AttributeNode.Builder("Bulk insert writer count", "bulkInsertWriterCount",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of threads writing bulk inserts to MongoDB.").defaultValue("4").build()));
+	builder.attribute((new AttributeNode.Builder("Bulk insert max age (ms)", "bulkInsertMaxAge",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of milliseconds an event is buffered before it is written to "
+				+ "MongoDB.")
+			.defaultValue("100").build()));
+	builder.attribute((new AttributeNode.Builder("Max writes in flight", "maxWritesInFlight",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of asynchronous writes to Cassandra awaiting a response.")
+			.defaultValue("1024").build()));
+	builder.attribute((new AttributeNode.Builder("Max write batch size", "maxWriteBatchSize",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of inserts for the same partition combined into a Cassandra batch.")
+			.defaultValue("20").build()));
+	builder.attribute((new AttributeNode.Builder("Query fetch size", "queryFetchSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of rows fetched per page when querying events in Cassandra.")
+			.defaultValue("500").build()));
+	builder.attribute((new AttributeNode.Builder("Approximate counts", "approximateCounts",
+		AttributeType.Boolean, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Stop Cassandra event searches once the requested page is filled and estimate "
+				+ "the total number of results.")
+			.defaultValue("false").build()));
+	builder.attribute((new AttributeNode.Builder("Max counted rows", "maxCountedRows", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of rows counted by a Cassandra event search before the total is "
+				+ "estimated (zero for no limit).")
+			.defaultValue("0").build()));
 
 	return builder.build();
     }
@@ -10,7 +10,6 @@ package com.sitewhere.event.microservice;
 import java.util.Collections;
 import java.util.List;
 
-import com.sitewhere.microservice.kafka.InboundEventsConsumer;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -20,9 +19,11 @@ import com.sitewhere.event.spi.kafka.IOutboundCommandInvocationsProducer;
 import com.sitewhere.event.spi.kafka.IOutboundEventsProducer;
 import com.sitewhere.event.spi.microservice.IEventManagementMicroservice;
 import com.sitewhere.event.spi.microservice.IEventManagementTenantEngine;
+import com.sitewhere.event.spi.processing.IEventManagementConfiguration;
 import com.sitewhere.grpc.service.DeviceEventManagementGrpc;
 import com.sitewhere.microservice.groovy.GroovyConfiguration;
 import com.sitewhere.microservice.grpc.EventManagementImpl;
+import com.sitewhere.microservice.kafka.InboundEventsConsumer;
 import com.sitewhere.microservice.kafka.KafkaEventPersistenceTriggers;
 import com.sitewhere.microservice.kafka.OutboundCommandInvocationsProducer;
 import com.sitewhere.microservice.kafka.OutboundEventsProducer;
@@ -128,7 +129,9 @@ public class EventManagementTenantEngine extends MicroserviceTenantEngine implem
      * @throws SiteWhereException
      */
     protected void initializeKafkaComponents() throws SiteWhereException {
-    this.inboundEventsConsumer = new InboundEventsConsumer();
+	IEventManagementConfiguration configuration = (IEventManagementConfiguration) getModuleContext()
+		.getBean(EventManagementBeans.BEAN_EVENT_MANAGEMENT_CONFIGURATION);
+	this.inboundEventsConsumer = new InboundEventsConsumer(configuration);
 	this.outboundEventsProducer = new OutboundEventsProducer();
 	this.outboundCommandInvocationsProducer = new OutboundCommandInvocationsProducer();
     }
@@ -7,7 +7,10 @@
  */
 package com.sitewhere.event.persistence;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,6 +27,7 @@ import com.sitewhere.rest.model.device.event.DeviceStateChange;
 import com.sitewhere.rest.model.device.streaming.DeviceStreamData;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.command.ICommandParameter;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.AlertLevel;
@@ -70,6 +74,76 @@ public class DeviceEventManagementPersistence extends Persistence {
 	return response;
     }
 
+    /**
+     * Common logic for creating events of mixed types for a single assignment.
+     * Command lookups are cached for the duration of the call so that a batch of
+     * invocations for the same command only resolves it once. If event ids are
+     * passed, they are assigned to the events in request order.
+     * 
+     * @param assignment
+     * @param requests
+     * @param eventIds
+     * @param deviceManagement
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<DeviceEvent> deviceEventsCreateLogic(IDeviceAssignment assignment,
+	    List<IDeviceEventCreateRequest> requests, List<UUID> eventIds, IDeviceManagement deviceManagement)
+	    throws SiteWhereException {
+	if ((eventIds != null) && (eventIds.size() != requests.size())) {
+	    throw new SiteWhereException("Number of event ids does not match number of event requests.");
+	}
+	List<DeviceEvent> events = new ArrayList<>(requests.size());
+	Map<String, IDeviceCommand> commands = new HashMap<>();
+	for (IDeviceEventCreateRequest request : requests) {
+	    switch (request.getEventType()) {
+	    case Measurement: {
+		events.add(deviceMeasurementCreateLogic((IDeviceMeasurementCreateRequest) request, assignment));
+		break;
+	    }
+	    case Location: {
+		events.add(deviceLocationCreateLogic(assignment, (IDeviceLocationCreateRequest) request));
+		break;
+	    }
+	    case Alert: {
+		events.add(deviceAlertCreateLogic(assignment, (IDeviceAlertCreateRequest) request));
+		break;
+	    }
+	    case CommandInvocation: {
+		IDeviceCommandInvocationCreateRequest ciRequest = (IDeviceCommandInvocationCreateRequest) request;
+		IDeviceCommand command = commands.get(ciRequest.getCommandToken());
+		if (command == null) {
+		    command = deviceManagement.getDeviceCommandByToken(assignment.getDeviceTypeId(),
+			    ciRequest.getCommandToken());
+		    if (command == null) {
+			throw new SiteWhereException("Command not found for token: " + ciRequest.getCommandToken());
+		    }
+		    commands.put(ciRequest.getCommandToken(), command);
+		}
+		events.add(deviceCommandInvocationCreateLogic(assignment, command, ciRequest));
+		break;
+	    }
+	    case CommandResponse: {
+		events.add(deviceCommandResponseCreateLogic(assignment, (IDeviceCommandResponseCreateRequest) request));
+		break;
+	    }
+	    case StateChange: {
+		events.add(deviceStateChangeCreateLogic(assignment, (IDeviceStateChangeCreateRequest) request));
+		break;
+	    }
+	    default: {
+		throw new SiteWhereException("Event type not handled: " + request.getEventType());
+	    }
+	    }
+	}
+	if (eventIds != null) {
+	    for (int i = 0; i < events.size(); i++) {
+		events.get(i).setId(eventIds.get(i));
+	    }
+	}
+	return events;
+    }
+
     /**
      * Common creation logic for all device events.
      * 
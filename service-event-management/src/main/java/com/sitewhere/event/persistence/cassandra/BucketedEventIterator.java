@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.event.persistence.cassandra;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+
+/**
+ * Iterates over event rows for a list of index keys across a list of time
+ * buckets, newest first. Buckets are queried lazily in order and the rows for
+ * each key (which Cassandra returns in descending date order) are merged using
+ * a heap, so only the rows actually consumed are fetched from the driver one
+ * page at a time. Buckets that are never reached are never queried.
+ *
+ * @author Derek
+ */
+public class BucketedEventIterator implements Iterator<Row> {
+
+    /** Orders rows by event date, newest first */
+    private static final Comparator<PeekingRows> NEWEST_FIRST = new Comparator<PeekingRows>() {
+
+	@Override
+	public int compare(PeekingRows o1, PeekingRows o2) {
+	    return Long.compare(o2.getEventDate(), o1.getEventDate());
+	}
+    };
+
+    /** Session used for queries */
+    private Session session;
+
+    /** Query for index */
+    private PreparedStatement query;
+
+    /** Index keys */
+    private List<UUID> keys;
+
+    /** Criteria for date range */
+    private IDateRangeSearchCriteria criteria;
+
+    /** Type of event being queried */
+    private DeviceEventType eventType;
+
+    /** Buckets in descending order */
+    private List<Integer> buckets;
+
+    /** Number of rows fetched per driver page */
+    private int fetchSize;
+
+    /** Index of next bucket to query */
+    private int nextBucket = 0;
+
+    /** Rows for current bucket */
+    private PriorityQueue<PeekingRows> heap;
+
+    public BucketedEventIterator(Session session, PreparedStatement query, List<UUID> keys,
+	    IDateRangeSearchCriteria criteria, DeviceEventType eventType, List<Integer> buckets, int fetchSize) {
+	this.session = session;
+	this.query = query;
+	this.keys = keys;
+	this.criteria = criteria;
+	this.eventType = eventType;
+	this.buckets = buckets;
+	this.fetchSize = fetchSize;
+	this.heap = new PriorityQueue<PeekingRows>(Math.max(1, keys.size()), NEWEST_FIRST);
+    }
+
+    /*
+     * @see java.util.Iterator#hasNext()
+     */
+    @Override
+    public boolean hasNext() {
+	while (heap.isEmpty() && (nextBucket < buckets.size())) {
+	    openBucket(buckets.get(nextBucket++));
+	}
+	return !heap.isEmpty();
+    }
+
+    /*
+     * @see java.util.Iterator#next()
+     */
+    @Override
+    public Row next() {
+	if (!hasNext()) {
+	    throw new NoSuchElementException();
+	}
+	PeekingRows rows = heap.poll();
+	Row row = rows.next();
+	if (rows.hasNext()) {
+	    heap.add(rows);
+	}
+	return row;
+    }
+
+    /**
+     * Query all keys for a bucket in parallel and add non-empty results to the
+     * heap.
+     *
+     * @param bucket
+     */
+    protected void openBucket(int bucket) {
+	List<ResultSetFuture> futures = new ArrayList<>();
+	for (UUID key : keys) {
+	    BoundStatement statement = query.bind();
+	    statement.setUUID(0, key);
+	    statement.setByte(1, CassandraDeviceEvent.getIndicatorForEventType(eventType));
+	    statement.setInt(2, bucket);
+	    statement.setTimestamp(3, criteria.getStartDate());
+	    statement.setTimestamp(4, criteria.getEndDate());
+	    statement.setFetchSize(fetchSize);
+	    futures.add(session.executeAsync(statement));
+	}
+	for (ResultSetFuture future : futures) {
+	    PeekingRows rows = new PeekingRows(future.getUninterruptibly().iterator());
+	    if (rows.hasNext()) {
+		heap.add(rows);
+	    }
+	}
+    }
+
+    /**
+     * Get number of buckets that have been queried so far.
+     *
+     * @return
+     */
+    public int getBucketsQueried() {
+	return nextBucket;
+    }
+
+    /**
+     * Row iterator that exposes the date of the next row.
+     *
+     * @author Derek
+     */
+    private static class PeekingRows {
+
+	/** Wrapped rows */
+	private Iterator<Row> rows;
+
+	/** Next row */
+	private Row head;
+
+	public PeekingRows(Iterator<Row> rows) {
+	    this.rows = rows;
+	    this.head = rows.hasNext() ? rows.next() : null;
+	}
+
+	public boolean hasNext() {
+	    return head != null;
+	}
+
+	public Row next() {
+	    Row row = head;
+	    this.head = rows.hasNext() ? rows.next() : null;
+	    return row;
+	}
+
+	public long getEventDate() {
+	    return head.getTimestamp("event_date").getTime();
+	}
+    }
+}
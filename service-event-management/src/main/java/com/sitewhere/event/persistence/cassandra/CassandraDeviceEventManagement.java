@@ -8,29 +8,25 @@
 package com.sitewhere.event.persistence.cassandra;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
-import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
-import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.sitewhere.cassandra.CassandraClient;
+import com.sitewhere.cassandra.CassandraWritePipeline;
 import com.sitewhere.event.persistence.DeviceEventManagementPersistence;
 import com.sitewhere.event.spi.microservice.IEventManagementMicroservice;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEvent;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurement;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
-import com.sitewhere.rest.model.search.Pager;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
@@ -39,7 +35,6 @@ import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.DeviceEventIndex;
-import com.sitewhere.spi.device.event.DeviceEventType;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
@@ -53,6 +48,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -71,12 +67,36 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  */
 public class CassandraDeviceEventManagement extends TenantEngineLifecycleComponent implements IDeviceEventManagement {
 
+    /** Default number of rows fetched per page when querying events */
+    public static final int DEFAULT_QUERY_FETCH_SIZE = 500;
+
+    /** Default max number of rows counted before totals are estimated (no limit) */
+    public static final int DEFAULT_MAX_COUNTED_ROWS = 0;
+
     /** Configured Cassandra client */
     private CassandraClient client;
 
     /** Cassandra event management client */
     private CassandraEventManagementClient cassandraEventManagementClient;
 
+    /** Pipeline used for asynchronous writes */
+    private CassandraWritePipeline writePipeline;
+
+    /** Max number of write requests in flight */
+    private int maxWritesInFlight = CassandraWritePipeline.DEFAULT_MAX_IN_FLIGHT;
+
+    /** Max number of inserts combined into a single partition batch */
+    private int maxWriteBatchSize = CassandraWritePipeline.DEFAULT_MAX_BATCH_SIZE;
+
+    /** Number of rows fetched per page when querying events */
+    private int queryFetchSize = DEFAULT_QUERY_FETCH_SIZE;
+
+    /** Indicates whether searches stop once page is filled and estimate totals */
+    private boolean approximateCounts = false;
+
+    /** Max number of rows counted before totals are estimated (zero for no limit) */
+    private int maxCountedRows = DEFAULT_MAX_COUNTED_ROWS;
+
     public CassandraDeviceEventManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -107,6 +127,10 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	getClient().start(monitor);
 	getCassandraEventManagementClient().start(monitor);
+
+	// Create pipeline for writes.
+	this.writePipeline = new CassandraWritePipeline(getClient().getSession(), getMaxWritesInFlight(),
+		getMaxWriteBatchSize());
     }
 
     /*
@@ -132,6 +156,35 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 	return DeviceEventManagementPersistence.deviceEventBatchLogic(assignment, batch, this);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEvents(java.
+     * util.Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	List<IDeviceEvent> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
+	for (Map.Entry<UUID, List<IDeviceEventCreateRequest>> entry : requests.entrySet()) {
+	    IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignment(entry.getKey());
+	    if (assignment == null) {
+		getLogger().warn(String.format("Skipping %d events for unknown assignment '%s'.",
+			entry.getValue().size(), entry.getKey()));
+		continue;
+	    }
+	    List<UUID> ids = (eventIds != null) ? eventIds.get(entry.getKey()) : null;
+	    List<DeviceEvent> events = DeviceEventManagementPersistence.deviceEventsCreateLogic(assignment,
+		    entry.getValue(), ids, getDeviceManagement());
+	    for (DeviceEvent event : events) {
+		addInserts(assignment, event, inserts);
+		result.add(event);
+	    }
+	}
+	storeDeviceEvents(inserts);
+	return result;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceEventById(java
@@ -161,12 +214,14 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceMeasurement> addDeviceMeasurements(UUID deviceAssignmentId,
 	    IDeviceMeasurementCreateRequest... requests) throws SiteWhereException {
 	List<IDeviceMeasurement> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceMeasurementCreateRequest request : requests) {
 	    DeviceMeasurement mx = DeviceEventManagementPersistence.deviceMeasurementCreateLogic(request, assignment);
-	    storeDeviceEvent(assignment, mx, CassandraDeviceMeasurement.INSTANCE);
+	    addInserts(assignment, mx, CassandraDeviceMeasurement.INSTANCE, inserts);
 	    result.add(mx);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -192,12 +247,14 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceLocation> addDeviceLocations(UUID deviceAssignmentId, IDeviceLocationCreateRequest... requests)
 	    throws SiteWhereException {
 	List<IDeviceLocation> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceLocationCreateRequest request : requests) {
 	    DeviceLocation location = DeviceEventManagementPersistence.deviceLocationCreateLogic(assignment, request);
-	    storeDeviceEvent(assignment, location, CassandraDeviceLocation.INSTANCE);
+	    addInserts(assignment, location, CassandraDeviceLocation.INSTANCE, inserts);
 	    result.add(location);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -222,12 +279,14 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceAlert> addDeviceAlerts(UUID deviceAssignmentId, IDeviceAlertCreateRequest... requests)
 	    throws SiteWhereException {
 	List<IDeviceAlert> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceAlertCreateRequest request : requests) {
 	    DeviceAlert alert = DeviceEventManagementPersistence.deviceAlertCreateLogic(assignment, request);
-	    storeDeviceEvent(assignment, alert, CassandraDeviceAlert.INSTANCE);
+	    addInserts(assignment, alert, CassandraDeviceAlert.INSTANCE, inserts);
 	    result.add(alert);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -252,15 +311,17 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceCommandInvocation> addDeviceCommandInvocations(UUID deviceAssignmentId,
 	    IDeviceCommandInvocationCreateRequest... requests) throws SiteWhereException {
 	List<IDeviceCommandInvocation> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceCommandInvocationCreateRequest request : requests) {
 	    IDeviceCommand command = getDeviceManagement().getDeviceCommandByToken(assignment.getDeviceTypeId(),
 		    request.getCommandToken());
 	    DeviceCommandInvocation invocation = DeviceEventManagementPersistence
 		    .deviceCommandInvocationCreateLogic(assignment, command, request);
-	    storeDeviceEvent(assignment, invocation, CassandraDeviceCommandInvocation.INSTANCE);
+	    addInserts(assignment, invocation, CassandraDeviceCommandInvocation.INSTANCE, inserts);
 	    result.add(invocation);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -295,13 +356,15 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceCommandResponse> addDeviceCommandResponses(UUID deviceAssignmentId,
 	    IDeviceCommandResponseCreateRequest... requests) throws SiteWhereException {
 	List<IDeviceCommandResponse> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceCommandResponseCreateRequest request : requests) {
 	    DeviceCommandResponse response = DeviceEventManagementPersistence
 		    .deviceCommandResponseCreateLogic(assignment, request);
-	    storeDeviceEvent(assignment, response, CassandraDeviceCommandResponse.INSTANCE);
+	    addInserts(assignment, response, CassandraDeviceCommandResponse.INSTANCE, inserts);
 	    result.add(response);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -327,13 +390,15 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     public List<IDeviceStateChange> addDeviceStateChanges(UUID deviceAssignmentId,
 	    IDeviceStateChangeCreateRequest... requests) throws SiteWhereException {
 	List<IDeviceStateChange> result = new ArrayList<>();
+	List<BoundStatement> inserts = new ArrayList<>();
 	IDeviceAssignment assignment = assertDeviceAssignmentById(deviceAssignmentId);
 	for (IDeviceStateChangeCreateRequest request : requests) {
 	    DeviceStateChange state = DeviceEventManagementPersistence.deviceStateChangeCreateLogic(assignment,
 		    request);
-	    storeDeviceEvent(assignment, state, CassandraDeviceStateChange.INSTANCE);
+	    addInserts(assignment, state, CassandraDeviceStateChange.INSTANCE, inserts);
 	    result.add(state);
 	}
+	storeDeviceEvents(inserts);
 	return result;
     }
 
@@ -350,32 +415,74 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     }
 
     /**
-     * Store a device event using various indexing strategies.
+     * Build inserts for a device event of any type using the binder for its type.
+     * 
+     * @param assignment
+     * @param event
+     * @param inserts
+     * @throws SiteWhereException
+     */
+    protected void addInserts(IDeviceAssignment assignment, IDeviceEvent event, List<BoundStatement> inserts)
+	    throws SiteWhereException {
+	switch (event.getEventType()) {
+	case Measurement: {
+	    addInserts(assignment, (IDeviceMeasurement) event, CassandraDeviceMeasurement.INSTANCE, inserts);
+	    break;
+	}
+	case Location: {
+	    addInserts(assignment, (IDeviceLocation) event, CassandraDeviceLocation.INSTANCE, inserts);
+	    break;
+	}
+	case Alert: {
+	    addInserts(assignment, (IDeviceAlert) event, CassandraDeviceAlert.INSTANCE, inserts);
+	    break;
+	}
+	case CommandInvocation: {
+	    addInserts(assignment, (IDeviceCommandInvocation) event, CassandraDeviceCommandInvocation.INSTANCE, inserts);
+	    break;
+	}
+	case CommandResponse: {
+	    addInserts(assignment, (IDeviceCommandResponse) event, CassandraDeviceCommandResponse.INSTANCE, inserts);
+	    break;
+	}
+	case StateChange: {
+	    addInserts(assignment, (IDeviceStateChange) event, CassandraDeviceStateChange.INSTANCE, inserts);
+	    break;
+	}
+	default: {
+	    throw new SiteWhereException("Event type not handled: " + event.getEventType());
+	}
+	}
+    }
+
+    /**
+     * Build inserts that store a device event using various indexing strategies.
      * 
      * @param assignment
      * @param event
      * @param binder
+     * @param inserts
      * @throws SiteWhereException
      */
-    protected <I extends IDeviceEvent> void storeDeviceEvent(IDeviceAssignment assignment, I event,
-	    ICassandraEventBinder<I> binder) throws SiteWhereException {
+    protected <I extends IDeviceEvent> void addInserts(IDeviceAssignment assignment, I event,
+	    ICassandraEventBinder<I> binder, List<BoundStatement> inserts) throws SiteWhereException {
 	// Build insert for event by id.
 	BoundStatement eventById = getCassandraEventManagementClient().getInsertDeviceEventById().bind();
 	binder.bind(getCassandraEventManagementClient(), eventById, event);
-	process(eventById, event);
+	inserts.add(eventById);
 
 	// Build insert for event by alternate id.
 	if (event.getAlternateId() != null) {
 	    BoundStatement eventByAltId = getCassandraEventManagementClient().getInsertDeviceEventByAltId().bind();
 	    binder.bind(getCassandraEventManagementClient(), eventByAltId, event);
-	    process(eventByAltId, event);
+	    inserts.add(eventByAltId);
 	}
 
 	// Build insert for event by assignment.
 	BoundStatement eventByAssn = getCassandraEventManagementClient().getInsertDeviceEventByAssignment().bind();
 	binder.bind(getCassandraEventManagementClient(), eventByAssn, event);
 	eventByAssn.setInt("bucket", getClient().getBucketValue(event.getEventDate().getTime()));
-	process(eventByAssn, event);
+	inserts.add(eventByAssn);
 
 	// Build insert for event by customer.
 	if (assignment.getCustomerId() != null) {
@@ -383,7 +490,7 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 		    .bind();
 	    binder.bind(getCassandraEventManagementClient(), eventByCustomer, event);
 	    eventByCustomer.setInt("bucket", getClient().getBucketValue(event.getEventDate().getTime()));
-	    process(eventByCustomer, event);
+	    inserts.add(eventByCustomer);
 	}
 
 	// Build insert for event by area.
@@ -391,7 +498,7 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 	    BoundStatement eventByArea = getCassandraEventManagementClient().getInsertDeviceEventByArea().bind();
 	    binder.bind(getCassandraEventManagementClient(), eventByArea, event);
 	    eventByArea.setInt("bucket", getClient().getBucketValue(event.getEventDate().getTime()));
-	    process(eventByArea, event);
+	    inserts.add(eventByArea);
 	}
 
 	// Build insert for event by asset.
@@ -399,7 +506,7 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 	    BoundStatement eventByAsset = getCassandraEventManagementClient().getInsertDeviceEventByAsset().bind();
 	    binder.bind(getCassandraEventManagementClient(), eventByAsset, event);
 	    eventByAsset.setInt("bucket", getClient().getBucketValue(event.getEventDate().getTime()));
-	    process(eventByAsset, event);
+	    inserts.add(eventByAsset);
 	}
     }
 
@@ -418,48 +525,80 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 	    List<UUID> entityIds, IDateRangeSearchCriteria criteria, ICassandraEventBinder<I> binder)
 	    throws SiteWhereException {
 	PreparedStatement query = getQueryForIndex(index);
-	Pager<I> pager = new Pager<>(criteria);
 	List<Integer> buckets = getBucketsForDateRange(criteria);
-	for (int bucket : buckets) {
-	    List<ResultSet> perBucket = listResultsForBucket(query, entityIds, criteria, binder.getEventType(), bucket);
-	    List<I> bucketEvents = new ArrayList<>();
-	    for (ResultSet perKey : perBucket) {
-		for (Row row : perKey) {
-		    bucketEvents.add(binder.load(getCassandraEventManagementClient(), row));
-		}
+	BucketedEventIterator rows = new BucketedEventIterator(getClient().getSession(), query, entityIds, criteria,
+		binder.getEventType(), buckets, getQueryFetchSize());
+
+	// Rows arrive newest first, so only rows on the requested page are loaded.
+	// Totals are exact unless approximate counts are enabled or a limit on
+	// counted rows is configured, in which case they are estimated once the
+	// page is filled.
+	int pageSize = criteria.getPageSize() != null ? criteria.getPageSize() : 0;
+	int pageNumber = criteria.getPageNumber() != null ? criteria.getPageNumber() : 1;
+	long offset = (long) Math.max(0, pageNumber - 1) * pageSize;
+	long end = offset + pageSize;
+	List<I> results = new ArrayList<>();
+	long total = 0;
+	while (rows.hasNext()) {
+	    if ((pageSize > 0) && (total >= end) && (isApproximateCounts() || isCountLimitReached(total))) {
+		total = estimateTotal(total, rows.getBucketsQueried(), buckets.size());
+		break;
 	    }
-	    addSortedEventsToPager(pager, bucketEvents, bucket);
+	    Row row = rows.next();
+	    if ((pageSize == 0) || ((total >= offset) && (total < end))) {
+		results.add(binder.load(getCassandraEventManagementClient(), row));
+	    }
+	    total++;
 	}
-	return new SearchResults<I>(pager.getResults(), pager.getTotal());
+	getLogger().debug("Scanned " + rows.getBucketsQueried() + " of " + buckets.size() + " buckets for "
+		+ results.size() + " results.");
+	return new SearchResults<I>(results, total);
     }
 
     /**
-     * Process a Cassandra query and handle failures.
+     * Indicates whether the max number of rows to be counted has been reached.
      * 
-     * @param statement
-     * @param event
-     * @throws SiteWhereException
+     * @param counted
+     * @return
      */
-    protected void process(BoundStatement statement, IDeviceEvent event) throws SiteWhereException {
-	ResultSetFuture future = getClient().getSession().executeAsync(statement);
-	Futures.addCallback(future, new FutureCallback<ResultSet>() {
-	    /*
-	     * @see
-	     * com.google.common.util.concurrent.FutureCallback#onSuccess(java.lang.Object)
-	     */
-	    @Override
-	    public void onSuccess(ResultSet result) {
-	    }
+    protected boolean isCountLimitReached(long counted) {
+	return (getMaxCountedRows() > 0) && (counted >= getMaxCountedRows());
+    }
 
-	    /*
-	     * @see com.google.common.util.concurrent.FutureCallback#onFailure(java.lang.
-	     * Throwable)
-	     */
-	    @Override
-	    public void onFailure(Throwable t) {
-		getLogger().error("Failed to persist Cassandra event: " + event.getId(), t);
-	    }
-	}, MoreExecutors.directExecutor());
+    /**
+     * Estimate the total number of matches when a search stops once the requested
+     * page is filled. The count for the buckets already queried is extrapolated
+     * across the full date range.
+     * 
+     * @param counted
+     * @param bucketsQueried
+     * @param bucketCount
+     * @return
+     */
+    protected long estimateTotal(long counted, int bucketsQueried, int bucketCount) {
+	long estimate = (counted * bucketCount) / Math.max(1, bucketsQueried);
+	return Math.max(counted + 1, estimate);
+    }
+
+    /**
+     * Write inserts through the pipeline and wait for them to complete so that
+     * failures are reported to the caller.
+     * 
+     * @param inserts
+     * @throws SiteWhereException
+     */
+    protected void storeDeviceEvents(List<BoundStatement> inserts) throws SiteWhereException {
+	if (inserts.isEmpty()) {
+	    return;
+	}
+	try {
+	    getWritePipeline().write(inserts).get();
+	} catch (ExecutionException e) {
+	    throw new SiteWhereException("Failed to persist Cassandra events.", e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while persisting Cassandra events.", e);
+	}
     }
 
     /**
@@ -507,57 +646,6 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
 	return buckets;
     }
 
-    /**
-     * Perform parallel queries to get results for a single bucket.
-     * 
-     * @param keyField
-     * @param keys
-     * @param criteria
-     * @param eventType
-     * @param bucket
-     * @return
-     * @throws SiteWhereException
-     */
-    protected List<ResultSet> listResultsForBucket(PreparedStatement statement, List<UUID> keys,
-	    IDateRangeSearchCriteria criteria, DeviceEventType eventType, int bucket) throws SiteWhereException {
-	List<ResultSetFuture> futures = new ArrayList<>();
-	for (UUID key : keys) {
-	    BoundStatement query = statement.bind();
-	    query.setUUID(0, key);
-	    query.setByte(1, CassandraDeviceEvent.getIndicatorForEventType(eventType));
-	    query.setInt(2, bucket);
-	    query.setTimestamp(3, criteria.getStartDate());
-	    query.setTimestamp(4, criteria.getEndDate());
-	    ResultSetFuture resultSetFuture = getClient().getSession().executeAsync(query);
-	    futures.add(resultSetFuture);
-	}
-	List<ResultSet> results = new ArrayList<>();
-	for (ResultSetFuture future : futures) {
-	    results.add(future.getUninterruptibly());
-	}
-	return results;
-    }
-
-    /**
-     * Sort the list of device events, then add them to the pager.
-     * 
-     * @param pager
-     * @param events
-     */
-    protected <T extends IDeviceEvent> void addSortedEventsToPager(Pager<T> pager, List<T> events, int bucket) {
-	Collections.sort(events, new Comparator<T>() {
-
-	    @Override
-	    public int compare(IDeviceEvent o1, IDeviceEvent o2) {
-		return 1 - (o1.getEventDate().compareTo(o2.getEventDate()));
-	    }
-	});
-	for (T event : events) {
-	    pager.process(event);
-	}
-	getLogger().debug("Processed " + events.size() + " events for bucket " + bucket + ".");
-    }
-
     /**
      * Assert that a device assignment exists and throw an exception if not.
      * 
@@ -592,4 +680,48 @@ public class CassandraDeviceEventManagement extends TenantEngineLifecycleCompone
     protected void setCassandraEventManagementClient(CassandraEventManagementClient cassandraEventManagementClient) {
 	this.cassandraEventManagementClient = cassandraEventManagementClient;
     }
+
+    protected CassandraWritePipeline getWritePipeline() {
+	return writePipeline;
+    }
+
+    public int getMaxWritesInFlight() {
+	return maxWritesInFlight;
+    }
+
+    public void setMaxWritesInFlight(int maxWritesInFlight) {
+	this.maxWritesInFlight = maxWritesInFlight;
+    }
+
+    public int getMaxWriteBatchSize() {
+	return maxWriteBatchSize;
+    }
+
+    public void setMaxWriteBatchSize(int maxWriteBatchSize) {
+	this.maxWriteBatchSize = maxWriteBatchSize;
+    }
+
+    public int getQueryFetchSize() {
+	return queryFetchSize;
+    }
+
+    public void setQueryFetchSize(int queryFetchSize) {
+	this.queryFetchSize = queryFetchSize;
+    }
+
+    public boolean isApproximateCounts() {
+	return approximateCounts;
+    }
+
+    public void setApproximateCounts(boolean approximateCounts) {
+	this.approximateCounts = approximateCounts;
+    }
+
+    public int getMaxCountedRows() {
+	return maxCountedRows;
+    }
+
+    public void setMaxCountedRows(int maxCountedRows) {
+	this.maxCountedRows = maxCountedRows;
+    }
 }
\ No newline at end of file
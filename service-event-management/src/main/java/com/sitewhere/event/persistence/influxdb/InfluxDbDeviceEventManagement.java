@@ -8,10 +8,12 @@
 package com.sitewhere.event.persistence.influxdb;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 
 import com.sitewhere.event.persistence.DeviceEventManagementPersistence;
@@ -20,6 +22,7 @@ import com.sitewhere.influxdb.InfluxDbClient;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEvent;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurement;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
@@ -44,6 +47,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -105,6 +109,88 @@ public class InfluxDbDeviceEventManagement extends TenantEngineLifecycleComponen
 	return DeviceEventManagementPersistence.deviceEventBatchLogic(assignment, batch, this);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEvents(java.
+     * util.Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	List<IDeviceEvent> result = new ArrayList<>();
+
+	// Points are batched per retention policy and written together.
+	Map<String, BatchPoints> batches = new HashMap<>();
+	for (Map.Entry<UUID, List<IDeviceEventCreateRequest>> entry : requests.entrySet()) {
+	    IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignment(entry.getKey());
+	    if (assignment == null) {
+		getLogger().warn(String.format("Skipping %d events for unknown assignment '%s'.",
+			entry.getValue().size(), entry.getKey()));
+		continue;
+	    }
+	    String retentionPolicy = getAssignmentSpecificRetentionPolicy(assignment);
+	    BatchPoints batch = batches.get(retentionPolicy);
+	    if (batch == null) {
+		batch = BatchPoints.database(getClient().getDatabase().getValue()).retentionPolicy(retentionPolicy)
+			.build();
+		batches.put(retentionPolicy, batch);
+	    }
+	    List<UUID> ids = (eventIds != null) ? eventIds.get(entry.getKey()) : null;
+	    List<DeviceEvent> events = DeviceEventManagementPersistence.deviceEventsCreateLogic(assignment,
+		    entry.getValue(), ids, getDeviceManagement());
+	    for (DeviceEvent event : events) {
+		Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
+		saveToBuilder(event, builder);
+		addUserDefinedTags(assignment, builder);
+		batch.point(builder.build());
+		result.add(event);
+	    }
+	}
+	for (BatchPoints batch : batches.values()) {
+	    getClient().getInflux().write(batch);
+	}
+	return result;
+    }
+
+    /**
+     * Save fields for an event of any type to a point builder.
+     * 
+     * @param event
+     * @param builder
+     * @throws SiteWhereException
+     */
+    protected void saveToBuilder(DeviceEvent event, Point.Builder builder) throws SiteWhereException {
+	switch (event.getEventType()) {
+	case Measurement: {
+	    InfluxDbDeviceMeasurements.saveToBuilder((DeviceMeasurement) event, builder);
+	    break;
+	}
+	case Location: {
+	    InfluxDbDeviceLocation.saveToBuilder((DeviceLocation) event, builder);
+	    break;
+	}
+	case Alert: {
+	    InfluxDbDeviceAlert.saveToBuilder((DeviceAlert) event, builder);
+	    break;
+	}
+	case CommandInvocation: {
+	    InfluxDbDeviceCommandInvocation.saveToBuilder((DeviceCommandInvocation) event, builder);
+	    break;
+	}
+	case CommandResponse: {
+	    InfluxDbDeviceCommandResponse.saveToBuilder((DeviceCommandResponse) event, builder);
+	    break;
+	}
+	case StateChange: {
+	    InfluxDbDeviceStateChange.saveToBuilder((DeviceStateChange) event, builder);
+	    break;
+	}
+	default: {
+	    throw new SiteWhereException("Event type not handled: " + event.getEventType());
+	}
+	}
+    }
+
     /**
      * Add any user defined tags from assignment metadata. A tag should be prefixed
      * with ASSIGNMENT_META_DATA_TAG_PREFIX i.e INFLUX_TAG_displayName. The prefix
@@ -8,27 +8,44 @@
 package com.sitewhere.event.persistence.mongodb;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.bson.Document;
 
 import com.mongodb.MongoBulkWriteException;
-import com.mongodb.MongoTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.WriteModel;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 
 /**
- * Buffers {@link Document} for bulk inserts.
- * 
+ * Buffers {@link Document} for bulk inserts. Documents are striped across a
+ * number of writer threads (by device assignment so events for an assignment
+ * are written in the order they were added). Each writer flushes an unordered
+ * bulk write when it has collected a full chunk or when the oldest queued
+ * document reaches the maximum age. Callers receive a future that completes
+ * once the document has been written so that failures can be reported back to
+ * the source of the event.
+ *
  * @author Derek
  */
 public class DeviceEventBuffer implements IDeviceEventBuffer {
@@ -36,17 +53,31 @@ public class DeviceEventBuffer implements IDeviceEventBuffer {
     /** Static logger instance */
     private static Log LOGGER = LogFactory.getLog(DeviceEventBuffer.class);
 
-    /** Max number of puts that can be stored in the queue */
+    /** Max number of documents that can be queued across all writers */
     private static final int MAX_QUEUE_SIZE = 10000;
 
-    /** Max number of milliseconds cache before sending */
-    private static final int MAX_TIME_BEFORE_WRITE = 250;
+    /** Max number of milliseconds to wait for space in a full queue */
+    private static final int MAX_QUEUE_WAIT = 5000;
 
-    /** Buffer of Documents to insert */
-    private BlockingQueue<Document> buffer = new ArrayBlockingQueue<Document>(MAX_QUEUE_SIZE);
+    /** Max number of seconds to wait for writers to flush on shutdown */
+    private static final int SHUTDOWN_TIMEOUT_SECS = 10;
 
-    /** Used to create the buffer sending thread */
-    private ExecutorService executor;
+    /** Default number of writer threads */
+    public static final int DEFAULT_WRITER_COUNT = 4;
+
+    /** Default max number of milliseconds a document is queued before sending */
+    public static final int DEFAULT_MAX_AGE = 100;
+
+    /** Histogram for bulk write latency */
+    private static final Histogram FLUSH_LATENCY = TenantEngineLifecycleComponent
+	    .createHistogramMetric("mongodb_event_buffer_flush_latency", "Latency of event buffer bulk writes");
+
+    /** Counter for documents that could not be written */
+    private static final Counter FAILED_WRITES = TenantEngineLifecycleComponent.createCounterMetric(
+	    "mongodb_event_buffer_failed_writes", "Count of buffered event documents that could not be written");
+
+    /** Component that owns the buffer */
+    private ITenantEngineLifecycleComponent parent;
 
     /** Events collection */
     private MongoCollection<Document> events;
@@ -54,88 +85,275 @@ public class DeviceEventBuffer implements IDeviceEventBuffer {
     /** Max inserts per chunk */
     private int maxChunkSize;
 
-    public DeviceEventBuffer(MongoCollection<Document> events, int maxChunkSize) {
+    /** Number of writer threads */
+    private int writerCount;
+
+    /** Max number of milliseconds a document is queued before sending */
+    private int maxAge;
+
+    /** Queue for each writer */
+    private List<BlockingQueue<PendingInsert>> queues;
+
+    /** Used to create the writer threads */
+    private ExecutorService executor;
+
+    /** Metric labels for owning component */
+    private String[] labels;
+
+    /** Indicates whether buffer is accepting documents */
+    private volatile boolean running = false;
+
+    public DeviceEventBuffer(ITenantEngineLifecycleComponent parent, MongoCollection<Document> events,
+	    int maxChunkSize) {
+	this(parent, events, maxChunkSize, DEFAULT_WRITER_COUNT, DEFAULT_MAX_AGE);
+    }
+
+    public DeviceEventBuffer(ITenantEngineLifecycleComponent parent, MongoCollection<Document> events,
+	    int maxChunkSize, int writerCount, int maxAge) {
+	this.parent = parent;
 	this.events = events;
 	this.maxChunkSize = maxChunkSize;
+	this.writerCount = Math.max(1, writerCount);
+	this.maxAge = maxAge;
     }
 
     /*
-     * (non-Javadoc)
-     * 
-     * @see com.sitewhere.hbase.device.IDeviceEventBuffer#start()
+     * @see com.sitewhere.event.persistence.mongodb.IDeviceEventBuffer#start()
      */
+    @Override
     public void start() throws SiteWhereException {
-	executor = Executors.newSingleThreadExecutor();
-	executor.execute(new EventSender());
+	this.labels = parent.buildLabels();
+	this.queues = new ArrayList<>(writerCount);
+	this.executor = Executors.newFixedThreadPool(writerCount, new WriterThreadFactory());
+	this.running = true;
+	for (int i = 0; i < writerCount; i++) {
+	    BlockingQueue<PendingInsert> queue = new ArrayBlockingQueue<PendingInsert>(
+		    Math.max(maxChunkSize, MAX_QUEUE_SIZE / writerCount));
+	    queues.add(queue);
+	    executor.execute(new EventWriter(queue));
+	}
     }
 
     /*
-     * (non-Javadoc)
-     * 
-     * @see com.sitewhere.hbase.device.IDeviceEventBuffer#stop()
+     * @see com.sitewhere.event.persistence.mongodb.IDeviceEventBuffer#stop()
      */
+    @Override
     public void stop() throws SiteWhereException {
-	executor.shutdownNow();
+	this.running = false;
+	if (executor != null) {
+	    executor.shutdown();
+	    try {
+		if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    LOGGER.warn("Event buffer writers did not flush within timeout period.");
+		    executor.shutdownNow();
+		}
+	    } catch (InterruptedException e) {
+		executor.shutdownNow();
+		Thread.currentThread().interrupt();
+	    }
+	}
     }
 
     /*
-     * (non-Javadoc)
-     * 
-     * @see com.sitewhere.mongodb.device.IDeviceEventBuffer#add(org.bson.Document)
+     * @see
+     * com.sitewhere.event.persistence.mongodb.IDeviceEventBuffer#add(org.bson.
+     * Document)
      */
-    public void add(Document record) {
+    @Override
+    public CompletableFuture<Boolean> add(Document record) throws SiteWhereException {
+	if (!running) {
+	    throw new SiteWhereException("Event buffer is not accepting documents.");
+	}
+	PendingInsert insert = new PendingInsert(record);
 	try {
-	    buffer.put(record);
+	    if (!getQueue(record).offer(insert, MAX_QUEUE_WAIT, TimeUnit.MILLISECONDS)) {
+		throw new SiteWhereException("Timed out waiting for space in event buffer.");
+	    }
 	} catch (InterruptedException e) {
-	    LOGGER.error("Interrupted while trying to put data.", e);
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while adding document to event buffer.", e);
 	}
+	return insert.getResult();
     }
 
     /**
-     * Thread that sends {@link Document} inserts to MongoDB in batches.
-     * 
+     * Get writer queue for a document based on its device assignment.
+     *
+     * @param record
+     * @return
+     */
+    protected BlockingQueue<PendingInsert> getQueue(Document record) {
+	Object assignment = record.get(MongoDeviceEvent.PROP_DEVICE_ASSIGNMENT_ID);
+	int hash = (assignment != null) ? assignment.hashCode() : 0;
+	return queues.get((hash & Integer.MAX_VALUE) % queues.size());
+    }
+
+    /**
+     * Send a batch of inserts as a single unordered bulk write and complete the
+     * result for each insert.
+     *
+     * @param batch
+     */
+    protected void flush(List<PendingInsert> batch) {
+	List<WriteModel<Document>> writes = new ArrayList<WriteModel<Document>>(batch.size());
+	for (PendingInsert insert : batch) {
+	    writes.add(new InsertOneModel<Document>(insert.getDocument()));
+	}
+	LOGGER.debug("Executing bulk insert of " + batch.size() + " event records.");
+	Histogram.Timer timer = FLUSH_LATENCY.labels(labels).startTimer();
+	try {
+	    events.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+	    for (PendingInsert insert : batch) {
+		insert.getResult().complete(true);
+	    }
+	} catch (MongoBulkWriteException e) {
+	    Map<Integer, BulkWriteError> errors = new HashMap<>();
+	    for (BulkWriteError error : e.getWriteErrors()) {
+		errors.put(error.getIndex(), error);
+	    }
+	    boolean concernFailed = (e.getWriteConcernError() != null);
+	    boolean failed = concernFailed;
+	    for (int i = 0; i < batch.size(); i++) {
+		BulkWriteError error = errors.get(i);
+		if (error == null) {
+		    if (concernFailed) {
+			fail(batch.get(i), new SiteWhereException("Error during MongoDB bulk write.", e));
+		    } else {
+			batch.get(i).getResult().complete(true);
+		    }
+		} else if (MongoDeviceEventManagementPersistence.isDuplicateEventId(error)) {
+		    // Stored by an earlier delivery of the same event.
+		    batch.get(i).getResult().complete(true);
+		} else if (MongoDeviceEventManagementPersistence.isDuplicateAlternateId(error)) {
+		    batch.get(i).getResult().complete(false);
+		} else {
+		    fail(batch.get(i),
+			    new SiteWhereException("Error during MongoDB bulk write: " + error.getMessage()));
+		    failed = true;
+		}
+	    }
+	    if (failed) {
+		LOGGER.error("Error during MongoDB bulk write.", e);
+	    } else {
+		LOGGER.debug("MongoDB bulk write skipped duplicate event records.", e);
+	    }
+	} catch (Throwable e) {
+	    for (PendingInsert insert : batch) {
+		fail(insert, new SiteWhereException("Unable to execute MongoDB bulk write.", e));
+	    }
+	    LOGGER.error("Unhandled exception in event buffer.", e);
+	} finally {
+	    timer.observeDuration();
+	}
+    }
+
+    /**
+     * Report failure for an insert.
+     *
+     * @param insert
+     * @param e
+     */
+    protected void fail(PendingInsert insert, SiteWhereException e) {
+	FAILED_WRITES.labels(labels).inc();
+	insert.getResult().completeExceptionally(e);
+    }
+
+    /**
+     * Document waiting to be written along with the result reported to the
+     * caller.
+     *
+     * @author Derek
+     */
+    private static class PendingInsert {
+
+	/** Document to insert */
+	private Document document;
+
+	/** Time document was queued */
+	private long queued = System.nanoTime();
+
+	/** Completed once document is written */
+	private CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+	public PendingInsert(Document document) {
+	    this.document = document;
+	}
+
+	public Document getDocument() {
+	    return document;
+	}
+
+	public long getQueued() {
+	    return queued;
+	}
+
+	public CompletableFuture<Boolean> getResult() {
+	    return result;
+	}
+    }
+
+    /**
+     * Thread that sends {@link Document} inserts from a queue to MongoDB in
+     * batches.
+     *
      * @author Derek
      */
-    private class EventSender implements Runnable {
+    private class EventWriter implements Runnable {
+
+	/** Queue of pending inserts */
+	private BlockingQueue<PendingInsert> queue;
+
+	public EventWriter(BlockingQueue<PendingInsert> queue) {
+	    this.queue = queue;
+	}
 
 	@Override
 	public void run() {
-	    long lastPut = System.currentTimeMillis();
-
-	    while (true) {
-		List<WriteModel<Document>> writes = new ArrayList<WriteModel<Document>>();
-		int count = 0;
-
-		while (true) {
-		    try {
-			Document record = buffer.poll(MAX_TIME_BEFORE_WRITE, TimeUnit.MILLISECONDS);
-			if (record != null) {
-			    writes.add(new InsertOneModel<Document>(record));
-			    count++;
-			}
-		    } catch (InterruptedException e) {
-			return;
+	    List<PendingInsert> batch = new ArrayList<>(maxChunkSize);
+	    try {
+		while (running || !queue.isEmpty()) {
+		    PendingInsert first = queue.poll(maxAge, TimeUnit.MILLISECONDS);
+		    if (first == null) {
+			continue;
 		    }
+		    batch.add(first);
 
-		    if ((count >= maxChunkSize) || ((System.currentTimeMillis() - lastPut) > MAX_TIME_BEFORE_WRITE)) {
-			if (count > 0) {
-			    try {
-				LOGGER.debug("Executing bulk insert of " + count + " event records.");
-				events.bulkWrite(writes);
-			    } catch (MongoBulkWriteException e) {
-				LOGGER.error("Error during MongoDB bulk write.", e);
-			    } catch (MongoTimeoutException e) {
-				LOGGER.error("Connection to MongoDB lost.", e);
-			    } catch (Throwable e) {
-				LOGGER.error("Unhandled exception in event buffer.", e);
-			    }
+		    // Fill batch until full or oldest document reaches max age.
+		    long deadline = first.getQueued() + TimeUnit.MILLISECONDS.toNanos(maxAge);
+		    while (batch.size() < maxChunkSize) {
+			if (queue.drainTo(batch, maxChunkSize - batch.size()) > 0) {
+			    continue;
 			}
-
-			lastPut = System.currentTimeMillis();
-			break;
+			long remaining = deadline - System.nanoTime();
+			if ((remaining <= 0) || !running) {
+			    break;
+			}
+			PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+			    break;
+			}
+			batch.add(next);
 		    }
+		    flush(batch);
+		    batch.clear();
+		}
+	    } catch (InterruptedException e) {
+		queue.drainTo(batch);
+		for (PendingInsert insert : batch) {
+		    fail(insert, new SiteWhereException("Event buffer stopped before document was written."));
 		}
 	    }
 	}
     }
+
+    /** Used for naming writer threads */
+    private class WriterThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Event Buffer Writer " + counter.incrementAndGet());
+	}
+    }
 }
\ No newline at end of file
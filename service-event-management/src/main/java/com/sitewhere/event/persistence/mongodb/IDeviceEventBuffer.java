@@ -7,6 +7,8 @@
  */
 package com.sitewhere.event.persistence.mongodb;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.bson.Document;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -33,10 +35,15 @@ public interface IDeviceEventBuffer {
     public void stop() throws SiteWhereException;
 
     /**
-     * Add a {@link Document} to the queue.
+     * Add a {@link Document} to the queue. The returned future completes with
+     * true when the document has been written (or its event id was already
+     * stored), with false if it was rejected because its alternate id is already
+     * in use, or completes exceptionally if the write failed. An exception is
+     * thrown if the document can not be queued.
      * 
      * @param put
+     * @return
      * @throws SiteWhereException
      */
-    public void add(Document put) throws SiteWhereException;
+    public CompletableFuture<Boolean> add(Document put) throws SiteWhereException;
 }
\ No newline at end of file
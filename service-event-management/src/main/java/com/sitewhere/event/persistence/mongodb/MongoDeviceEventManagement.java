@@ -8,7 +8,10 @@
 package com.sitewhere.event.persistence.mongodb;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bson.Document;
@@ -24,6 +27,7 @@ import com.sitewhere.mongodb.MongoTenantComponent;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEvent;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurement;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
@@ -48,6 +52,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -79,6 +84,12 @@ public class MongoDeviceEventManagement extends MongoTenantComponent<DeviceEvent
     /** Maximum number of records to write in a chunk */
     private int bulkInsertMaxChunkSize = 200;
 
+    /** Number of threads writing bulk inserts */
+    private int bulkInsertWriterCount = DeviceEventBuffer.DEFAULT_WRITER_COUNT;
+
+    /** Maximum number of milliseconds a record is buffered before writing */
+    private int bulkInsertMaxAge = DeviceEventBuffer.DEFAULT_MAX_AGE;
+
     public MongoDeviceEventManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -96,8 +107,8 @@ public class MongoDeviceEventManagement extends MongoTenantComponent<DeviceEvent
 
 	// Support bulk inserts for events.
 	if (isUseBulkEventInserts()) {
-	    this.eventBuffer = new DeviceEventBuffer(getMongoClient().getEventsCollection(),
-		    getBulkInsertMaxChunkSize());
+	    this.eventBuffer = new DeviceEventBuffer(this, getMongoClient().getEventsCollection(),
+		    getBulkInsertMaxChunkSize(), getBulkInsertWriterCount(), getBulkInsertMaxAge());
 	    getEventBuffer().start();
 	    getLogger().info("MongoDB device event management is using bulk inserts for events.");
 	} else {
@@ -158,6 +169,51 @@ public class MongoDeviceEventManagement extends MongoTenantComponent<DeviceEvent
 	return DeviceEventManagementPersistence.deviceEventBatchLogic(assignment, batch, this);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEvents(java.
+     * util.Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	List<DeviceEvent> created = new ArrayList<>();
+	List<Document> documents = new ArrayList<>();
+	for (Map.Entry<UUID, List<IDeviceEventCreateRequest>> entry : requests.entrySet()) {
+	    IDeviceAssignment assignment = getCachedDeviceManagement().getDeviceAssignment(entry.getKey());
+	    if (assignment == null) {
+		getLogger().warn(String.format("Skipping %d events for unknown assignment '%s'.",
+			entry.getValue().size(), entry.getKey()));
+		continue;
+	    }
+	    List<UUID> ids = (eventIds != null) ? eventIds.get(entry.getKey()) : null;
+	    List<DeviceEvent> events = DeviceEventManagementPersistence.deviceEventsCreateLogic(assignment,
+		    entry.getValue(), ids, getCachedDeviceManagement());
+	    for (DeviceEvent event : events) {
+		documents.add(MongoDeviceEventManagementPersistence.marshalEvent(event));
+		created.add(event);
+	    }
+	}
+	List<Document> stored = MongoDeviceEventManagementPersistence.insertEvents(
+		getMongoClient().getEventsCollection(), documents, isUseBulkEventInserts(), getEventBuffer());
+
+	// Only return events that were stored.
+	Set<Object> storedIds = new HashSet<>();
+	for (Document document : stored) {
+	    storedIds.add(document.get(MongoDeviceEvent.PROP_ID));
+	}
+	List<IDeviceEvent> result = new ArrayList<>(stored.size());
+	for (DeviceEvent event : created) {
+	    if (storedIds.contains(event.getId())) {
+		result.add(event);
+	    } else {
+		getLogger().warn(String.format("Event '%s' was not stored because alternate id '%s' is already in use.",
+			event.getId(), event.getAlternateId()));
+	    }
+	}
+	return result;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceEventById(java
@@ -522,6 +578,22 @@ public class MongoDeviceEventManagement extends MongoTenantComponent<DeviceEvent
 	this.bulkInsertMaxChunkSize = bulkInsertMaxChunkSize;
     }
 
+    public int getBulkInsertWriterCount() {
+	return bulkInsertWriterCount;
+    }
+
+    public void setBulkInsertWriterCount(int bulkInsertWriterCount) {
+	this.bulkInsertWriterCount = bulkInsertWriterCount;
+    }
+
+    public int getBulkInsertMaxAge() {
+	return bulkInsertMaxAge;
+    }
+
+    public void setBulkInsertMaxAge(int bulkInsertMaxAge) {
+	this.bulkInsertMaxAge = bulkInsertMaxAge;
+    }
+
     /*
      * @see com.sitewhere.mongodb.MongoTenantComponent#getMongoClient()
      */
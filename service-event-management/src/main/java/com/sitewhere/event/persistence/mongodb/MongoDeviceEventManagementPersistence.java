@@ -7,11 +7,23 @@
  */
 package com.sitewhere.event.persistence.mongodb;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.bson.Document;
 
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoCommandException;
 import com.mongodb.MongoTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
 import com.sitewhere.mongodb.MongoPersistence;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.DeviceEventType;
@@ -25,6 +37,15 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 
 public class MongoDeviceEventManagementPersistence extends MongoPersistence {
 
+    /** Max number of seconds to wait for buffered inserts to be written */
+    private static final int BUFFERED_INSERT_TIMEOUT_SECS = 30;
+
+    /** MongoDB error code for duplicate key */
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    /** Name of event id index as reported in duplicate key errors */
+    private static final String ID_INDEX = "index: _id_ ";
+
     /**
      * Insert an event, taking into account whether the device management
      * implementation in configured for bulk operations.
@@ -39,7 +60,12 @@ public class MongoDeviceEventManagementPersistence extends MongoPersistence {
 	    IDeviceEventBuffer buffer) throws SiteWhereException {
 	try {
 	    if (bulk) {
-		buffer.add(object);
+		CompletableFuture<Boolean> result = buffer.add(object);
+		awaitBufferedInserts(result);
+		if (!result.join()) {
+		    throw new SiteWhereException(
+			    "Alternate id is already in use: " + object.get(MongoDeviceEvent.PROP_ALTERNATE_ID));
+		}
 	    } else {
 		collection.insertOne(object);
 	    }
@@ -50,6 +76,130 @@ public class MongoDeviceEventManagementPersistence extends MongoPersistence {
 	}
     }
 
+    /**
+     * Insert a list of events, taking into account whether the device management
+     * implementation in configured for bulk operations. If not using the buffer,
+     * all documents are written with a single unordered insert. Documents whose
+     * event id is already stored were written by an earlier delivery of the same
+     * events and are treated as written. Documents whose alternate id is already
+     * in use are not stored and are left out of the result.
+     * 
+     * @param collection
+     * @param objects
+     * @param bulk
+     * @param buffer
+     * @return documents that are stored
+     * @throws SiteWhereException if any document failed for another reason
+     */
+    public static List<Document> insertEvents(MongoCollection<Document> collection, List<Document> objects,
+	    boolean bulk, IDeviceEventBuffer buffer) throws SiteWhereException {
+	if (objects.isEmpty()) {
+	    return objects;
+	}
+	try {
+	    if (bulk) {
+		List<CompletableFuture<Boolean>> pending = new ArrayList<>(objects.size());
+		for (Document object : objects) {
+		    pending.add(buffer.add(object));
+		}
+		awaitBufferedInserts(pending.toArray(new CompletableFuture<?>[pending.size()]));
+		List<Document> stored = new ArrayList<>(objects.size());
+		for (int i = 0; i < objects.size(); i++) {
+		    if (pending.get(i).join()) {
+			stored.add(objects.get(i));
+		    }
+		}
+		return stored;
+	    } else {
+		collection.insertMany(objects, new InsertManyOptions().ordered(false));
+		return objects;
+	    }
+	} catch (MongoBulkWriteException e) {
+	    return getStoredDocuments(objects, e);
+	} catch (MongoCommandException e) {
+	    throw new SiteWhereException("Error during MongoDB insert.", e);
+	} catch (MongoTimeoutException e) {
+	    throw new SiteWhereException("Connection to MongoDB lost.", e);
+	}
+    }
+
+    /**
+     * Get documents that are stored after an unordered insert reported write
+     * errors. Documents with an event id that is already stored are included,
+     * documents with an alternate id that is already in use are left out and any
+     * other error fails the insert.
+     * 
+     * @param objects
+     * @param e
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static List<Document> getStoredDocuments(List<Document> objects, MongoBulkWriteException e)
+	    throws SiteWhereException {
+	if (e.getWriteConcernError() != null) {
+	    throw new SiteWhereException("Error during MongoDB insert.", e);
+	}
+	Set<Integer> rejected = new HashSet<>();
+	for (BulkWriteError error : e.getWriteErrors()) {
+	    if (isDuplicateAlternateId(error)) {
+		rejected.add(error.getIndex());
+	    } else if (!isDuplicateEventId(error)) {
+		throw new SiteWhereException("Error during MongoDB insert: " + error.getMessage(), e);
+	    }
+	}
+	List<Document> stored = new ArrayList<>(objects.size() - rejected.size());
+	for (int i = 0; i < objects.size(); i++) {
+	    if (!rejected.contains(i)) {
+		stored.add(objects.get(i));
+	    }
+	}
+	return stored;
+    }
+
+    /**
+     * Indicates whether a write error was caused by an event id that is already
+     * stored. Events only share an id if they were created from the same source
+     * record, so the document was written by an earlier delivery.
+     * 
+     * @param error
+     * @return
+     */
+    public static boolean isDuplicateEventId(BulkWriteError error) {
+	return (error.getCode() == DUPLICATE_KEY_ERROR) && (error.getMessage() != null)
+		&& error.getMessage().contains(ID_INDEX);
+    }
+
+    /**
+     * Indicates whether a write error was caused by an alternate id that is
+     * already in use by another event.
+     * 
+     * @param error
+     * @return
+     */
+    public static boolean isDuplicateAlternateId(BulkWriteError error) {
+	return (error.getCode() == DUPLICATE_KEY_ERROR) && !isDuplicateEventId(error);
+    }
+
+    /**
+     * Wait for buffered inserts to be written so that failures are reported to
+     * the caller rather than being lost in the buffer.
+     * 
+     * @param pending
+     * @throws SiteWhereException
+     */
+    protected static void awaitBufferedInserts(CompletableFuture<?>... pending) throws SiteWhereException {
+	try {
+	    CompletableFuture.allOf(pending).get(BUFFERED_INSERT_TIMEOUT_SECS, TimeUnit.SECONDS);
+	} catch (ExecutionException e) {
+	    throw new SiteWhereException("Buffered event insert failed.", e.getCause());
+	} catch (TimeoutException e) {
+	    throw new SiteWhereException("Timed out waiting for buffered event inserts.", e);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting for buffered event inserts.", e);
+	}
+    }
+
     /**
      * Marshal an {@link IDeviceEvent} into a {@link Document}.
      * 
@@ -8,6 +8,7 @@
 package com.sitewhere.event.processing;
 
 import com.sitewhere.event.spi.processing.IEventManagementConfiguration;
+import com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer;
 
 /**
  * Model object for event management configuration.
@@ -16,8 +17,14 @@ import com.sitewhere.event.spi.processing.IEventManagementConfiguration;
  */
 public class EventManagementConfiguration implements IEventManagementConfiguration {
 
+    /** Default number of threads used for processing decoded events */
+    public static final int DEFAULT_PROCESSING_THREAD_COUNT = 25;
+
     /** Number of threads used for processing decoded events */
-    private int processingThreadCount = 25;
+    private int processingThreadCount = DEFAULT_PROCESSING_THREAD_COUNT;
+
+    /** Max number of records dispatched but not persisted */
+    private int maxInFlightRecords = MicroserviceKafkaConsumer.DEFAULT_MAX_IN_FLIGHT_RECORDS;
 
     /*
      * @see com.sitewhere.inbound.spi.processing.IInboundProcessingConfiguration#
@@ -31,4 +38,17 @@ public class EventManagementConfiguration implements IEventManagementConfigurati
     public void setProcessingThreadCount(int processingThreadCount) {
 	this.processingThreadCount = processingThreadCount;
     }
+
+    /*
+     * @see com.sitewhere.event.spi.processing.IEventManagementConfiguration#
+     * getMaxInFlightRecords()
+     */
+    @Override
+    public int getMaxInFlightRecords() {
+	return maxInFlightRecords;
+    }
+
+    public void setMaxInFlightRecords(int maxInFlightRecords) {
+	this.maxInFlightRecords = maxInFlightRecords;
+    }
 }
\ No newline at end of file
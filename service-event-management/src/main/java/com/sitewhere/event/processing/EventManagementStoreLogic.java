@@ -8,7 +8,6 @@
 package com.sitewhere.event.processing;
 
 import com.sitewhere.event.spi.microservice.IEventManagementTenantEngine;
-import com.sitewhere.grpc.model.DeviceEventModel.GAnyDeviceEventCreateRequest;
 import com.sitewhere.grpc.model.DeviceEventModel.GPreprocessedEventPayload;
 import com.sitewhere.event.spi.kafka.IInboundEventsConsumer;
 import com.sitewhere.event.spi.processing.IEventManagementStoreLogic;
@@ -19,17 +18,19 @@ import com.sitewhere.microservice.security.SystemUserRunnable;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
-import com.sitewhere.spi.device.event.request.*;
-import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import org.apache.kafka.common.TopicPartition;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Processing logic which
@@ -57,136 +58,133 @@ public class EventManagementStoreLogic extends TenantEngineLifecycleComponent
     /** inbount events consumer */
     private InboundEventsConsumer inboundEventsConsumer;
 
-
-    /** Executor service for event management processors */
-	private ExecutorService eventManagementExecutor;
-
 	public EventManagementStoreLogic(InboundEventsConsumer inboundEventsConsumer) {
 	this.inboundEventsConsumer = inboundEventsConsumer;
     }
 
     /*
      * @see
-     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
-     * server.lifecycle.ILifecycleProgressMonitor)
-     */
-    @Override
-    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	super.start(monitor);
-
-	if (getEventManagementExecutor() != null) {
-		getEventManagementExecutor().shutdownNow();
-	}
-//	this.eventManagementExecutor = Executors.newFixedThreadPool(
-//			getInboundEventsConsumer().getEventManagementConfiguration().getProcessingThreadCount());
-//    }
-	this.eventManagementExecutor = Executors.newFixedThreadPool(25);
-	}
-
-    /*
-     * @see
-     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
-     * server.lifecycle.ILifecycleProgressMonitor)
+     * com.sitewhere.inbound.spi.processing.IInboundPayloadProcessingLogic#process(
+     * org.apache.kafka.common.TopicPartition, java.util.List, java.util.List)
      */
     @Override
-    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	if (getEventManagementExecutor() != null) {
-		getEventManagementExecutor().shutdownNow();
+    public void process(TopicPartition topicPartition, List<GPreprocessedEventPayload> decoded, List<UUID> eventIds)
+	    throws SiteWhereException {
+	KAFFA_BATCH_SIZE.labels(buildLabels()).set(decoded.size());
+
+	// Batches are delivered on consumer lane threads, so store in place to
+	// preserve per-device ordering.
+	EventManagementPayloadProcessor processor = new EventManagementPayloadProcessor(decoded, eventIds);
+	processor.run();
+	if (!processor.isStored()) {
+	    throw (processor.getFailure() != null) ? processor.getFailure()
+		    : new SiteWhereException("Unable to store inbound events as system user.");
 	}
-	super.stop(monitor);
     }
 
-    /*
-     * @see
-     * com.sitewhere.inbound.spi.processing.IInboundPayloadProcessingLogic#process(
-     * org.apache.kafka.common.TopicPartition, java.util.List)
+    /**
+     * Store a batch of events with a single call to the event management API.
+     * Events are grouped by assignment so each assignment is only resolved once,
+     * and the original order is preserved within each assignment. Payloads that
+     * can not be converted are skipped, but an exception is thrown if the events
+     * could not be stored.
+     *
+     * @param events
+     * @param eventIds
+     * @throws SiteWhereException
      */
-    @Override
-    public void process(TopicPartition topicPartition, List<GPreprocessedEventPayload> decoded) throws SiteWhereException {
-		KAFFA_BATCH_SIZE.labels(buildLabels()).set(decoded.size());
-    	for (GPreprocessedEventPayload event : decoded) {
-		//getEventManagementExecutor().execute(new InboundEventPayloadProcessor(event));
-			getEventManagementExecutor().execute(new EventManagementPayloadProcessor(event));
-		}
-    }
-
-	/**
-	 * Process a single store event.
-	 *
-	 * @param event
-	 * @throws SiteWhereException
-	 */
-	protected void processStoreEvents(GPreprocessedEventPayload event) throws SiteWhereException{
-		try {
-			GAnyDeviceEventCreateRequest grpc = event.getEvent();
-			UUID assignmentId = CommonModelConverter.asApiUuid(event.getDeviceAssignmentId());
-			IDeviceEventCreateRequest request = EventModelConverter.asApiDeviceEventCreateRequest(grpc);
-			switch (request.getEventType()) {
-				case Measurement:
-					getDeviceEventManagement().addDeviceMeasurements(assignmentId,
-							(IDeviceMeasurementCreateRequest) request);
-					break;
-				case Alert:
-					getDeviceEventManagement().addDeviceAlerts(assignmentId, (IDeviceAlertCreateRequest) request);
-					break;
-				case CommandInvocation:
-					getDeviceEventManagement().addDeviceCommandInvocations(assignmentId,
-							(IDeviceCommandInvocationCreateRequest) request);
-					break;
-				case CommandResponse:
-					getDeviceEventManagement().addDeviceCommandResponses(assignmentId,
-							(IDeviceCommandResponseCreateRequest) request);
-					break;
-				case Location:
-					getDeviceEventManagement().addDeviceLocations(assignmentId, (IDeviceLocationCreateRequest) request);
-					break;
-				case StateChange:
-					getDeviceEventManagement().addDeviceStateChanges(assignmentId,
-							(IDeviceStateChangeCreateRequest) request);
-					break;
-				default:
-					getLogger().warn(
-							String.format("Unknown event type sent for storage: %s", request.getEventType().name()));
-			}
-
-			// Keep metrics on processed events.
-			PROCESSED_EVENTS.labels(buildLabels()).inc();
-		} catch (SiteWhereException e) {
-			getLogger().error("Unable to process inbound event payload.", e);
-		} catch (Throwable e) {
-			getLogger().error("Unhandled exception processing inbound event payload.", e);
+    protected void processStoreEvents(List<GPreprocessedEventPayload> events, List<UUID> eventIds)
+	    throws SiteWhereException {
+	Map<UUID, List<IDeviceEventCreateRequest>> byAssignment = new LinkedHashMap<>();
+	Map<UUID, List<UUID>> idsByAssignment = new HashMap<>();
+	for (int i = 0; i < events.size(); i++) {
+	    GPreprocessedEventPayload event = events.get(i);
+	    try {
+		UUID assignmentId = CommonModelConverter.asApiUuid(event.getDeviceAssignmentId());
+		IDeviceEventCreateRequest request = EventModelConverter.asApiDeviceEventCreateRequest(event.getEvent());
+		List<IDeviceEventCreateRequest> requests = byAssignment.get(assignmentId);
+		if (requests == null) {
+		    requests = new ArrayList<>();
+		    byAssignment.put(assignmentId, requests);
+		    idsByAssignment.put(assignmentId, new ArrayList<>());
 		}
+		requests.add(request);
+		idsByAssignment.get(assignmentId).add(eventIds.get(i));
+	    } catch (SiteWhereException e) {
+		getLogger().error("Unable to process inbound event payload.", e);
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception processing inbound event payload.", e);
+	    }
+	}
+	if (byAssignment.isEmpty()) {
+	    return;
+	}
+	try {
+	    List<IDeviceEvent> created = getDeviceEventManagement().addDeviceEvents(byAssignment, idsByAssignment);
+
+	    // Keep metrics on processed events.
+	    PROCESSED_EVENTS.labels(buildLabels()).inc(created.size());
+	    int requested = 0;
+	    for (List<IDeviceEventCreateRequest> requests : byAssignment.values()) {
+		requested += requests.size();
+	    }
+	    if (created.size() < requested) {
+		getLogger().warn(String.format("Stored %d of %d inbound events. Remaining events were rejected.",
+			created.size(), requested));
+	    }
+	} catch (SiteWhereException e) {
+	    throw e;
+	} catch (Throwable e) {
+	    throw new SiteWhereException("Unhandled exception storing batch of inbound events.", e);
 	}
+    }
 
 	protected IDeviceEventManagement getDeviceEventManagement() {
 		return ((IEventManagementTenantEngine) getTenantEngine()).getEventManagement();
 	}
 
     /**
-     * Processor that unmarshals a decoded event and forwards it for preprocessed event.
+     * Processor that stores a batch of preprocessed events as the system user.
      * 
      * @author Derek
      */
     protected class EventManagementPayloadProcessor extends SystemUserRunnable {
 
-	/** Event to be processed */
-	private GPreprocessedEventPayload event;
+	/** Events to be processed */
+	private List<GPreprocessedEventPayload> events;
+
+	/** Ids of events to be processed */
+	private List<UUID> eventIds;
+
+	/** Indicates events were stored */
+	private boolean stored;
+
+	/** Set if events could not be stored */
+	private SiteWhereException failure;
 
-	public EventManagementPayloadProcessor(GPreprocessedEventPayload event) {
+	public EventManagementPayloadProcessor(List<GPreprocessedEventPayload> events, List<UUID> eventIds) {
 	    super(getTenantEngine().getMicroservice(), getTenantEngine().getTenant());
-	    this.event = event;
+	    this.events = events;
+	    this.eventIds = eventIds;
 	}
 
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
-	    //processDecodedEvent(event);
-		processStoreEvents(event);
+	    try {
+		processStoreEvents(events, eventIds);
+		this.stored = true;
+	    } catch (SiteWhereException e) {
+		this.failure = e;
+	    }
+	}
 
+	public boolean isStored() {
+	    return stored;
 	}
-    }
 
-    protected ExecutorService getEventManagementExecutor() {
-	return eventManagementExecutor;
+	public SiteWhereException getFailure() {
+	    return failure;
+	}
     }
 
     protected IInboundEventsConsumer getInboundEventsConsumer() {
@@ -21,4 +21,12 @@ public interface IEventManagementConfiguration {
      * @return
      */
     public int getProcessingThreadCount();
+
+    /**
+     * Get maximum number of inbound records dispatched to processing threads but
+     * not yet persisted before the consumer pauses.
+     * 
+     * @return
+     */
+    public int getMaxInFlightRecords();
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 import org.apache.kafka.common.TopicPartition;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Logic applied to decoded inbound event payloads.
@@ -23,12 +24,15 @@ import java.util.List;
 public interface IEventManagementStoreLogic extends ITenantEngineLifecycleComponent {
 
     /**
-     * Process batch of decoded records for a topic partition.
+     * Process batch of decoded records for a topic partition. Each payload is
+     * stored with the event id at the same position in the list of ids.
      * 
      * @param topicPartition
      * @param decoded
+     * @param eventIds
      * @throws SiteWhereException
      */
-    public void process(TopicPartition topicPartition, List<DeviceEventModel.GPreprocessedEventPayload> decoded) throws SiteWhereException;
+    public void process(TopicPartition topicPartition, List<DeviceEventModel.GPreprocessedEventPayload> decoded,
+	    List<UUID> eventIds) throws SiteWhereException;
 
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.AbstractBeanDefinitionParser;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.util.xml.DomUtils;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 
 import com.sitewhere.cassandra.CassandraClient;
@@ -24,6 +25,7 @@ import com.sitewhere.event.persistence.cassandra.CassandraDeviceEventManagement;
 import com.sitewhere.event.persistence.influxdb.InfluxDbDeviceEventManagement;
 import com.sitewhere.event.persistence.mongodb.DeviceEventManagementMongoClient;
 import com.sitewhere.event.persistence.mongodb.MongoDeviceEventManagement;
+import com.sitewhere.event.processing.EventManagementConfiguration;
 import com.sitewhere.influxdb.InfluxDbClient;
 import com.sitewhere.spi.microservice.spring.EventManagementBeans;
 
@@ -43,6 +45,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
      */
     @Override
     protected AbstractBeanDefinition parseInternal(Element element, ParserContext context) {
+	parseEventManagementConfiguration(element, context);
 	List<Element> dsChildren = DomUtils.getChildElements(element);
 	for (Element child : dsChildren) {
 	    Elements type = Elements.getByLocalName(child.getLocalName());
@@ -51,7 +54,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	    }
 	    switch (type) {
 	    case EventManagementDatastore: {
-		parseEventManagementDatastore(child, context);
+		parseEventManagementDatastore(child, element, context);
 		break;
 	    }
 	    }
@@ -60,12 +63,37 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
     }
 
     /**
-     * Parse device management datastore element.
+     * Parse core event management settings from attributes of the root element.
      * 
      * @param element
      * @param context
      */
-    protected void parseEventManagementDatastore(Element element, ParserContext context) {
+    protected void parseEventManagementConfiguration(Element element, ParserContext context) {
+	BeanDefinitionBuilder config = BeanDefinitionBuilder.rootBeanDefinition(EventManagementConfiguration.class);
+
+	Attr processingThreadCount = element.getAttributeNode("processingThreadCount");
+	if (processingThreadCount != null) {
+	    config.addPropertyValue("processingThreadCount", processingThreadCount.getValue());
+	}
+
+	Attr maxInFlightRecords = element.getAttributeNode("maxInFlightRecords");
+	if (maxInFlightRecords != null) {
+	    config.addPropertyValue("maxInFlightRecords", maxInFlightRecords.getValue());
+	}
+
+	context.getRegistry().registerBeanDefinition(EventManagementBeans.BEAN_EVENT_MANAGEMENT_CONFIGURATION,
+		config.getBeanDefinition());
+    }
+
+    /**
+     * Parse device management datastore element. Datastore specific settings are
+     * taken from attributes of the root element.
+     * 
+     * @param element
+     * @param root
+     * @param context
+     */
+    protected void parseEventManagementDatastore(Element element, Element root, ParserContext context) {
 	DatastoreConfigurationChoice config = DatastoreConfigurationParser.parseEventManagementDatastoreChoice(element,
 		context);
 	switch (config.getType()) {
@@ -79,6 +107,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	    BeanDefinitionBuilder management = BeanDefinitionBuilder
 		    .rootBeanDefinition(MongoDeviceEventManagement.class);
 	    management.addPropertyReference("mongoClient", EventManagementBeans.BEAN_MONGODB_CLIENT);
+	    parseMongoBulkInsertSettings(root, management);
 
 	    context.getRegistry().registerBeanDefinition(EventManagementBeans.BEAN_EVENT_MANAGEMENT,
 		    management.getBeanDefinition());
@@ -94,6 +123,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	    BeanDefinitionBuilder management = BeanDefinitionBuilder
 		    .rootBeanDefinition(MongoDeviceEventManagement.class);
 	    management.addPropertyReference("mongoClient", EventManagementBeans.BEAN_MONGODB_CLIENT);
+	    parseMongoBulkInsertSettings(root, management);
 
 	    context.getRegistry().registerBeanDefinition(EventManagementBeans.BEAN_EVENT_MANAGEMENT,
 		    management.getBeanDefinition());
@@ -136,6 +166,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	    BeanDefinitionBuilder management = BeanDefinitionBuilder
 		    .rootBeanDefinition(CassandraDeviceEventManagement.class);
 	    management.addPropertyReference("client", EventManagementBeans.BEAN_CASSANDRA_CLIENT);
+	    parseCassandraSettings(root, management);
 
 	    context.getRegistry().registerBeanDefinition(EventManagementBeans.BEAN_EVENT_MANAGEMENT,
 		    management.getBeanDefinition());
@@ -150,6 +181,7 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	    BeanDefinitionBuilder management = BeanDefinitionBuilder
 		    .rootBeanDefinition(CassandraDeviceEventManagement.class);
 	    management.addPropertyReference("client", EventManagementBeans.BEAN_CASSANDRA_CLIENT);
+	    parseCassandraSettings(root, management);
 
 	    context.getRegistry().registerBeanDefinition(EventManagementBeans.BEAN_EVENT_MANAGEMENT,
 		    management.getBeanDefinition());
@@ -160,4 +192,65 @@ public class EventManagementParser extends AbstractBeanDefinitionParser {
 	}
 	}
     }
+
+    /**
+     * Parse settings for bulk inserts of events into MongoDB.
+     * 
+     * @param root
+     * @param management
+     */
+    protected void parseMongoBulkInsertSettings(Element root, BeanDefinitionBuilder management) {
+	Attr useBulkEventInserts = root.getAttributeNode("useBulkEventInserts");
+	if (useBulkEventInserts != null) {
+	    management.addPropertyValue("useBulkEventInserts", useBulkEventInserts.getValue());
+	}
+
+	Attr bulkInsertMaxChunkSize = root.getAttributeNode("bulkInsertMaxChunkSize");
+	if (bulkInsertMaxChunkSize != null) {
+	    management.addPropertyValue("bulkInsertMaxChunkSize", bulkInsertMaxChunkSize.getValue());
+	}
+
+	Attr bulkInsertWriterCount = root.getAttributeNode("bulkInsertWriterCount");
+	if (bulkInsertWriterCount != null) {
+	    management.addPropertyValue("bulkInsertWriterCount", bulkInsertWriterCount.getValue());
+	}
+
+	Attr bulkInsertMaxAge = root.getAttributeNode("bulkInsertMaxAge");
+	if (bulkInsertMaxAge != null) {
+	    management.addPropertyValue("bulkInsertMaxAge", bulkInsertMaxAge.getValue());
+	}
+    }
+
+    /**
+     * Parse settings for writing and querying events in Apache Cassandra.
+     * 
+     * @param root
+     * @param management
+     */
+    protected void parseCassandraSettings(Element root, BeanDefinitionBuilder management) {
+	Attr maxWritesInFlight = root.getAttributeNode("maxWritesInFlight");
+	if (maxWritesInFlight != null) {
+	    management.addPropertyValue("maxWritesInFlight", maxWritesInFlight.getValue());
+	}
+
+	Attr maxWriteBatchSize = root.getAttributeNode("maxWriteBatchSize");
+	if (maxWriteBatchSize != null) {
+	    management.addPropertyValue("maxWriteBatchSize", maxWriteBatchSize.getValue());
+	}
+
+	Attr queryFetchSize = root.getAttributeNode("queryFetchSize");
+	if (queryFetchSize != null) {
+	    management.addPropertyValue("queryFetchSize", queryFetchSize.getValue());
+	}
+
+	Attr approximateCounts = root.getAttributeNode("approximateCounts");
+	if (approximateCounts != null) {
+	    management.addPropertyValue("approximateCounts", approximateCounts.getValue());
+	}
+
+	Attr maxCountedRows = root.getAttributeNode("maxCountedRows");
+	if (maxCountedRows != null) {
+	    management.addPropertyValue("maxCountedRows", maxCountedRows.getValue());
+	}
+    }
 }
\ No newline at end of file
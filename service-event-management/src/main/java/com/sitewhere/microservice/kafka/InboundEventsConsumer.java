@@ -7,11 +7,12 @@
  */
 package com.sitewhere.microservice.kafka;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
+import com.sitewhere.event.processing.EventManagementConfiguration;
 import com.sitewhere.event.processing.EventManagementStoreLogic;
 import com.sitewhere.event.spi.processing.IEventManagementConfiguration;
 import com.sitewhere.event.spi.processing.IEventManagementStoreLogic;
@@ -19,8 +20,6 @@ import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
 
 import com.sitewhere.common.MarshalUtils;
@@ -34,6 +33,7 @@ import com.sitewhere.grpc.model.DeviceEventModel.GPreprocessedEventPayload;
 import com.sitewhere.rest.model.device.event.kafka.PreprocessedEventPayload;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.kafka.KafkaBatchProcessingException;
 
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
@@ -61,7 +61,7 @@ public class InboundEventsConsumer extends MicroserviceKafkaConsumer implements
 		this.eventManagementStoreLogic = new EventManagementStoreLogic(this);
 	}
 	public InboundEventsConsumer() {
-		this.eventManagementStoreLogic = new EventManagementStoreLogic(this);
+		this(new EventManagementConfiguration());
 	}
 
     /*
@@ -129,10 +129,28 @@ public class InboundEventsConsumer extends MicroserviceKafkaConsumer implements
 		// Execute startup steps.
 		start.execute(monitor);
 
-		getLogger().info("Allocating 25 threads for inbound event processing.");
+		getLogger().info("Allocating " + getProcessingLaneCount() + " lanes for inbound event processing.");
 		super.start(monitor);
 	}
 
+	/*
+	 * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+	 * getProcessingLaneCount()
+	 */
+	@Override
+	protected int getProcessingLaneCount() {
+		return getEventManagementConfiguration().getProcessingThreadCount();
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+	 * getMaxInFlightRecords()
+	 */
+	@Override
+	protected int getMaxInFlightRecords() {
+		return getEventManagementConfiguration().getMaxInFlightRecords();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -160,8 +178,9 @@ public class InboundEventsConsumer extends MicroserviceKafkaConsumer implements
      */
     @Override
     public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	List<GPreprocessedEventPayload> preprocessed = new ArrayList<>();
+	List<UUID> eventIds = new ArrayList<>();
 	try {
-	    List<GPreprocessedEventPayload> preprocessed = new ArrayList<>();
 	    for (ConsumerRecord<String, byte[]> record : records) {
 		GPreprocessedEventPayload message = EventModelMarshaler
 			.parsePreprocessedEventPayloadMessage(record.value());
@@ -170,19 +189,30 @@ public class InboundEventsConsumer extends MicroserviceKafkaConsumer implements
 		    getLogger().debug("Received event payload:\n\n" + MarshalUtils.marshalJsonAsPrettyString(payload));
 		}
 		preprocessed.add(message);
+		eventIds.add(getEventId(record));
 	    }
-	    //storeEvents(preprocessed);
-		getEventManagementStoreLogic().process(topicPartition, preprocessed);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
-		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
-		    if (e != null) {
-			getLogger().error("Commit failed for offsets " + offsets, e);
-		    }
-		}
-	    });
 	} catch (SiteWhereException e) {
 	    getLogger().error("Inbound processing for event batch failed.", e);
+	    return;
 	}
+	try {
+	    getEventManagementStoreLogic().process(topicPartition, preprocessed, eventIds);
+	} catch (SiteWhereException e) {
+	    // Partition is paused and the batch retried until events are stored.
+	    throw new KafkaBatchProcessingException("Unable to store inbound event batch.", e);
+	}
+    }
+
+    /**
+     * Derive the id of the event stored for a record from the record location
+     * and timestamp, so that a redelivered record is stored with the same id.
+     * 
+     * @param record
+     * @return
+     */
+    protected static UUID getEventId(ConsumerRecord<String, byte[]> record) {
+	String source = record.topic() + ":" + record.partition() + ":" + record.offset() + ":" + record.timestamp();
+	return UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8));
     }
 
 	/*
@@ -8,6 +8,7 @@
 package com.sitewhere.microservice.kafka;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.event.DeviceEventManagementDecorator;
@@ -25,6 +26,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -58,6 +60,18 @@ public class KafkaEventPersistenceTriggers extends DeviceEventManagementDecorato
 	return events;
     }
 
+    /*
+     * @see
+     * com.sitewhere.event.DeviceEventManagementDecorator#addDeviceEvents(java.util.
+     * Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	// Events may span multiple assignments.
+	return forwardEvents(null, super.addDeviceEvents(requests, eventIds));
+    }
+
     /*
      * @see
      * com.sitewhere.event.DeviceEventManagementDecorator#addDeviceMeasurements(java
@@ -18,7 +18,6 @@ import com.sitewhere.inbound.spi.microservice.IInboundProcessingTenantEngine;
 import com.sitewhere.microservice.multitenant.MultitenantMicroservice;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.spi.SiteWhereException;
-import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.microservice.MicroserviceIdentifier;
 import com.sitewhere.spi.microservice.configuration.model.IConfigurationModel;
 import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
@@ -41,7 +40,7 @@ public class InboundProcessingMicroservice
     private IDeviceManagementApiChannel<?> deviceManagementApiChannel;
 
     /** Cached device management implementation */
-    private IDeviceManagement cachedDeviceManagement;
+    private CachedDeviceManagementApiChannel cachedDeviceManagement;
 
     /** Device event management API channel */
     private IDeviceEventManagementApiChannel<?> deviceEventManagementApiChannel;
@@ -181,11 +180,11 @@ public class InboundProcessingMicroservice
      * getCachedDeviceManagement()
      */
     @Override
-    public IDeviceManagement getCachedDeviceManagement() {
+    public CachedDeviceManagementApiChannel getCachedDeviceManagement() {
 	return cachedDeviceManagement;
     }
 
-    public void setCachedDeviceManagement(IDeviceManagement cachedDeviceManagement) {
+    public void setCachedDeviceManagement(CachedDeviceManagementApiChannel cachedDeviceManagement) {
 	this.cachedDeviceManagement = cachedDeviceManagement;
     }
 
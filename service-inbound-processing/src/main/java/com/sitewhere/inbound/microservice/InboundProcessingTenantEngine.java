@@ -12,7 +12,9 @@ import com.sitewhere.inbound.spi.kafka.IInboundEventsProducer;
 import com.sitewhere.inbound.spi.kafka.IUnregisteredEventsProducer;
 import com.sitewhere.inbound.spi.microservice.IInboundProcessingTenantEngine;
 import com.sitewhere.inbound.spi.processing.IInboundProcessingConfiguration;
+import com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice;
 import com.sitewhere.microservice.kafka.DecodedEventsConsumer;
+import com.sitewhere.microservice.kafka.DeviceManagementUpdatesConsumer;
 import com.sitewhere.microservice.kafka.InboundEventsProducer;
 import com.sitewhere.microservice.kafka.UnregisteredEventsProducer;
 import com.sitewhere.microservice.multitenant.MicroserviceTenantEngine;
@@ -42,6 +44,9 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
     /** Kafka producer for forwarding processed events */
     private IInboundEventsProducer inboundEventsProducer;
 
+    /** Kafka consumer that invalidates cached device management data */
+    private DeviceManagementUpdatesConsumer deviceManagementUpdatesConsumer;
+
     public InboundProcessingTenantEngine(ITenant tenant) {
 	super(tenant);
     }
@@ -60,6 +65,8 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
 	this.decodedEventsConsumer = new DecodedEventsConsumer(configuration);
 	this.unregisteredDeviceEventsProducer = new UnregisteredEventsProducer();
 	this.inboundEventsProducer = new InboundEventsProducer();
+	this.deviceManagementUpdatesConsumer = new DeviceManagementUpdatesConsumer(
+		((IInboundProcessingMicroservice) getMicroservice()).getCachedDeviceManagement());
 
 	// Create step that will initialize components.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getComponentName());
@@ -73,6 +80,9 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
 	// Initialize inbound events producer.
 	init.addInitializeStep(this, getInboundEventsProducer(), true);
 
+	// Initialize device management updates consumer.
+	init.addInitializeStep(this, getDeviceManagementUpdatesConsumer(), true);
+
 	// Execute initialization steps.
 	init.execute(monitor);
     }
@@ -86,6 +96,9 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
 	// Create step that will start components.
 	ICompositeLifecycleStep start = new CompositeLifecycleStep("Start " + getComponentName());
 
+	// Start device management updates consumer.
+	start.addStartStep(this, getDeviceManagementUpdatesConsumer(), true);
+
 	// Start unregistered device events producer.
 	start.addStartStep(this, getUnregisteredDeviceEventsProducer(), true);
 
@@ -127,6 +140,9 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
 	// Stop inbound events producer.
 	stop.addStopStep(this, getInboundEventsProducer());
 
+	// Stop device management updates consumer.
+	stop.addStopStep(this, getDeviceManagementUpdatesConsumer());
+
 	// Execute shutdown steps.
 	stop.execute(monitor);
     }
@@ -169,4 +185,12 @@ public class InboundProcessingTenantEngine extends MicroserviceTenantEngine impl
     public void setInboundEventsProducer(IInboundEventsProducer inboundEventsProducer) {
 	this.inboundEventsProducer = inboundEventsProducer;
     }
+
+    public DeviceManagementUpdatesConsumer getDeviceManagementUpdatesConsumer() {
+	return deviceManagementUpdatesConsumer;
+    }
+
+    public void setDeviceManagementUpdatesConsumer(DeviceManagementUpdatesConsumer deviceManagementUpdatesConsumer) {
+	this.deviceManagementUpdatesConsumer = deviceManagementUpdatesConsumer;
+    }
 }
\ No newline at end of file
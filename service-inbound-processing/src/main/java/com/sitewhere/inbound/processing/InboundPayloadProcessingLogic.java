@@ -8,8 +8,6 @@
 package com.sitewhere.inbound.processing;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import com.sitewhere.grpc.client.common.converter.CommonModelConverter;
 import org.apache.kafka.common.TopicPartition;
@@ -23,13 +21,12 @@ import com.sitewhere.inbound.spi.kafka.IUnregisteredEventsProducer;
 import com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice;
 import com.sitewhere.inbound.spi.microservice.IInboundProcessingTenantEngine;
 import com.sitewhere.inbound.spi.processing.IInboundPayloadProcessingLogic;
-import com.sitewhere.microservice.security.SystemUserRunnable;
+import com.sitewhere.microservice.security.SystemUserBatchRunnable;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
-import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 import io.prometheus.client.Histogram;
 
@@ -55,42 +52,10 @@ public class InboundPayloadProcessingLogic extends TenantEngineLifecycleComponen
     /** Decoded events consumer */
     private IDecodedEventsConsumer decodedEventsConsumer;
 
-    /** Executor service for inbound payload processors */
-    private ExecutorService inboundProcessorsExecutor;
-
     public InboundPayloadProcessingLogic(IDecodedEventsConsumer decodedEventsConsumer) {
 	this.decodedEventsConsumer = decodedEventsConsumer;
     }
 
-    /*
-     * @see
-     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
-     * server.lifecycle.ILifecycleProgressMonitor)
-     */
-    @Override
-    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	super.start(monitor);
-
-	if (getInboundProcessorsExecutor() != null) {
-	    getInboundProcessorsExecutor().shutdownNow();
-	}
-	this.inboundProcessorsExecutor = Executors.newFixedThreadPool(
-		getDecodedEventsConsumer().getInboundProcessingConfiguration().getProcessingThreadCount());
-    }
-
-    /*
-     * @see
-     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
-     * server.lifecycle.ILifecycleProgressMonitor)
-     */
-    @Override
-    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	if (getInboundProcessorsExecutor() != null) {
-	    getInboundProcessorsExecutor().shutdownNow();
-	}
-	super.stop(monitor);
-    }
-
     /*
      * @see
      * com.sitewhere.inbound.spi.processing.IInboundPayloadProcessingLogic#process(
@@ -98,9 +63,9 @@ public class InboundPayloadProcessingLogic extends TenantEngineLifecycleComponen
      */
     @Override
     public void process(TopicPartition topicPartition, List<GDecodedEventPayload> decoded) throws SiteWhereException {
-	for (GDecodedEventPayload event : decoded) {
-	    getInboundProcessorsExecutor().execute(new InboundEventPayloadProcessor(event));
-	}
+	// Batches are delivered on consumer lane threads, so process in place to
+	// preserve per-device ordering.
+	new InboundEventPayloadProcessor(decoded).run();
     }
 
     /**
@@ -234,23 +199,19 @@ public class InboundPayloadProcessingLogic extends TenantEngineLifecycleComponen
     }
 
     /**
-     * Processor that unmarshals a decoded event and forwards it for registration
-     * verification.
+     * Processor that forwards a batch of decoded events for registration
+     * verification, binding the system user once for the batch.
      * 
      * @author Derek
      */
-    protected class InboundEventPayloadProcessor extends SystemUserRunnable {
-
-	/** Event to be processed */
-	private GDecodedEventPayload event;
+    protected class InboundEventPayloadProcessor extends SystemUserBatchRunnable<GDecodedEventPayload> {
 
-	public InboundEventPayloadProcessor(GDecodedEventPayload event) {
-	    super(getTenantEngine().getMicroservice(), getTenantEngine().getTenant());
-	    this.event = event;
+	public InboundEventPayloadProcessor(List<GDecodedEventPayload> events) {
+	    super(getTenantEngine().getMicroservice(), getTenantEngine().getTenant(), events);
 	}
 
 	@Override
-	public void runAsSystemUser() throws SiteWhereException {
+	public void processAsSystemUser(GDecodedEventPayload event) throws SiteWhereException {
 	    processDecodedEvent(event);
 	}
     }
@@ -270,7 +231,7 @@ public class InboundPayloadProcessingLogic extends TenantEngineLifecycleComponen
      * @return
      */
     protected IDeviceManagement getDeviceManagement() {
-	return ((IInboundProcessingMicroservice) getTenantEngine().getMicroservice()).getDeviceManagementApiChannel();
+	return ((IInboundProcessingMicroservice) getTenantEngine().getMicroservice()).getCachedDeviceManagement();
     }
 
     /**
@@ -282,10 +243,6 @@ public class InboundPayloadProcessingLogic extends TenantEngineLifecycleComponen
 	return ((IInboundProcessingTenantEngine) getTenantEngine()).getInboundEventsProducer();
     }
 
-    protected ExecutorService getInboundProcessorsExecutor() {
-	return inboundProcessorsExecutor;
-    }
-
     protected IDecodedEventsConsumer getDecodedEventsConsumer() {
 	return decodedEventsConsumer;
     }
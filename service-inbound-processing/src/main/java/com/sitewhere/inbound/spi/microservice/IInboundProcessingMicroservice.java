@@ -7,9 +7,9 @@
  */
 package com.sitewhere.inbound.spi.microservice;
 
+import com.sitewhere.grpc.client.device.CachedDeviceManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
-import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.microservice.MicroserviceIdentifier;
 import com.sitewhere.spi.microservice.multitenant.IMultitenantMicroservice;
 
@@ -33,7 +33,7 @@ public interface IInboundProcessingMicroservice
      * 
      * @return
      */
-    public IDeviceManagement getCachedDeviceManagement();
+    public CachedDeviceManagementApiChannel getCachedDeviceManagement();
 
     /**
      * Get device event management API access via GRPC channel.
@@ -9,12 +9,9 @@ package com.sitewhere.microservice.kafka;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
 
 import com.sitewhere.common.MarshalUtils;
@@ -122,11 +119,19 @@ public class DecodedEventsConsumer extends MicroserviceKafkaConsumer implements
 	// Execute startup steps.
 	start.execute(monitor);
 
-	getLogger().info("Allocating " + getInboundProcessingConfiguration().getProcessingThreadCount()
-		+ " threads for inbound event processing.");
+	getLogger().info("Allocating " + getProcessingLaneCount() + " lanes for inbound event processing.");
 	super.start(monitor);
     }
 
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * getProcessingLaneCount()
+     */
+    @Override
+    protected int getProcessingLaneCount() {
+	return getInboundProcessingConfiguration().getProcessingThreadCount();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -169,13 +174,6 @@ public class DecodedEventsConsumer extends MicroserviceKafkaConsumer implements
 		decoded.add(message);
 	    }
 	    getInboundPayloadProcessingLogic().process(topicPartition, decoded);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
-		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
-		    if (e != null) {
-			getLogger().error("Commit failed for offsets " + offsets, e);
-		    }
-		}
-	    });
 	} catch (SiteWhereException e) {
 	    getLogger().error("Inbound processing for event batch failed.", e);
 	}
@@ -16,6 +16,8 @@ import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.prometheus.client.Counter;
+
 /**
  * Extends {@link OutboundConnector} with filtering functionality.
  * 
@@ -23,6 +25,10 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
  */
 public abstract class FilteredOutboundConnector extends OutboundConnector implements IFilteredOutboundConnector {
 
+    /** Counter for events removed by filters */
+    private static final Counter FILTERED_EVENTS = createCounterMetric("outbound_connector_filtered_events",
+	    "Count of events removed by outbound connector filters", "connector", "filter");
+
     /** List of filters in order they should be applied */
     private List<IDeviceEventFilter> filters = new ArrayList<IDeviceEventFilter>();
 
@@ -72,31 +78,19 @@ public abstract class FilteredOutboundConnector extends OutboundConnector implem
      */
     @Override
     public void processEventBatch(List<IEnrichedEventPayload> payloads) throws SiteWhereException {
-	List<IEnrichedEventPayload> notFiltered = new ArrayList<>();
-	for (IEnrichedEventPayload payload : payloads) {
-	    if (!isFiltered(payload)) {
-		notFiltered.add(payload);
-	    }
-	}
-	processFilteredEventBatch(notFiltered);
-    }
-
-    /**
-     * Indicates if an event is filtered.
-     * 
-     * @param payload
-     * @return
-     * @throws SiteWhereException
-     */
-    protected boolean isFiltered(IEnrichedEventPayload payload) throws SiteWhereException {
+	List<IEnrichedEventPayload> notFiltered = payloads;
 	for (IDeviceEventFilter filter : getFilters()) {
-	    if (filter.isFiltered(payload.getEventContext(), payload.getEvent())) {
-		getLogger().info(String.format("Event payload filtered for %s based on %s.",
-			payload.getEvent().getDeviceId().toString(), filter.getClass().getSimpleName()));
-		return true;
+	    if (notFiltered.isEmpty()) {
+		break;
+	    }
+	    int before = notFiltered.size();
+	    notFiltered = filter.getUnfiltered(notFiltered);
+	    if (notFiltered.size() < before) {
+		FILTERED_EVENTS.labels(buildLabels(String.valueOf(getConnectorId()), filter.getClass().getSimpleName()))
+			.inc(before - notFiltered.size());
 	    }
 	}
-	return false;
+	processFilteredEventBatch(notFiltered);
     }
 
     /*
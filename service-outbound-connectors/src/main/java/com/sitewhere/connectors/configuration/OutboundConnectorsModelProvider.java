@@ -285,6 +285,30 @@ public class OutboundConnectorsModelProvider extends ConfigurationModelProvider
 		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
 			.description("HTTP method used for delivery of payload to URI.").choice("POST", "post")
 			.choice("PUT", "put").defaultValue("post").build()));
+	builder.attribute((new AttributeNode.Builder("Max requests in flight", "maxInFlightRequests",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max number of HTTP requests sent concurrently and pooled connections kept alive.")
+			.defaultValue("100").build()));
+	builder.attribute((new AttributeNode.Builder("Batch size", "batchSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL).description(
+			"Max number of payloads for the same URI combined into one request as a JSON array. Use 1 to send one payload per request.")
+			.defaultValue("1").build()));
+	builder.attribute((new AttributeNode.Builder("Max retries", "maxRetries", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Times a request failing with an I/O error or 5xx/429 status is retried.")
+			.defaultValue("3").build()));
+	builder.attribute((new AttributeNode.Builder("Retry backoff (ms)", "retryBackoffMs", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Delay before the first retry. The delay is doubled for each later retry.")
+			.defaultValue("500").build()));
+	builder.attribute((new AttributeNode.Builder("Request timeout (ms)", "requestTimeoutMs", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Timeout for connecting to the server and waiting for a response.")
+			.defaultValue("10000").build()));
+	builder.attribute((new AttributeNode.Builder("Batch delivery timeout (ms)", "batchDeliveryTimeoutMs",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Max time allowed for delivering a batch of events, including retries.")
+			.defaultValue("60000").build()));
 	return builder.build();
     }
 
@@ -414,6 +438,10 @@ public class OutboundConnectorsModelProvider extends ConfigurationModelProvider
 		ConfigurationModelProvider.ATTR_GROUP_GENERAL).description(
 			"Indicates whether events from the area should be included or excluded from processing.")
 			.choice("Include", "include").choice("Exclude", "exclude").defaultValue("include").build()));
+	builder.attribute((new AttributeNode.Builder("Include subareas", "includeSubareas", AttributeType.Boolean,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Indicates whether events from areas below the area are also matched.")
+			.defaultValue("false").build()));
 	return builder.build();
     }
 
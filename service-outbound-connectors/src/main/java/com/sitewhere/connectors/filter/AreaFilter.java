@@ -7,43 +7,96 @@
  */
 package com.sitewhere.connectors.filter;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.sitewhere.rest.model.search.area.AreaSearchCriteria;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.area.IArea;
 import com.sitewhere.spi.device.event.IDeviceEvent;
 import com.sitewhere.spi.device.event.IDeviceEventContext;
 
 /**
- * Includes or excludes events for devices associated with a given area.
+ * Includes or excludes events for devices associated with a given area (and
+ * optionally any areas below it).
  * 
  * @author Derek
  */
-public class AreaFilter extends DeviceEventFilter {
+public class AreaFilter extends ResolvedIdFilter {
 
     /** Area token to check */
     private String areaToken;
 
-    /** Operation filter performs */
-    private FilterOperation operation = FilterOperation.Include;
+    /** Indicates if events for areas below the area are also matched */
+    private boolean includeSubareas = false;
 
     /*
-     * @see
-     * com.sitewhere.outbound.spi.IDeviceEventFilter#isFiltered(com.sitewhere.spi.
-     * device.event.IDeviceEventContext,
-     * com.sitewhere.spi.device.event.IDeviceEvent)
+     * @see com.sitewhere.connectors.filter.ResolvedIdFilter#resolveMatchingIds()
      */
     @Override
-    public boolean isFiltered(IDeviceEventContext context, IDeviceEvent event) throws SiteWhereException {
-	if (event.getAreaId() != null) {
-	    IArea area = getDeviceManagementApiChannel().getArea(event.getAreaId());
+    protected Set<UUID> resolveMatchingIds() throws SiteWhereException {
+	if (!isIncludeSubareas()) {
+	    IArea area = getDeviceManagementApiChannel().getAreaByToken(getAreaToken());
 	    if (area == null) {
 		throw new SiteWhereException("Unable to process event filter for non-existent area.");
 	    }
-	    if (getAreaToken().equals(area.getToken())) {
-		return (getOperation() != FilterOperation.Include);
+	    return Collections.singleton(area.getId());
+	}
+
+	// Load all areas once and walk the subtree locally.
+	List<IArea> areas = getDeviceManagementApiChannel().listAreas(new AreaSearchCriteria(1, 0)).getResults();
+	IArea area = null;
+	Map<UUID, List<UUID>> childIdsByParentId = new HashMap<>();
+	for (IArea current : areas) {
+	    if (getAreaToken().equals(current.getToken())) {
+		area = current;
+	    }
+	    if (current.getParentId() != null) {
+		List<UUID> childIds = childIdsByParentId.get(current.getParentId());
+		if (childIds == null) {
+		    childIds = new ArrayList<>();
+		    childIdsByParentId.put(current.getParentId(), childIds);
+		}
+		childIds.add(current.getId());
 	    }
-	    return (getOperation() == FilterOperation.Include);
 	}
-	return (getOperation() == FilterOperation.Include);
+	if (area == null) {
+	    throw new SiteWhereException("Unable to process event filter for non-existent area.");
+	}
+	Set<UUID> ids = new HashSet<>();
+	ids.add(area.getId());
+	Deque<UUID> pending = new ArrayDeque<>();
+	pending.add(area.getId());
+	while (!pending.isEmpty()) {
+	    List<UUID> childIds = childIdsByParentId.get(pending.poll());
+	    if (childIds == null) {
+		continue;
+	    }
+	    for (UUID childId : childIds) {
+		if (ids.add(childId)) {
+		    pending.add(childId);
+		}
+	    }
+	}
+	return ids;
+    }
+
+    /*
+     * @see com.sitewhere.connectors.filter.ResolvedIdFilter#getEntityId(com.
+     * sitewhere.spi.device.event.IDeviceEventContext,
+     * com.sitewhere.spi.device.event.IDeviceEvent)
+     */
+    @Override
+    protected UUID getEntityId(IDeviceEventContext context, IDeviceEvent event) {
+	return event.getAreaId();
     }
 
     public String getAreaToken() {
@@ -54,11 +107,11 @@ public class AreaFilter extends DeviceEventFilter {
 	this.areaToken = areaToken;
     }
 
-    public FilterOperation getOperation() {
-	return operation;
+    public boolean isIncludeSubareas() {
+	return includeSubareas;
     }
 
-    public void setOperation(FilterOperation operation) {
-	this.operation = operation;
+    public void setIncludeSubareas(boolean includeSubareas) {
+	this.includeSubareas = includeSubareas;
     }
 }
\ No newline at end of file
@@ -7,11 +7,16 @@
  */
 package com.sitewhere.connectors.filter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.sitewhere.connectors.spi.IDeviceEventFilter;
 import com.sitewhere.connectors.spi.microservice.IOutboundConnectorsMicroservice;
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
@@ -25,6 +30,22 @@ public abstract class DeviceEventFilter extends TenantEngineLifecycleComponent i
 	super(LifecycleComponentType.OutboundEventProcessorFilter);
     }
 
+    /*
+     * @see
+     * com.sitewhere.connectors.spi.IDeviceEventFilter#getUnfiltered(java.util.List)
+     */
+    @Override
+    public List<IEnrichedEventPayload> getUnfiltered(List<IEnrichedEventPayload> payloads)
+	    throws SiteWhereException {
+	List<IEnrichedEventPayload> unfiltered = new ArrayList<>(payloads.size());
+	for (IEnrichedEventPayload payload : payloads) {
+	    if (!isFiltered(payload.getEventContext(), payload.getEvent())) {
+		unfiltered.add(payload);
+	    }
+	}
+	return unfiltered;
+    }
+
     /**
      * Allow access to the device management API channel.
      * 
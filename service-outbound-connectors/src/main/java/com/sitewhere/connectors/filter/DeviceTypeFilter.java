@@ -7,6 +7,10 @@
  */
 package com.sitewhere.connectors.filter;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceType;
 import com.sitewhere.spi.device.event.IDeviceEvent;
@@ -17,30 +21,31 @@ import com.sitewhere.spi.device.event.IDeviceEventContext;
  * 
  * @author Derek
  */
-public class DeviceTypeFilter extends DeviceEventFilter {
+public class DeviceTypeFilter extends ResolvedIdFilter {
 
     /** Device type token to match */
     private String deviceTypeToken;
 
-    /** Operation filter performs */
-    private FilterOperation operation = FilterOperation.Include;
-
     /*
-     * @see
-     * com.sitewhere.outbound.spi.IDeviceEventFilter#isFiltered(com.sitewhere.spi.
-     * device.event.IDeviceEventContext,
-     * com.sitewhere.spi.device.event.IDeviceEvent)
+     * @see com.sitewhere.connectors.filter.ResolvedIdFilter#resolveMatchingIds()
      */
     @Override
-    public boolean isFiltered(IDeviceEventContext context, IDeviceEvent event) throws SiteWhereException {
-	IDeviceType deviceType = getDeviceManagementApiChannel().getDeviceType(context.getDeviceTypeId());
+    protected Set<UUID> resolveMatchingIds() throws SiteWhereException {
+	IDeviceType deviceType = getDeviceManagementApiChannel().getDeviceTypeByToken(getDeviceTypeToken());
 	if (deviceType == null) {
 	    throw new SiteWhereException("Event filter unable to process event for unknown device type.");
 	}
-	if (getDeviceTypeToken().equals(deviceType.getToken())) {
-	    return (getOperation() != FilterOperation.Include);
-	}
-	return (getOperation() == FilterOperation.Include);
+	return Collections.singleton(deviceType.getId());
+    }
+
+    /*
+     * @see com.sitewhere.connectors.filter.ResolvedIdFilter#getEntityId(com.
+     * sitewhere.spi.device.event.IDeviceEventContext,
+     * com.sitewhere.spi.device.event.IDeviceEvent)
+     */
+    @Override
+    protected UUID getEntityId(IDeviceEventContext context, IDeviceEvent event) {
+	return context.getDeviceTypeId();
     }
 
     public String getDeviceTypeToken() {
@@ -50,12 +55,4 @@ public class DeviceTypeFilter extends DeviceEventFilter {
     public void setDeviceTypeToken(String deviceTypeToken) {
 	this.deviceTypeToken = deviceTypeToken;
     }
-
-    public FilterOperation getOperation() {
-	return operation;
-    }
-
-    public void setOperation(FilterOperation operation) {
-	this.operation = operation;
-    }
 }
\ No newline at end of file
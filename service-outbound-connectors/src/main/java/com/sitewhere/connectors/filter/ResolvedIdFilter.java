@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.connectors.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventContext;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
+
+/**
+ * Base class for filters that match events against a set of entity ids
+ * resolved from tokens in the filter configuration. Ids are resolved when
+ * first needed and refreshed periodically, so events are matched without
+ * calling other microservices. If a refresh fails, the previously resolved
+ * ids continue to be used.
+ * 
+ * @author Derek
+ */
+public abstract class ResolvedIdFilter extends DeviceEventFilter {
+
+    /** Interval at which resolved ids are refreshed */
+    private static final long REFRESH_INTERVAL_MS = 60 * 1000;
+
+    /** Operation filter performs */
+    private FilterOperation operation = FilterOperation.Include;
+
+    /** Ids matched by filter */
+    private volatile Set<UUID> matchingIds;
+
+    /** Time ids were last resolved */
+    private volatile long lastResolved;
+
+    /**
+     * Resolve ids of entities matched by the filter.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected abstract Set<UUID> resolveMatchingIds() throws SiteWhereException;
+
+    /**
+     * Get id of entity an event is matched on.
+     * 
+     * @param context
+     * @param event
+     * @return
+     */
+    protected abstract UUID getEntityId(IDeviceEventContext context, IDeviceEvent event);
+
+    /*
+     * @see
+     * com.sitewhere.connectors.spi.IDeviceEventFilter#isFiltered(com.sitewhere.spi.
+     * device.event.IDeviceEventContext,
+     * com.sitewhere.spi.device.event.IDeviceEvent)
+     */
+    @Override
+    public boolean isFiltered(IDeviceEventContext context, IDeviceEvent event) throws SiteWhereException {
+	return isFiltered(getMatchingIds(), getEntityId(context, event));
+    }
+
+    /*
+     * @see
+     * com.sitewhere.connectors.filter.DeviceEventFilter#getUnfiltered(java.util.
+     * List)
+     */
+    @Override
+    public List<IEnrichedEventPayload> getUnfiltered(List<IEnrichedEventPayload> payloads)
+	    throws SiteWhereException {
+	Set<UUID> ids = getMatchingIds();
+	List<IEnrichedEventPayload> unfiltered = new ArrayList<>(payloads.size());
+	for (IEnrichedEventPayload payload : payloads) {
+	    if (!isFiltered(ids, getEntityId(payload.getEventContext(), payload.getEvent()))) {
+		unfiltered.add(payload);
+	    }
+	}
+	return unfiltered;
+    }
+
+    /**
+     * Indicates if an event for the given entity is filtered.
+     * 
+     * @param ids
+     * @param entityId
+     * @return
+     */
+    protected boolean isFiltered(Set<UUID> ids, UUID entityId) {
+	if ((entityId != null) && (ids.contains(entityId))) {
+	    return (getOperation() != FilterOperation.Include);
+	}
+	return (getOperation() == FilterOperation.Include);
+    }
+
+    /**
+     * Get ids matched by the filter, resolving them if not resolved recently.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Set<UUID> getMatchingIds() throws SiteWhereException {
+	Set<UUID> ids = matchingIds;
+	if ((ids != null) && (System.currentTimeMillis() - lastResolved < REFRESH_INTERVAL_MS)) {
+	    return ids;
+	}
+	synchronized (this) {
+	    if ((matchingIds != null) && (System.currentTimeMillis() - lastResolved < REFRESH_INTERVAL_MS)) {
+		return matchingIds;
+	    }
+	    try {
+		matchingIds = resolveMatchingIds();
+	    } catch (SiteWhereException e) {
+		if (matchingIds == null) {
+		    throw e;
+		}
+		getLogger().warn("Unable to refresh ids for filter. Using previously resolved ids.", e);
+	    }
+	    lastResolved = System.currentTimeMillis();
+	    return matchingIds;
+	}
+    }
+
+    public FilterOperation getOperation() {
+	return operation;
+    }
+
+    public void setOperation(FilterOperation operation) {
+	this.operation = operation;
+    }
+}
\ No newline at end of file
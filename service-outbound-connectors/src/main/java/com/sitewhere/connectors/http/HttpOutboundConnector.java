@@ -7,8 +7,38 @@
  */
 package com.sitewhere.connectors.http;
 
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
 
 import com.sitewhere.connectors.SerialOutboundConnector;
 import com.sitewhere.connectors.spi.IOutboundConnector;
@@ -23,16 +53,59 @@ import com.sitewhere.spi.device.event.IDeviceEventContext;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurement;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
 /**
  * Implementation of {@link IOutboundConnector} that sends a payload to an HTTP
- * URI.
+ * URI. Requests are sent with a pooled, non-blocking HTTP client so the events
+ * in a batch are delivered concurrently, up to a maximum number of requests in
+ * flight. Payloads for the same URI may optionally be combined into a single
+ * request containing a JSON array, and requests that fail with an I/O error or
+ * a 5xx/429 status are retried with exponential backoff. A request only counts
+ * against the in-flight limit while an attempt is outstanding, not while it
+ * waits to be retried. Each batch must be delivered within a deadline, after
+ * which requests that have not completed are failed.
  */
 public class HttpOutboundConnector extends SerialOutboundConnector {
 
-    /** Use Spring RestTemplate to send requests */
-    private RestTemplate client;
+    /** Histogram for request latency by target */
+    private static final Histogram REQUEST_DURATION = createHistogramMetric("http_connector_request_duration",
+	    "Duration of HTTP outbound connector requests", "connector", "target");
+
+    /** Counter for requests that failed after all retries */
+    private static final Counter FAILED_REQUESTS = createCounterMetric("http_connector_failed_requests",
+	    "Count of HTTP outbound connector requests that failed after all retries", "connector", "target");
+
+    /** Default max number of requests in flight */
+    private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 100;
+
+    /** Default number of times a failed request is retried */
+    private static final int DEFAULT_MAX_RETRIES = 3;
+
+    /** Default delay before first retry */
+    private static final long DEFAULT_RETRY_BACKOFF_MS = 500;
+
+    /** Default timeout for connecting and waiting for a response */
+    private static final int DEFAULT_REQUEST_TIMEOUT_MS = 10 * 1000;
+
+    /** Default max time allowed for delivering a batch, including retries */
+    private static final long DEFAULT_BATCH_DELIVERY_TIMEOUT_MS = 60 * 1000;
+
+    /** Delay before checking again for a free slot when a retry is due */
+    private static final long RETRY_SLOT_WAIT_MS = 50;
+
+    /** Pooled non-blocking HTTP client */
+    private CloseableHttpAsyncClient client;
+
+    /** Schedules retries of failed requests */
+    private ScheduledExecutorService retries;
+
+    /** Limits number of requests in flight */
+    private Semaphore inFlight;
 
     /** HTTP method to be invoked */
     private String method = "post";
@@ -43,6 +116,24 @@ public class HttpOutboundConnector extends SerialOutboundConnector {
     /** Component for building payload */
     private IPayloadBuilder payloadBuilder;
 
+    /** Max number of requests in flight */
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+    /** Max number of payloads sent in a single request (one for no batching) */
+    private int batchSize = 1;
+
+    /** Number of times a failed request is retried */
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /** Delay before first retry (doubled for each later retry) */
+    private long retryBackoffMs = DEFAULT_RETRY_BACKOFF_MS;
+
+    /** Timeout for connecting and waiting for a response */
+    private int requestTimeoutMs = DEFAULT_REQUEST_TIMEOUT_MS;
+
+    /** Max time allowed for delivering a batch, including retries */
+    private long batchDeliveryTimeoutMs = DEFAULT_BATCH_DELIVERY_TIMEOUT_MS;
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
@@ -89,7 +180,76 @@ public class HttpOutboundConnector extends SerialOutboundConnector {
 	    startNestedComponent(getPayloadBuilder(), monitor, true);
 	}
 
-	this.client = new RestTemplate();
+	// Pool enough connections to keep alive one per request in flight.
+	RequestConfig config = RequestConfig.custom().setConnectTimeout(getRequestTimeoutMs())
+		.setConnectionRequestTimeout(getRequestTimeoutMs()).setSocketTimeout(getRequestTimeoutMs()).build();
+	this.client = HttpAsyncClients.custom().setDefaultRequestConfig(config)
+		.setMaxConnTotal(getMaxInFlightRequests()).setMaxConnPerRoute(getMaxInFlightRequests()).build();
+	getClient().start();
+
+	this.inFlight = new Semaphore(getMaxInFlightRequests());
+	this.retries = Executors.newSingleThreadScheduledExecutor(new RetryThreadFactory());
+    }
+
+    /*
+     * @see
+     * com.sitewhere.connectors.FilteredOutboundConnector#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getClient() != null) {
+	    try {
+		getClient().close();
+	    } catch (IOException e) {
+		getLogger().warn("Unable to close HTTP client.", e);
+	    }
+	}
+
+	// Run pending retries so they fail against the closed client.
+	if (retries != null) {
+	    for (Runnable retry : retries.shutdownNow()) {
+		retry.run();
+	    }
+	}
+	super.stop(monitor);
+    }
+
+    /*
+     * @see com.sitewhere.connectors.SerialOutboundConnector#
+     * processFilteredEventBatch(java.util.List)
+     */
+    @Override
+    public void processFilteredEventBatch(List<IEnrichedEventPayload> payloads) throws SiteWhereException {
+	if ((getUriBuilder() == null) || (getPayloadBuilder() == null)) {
+	    getLogger().warn("Skipping HTTP outbound events due to missing configuration.");
+	    return;
+	}
+	long deadline = System.currentTimeMillis() + getBatchDeliveryTimeoutMs();
+	List<HttpDelivery> pending = new ArrayList<>();
+	Map<String, List<byte[]>> batches = new LinkedHashMap<>();
+	for (IEnrichedEventPayload payload : payloads) {
+	    try {
+		String uri = getUriBuilder().buildUri(this, payload.getEventContext(), payload.getEvent());
+		byte[] body = getPayloadBuilder().buildPayload(this, payload.getEventContext(), payload.getEvent());
+		if (getBatchSize() <= 1) {
+		    pending.add(send(uri, body, ContentType.APPLICATION_OCTET_STREAM, deadline));
+		    continue;
+		}
+		List<byte[]> batch = batches.computeIfAbsent(uri, key -> new ArrayList<>());
+		batch.add(body);
+		if (batch.size() >= getBatchSize()) {
+		    batches.remove(uri);
+		    pending.add(send(uri, asJsonArray(batch), ContentType.APPLICATION_JSON, deadline));
+		}
+	    } catch (Throwable e) {
+		handleFailedRecord(payload, e);
+	    }
+	}
+	for (Map.Entry<String, List<byte[]>> batch : batches.entrySet()) {
+	    pending.add(send(batch.getKey(), asJsonArray(batch.getValue()), ContentType.APPLICATION_JSON, deadline));
+	}
+	awaitDeliveries(pending, deadline);
     }
 
     /*
@@ -167,30 +327,291 @@ public class HttpOutboundConnector extends SerialOutboundConnector {
      * @throws SiteWhereException
      */
     protected void processDeviceEvent(IDeviceEventContext context, IDeviceEvent event) throws SiteWhereException {
+	if ((getUriBuilder() != null) && (getPayloadBuilder() != null)) {
+	    String uri = getUriBuilder().buildUri(this, context, event);
+	    byte[] payload = getPayloadBuilder().buildPayload(this, context, event);
+	    long deadline = System.currentTimeMillis() + getBatchDeliveryTimeoutMs();
+	    HttpDelivery delivery = send(uri, payload, ContentType.APPLICATION_OCTET_STREAM, deadline);
+	    awaitDeliveries(Collections.singletonList(delivery), deadline);
+	} else {
+	    getLogger().warn("Skipping HTTP outbound event due to missing configuration.");
+	}
+    }
+
+    /**
+     * Wait for deliveries to complete. Deliveries still pending once the deadline
+     * has passed are failed. Failures are logged by the delivery.
+     * 
+     * @param deliveries
+     * @param deadline
+     * @throws SiteWhereException
+     */
+    protected void awaitDeliveries(List<HttpDelivery> deliveries, long deadline) throws SiteWhereException {
+	for (HttpDelivery delivery : deliveries) {
+	    try {
+		long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+		delivery.getFuture().get(remaining, TimeUnit.MILLISECONDS);
+	    } catch (TimeoutException e) {
+		delivery.fail(new SiteWhereException("Delivery deadline exceeded."));
+	    } catch (ExecutionException | CancellationException e) {
+		// Already logged.
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted while waiting for HTTP delivery.", e);
+	    }
+	}
+    }
+
+    /**
+     * Send a request asynchronously, blocking only if the max number of requests
+     * are already in flight. If no request completes before the deadline, the
+     * delivery is failed without being sent.
+     * 
+     * @param uri
+     * @param body
+     * @param contentType
+     * @param deadline
+     * @return delivery completed once request succeeds or fails
+     * @throws SiteWhereException
+     */
+    protected HttpDelivery send(String uri, byte[] body, ContentType contentType, long deadline)
+	    throws SiteWhereException {
+	HttpDelivery delivery = new HttpDelivery(uri, body, contentType, deadline);
 	try {
-	    if ((getUriBuilder() != null) && (getPayloadBuilder() != null)) {
-		String uri = getUriBuilder().buildUri(this, context, event);
-		byte[] payload = getPayloadBuilder().buildPayload(this, context, event);
-		if ("post".equalsIgnoreCase(method)) {
-		    getClient().postForLocation(uri, payload);
-		} else if ("put".equalsIgnoreCase(method)) {
-		    getClient().put(uri, payload);
+	    long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+	    if (!getInFlight().tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+		delivery.fail(new SiteWhereException("Delivery deadline exceeded waiting to send request."));
+		return delivery;
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting to send HTTP request.", e);
+	}
+	delivery.execute();
+	return delivery;
+    }
+
+    /**
+     * Combine JSON payloads into a JSON array.
+     * 
+     * @param payloads
+     * @return
+     */
+    protected static byte[] asJsonArray(List<byte[]> payloads) {
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	out.write('[');
+	for (int i = 0; i < payloads.size(); i++) {
+	    if (i > 0) {
+		out.write(',');
+	    }
+	    out.write(payloads.get(i), 0, payloads.get(i).length);
+	}
+	out.write(']');
+	return out.toByteArray();
+    }
+
+    /**
+     * Get target used to label metrics for a URI. Only scheme, host and port are
+     * used, since paths often contain device-specific values.
+     * 
+     * @param uri
+     * @return
+     */
+    protected static String getTarget(String uri) {
+	try {
+	    URI parsed = URI.create(uri);
+	    if (parsed.getAuthority() != null) {
+		return parsed.getScheme() + "://" + parsed.getAuthority();
+	    }
+	} catch (IllegalArgumentException e) {
+	    // Fall through.
+	}
+	return "unknown";
+    }
+
+    /**
+     * Delivery of a single request, including any retries. A slot of the
+     * in-flight limit is held while an attempt is outstanding and released while
+     * waiting for a retry.
+     * 
+     * @author Derek
+     */
+    protected class HttpDelivery {
+
+	/** Request URI */
+	private String uri;
+
+	/** Target used for metrics */
+	private String target;
+
+	/** Request body */
+	private byte[] body;
+
+	/** Request content type */
+	private ContentType contentType;
+
+	/** Time by which delivery must complete */
+	private long deadline;
+
+	/** Number of attempts made */
+	private volatile int attempts;
+
+	/** Completed once delivery succeeds or fails */
+	private CompletableFuture<Void> future = new CompletableFuture<>();
+
+	public HttpDelivery(String uri, byte[] body, ContentType contentType, long deadline) {
+	    this.uri = uri;
+	    this.target = getTarget(uri);
+	    this.body = body;
+	    this.contentType = contentType;
+	    this.deadline = deadline;
+	}
+
+	/**
+	 * Make an attempt to send the request. A slot of the in-flight limit must
+	 * have been acquired and is released once the attempt finishes.
+	 */
+	public void execute() {
+	    attempts++;
+	    long start = System.nanoTime();
+	    AtomicBoolean finished = new AtomicBoolean();
+	    Runnable release = () -> {
+		if (finished.compareAndSet(false, true)) {
+		    getInFlight().release();
+		}
+	    };
+	    try {
+		HttpEntityEnclosingRequestBase request = "put".equalsIgnoreCase(getMethod()) ? new HttpPut(uri)
+			: new HttpPost(uri);
+		request.setEntity(new ByteArrayEntity(body, contentType));
+		getClient().execute(request, new FutureCallback<HttpResponse>() {
+
+		    @Override
+		    public void completed(HttpResponse response) {
+			release.run();
+			observeDuration(start);
+			EntityUtils.consumeQuietly(response.getEntity());
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 400) {
+			    future.complete(null);
+			} else {
+			    retryOrFail(new SiteWhereException("Received HTTP status " + status + "."),
+				    (status >= 500) || (status == 429));
+			}
+		    }
+
+		    @Override
+		    public void failed(Exception e) {
+			release.run();
+			observeDuration(start);
+			retryOrFail(e, true);
+		    }
+
+		    @Override
+		    public void cancelled() {
+			release.run();
+			retryOrFail(new SiteWhereException("HTTP request was cancelled."), false);
+		    }
+		});
+	    } catch (Throwable t) {
+		release.run();
+		retryOrFail(t, false);
+	    }
+	}
+
+	/**
+	 * Schedule another attempt if allowed and it can start before the deadline,
+	 * otherwise fail delivery.
+	 * 
+	 * @param cause
+	 * @param retryable
+	 */
+	protected void retryOrFail(Throwable cause, boolean retryable) {
+	    if (future.isDone()) {
+		return;
+	    }
+	    long backoff = getRetryBackoffMs() << Math.min(attempts - 1, 16);
+	    if (retryable && (attempts <= getMaxRetries()) && (System.currentTimeMillis() + backoff < deadline)) {
+		try {
+		    retries.schedule(() -> retry(), backoff, TimeUnit.MILLISECONDS);
+		    return;
+		} catch (RejectedExecutionException e) {
+		    // Connector is stopping.
 		}
-	    } else {
-		getLogger().warn("Skipping HTTP outbound event due to missing configuration.");
 	    }
-	} catch (RestClientException e) {
-	    getLogger().error(String.format("Unable to send HTTP payload: %s", e.getMessage()));
-	    if (getLogger().isDebugEnabled()) {
-		getLogger().error("Error sending payload via REST client.", e);
+	    fail(cause);
+	}
+
+	/**
+	 * Make another attempt once a slot of the in-flight limit is free. The
+	 * retry thread is not blocked while waiting for a slot.
+	 */
+	protected void retry() {
+	    if (future.isDone()) {
+		return;
+	    }
+	    if (System.currentTimeMillis() >= deadline) {
+		fail(new SiteWhereException("Delivery deadline exceeded before retry."));
+		return;
+	    }
+	    if (!getInFlight().tryAcquire()) {
+		try {
+		    retries.schedule(() -> retry(), RETRY_SLOT_WAIT_MS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+		    fail(new SiteWhereException("HTTP connector stopped before retry."));
+		}
+		return;
+	    }
+	    execute();
+	}
+
+	/**
+	 * Fail delivery if not already completed.
+	 * 
+	 * @param cause
+	 */
+	public void fail(Throwable cause) {
+	    if (future.completeExceptionally(cause)) {
+		FAILED_REQUESTS.labels(buildLabels(getConnectorId(), target)).inc();
+		getLogger().error(String.format("Unable to send HTTP payload to %s after %d attempt(s): %s", uri,
+			attempts, cause.getMessage()));
 	    }
 	}
+
+	/**
+	 * Record duration of an attempt.
+	 * 
+	 * @param start
+	 */
+	protected void observeDuration(long start) {
+	    REQUEST_DURATION.labels(buildLabels(getConnectorId(), target))
+		    .observe((System.nanoTime() - start) / 1000000000.0);
+	}
+
+	public CompletableFuture<Void> getFuture() {
+	    return future;
+	}
+    }
+
+    /** Used for naming retry threads */
+    private class RetryThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "HTTP Retry " + counter.incrementAndGet());
+	}
     }
 
-    protected RestTemplate getClient() {
+    protected CloseableHttpAsyncClient getClient() {
 	return client;
     }
 
+    protected Semaphore getInFlight() {
+	return inFlight;
+    }
+
     public IUriBuilder getUriBuilder() {
 	return uriBuilder;
     }
@@ -214,4 +635,52 @@ public class HttpOutboundConnector extends SerialOutboundConnector {
     public void setMethod(String method) {
 	this.method = method;
     }
+
+    public int getMaxInFlightRequests() {
+	return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+	this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public int getBatchSize() {
+	return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
+
+    public int getMaxRetries() {
+	return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+	this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMs() {
+	return retryBackoffMs;
+    }
+
+    public void setRetryBackoffMs(long retryBackoffMs) {
+	this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public int getRequestTimeoutMs() {
+	return requestTimeoutMs;
+    }
+
+    public void setRequestTimeoutMs(int requestTimeoutMs) {
+	this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    public long getBatchDeliveryTimeoutMs() {
+	return batchDeliveryTimeoutMs;
+    }
+
+    public void setBatchDeliveryTimeoutMs(long batchDeliveryTimeoutMs) {
+	this.batchDeliveryTimeoutMs = batchDeliveryTimeoutMs;
+    }
 }
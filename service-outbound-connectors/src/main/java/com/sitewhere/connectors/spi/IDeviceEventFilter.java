@@ -7,9 +7,12 @@
  */
 package com.sitewhere.connectors.spi;
 
+import java.util.List;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.IDeviceEvent;
 import com.sitewhere.spi.device.event.IDeviceEventContext;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 
 /**
@@ -28,4 +31,14 @@ public interface IDeviceEventFilter extends ITenantEngineLifecycleComponent {
      * @throws SiteWhereException
      */
     public boolean isFiltered(IDeviceEventContext context, IDeviceEvent event) throws SiteWhereException;
+
+    /**
+     * Get the payloads from a batch that are not filtered. Allows filters to do
+     * any lookups once per batch rather than once per event.
+     * 
+     * @param payloads
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IEnrichedEventPayload> getUnfiltered(List<IEnrichedEventPayload> payloads) throws SiteWhereException;
 }
\ No newline at end of file
@@ -424,6 +424,36 @@ public class OutboundConnectorsParser extends AbstractBeanDefinitionParser {
 	    connector.addPropertyValue("method", method.getValue());
 	}
 
+	Attr maxInFlightRequests = element.getAttributeNode("maxInFlightRequests");
+	if (maxInFlightRequests != null) {
+	    connector.addPropertyValue("maxInFlightRequests", maxInFlightRequests.getValue());
+	}
+
+	Attr batchSize = element.getAttributeNode("batchSize");
+	if (batchSize != null) {
+	    connector.addPropertyValue("batchSize", batchSize.getValue());
+	}
+
+	Attr maxRetries = element.getAttributeNode("maxRetries");
+	if (maxRetries != null) {
+	    connector.addPropertyValue("maxRetries", maxRetries.getValue());
+	}
+
+	Attr retryBackoffMs = element.getAttributeNode("retryBackoffMs");
+	if (retryBackoffMs != null) {
+	    connector.addPropertyValue("retryBackoffMs", retryBackoffMs.getValue());
+	}
+
+	Attr requestTimeoutMs = element.getAttributeNode("requestTimeoutMs");
+	if (requestTimeoutMs != null) {
+	    connector.addPropertyValue("requestTimeoutMs", requestTimeoutMs.getValue());
+	}
+
+	Attr batchDeliveryTimeoutMs = element.getAttributeNode("batchDeliveryTimeoutMs");
+	if (batchDeliveryTimeoutMs != null) {
+	    connector.addPropertyValue("batchDeliveryTimeoutMs", batchDeliveryTimeoutMs.getValue());
+	}
+
 	// Parse URI builder.
 	connector.addPropertyValue("uriBuilder", parseUriBuilder(element, context));
 
@@ -557,6 +587,11 @@ public class OutboundConnectorsParser extends AbstractBeanDefinitionParser {
 	}
 	filter.addPropertyValue("areaToken", areaToken.getValue());
 
+	Attr includeSubareas = element.getAttributeNode("includeSubareas");
+	if (includeSubareas != null) {
+	    filter.addPropertyValue("includeSubareas", includeSubareas.getValue());
+	}
+
 	Attr operation = element.getAttributeNode("operation");
 	if (operation != null) {
 	    FilterOperation op = "include".equals(operation.getValue()) ? FilterOperation.Include
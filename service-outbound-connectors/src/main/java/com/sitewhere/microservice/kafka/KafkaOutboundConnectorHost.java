@@ -9,17 +9,9 @@ package com.sitewhere.microservice.kafka;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
 
 import com.sitewhere.common.MarshalUtils;
@@ -49,9 +41,6 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     /** Get wrapped outbound connector implementation */
     private IOutboundConnector outboundConnector;
 
-    /** Batch processors executor */
-    private ExecutorService batchProcessors;
-
     public KafkaOutboundConnectorHost(IOutboundConnector outboundConnector) {
 	this.outboundConnector = outboundConnector;
     }
@@ -110,14 +99,21 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
 	// Start the wrapped connector component.
 	startNestedComponent(getOutboundConnector(), monitor, true);
 
+	int numLanes = getProcessingLaneCount();
+	getLogger().info(String.format("Connector host starting connector with %d processing %s.", numLanes,
+		numLanes == 1 ? "lane" : "lanes"));
+
 	// Only start the consumer if outbound connector started successfully.
 	super.start(monitor);
+    }
 
-	int numThreads = getOutboundConnector().getNumProcessingThreads();
-	getLogger().info(String.format("Connector host starting connector with pool of %d %s.", numThreads,
-		numThreads == 1 ? "thread" : "threads"));
-	this.batchProcessors = Executors.newFixedThreadPool(getOutboundConnector().getNumProcessingThreads(),
-		new EventPayloadProcessorThreadFactory());
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * getProcessingLaneCount()
+     */
+    @Override
+    protected int getProcessingLaneCount() {
+	return getOutboundConnector().getNumProcessingThreads();
     }
 
     /*
@@ -129,14 +125,6 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	super.stop(monitor);
-	if (getBatchProcessors() != null) {
-	    getBatchProcessors().shutdown();
-	    try {
-		getBatchProcessors().awaitTermination(10, TimeUnit.SECONDS);
-	    } catch (InterruptedException e) {
-		getLogger().error("Batch processors for connector did not terminate within timout period.");
-	    }
-	}
 
 	// Stop the wrapped connector component.
 	stopNestedComponent(getOutboundConnector(), monitor);
@@ -151,16 +139,7 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
 	if (getOutboundConnector().getLifecycleStatus() == LifecycleStatus.Started) {
 	    if (records.size() > 0) {
-		getBatchProcessors().execute(new TopicBatchProcessor(topicPartition, records));
-
-		// Send new offset information.
-		getConsumer().commitAsync(new OffsetCommitCallback() {
-		    public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
-			if (e != null) {
-			    getLogger().error("Commit failed for offsets " + offsets, e);
-			}
-		    }
-		});
+		new TopicBatchProcessor(topicPartition, records).run();
 	    }
 	} else {
 	    getLogger().warn("Skipping record batch due to outbound connector not in started state.");
@@ -171,10 +150,6 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
 	return outboundConnector;
     }
 
-    protected ExecutorService getBatchProcessors() {
-	return batchProcessors;
-    }
-
     /**
      * Processor that unmarshals an enriched event and forwards it to outbound
      * connector implementation.
@@ -243,16 +218,4 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
 	    this.records = records;
 	}
     }
-
-    /** Used for naming outbound event processing threads */
-    private class EventPayloadProcessorThreadFactory implements ThreadFactory {
-
-	/** Counts threads */
-	private AtomicInteger counter = new AtomicInteger();
-
-	public Thread newThread(Runnable r) {
-	    return new Thread(r, "Outbound Connector '" + getOutboundConnector().getConnectorId() + "' "
-		    + counter.incrementAndGet());
-	}
-    }
 }
\ No newline at end of file
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.connectors.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sitewhere.connectors.spi.IOutboundConnector;
+import com.sitewhere.connectors.spi.common.IPayloadBuilder;
+import com.sitewhere.connectors.spi.common.IUriBuilder;
+import com.sitewhere.rest.model.device.event.DeviceMeasurement;
+import com.sitewhere.rest.model.device.event.kafka.EnrichedEventPayload;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventContext;
+import com.sitewhere.spi.device.event.IDeviceMeasurement;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link HttpOutboundConnector} against a local HTTP server.
+ */
+public class HttpOutboundConnectorTest {
+
+    /** Local HTTP server */
+    private HttpServer server;
+
+    /** Executor for server requests */
+    private ExecutorService serverExecutor;
+
+    /** Connector being tested */
+    private HttpOutboundConnector connector;
+
+    /** Path requests are sent to */
+    private volatile String path;
+
+    /** Number of requests received */
+    private AtomicInteger requests = new AtomicInteger();
+
+    /** Bodies of successful requests */
+    private List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+
+    /** Content types of successful requests */
+    private List<String> contentTypes = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setup() throws Exception {
+	server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+	serverExecutor = Executors.newFixedThreadPool(10);
+	server.setExecutor(serverExecutor);
+	server.createContext("/ok", exchange -> {
+	    requests.incrementAndGet();
+	    bodies.add(read(exchange.getRequestBody()));
+	    contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+	    respond(exchange, 200);
+	});
+	server.createContext("/flaky", exchange -> {
+	    respond(exchange, (requests.incrementAndGet() < 3) ? 503 : 200);
+	});
+	server.createContext("/unavailable", exchange -> {
+	    requests.incrementAndGet();
+	    respond(exchange, 503);
+	});
+	server.createContext("/bad", exchange -> {
+	    requests.incrementAndGet();
+	    respond(exchange, 400);
+	});
+	server.start();
+
+	connector = new TestHttpOutboundConnector();
+	connector.setConnectorId("test");
+	connector.setMaxInFlightRequests(10);
+	connector.setRetryBackoffMs(50);
+	connector.start(null);
+	connector.setUriBuilder(new TestUriBuilder());
+	connector.setPayloadBuilder(new TestPayloadBuilder());
+    }
+
+    @After
+    public void teardown() throws Exception {
+	connector.stop(null);
+	server.stop(0);
+	serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testRetryServerError() throws Exception {
+	path = "/flaky";
+	connector.processFilteredEventBatch(payloads(1));
+	assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testNoRetryClientError() throws Exception {
+	path = "/bad";
+	connector.processFilteredEventBatch(payloads(1));
+	assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+	path = "/ok";
+	connector.setBatchSize(8);
+	connector.processFilteredEventBatch(payloads(20));
+	assertEquals(3, requests.get());
+	List<String> sorted = new ArrayList<String>(bodies);
+	Collections.sort(sorted);
+	assertEquals("[{\"value\":0.0},{\"value\":1.0},{\"value\":2.0},{\"value\":3.0},{\"value\":4.0},"
+		+ "{\"value\":5.0},{\"value\":6.0},{\"value\":7.0}]", sorted.get(0));
+	assertEquals("[{\"value\":16.0},{\"value\":17.0},{\"value\":18.0},{\"value\":19.0}]", sorted.get(1));
+	for (String contentType : contentTypes) {
+	    assertTrue(contentType.startsWith("application/json"));
+	}
+    }
+
+    @Test
+    public void testBatchDeadline() throws Exception {
+	path = "/unavailable";
+	connector.setMaxRetries(100);
+	connector.setBatchDeliveryTimeoutMs(500);
+	long start = System.currentTimeMillis();
+	connector.processFilteredEventBatch(payloads(1));
+	assertTrue(System.currentTimeMillis() - start < 2000);
+	assertTrue(requests.get() < 10);
+    }
+
+    @Test
+    public void testSlotReleasedDuringBackoff() throws Exception {
+	connector.stop(null);
+	connector = new TestHttpOutboundConnector();
+	connector.setConnectorId("test");
+	connector.setMaxInFlightRequests(1);
+	connector.setMaxRetries(1);
+	connector.setRetryBackoffMs(1000);
+	connector.start(null);
+	connector.setPayloadBuilder(new TestPayloadBuilder());
+
+	// First event keeps failing, second should be sent while first backs off.
+	AtomicLong okTime = new AtomicLong();
+	server.createContext("/slot", exchange -> {
+	    respond(exchange, 200);
+	    okTime.set(System.currentTimeMillis());
+	});
+	connector.setUriBuilder(new TestUriBuilder() {
+
+	    @Override
+	    public String buildUri(IOutboundConnector connector, IDeviceEventContext context, IDeviceEvent event)
+		    throws SiteWhereException {
+		path = (((IDeviceMeasurement) event).getValue() == 0) ? "/unavailable" : "/slot";
+		return super.buildUri(connector, context, event);
+	    }
+	});
+	long start = System.currentTimeMillis();
+	connector.processFilteredEventBatch(payloads(2));
+	assertTrue(okTime.get() > 0);
+	assertTrue(okTime.get() - start < 1000);
+	assertEquals(2, requests.get());
+    }
+
+    /**
+     * Create payloads with measurement values counting up from zero.
+     * 
+     * @param count
+     * @return
+     */
+    protected static List<IEnrichedEventPayload> payloads(int count) {
+	List<IEnrichedEventPayload> payloads = new ArrayList<IEnrichedEventPayload>();
+	for (int i = 0; i < count; i++) {
+	    DeviceMeasurement measurement = new DeviceMeasurement();
+	    measurement.setName("value");
+	    measurement.setValue((double) i);
+	    EnrichedEventPayload payload = new EnrichedEventPayload();
+	    payload.setEvent(measurement);
+	    payloads.add(payload);
+	}
+	return payloads;
+    }
+
+    /**
+     * Read request body as a string.
+     * 
+     * @param input
+     * @return
+     * @throws IOException
+     */
+    protected static String read(InputStream input) throws IOException {
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	byte[] buffer = new byte[1024];
+	int length;
+	while ((length = input.read(buffer)) > 0) {
+	    output.write(buffer, 0, length);
+	}
+	return output.toString("UTF-8");
+    }
+
+    /**
+     * Send an empty response with the given status.
+     * 
+     * @param exchange
+     * @param status
+     * @throws IOException
+     */
+    protected static void respond(HttpExchange exchange, int status) throws IOException {
+	read(exchange.getRequestBody());
+	exchange.sendResponseHeaders(status, -1);
+	exchange.close();
+    }
+
+    /**
+     * Connector with fixed metric labels since no tenant engine is available.
+     */
+    private static class TestHttpOutboundConnector extends HttpOutboundConnector {
+
+	/*
+	 * @see com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent#
+	 * buildLabels(java.lang.String[])
+	 */
+	@Override
+	public String[] buildLabels(String... labels) {
+	    List<String> all = new ArrayList<String>();
+	    Collections.addAll(all, "test", "test", "test");
+	    Collections.addAll(all, labels);
+	    return all.toArray(new String[all.size()]);
+	}
+    }
+
+    /**
+     * Builds URIs for the current path on the local server.
+     */
+    private class TestUriBuilder extends TenantEngineLifecycleComponent implements IUriBuilder {
+
+	/*
+	 * @see
+	 * com.sitewhere.connectors.spi.common.IUriBuilder#buildUri(com.sitewhere.
+	 * connectors.spi.IOutboundConnector,
+	 * com.sitewhere.spi.device.event.IDeviceEventContext,
+	 * com.sitewhere.spi.device.event.IDeviceEvent)
+	 */
+	@Override
+	public String buildUri(IOutboundConnector connector, IDeviceEventContext context, IDeviceEvent event)
+		throws SiteWhereException {
+	    return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+    }
+
+    /**
+     * Builds a JSON payload containing the measurement value.
+     */
+    private static class TestPayloadBuilder extends TenantEngineLifecycleComponent implements IPayloadBuilder {
+
+	/*
+	 * @see
+	 * com.sitewhere.connectors.spi.common.IPayloadBuilder#buildPayload(com.
+	 * sitewhere.connectors.spi.IOutboundConnector,
+	 * com.sitewhere.spi.device.event.IDeviceEventContext,
+	 * com.sitewhere.spi.device.event.IDeviceEvent)
+	 */
+	@Override
+	public byte[] buildPayload(IOutboundConnector connector, IDeviceEventContext context, IDeviceEvent event)
+		throws SiteWhereException {
+	    return ("{\"value\":" + ((IDeviceMeasurement) event).getValue() + "}").getBytes();
+	}
+    }
+}
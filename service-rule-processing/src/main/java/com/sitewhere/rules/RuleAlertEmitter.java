@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rules;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
+import com.sitewhere.microservice.security.SystemUserRunnable;
+import com.sitewhere.rules.spi.IRuleAlertEmitter;
+import com.sitewhere.rules.spi.microservice.IRuleProcessingMicroservice;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.microservice.IMicroservice;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.tenant.ITenant;
+
+import io.grpc.stub.StreamObserver;
+import io.prometheus.client.Counter;
+
+/**
+ * Queues alerts generated by rule processors and sends them with the
+ * asynchronous event management API. Alerts queued for the same device
+ * assignment are sent together in a single call, and only one call per
+ * assignment is in flight at a time so alerts for an assignment are stored in
+ * order. The total number of calls in flight is bounded, and callers only
+ * block if the queue is full.
+ *
+ * @author Derek
+ */
+public class RuleAlertEmitter extends TenantEngineLifecycleComponent implements IRuleAlertEmitter {
+
+    /** Default max number of calls in flight */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    /** Default max number of alerts sent in a single call */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /** Default max number of queued alerts */
+    private static final int DEFAULT_MAX_QUEUED = 10000;
+
+    /** Max number of milliseconds to wait for space in a full queue */
+    private static final int MAX_QUEUE_WAIT = 5000;
+
+    /** Max number of seconds to wait for queued alerts on shutdown */
+    private static final int SHUTDOWN_TIMEOUT_SECS = 10;
+
+    /** Counter for alerts that could not be stored */
+    private static final Counter FAILED_ALERTS = createCounterMetric("rule_alert_emitter_failed_alerts",
+	    "Count of rule processor alerts that could not be stored");
+
+    /** Max number of calls in flight */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /** Max number of alerts sent in a single call */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /** Max number of queued alerts */
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+
+    /** Queued alerts by device assignment */
+    private Map<UUID, List<PendingAlert>> queued = new LinkedHashMap<>();
+
+    /** Number of queued alerts */
+    private int queuedCount;
+
+    /** Assignments with a call in flight */
+    private Set<UUID> inFlight = new HashSet<>();
+
+    /** Limits number of calls in flight */
+    private Semaphore permits;
+
+    /** Runs the sender thread */
+    private ExecutorService executor;
+
+    /** Indicates whether emitter is accepting alerts */
+    private volatile boolean running = false;
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.permits = new Semaphore(Math.max(1, getMaxInFlight()));
+	this.executor = Executors.newSingleThreadExecutor(new SenderThreadFactory());
+	this.running = true;
+	executor.execute(new AlertSender(getMicroservice(), getTenantEngine().getTenant()));
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	synchronized (this) {
+	    this.running = false;
+	    notifyAll();
+	}
+	if (executor != null) {
+	    executor.shutdown();
+	    try {
+		if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    getLogger().warn("Rule alert emitter did not send queued alerts within timeout period.");
+		    executor.shutdownNow();
+		}
+	    } catch (InterruptedException e) {
+		executor.shutdownNow();
+		Thread.currentThread().interrupt();
+	    }
+	}
+	failQueued();
+    }
+
+    /*
+     * @see
+     * com.sitewhere.rules.spi.IRuleAlertEmitter#addDeviceAlert(java.util.UUID,
+     * com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest)
+     */
+    @Override
+    public synchronized CompletableFuture<IDeviceAlert> addDeviceAlert(UUID deviceAssignmentId,
+	    IDeviceAlertCreateRequest request) throws SiteWhereException {
+	long deadline = System.currentTimeMillis() + MAX_QUEUE_WAIT;
+	try {
+	    while (running && (queuedCount >= getMaxQueued())) {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+		    throw new SiteWhereException("Timed out waiting for space in rule alert queue.");
+		}
+		wait(remaining);
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while queueing rule alert.", e);
+	}
+	if (!running) {
+	    throw new SiteWhereException("Rule alert emitter is not accepting alerts.");
+	}
+	PendingAlert pending = new PendingAlert(request);
+	List<PendingAlert> forAssignment = queued.get(deviceAssignmentId);
+	if (forAssignment == null) {
+	    forAssignment = new ArrayList<>();
+	    queued.put(deviceAssignmentId, forAssignment);
+	}
+	forAssignment.add(pending);
+	queuedCount++;
+	notifyAll();
+	return pending.getResult();
+    }
+
+    /**
+     * Wait for alerts queued for an assignment without a call in flight and
+     * remove them from the queue.
+     *
+     * @return batch or null if stopped with nothing left to send
+     * @throws InterruptedException
+     */
+    protected synchronized AlertBatch nextBatch() throws InterruptedException {
+	while (true) {
+	    Iterator<Map.Entry<UUID, List<PendingAlert>>> it = queued.entrySet().iterator();
+	    while (it.hasNext()) {
+		Map.Entry<UUID, List<PendingAlert>> entry = it.next();
+		if (inFlight.contains(entry.getKey())) {
+		    continue;
+		}
+		List<PendingAlert> all = entry.getValue();
+		List<PendingAlert> alerts;
+		if (all.size() <= getMaxBatchSize()) {
+		    alerts = all;
+		    it.remove();
+		} else {
+		    alerts = new ArrayList<>(all.subList(0, getMaxBatchSize()));
+		    all.subList(0, getMaxBatchSize()).clear();
+		}
+		queuedCount -= alerts.size();
+		inFlight.add(entry.getKey());
+		notifyAll();
+		return new AlertBatch(entry.getKey(), alerts);
+	    }
+	    if (!running && queued.isEmpty()) {
+		return null;
+	    }
+	    wait();
+	}
+    }
+
+    /**
+     * Send a batch of alerts for an assignment. The permit and assignment are
+     * released once the call completes.
+     *
+     * @param batch
+     */
+    protected void send(AlertBatch batch) {
+	IDeviceAlertCreateRequest[] requests = new IDeviceAlertCreateRequest[batch.getAlerts().size()];
+	for (int i = 0; i < requests.length; i++) {
+	    requests[i] = batch.getAlerts().get(i).getRequest();
+	}
+	AlertObserver observer = new AlertObserver(batch);
+	try {
+	    getDeviceEventManagementApiChannel().addDeviceAlerts(batch.getDeviceAssignmentId(), observer, requests);
+	} catch (Throwable t) {
+	    observer.onError(t);
+	}
+    }
+
+    /**
+     * Called when a call for a batch completes.
+     *
+     * @param batch
+     */
+    protected void release(AlertBatch batch) {
+	synchronized (this) {
+	    inFlight.remove(batch.getDeviceAssignmentId());
+	    notifyAll();
+	}
+	permits.release();
+    }
+
+    /**
+     * Fail any alerts left in the queue.
+     */
+    protected synchronized void failQueued() {
+	for (List<PendingAlert> alerts : queued.values()) {
+	    for (PendingAlert alert : alerts) {
+		FAILED_ALERTS.labels(buildLabels()).inc();
+		alert.getResult().completeExceptionally(
+			new SiteWhereException("Rule alert emitter stopped before alert was sent."));
+	    }
+	}
+	queued.clear();
+	queuedCount = 0;
+    }
+
+    protected IDeviceEventManagementApiChannel<?> getDeviceEventManagementApiChannel() {
+	return ((IRuleProcessingMicroservice) getTenantEngine().getMicroservice())
+		.getDeviceEventManagementApiChannel();
+    }
+
+    public int getMaxInFlight() {
+	return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+	this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxBatchSize() {
+	return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+	this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxQueued() {
+	return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+	this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Alert waiting to be sent along with the result reported to the caller.
+     *
+     * @author Derek
+     */
+    private static class PendingAlert {
+
+	/** Alert request */
+	private IDeviceAlertCreateRequest request;
+
+	/** Completed once alert is stored */
+	private CompletableFuture<IDeviceAlert> result = new CompletableFuture<>();
+
+	public PendingAlert(IDeviceAlertCreateRequest request) {
+	    this.request = request;
+	}
+
+	public IDeviceAlertCreateRequest getRequest() {
+	    return request;
+	}
+
+	public CompletableFuture<IDeviceAlert> getResult() {
+	    return result;
+	}
+    }
+
+    /**
+     * Alerts sent for an assignment in a single call.
+     *
+     * @author Derek
+     */
+    private static class AlertBatch {
+
+	/** Device assignment id */
+	private UUID deviceAssignmentId;
+
+	/** Alerts in batch */
+	private List<PendingAlert> alerts;
+
+	public AlertBatch(UUID deviceAssignmentId, List<PendingAlert> alerts) {
+	    this.deviceAssignmentId = deviceAssignmentId;
+	    this.alerts = alerts;
+	}
+
+	public UUID getDeviceAssignmentId() {
+	    return deviceAssignmentId;
+	}
+
+	public List<PendingAlert> getAlerts() {
+	    return alerts;
+	}
+    }
+
+    /**
+     * Completes alert results when a call returns.
+     *
+     * @author Derek
+     */
+    private class AlertObserver implements StreamObserver<IDeviceAlert> {
+
+	/** Batch being sent */
+	private AlertBatch batch;
+
+	/** Alerts returned so far */
+	private List<IDeviceAlert> created = new ArrayList<>();
+
+	/** Indicates whether call has finished */
+	private boolean finished = false;
+
+	public AlertObserver(AlertBatch batch) {
+	    this.batch = batch;
+	}
+
+	/*
+	 * @see io.grpc.stub.StreamObserver#onNext(java.lang.Object)
+	 */
+	@Override
+	public synchronized void onNext(IDeviceAlert value) {
+	    created.add(value);
+	}
+
+	/*
+	 * @see io.grpc.stub.StreamObserver#onError(java.lang.Throwable)
+	 */
+	@Override
+	public void onError(Throwable t) {
+	    synchronized (this) {
+		if (finished) {
+		    return;
+		}
+		this.finished = true;
+	    }
+	    getLogger().error("Unable to store " + batch.getAlerts().size() + " rule alerts.", t);
+	    for (PendingAlert alert : batch.getAlerts()) {
+		FAILED_ALERTS.labels(buildLabels()).inc();
+		alert.getResult().completeExceptionally(new SiteWhereException("Unable to store rule alert.", t));
+	    }
+	    release(batch);
+	}
+
+	/*
+	 * @see io.grpc.stub.StreamObserver#onCompleted()
+	 */
+	@Override
+	public void onCompleted() {
+	    synchronized (this) {
+		if (finished) {
+		    return;
+		}
+		this.finished = true;
+	    }
+	    List<PendingAlert> alerts = batch.getAlerts();
+	    for (int i = 0; i < alerts.size(); i++) {
+		alerts.get(i).getResult().complete((i < created.size()) ? created.get(i) : null);
+	    }
+	    release(batch);
+	}
+    }
+
+    /**
+     * Thread that sends queued alerts while there are permits available.
+     *
+     * @author Derek
+     */
+    private class AlertSender extends SystemUserRunnable {
+
+	public AlertSender(IMicroservice<?> microservice, ITenant tenant) {
+	    super(microservice, tenant);
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserRunnable#
+	 * runAsSystemUser()
+	 */
+	@Override
+	public void runAsSystemUser() throws SiteWhereException {
+	    try {
+		while (true) {
+		    permits.acquire();
+		    AlertBatch batch = nextBatch();
+		    if (batch == null) {
+			permits.release();
+			break;
+		    }
+		    send(batch);
+		}
+
+		// Wait for calls in flight to complete.
+		if (!permits.tryAcquire(Math.max(1, getMaxInFlight()), SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    getLogger().warn("Rule alerts still in flight at shutdown.");
+		}
+	    } catch (InterruptedException e) {
+		getLogger().warn("Rule alert sender interrupted before queued alerts were sent.");
+	    }
+	}
+    }
+
+    /** Used for naming sender thread */
+    private class SenderThreadFactory implements ThreadFactory {
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Rule Alert Sender");
+	}
+    }
+}
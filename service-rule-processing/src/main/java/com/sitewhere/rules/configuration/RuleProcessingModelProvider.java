@@ -123,6 +123,10 @@ public class RuleProcessingModelProvider extends ConfigurationModelProvider {
 			.choice("Critical", "critical").build()));
 	builder.attribute((new AttributeNode.Builder("Alert message", "alertMessage", AttributeType.String,
 		ConfigurationModelProvider.ATTR_GROUP_GENERAL).description("Message shown for alert.").build()));
+	builder.attribute((new AttributeNode.Builder("Dwell time (seconds)", "dwellTimeSecs", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_GENERAL)
+			.description("Number of seconds condition must be met before alert is generated.")
+			.defaultValue("0").build()));
 	return builder.build();
     }
 
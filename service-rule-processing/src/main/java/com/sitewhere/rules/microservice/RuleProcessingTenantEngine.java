@@ -8,6 +8,8 @@
 package com.sitewhere.rules.microservice;
 
 import com.sitewhere.microservice.multitenant.MicroserviceTenantEngine;
+import com.sitewhere.rules.RuleAlertEmitter;
+import com.sitewhere.rules.spi.IRuleAlertEmitter;
 import com.sitewhere.rules.spi.IRuleProcessorsManager;
 import com.sitewhere.rules.spi.microservice.IRuleProcessingTenantEngine;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
@@ -30,6 +32,9 @@ public class RuleProcessingTenantEngine extends MicroserviceTenantEngine impleme
     /** Rule processors manager */
     private IRuleProcessorsManager ruleProcessorsManager;
 
+    /** Emitter for alerts generated by rule processors */
+    private IRuleAlertEmitter ruleAlertEmitter = new RuleAlertEmitter();
+
     public RuleProcessingTenantEngine(ITenant tenant) {
 	super(tenant);
     }
@@ -48,6 +53,9 @@ public class RuleProcessingTenantEngine extends MicroserviceTenantEngine impleme
 	// Create step that will initialize components.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getComponentName());
 
+	// Initialize rule alert emitter.
+	init.addInitializeStep(this, getRuleAlertEmitter(), true);
+
 	// Initialize rule processors manager.
 	init.addInitializeStep(this, getRuleProcessorsManager(), true);
 
@@ -64,6 +72,9 @@ public class RuleProcessingTenantEngine extends MicroserviceTenantEngine impleme
 	// Create step that will start components.
 	ICompositeLifecycleStep start = new CompositeLifecycleStep("Start " + getComponentName());
 
+	// Start rule alert emitter.
+	start.addStartStep(this, getRuleAlertEmitter(), true);
+
 	// Start rule processors manager.
 	start.addStartStep(this, getRuleProcessorsManager(), true);
 
@@ -93,6 +104,9 @@ public class RuleProcessingTenantEngine extends MicroserviceTenantEngine impleme
 	// Stop rule processors manager.
 	start.addStopStep(this, getRuleProcessorsManager());
 
+	// Stop rule alert emitter after processors so queued alerts are sent.
+	start.addStopStep(this, getRuleAlertEmitter());
+
 	// Execute shutdown steps.
 	start.execute(monitor);
     }
@@ -109,4 +123,17 @@ public class RuleProcessingTenantEngine extends MicroserviceTenantEngine impleme
     public void setRuleProcessorsManager(IRuleProcessorsManager ruleProcessorsManager) {
 	this.ruleProcessorsManager = ruleProcessorsManager;
     }
+
+    /*
+     * @see com.sitewhere.rules.spi.microservice.IRuleProcessingTenantEngine#
+     * getRuleAlertEmitter()
+     */
+    @Override
+    public IRuleAlertEmitter getRuleAlertEmitter() {
+	return ruleAlertEmitter;
+    }
+
+    public void setRuleAlertEmitter(IRuleAlertEmitter ruleAlertEmitter) {
+	this.ruleAlertEmitter = ruleAlertEmitter;
+    }
 }
\ No newline at end of file
@@ -8,8 +8,10 @@
 package com.sitewhere.rules.processors.geospatial;
 
 import com.sitewhere.grpc.client.event.BlockingDeviceEventManagement;
+import com.sitewhere.rules.spi.IRuleAlertEmitter;
 import com.sitewhere.rules.spi.IRuleProcessor;
 import com.sitewhere.rules.spi.microservice.IRuleProcessingMicroservice;
+import com.sitewhere.rules.spi.microservice.IRuleProcessingTenantEngine;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceManagement;
@@ -39,6 +41,9 @@ public class RuleProcessor extends TenantEngineLifecycleComponent implements IRu
     /** Number of threads used for processing events */
     private int numProcessingThreads = DEFAULT_NUM_PROCESSING_THREADS;
 
+    /** Device event management wrapper shared by processing threads */
+    private IDeviceEventManagement deviceEventManagement;
+
     /*
      * @see
      * com.sitewhere.rules.spi.IRuleProcessor#onMeasurement(com.sitewhere.spi.device
@@ -135,8 +140,20 @@ public class RuleProcessor extends TenantEngineLifecycleComponent implements IRu
      * @see com.sitewhere.rules.spi.IRuleProcessor#getDeviceEventManagement()
      */
     @Override
-    public IDeviceEventManagement getDeviceEventManagement() {
-	return new BlockingDeviceEventManagement(((IRuleProcessingMicroservice) getTenantEngine().getMicroservice())
-		.getDeviceEventManagementApiChannel());
+    public synchronized IDeviceEventManagement getDeviceEventManagement() {
+	if (deviceEventManagement == null) {
+	    deviceEventManagement = new BlockingDeviceEventManagement(
+		    ((IRuleProcessingMicroservice) getTenantEngine().getMicroservice())
+			    .getDeviceEventManagementApiChannel());
+	}
+	return deviceEventManagement;
+    }
+
+    /*
+     * @see com.sitewhere.rules.spi.IRuleProcessor#getRuleAlertEmitter()
+     */
+    @Override
+    public IRuleAlertEmitter getRuleAlertEmitter() {
+	return ((IRuleProcessingTenantEngine) getTenantEngine()).getRuleAlertEmitter();
     }
 }
\ No newline at end of file
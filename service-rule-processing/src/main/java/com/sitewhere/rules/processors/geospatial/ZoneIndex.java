@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rules.processors.geospatial;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sitewhere.geospatial.GeoUtils;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.area.IZone;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Immutable spatial index over a set of zones. Zone bounding boxes are stored
+ * in an {@link STRtree} so that only zones whose bounding box contains a
+ * location are tested, and each zone polygon is kept as a
+ * {@link PreparedGeometry} so repeated containment tests against the same zone
+ * are cheap.
+ *
+ * Prepared geometries build their internal indexes on first use, so each one is
+ * exercised once while the index is created. After that the index is only read
+ * and may be shared between threads.
+ *
+ * @author Derek
+ */
+public class ZoneIndex {
+
+    /** Index of zones by bounding box */
+    private STRtree tree = new STRtree();
+
+    /** Zones by token */
+    private Map<String, IZone> zones = new LinkedHashMap<String, IZone>();
+
+    public <T extends IZone> ZoneIndex(Collection<T> zones) throws SiteWhereException {
+	for (IZone zone : zones) {
+	    if (this.zones.containsKey(zone.getToken())) {
+		continue;
+	    }
+	    Polygon polygon;
+	    try {
+		polygon = GeoUtils.createPolygonForZone(zone);
+	    } catch (RuntimeException e) {
+		throw new SiteWhereException("Invalid bounds for zone: " + zone.getToken(), e);
+	    }
+	    PreparedGeometry prepared = PreparedGeometryFactory.prepare(polygon);
+	    prepared.contains(polygon.getCentroid());
+	    tree.insert(polygon.getEnvelopeInternal(), new IndexedZone(zone, prepared));
+	    this.zones.put(zone.getToken(), zone);
+	}
+	tree.build();
+    }
+
+    /**
+     * Get zones that contain a location.
+     *
+     * @param location
+     * @return
+     */
+    public List<IZone> getContainingZones(IDeviceLocation location) {
+	Point point = GeoUtils.createPointForLocation(location);
+	List<IZone> matches = new ArrayList<IZone>();
+	for (Object candidate : tree.query(point.getEnvelopeInternal())) {
+	    IndexedZone indexed = (IndexedZone) candidate;
+	    if (indexed.getPrepared().contains(point)) {
+		matches.add(indexed.getZone());
+	    }
+	}
+	return matches;
+    }
+
+    /**
+     * Get tokens for zones that contain a location.
+     *
+     * @param location
+     * @return
+     */
+    public Set<String> getContainingZoneTokens(IDeviceLocation location) {
+	Set<String> tokens = new HashSet<String>();
+	for (IZone zone : getContainingZones(location)) {
+	    tokens.add(zone.getToken());
+	}
+	return tokens;
+    }
+
+    /**
+     * Get number of indexed zones.
+     *
+     * @return
+     */
+    public int size() {
+	return zones.size();
+    }
+
+    /**
+     * Zone stored in the tree along with its prepared polygon.
+     *
+     * @author Derek
+     */
+    private static class IndexedZone {
+
+	/** Zone */
+	private IZone zone;
+
+	/** Prepared zone polygon */
+	private PreparedGeometry prepared;
+
+	public IndexedZone(IZone zone, PreparedGeometry prepared) {
+	    this.zone = zone;
+	    this.prepared = prepared;
+	}
+
+	public IZone getZone() {
+	    return zone;
+	}
+
+	public PreparedGeometry getPrepared() {
+	    return prepared;
+	}
+    }
+}
\ No newline at end of file
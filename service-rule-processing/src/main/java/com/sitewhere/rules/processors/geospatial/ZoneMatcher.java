@@ -17,6 +17,7 @@ import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.geospatial.IZoneMatcher;
 import com.sitewhere.spi.geospatial.IZoneRelationship;
 import com.sitewhere.spi.geospatial.ZoneContainment;
+import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 
 /**
@@ -34,10 +35,10 @@ public class ZoneMatcher implements IZoneMatcher {
 
     public <T extends IZone> ZoneMatcher(IDeviceLocation location, List<T> zones) {
 	this.location = location;
+	Point point = GeoUtils.createPointForLocation(location);
 	for (IZone zone : zones) {
 	    Polygon zonePoly = GeoUtils.createPolygonForZone(zone);
-	    ZoneContainment containment = (zonePoly.contains(GeoUtils.createPointForLocation(location)))
-		    ? ZoneContainment.Inside : ZoneContainment.Outside;
+	    ZoneContainment containment = (zonePoly.contains(point)) ? ZoneContainment.Inside : ZoneContainment.Outside;
 	    ZoneRelationship relationship = new ZoneRelationship(location, zone, containment);
 	    relationships.put(zone.getToken(), relationship);
 	}
@@ -33,6 +33,9 @@ public class ZoneTest {
     /** Message to use if test is met */
     private String alertMessage;
 
+    /** Number of seconds condition must be met before alert is fired */
+    private int dwellTimeSecs = 0;
+
     public String getZoneToken() {
 	return zoneToken;
     }
@@ -72,4 +75,12 @@ public class ZoneTest {
     public void setAlertMessage(String alertMessage) {
 	this.alertMessage = alertMessage;
     }
+
+    public int getDwellTimeSecs() {
+	return dwellTimeSecs;
+    }
+
+    public void setDwellTimeSecs(int dwellTimeSecs) {
+	this.dwellTimeSecs = dwellTimeSecs;
+    }
 }
\ No newline at end of file
@@ -7,13 +7,22 @@
  */
 package com.sitewhere.rules.processors.geospatial;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
 
-import com.sitewhere.geospatial.GeoUtils;
 import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
 import com.sitewhere.rules.spi.IRuleProcessor;
 import com.sitewhere.spi.SiteWhereException;
@@ -21,23 +30,104 @@ import com.sitewhere.spi.area.IZone;
 import com.sitewhere.spi.device.event.IDeviceEventContext;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.geospatial.ZoneContainment;
-import com.vividsolutions.jts.geom.Polygon;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 /**
  * Implementation of {@link IRuleProcessor} that performs a series of tests for
  * whether a location is inside or outside of zones, firing alerts if the
  * criteria is met.
  * 
+ * Alerts are only fired on transitions. The outcome of the tests is kept for
+ * each device assignment in a {@link ZoneTestState}, and a test fires once
+ * its condition has been met for its dwell time (entering the zone for an
+ * "inside" test or leaving it for an "outside" test). It does not fire again
+ * until the condition stops being met. States are kept in a bounded cache and
+ * discarded for assignments that have not reported a location within the idle
+ * timeout, so the next location for such an assignment counts as a first
+ * location.
+ * 
+ * Zones referenced by the tests are loaded on first use into a
+ * {@link ZoneIndex} that is shared by all processing threads. Once the refresh
+ * interval has passed, a single thread reloads the zones while the others keep
+ * using the previous index. Loaded zones may also be discarded with
+ * {@link #invalidateZones()} when they are known to have changed.
+ * 
  * @author Derek
  */
 public class ZoneTestRuleProcessor extends RuleProcessor {
 
-    /** Map of polygons by zone token */
-    private Map<String, Polygon> zoneMap = new HashMap<String, Polygon>();
+    /** Default interval in milliseconds between zone reloads (5 minutes) */
+    private static final long DEFAULT_ZONE_REFRESH_INTERVAL = 5 * 60 * 1000;
+
+    /** Default max number of assignments for which test state is kept */
+    private static final long DEFAULT_MAX_TRACKED_ASSIGNMENTS = 100000;
+
+    /** Default time in seconds after which state for an idle assignment is discarded (1 day) */
+    private static final long DEFAULT_TEST_STATE_IDLE_TIMEOUT_SECS = 24 * 60 * 60;
+
+    /** Alias of cache holding test states */
+    private static final String TEST_STATES_CACHE = "zoneTestStates";
 
     /** List of tests to perform */
     private List<ZoneTest> zoneTests = new ArrayList<ZoneTest>();
 
+    /** Interval in milliseconds between zone reloads */
+    private long zoneRefreshInterval = DEFAULT_ZONE_REFRESH_INTERVAL;
+
+    /** Index of zones referenced by tests */
+    private volatile ZoneIndex zoneIndex;
+
+    /** Earliest time at which index is reloaded */
+    private volatile long nextZoneRefresh;
+
+    /** Held while index is loaded */
+    private ReentrantLock zoneLock = new ReentrantLock();
+
+    /** Max number of assignments for which test state is kept */
+    private long maxTrackedAssignments = DEFAULT_MAX_TRACKED_ASSIGNMENTS;
+
+    /** Time in seconds after which state for an idle assignment is discarded */
+    private long testStateIdleTimeoutSecs = DEFAULT_TEST_STATE_IDLE_TIMEOUT_SECS;
+
+    /** Cache manager for test states */
+    private CacheManager cacheManager;
+
+    /** Test state by device assignment */
+    private volatile Cache<UUID, ZoneTestState> testStates;
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	super.start(monitor);
+	this.cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+	this.testStates = getCacheManager().createCache(TEST_STATES_CACHE,
+		CacheConfigurationBuilder
+			.newCacheConfigurationBuilder(UUID.class, ZoneTestState.class,
+				ResourcePoolsBuilder.heap(getMaxTrackedAssignments()))
+			.withExpiry(ExpiryPolicyBuilder
+				.timeToIdleExpiration(Duration.ofSeconds(getTestStateIdleTimeoutSecs())))
+			.build());
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getCacheManager() != null) {
+	    getCacheManager().close();
+	    this.cacheManager = null;
+	    this.testStates = null;
+	}
+	super.stop(monitor);
+    }
+
     /*
      * @see com.sitewhere.rules.processors.geospatial.RuleProcessor#onLocation(com.
      * sitewhere.spi.device.event.IDeviceEventContext,
@@ -45,42 +135,136 @@ public class ZoneTestRuleProcessor extends RuleProcessor {
      */
     @Override
     public void onLocation(IDeviceEventContext context, IDeviceLocation location) throws SiteWhereException {
-	for (ZoneTest test : zoneTests) {
-	    Polygon poly = getZonePolygon(test.getZoneToken());
-	    ZoneContainment containment = (poly.contains(GeoUtils.createPointForLocation(location)))
-		    ? ZoneContainment.Inside
-		    : ZoneContainment.Outside;
-	    if (test.getCondition() == containment) {
-		DeviceAlertCreateRequest alert = new DeviceAlertCreateRequest();
-		alert.setType(test.getAlertType());
-		alert.setLevel(test.getAlertLevel());
-		alert.setMessage(test.getAlertMessage());
-		alert.setUpdateState(false);
-		alert.setEventDate(new Date());
-		getDeviceEventManagement().addDeviceAlerts(location.getDeviceAssignmentId(), alert);
+	Set<String> inside = getZoneIndex().getContainingZoneTokens(location);
+	List<ZoneTest> tests = zoneTests;
+	long time = (location.getEventDate() != null) ? location.getEventDate().getTime() : System.currentTimeMillis();
+
+	// Find tests that transitioned to being met.
+	List<ZoneTest> fired = new ArrayList<ZoneTest>();
+	ZoneTestState state = getZoneTestState(location.getDeviceAssignmentId(), tests.size());
+	synchronized (state) {
+	    for (int i = 0; i < tests.size(); i++) {
+		ZoneTest test = tests.get(i);
+		ZoneContainment containment = (inside.contains(test.getZoneToken())) ? ZoneContainment.Inside
+			: ZoneContainment.Outside;
+		if (state.update(i, test.getCondition() == containment, time, test.getDwellTimeSecs() * 1000L)) {
+		    fired.add(test);
+		}
+	    }
+	}
+
+	for (ZoneTest test : fired) {
+	    DeviceAlertCreateRequest alert = new DeviceAlertCreateRequest();
+	    alert.setType(test.getAlertType());
+	    alert.setLevel(test.getAlertLevel());
+	    alert.setMessage(test.getAlertMessage());
+	    alert.setUpdateState(false);
+	    alert.setEventDate(new Date());
+	    getRuleAlertEmitter().addDeviceAlert(location.getDeviceAssignmentId(), alert)
+		    .whenComplete((created, error) -> {
+			if (error != null) {
+			    getLogger().warn("Unable to store alert for zone test: " + test.getZoneToken(), error);
+			}
+		    });
+	}
+    }
+
+    /**
+     * Get test state for a device assignment, creating it if necessary.
+     * 
+     * @param deviceAssignmentId
+     * @param testCount
+     * @return
+     */
+    protected ZoneTestState getZoneTestState(UUID deviceAssignmentId, int testCount) {
+	Cache<UUID, ZoneTestState> states = testStates;
+	ZoneTestState state = states.get(deviceAssignmentId);
+	if (state == null) {
+	    state = new ZoneTestState(testCount);
+	    ZoneTestState existing = states.putIfAbsent(deviceAssignmentId, state);
+	    if (existing != null) {
+		state = existing;
 	    }
 	}
+	return state;
     }
 
     /**
-     * Get cached zone polygon or try to load from datastore.
+     * Get index of zones referenced by tests, loading it if not loaded or due
+     * for a refresh.
      * 
-     * @param token
      * @return
      * @throws SiteWhereException
      */
-    protected Polygon getZonePolygon(String token) throws SiteWhereException {
-	Polygon poly = zoneMap.get(token);
-	if (poly != null) {
-	    return poly;
+    protected ZoneIndex getZoneIndex() throws SiteWhereException {
+	ZoneIndex index = zoneIndex;
+	if ((index != null) && (System.currentTimeMillis() < nextZoneRefresh)) {
+	    return index;
 	}
-	IZone zone = getDeviceManagement().getZoneByToken(token);
-	if (zone != null) {
-	    poly = GeoUtils.createPolygonForZone(zone);
-	    zoneMap.put(token, poly);
-	    return poly;
+
+	// Only one thread reloads an existing index while others keep using it.
+	if (index != null) {
+	    if (!zoneLock.tryLock()) {
+		return index;
+	    }
+	} else {
+	    zoneLock.lock();
+	}
+	try {
+	    index = zoneIndex;
+	    if ((index != null) && (System.currentTimeMillis() < nextZoneRefresh)) {
+		return index;
+	    }
+	    this.nextZoneRefresh = System.currentTimeMillis() + getZoneRefreshInterval();
+	    try {
+		this.zoneIndex = loadZoneIndex();
+	    } catch (SiteWhereException e) {
+		if (index == null) {
+		    throw e;
+		}
+		getLogger().warn("Unable to reload zones. Using previously loaded zones.", e);
+	    }
+	    return zoneIndex;
+	} finally {
+	    zoneLock.unlock();
+	}
+    }
+
+    /**
+     * Load zones referenced by tests from the datastore and index them.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ZoneIndex loadZoneIndex() throws SiteWhereException {
+	Set<String> tokens = new LinkedHashSet<String>();
+	for (ZoneTest test : zoneTests) {
+	    tokens.add(test.getZoneToken());
+	}
+	List<IZone> zones = new ArrayList<IZone>();
+	for (String token : tokens) {
+	    IZone zone = getDeviceManagement().getZoneByToken(token);
+	    if (zone == null) {
+		throw new SiteWhereException(
+			"Invalid zone token in " + ZoneTestRuleProcessor.class.getName() + ": " + token);
+	    }
+	    zones.add(zone);
+	}
+	ZoneIndex index = new ZoneIndex(zones);
+	getLogger().debug("Loaded " + index.size() + " zones for zone tests.");
+	return index;
+    }
+
+    /**
+     * Discard loaded zones so that they are reloaded before the next test.
+     */
+    public void invalidateZones() {
+	zoneLock.lock();
+	try {
+	    this.zoneIndex = null;
+	} finally {
+	    zoneLock.unlock();
 	}
-	throw new SiteWhereException("Invalid zone token in " + ZoneTestRuleProcessor.class.getName() + ": " + token);
     }
 
     public List<ZoneTest> getZoneTests() {
@@ -89,5 +273,38 @@ public class ZoneTestRuleProcessor extends RuleProcessor {
 
     public void setZoneTests(List<ZoneTest> zoneTests) {
 	this.zoneTests = zoneTests;
+	Cache<UUID, ZoneTestState> states = testStates;
+	if (states != null) {
+	    states.clear();
+	}
+	invalidateZones();
+    }
+
+    public long getZoneRefreshInterval() {
+	return zoneRefreshInterval;
+    }
+
+    public void setZoneRefreshInterval(long zoneRefreshInterval) {
+	this.zoneRefreshInterval = zoneRefreshInterval;
+    }
+
+    public long getMaxTrackedAssignments() {
+	return maxTrackedAssignments;
+    }
+
+    public void setMaxTrackedAssignments(long maxTrackedAssignments) {
+	this.maxTrackedAssignments = maxTrackedAssignments;
+    }
+
+    public long getTestStateIdleTimeoutSecs() {
+	return testStateIdleTimeoutSecs;
+    }
+
+    public void setTestStateIdleTimeoutSecs(long testStateIdleTimeoutSecs) {
+	this.testStateIdleTimeoutSecs = testStateIdleTimeoutSecs;
+    }
+
+    protected CacheManager getCacheManager() {
+	return cacheManager;
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rules.processors.geospatial;
+
+/**
+ * Tracks the outcome of a list of zone tests for a single device assignment so
+ * that an alert is only fired when a test condition starts to be met rather
+ * than for every location that meets it. Whether each test is currently met
+ * and whether it has already fired are kept as bits. The time at which each
+ * test started to be met is only kept once a test with a dwell time is seen.
+ *
+ * Instances are not thread-safe and should be synchronized on by callers.
+ *
+ * @author Derek
+ */
+public class ZoneTestState {
+
+    /** Bits for tests whose condition is currently met */
+    private long[] met;
+
+    /** Bits for tests that have fired since condition was first met */
+    private long[] fired;
+
+    /** Time at which each test condition started to be met */
+    private long[] since;
+
+    public ZoneTestState(int testCount) {
+	int words = (testCount + 63) >>> 6;
+	this.met = new long[words];
+	this.fired = new long[words];
+    }
+
+    /**
+     * Record the outcome of a test for a location and indicate whether an alert
+     * should be fired. An alert fires once the condition has been met
+     * continuously for the dwell time and does not fire again until the
+     * condition stops being met. Since nothing is known before the first
+     * location, a first location that meets the condition counts as a
+     * transition.
+     *
+     * @param test
+     *            index of test
+     * @param conditionMet
+     *            whether location meets test condition
+     * @param time
+     *            time of location
+     * @param dwellMillis
+     *            time condition must be met before firing
+     * @return true if an alert should be fired
+     */
+    public boolean update(int test, boolean conditionMet, long time, long dwellMillis) {
+	int word = test >>> 6;
+	long bit = 1L << test;
+	if (!conditionMet) {
+	    met[word] &= ~bit;
+	    fired[word] &= ~bit;
+	    return false;
+	}
+	if ((dwellMillis > 0) && (since == null)) {
+	    since = new long[met.length << 6];
+	}
+	if ((met[word] & bit) == 0) {
+	    met[word] |= bit;
+	    if (since != null) {
+		since[test] = time;
+	    }
+	}
+	if ((fired[word] & bit) != 0) {
+	    return false;
+	}
+	if ((dwellMillis > 0) && ((time - since[test]) < dwellMillis)) {
+	    return false;
+	}
+	fired[word] |= bit;
+	return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rules.spi;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
+
+/**
+ * Sends alerts generated by rule processors without blocking the processing
+ * thread while they are stored.
+ * 
+ * @author Derek
+ */
+public interface IRuleAlertEmitter extends ITenantEngineLifecycleComponent {
+
+    /**
+     * Queue an alert to be added for a device assignment.
+     * 
+     * @param deviceAssignmentId
+     * @param request
+     * @return future completed with the stored alert
+     * @throws SiteWhereException
+     *             if the alert could not be queued
+     */
+    public CompletableFuture<IDeviceAlert> addDeviceAlert(UUID deviceAssignmentId, IDeviceAlertCreateRequest request)
+	    throws SiteWhereException;
+}
\ No newline at end of file
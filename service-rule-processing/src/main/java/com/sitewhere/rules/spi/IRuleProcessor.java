@@ -109,4 +109,11 @@ public interface IRuleProcessor extends ITenantEngineLifecycleComponent {
      * @return
      */
     public IDeviceEventManagement getDeviceEventManagement();
+
+    /**
+     * Get emitter used to store alerts without blocking processing threads.
+     * 
+     * @return
+     */
+    public IRuleAlertEmitter getRuleAlertEmitter();
 }
\ No newline at end of file
@@ -7,6 +7,7 @@
  */
 package com.sitewhere.rules.spi.microservice;
 
+import com.sitewhere.rules.spi.IRuleAlertEmitter;
 import com.sitewhere.rules.spi.IRuleProcessorsManager;
 import com.sitewhere.spi.microservice.multitenant.IMicroserviceTenantEngine;
 
@@ -24,4 +25,11 @@ public interface IRuleProcessingTenantEngine extends IMicroserviceTenantEngine {
      * @return
      */
     public IRuleProcessorsManager getRuleProcessorsManager();
+
+    /**
+     * Get emitter for alerts generated by rule processors.
+     * 
+     * @return
+     */
+    public IRuleAlertEmitter getRuleAlertEmitter();
 }
\ No newline at end of file
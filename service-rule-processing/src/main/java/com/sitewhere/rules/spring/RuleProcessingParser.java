@@ -144,6 +144,11 @@ public class RuleProcessingParser extends AbstractBeanDefinitionParser {
 	    }
 	    test.setAlertLevel(level);
 
+	    Attr dwellTimeSecs = testElm.getAttributeNode("dwellTimeSecs");
+	    if (dwellTimeSecs != null) {
+		test.setDwellTimeSecs(Integer.parseInt(dwellTimeSecs.getValue()));
+	    }
+
 	    tests.add(test);
 	}
 	processor.addPropertyValue("zoneTests", tests);
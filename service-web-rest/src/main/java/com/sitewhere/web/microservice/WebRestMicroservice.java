@@ -7,6 +7,11 @@
  */
 package com.sitewhere.web.microservice;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.sitewhere.grpc.client.asset.AssetManagementApiChannel;
 import com.sitewhere.grpc.client.asset.CachedAssetManagementApiChannel;
 import com.sitewhere.grpc.client.batch.BatchManagementApiChannel;
@@ -57,6 +62,9 @@ public class WebRestMicroservice extends GlobalMicroservice<MicroserviceIdentifi
     /** Web/REST configuration file name */
     private static final String CONFIGURATION_PATH = MicroserviceIdentifier.WebRest.getPath() + ".xml";
 
+    /** Max number of threads used to process bulk requests */
+    private static final int BULK_REQUEST_THREADS = 32;
+
     /** Instance management API channel */
     private IInstanceManagementApiChannel<?> instanceManagementApiChannel;
 
@@ -96,6 +104,9 @@ public class WebRestMicroservice extends GlobalMicroservice<MicroserviceIdentifi
     /** Aggregates microservice state info into a topology */
     private ITopologyStateAggregator topologyStateAggregator = new TopologyStateAggregator();
 
+    /** Executor for processing bulk requests */
+    private ExecutorService bulkRequestExecutor;
+
     /*
      * (non-Javadoc)
      * 
@@ -272,6 +283,9 @@ public class WebRestMicroservice extends GlobalMicroservice<MicroserviceIdentifi
 
 	// Execute startup steps.
 	start.execute(monitor);
+
+	// Create executor for bulk requests.
+	this.bulkRequestExecutor = Executors.newFixedThreadPool(BULK_REQUEST_THREADS, new BulkRequestThreadFactory());
     }
 
     /*
@@ -282,6 +296,11 @@ public class WebRestMicroservice extends GlobalMicroservice<MicroserviceIdentifi
      */
     @Override
     public void microserviceStop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	// Shut down executor for bulk requests.
+	if (bulkRequestExecutor != null) {
+	    bulkRequestExecutor.shutdownNow();
+	}
+
 	// Composite step for stopping microservice.
 	ICompositeLifecycleStep stop = new CompositeLifecycleStep("Stop " + getName());
 
@@ -488,4 +507,24 @@ public class WebRestMicroservice extends GlobalMicroservice<MicroserviceIdentifi
     public void setTopologyStateAggregator(ITopologyStateAggregator topologyStateAggregator) {
 	this.topologyStateAggregator = topologyStateAggregator;
     }
+
+    /*
+     * @see com.sitewhere.web.spi.microservice.IWebRestMicroservice#
+     * getBulkRequestExecutor()
+     */
+    @Override
+    public ExecutorService getBulkRequestExecutor() {
+	return bulkRequestExecutor;
+    }
+
+    /** Used for naming bulk request threads */
+    private class BulkRequestThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Bulk Request " + counter.incrementAndGet());
+	}
+    }
 }
\ No newline at end of file
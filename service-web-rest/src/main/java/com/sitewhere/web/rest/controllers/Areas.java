@@ -10,6 +10,7 @@ package com.sitewhere.web.rest.controllers;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -572,7 +573,9 @@ public class Areas extends RestControllerBase {
     }
 
     /**
-     * Resolve areas including nested areas.
+     * Resolve areas including nested areas. All areas are loaded with a single
+     * call and the subtree is resolved locally rather than requesting the
+     * children of each area separately.
      * 
      * @param areaToken
      * @param recursive
@@ -586,8 +589,20 @@ public class Areas extends RestControllerBase {
 	if (existing == null) {
 	    return new ArrayList<IArea>();
 	}
-	Map<String, IArea> resolved = new HashMap<>();
-	resolveAreasRecursively(existing, recursive, resolved, deviceManagement);
+	ISearchResults<IArea> all = deviceManagement.listAreas(new AreaSearchCriteria(1, 0));
+	Map<UUID, List<IArea>> byParentId = new HashMap<>();
+	for (IArea area : all.getResults()) {
+	    if (area.getParentId() != null) {
+		List<IArea> children = byParentId.get(area.getParentId());
+		if (children == null) {
+		    children = new ArrayList<>();
+		    byParentId.put(area.getParentId(), children);
+		}
+		children.add(area);
+	    }
+	}
+	Map<String, IArea> resolved = new LinkedHashMap<>();
+	resolveAreasRecursively(existing, recursive, resolved, byParentId);
 	List<IArea> response = new ArrayList<>();
 	response.addAll(resolved.values());
 	return response;
@@ -599,15 +614,18 @@ public class Areas extends RestControllerBase {
      * @param current
      * @param recursive
      * @param matches
-     * @param deviceManagement
-     * @throws SiteWhereException
+     * @param byParentId
      */
     protected static void resolveAreasRecursively(IArea current, boolean recursive, Map<String, IArea> matches,
-	    IDeviceManagement deviceManagement) throws SiteWhereException {
-	matches.put(current.getToken(), current);
-	List<IArea> children = deviceManagement.getAreaChildren(current.getToken());
-	for (IArea child : children) {
-	    resolveAreasRecursively(child, recursive, matches, deviceManagement);
+	    Map<UUID, List<IArea>> byParentId) {
+	if (matches.put(current.getToken(), current) != null) {
+	    return;
+	}
+	List<IArea> children = byParentId.get(current.getId());
+	if (children != null) {
+	    for (IArea child : children) {
+		resolveAreasRecursively(child, recursive, matches, byParentId);
+	    }
 	}
     }
 
@@ -14,9 +14,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -28,6 +37,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -39,6 +50,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.sitewhere.core.DataUtils;
+import com.sitewhere.device.charting.ChartAggregate;
 import com.sitewhere.device.charting.ChartBuilder;
 import com.sitewhere.device.marshaling.DeviceAssignmentMarshalHelper;
 import com.sitewhere.device.marshaling.DeviceCommandInvocationMarshalHelper;
@@ -103,6 +115,21 @@ public class Assignments extends RestControllerBase {
     /** Static logger instance */
     private static Log LOGGER = LogFactory.getLog(Assignments.class);
 
+    /** Header listing assignment tokens that could not be processed in a bulk request */
+    public static final String HEADER_FAILED_ASSIGNMENT_TOKENS = "X-SiteWhere-Failed-Assignment-Tokens";
+
+    /** Max time allowed for processing all assignments in a bulk request */
+    private static final long BULK_REQUEST_DEADLINE_MS = 30 * 1000;
+
+    /** Max number of assignments processed concurrently for a single bulk request */
+    private static final int BULK_REQUEST_MAX_CONCURRENCY = 8;
+
+    /** Page size used when reading measurements to be aggregated */
+    private static final int AGGREGATION_PAGE_SIZE = 1000;
+
+    /** Max number of measurements read for a single aggregated series */
+    private static final int AGGREGATION_MAX_MEASUREMENTS = 1000000;
+
     /**
      * Used by AJAX calls to create a device assignment.
      * 
@@ -345,7 +372,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
 	return new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment, ids, criteria);
@@ -386,6 +413,9 @@ public class Assignments extends RestControllerBase {
      * @param startDate
      * @param endDate
      * @param measurementIds
+     * @param interval
+     * @param aggregate
+     * @param maxPoints
      * @param bulk
      * @param response
      * @return
@@ -399,18 +429,18 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    @ApiParam(value = "Aggregation interval (ms)", required = false) @RequestParam(required = false) Long interval,
+	    @ApiParam(value = "Aggregate (min, max, avg, count, last)", required = false) @RequestParam(required = false, defaultValue = "avg") String aggregate,
+	    @ApiParam(value = "Max points per series", required = false) @RequestParam(required = false) Integer maxPoints,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
-	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	Map<String, List<IChartSeries<Double>>> results = new HashMap<String, List<IChartSeries<Double>>>();
-	for (String token : bulk.getDeviceAssignmentTokens()) {
-	    IDeviceAssignment assignment = assertDeviceAssignment(token);
-	    ISearchResults<IDeviceMeasurement> measurements = new BlockingDeviceEventManagement(
-		    getDeviceEventManagement()).listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment,
-			    Collections.singletonList(assignment.getId()), criteria);
-	    ChartBuilder builder = new ChartBuilder();
-	    results.put(token, builder.process(measurements.getResults(), measurementIds));
+	Date parsedStartDate = parseDateOrSendBadResponse(startDate, response);
+	Date parsedEndDate = parseDateOrSendBadResponse(endDate, response);
+	if (response.isCommitted()) {
+	    return null;
 	}
-	return results;
+	ChartAggregate function = assertChartAggregate(aggregate);
+	return executeBulk(bulk, assignment -> buildChartSeries(assignment, page, pageSize, parsedStartDate,
+		parsedEndDate, measurementIds, interval, function, maxPoints), response);
     }
 
     /**
@@ -422,6 +452,9 @@ public class Assignments extends RestControllerBase {
      * @param startDate
      * @param endDate
      * @param measurementIds
+     * @param interval
+     * @param aggregate
+     * @param maxPoints
      * @param response
      * @return
      * @throws SiteWhereException
@@ -435,14 +468,107 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    @ApiParam(value = "Aggregation interval (ms)", required = false) @RequestParam(required = false) Long interval,
+	    @ApiParam(value = "Aggregate (min, max, avg, count, last)", required = false) @RequestParam(required = false, defaultValue = "avg") String aggregate,
+	    @ApiParam(value = "Max points per series", required = false) @RequestParam(required = false) Integer maxPoints,
 	    HttpServletResponse response) throws SiteWhereException {
-	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
+	Date parsedStartDate = parseDateOrSendBadResponse(startDate, response);
+	Date parsedEndDate = parseDateOrSendBadResponse(endDate, response);
+	if (response.isCommitted()) {
+	    return null;
+	}
+	ChartAggregate function = assertChartAggregate(aggregate);
 	IDeviceAssignment assignment = assertDeviceAssignment(token);
-	ISearchResults<IDeviceMeasurement> measurements = new BlockingDeviceEventManagement(getDeviceEventManagement())
-		.listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment,
-			Collections.singletonList(assignment.getId()), criteria);
+	return buildChartSeries(assignment, page, pageSize, parsedStartDate, parsedEndDate, measurementIds, interval,
+		function, maxPoints);
+    }
+
+    /**
+     * Build chart series for an assignment. If no interval or max points are
+     * specified, the requested page of measurements is charted as-is. Otherwise
+     * all measurements in the date range are read a page at a time and either
+     * aggregated into time buckets or downsampled so that the number of points
+     * returned does not depend on the number of measurements stored. Arguments
+     * are parsed by the caller so that this may be run on bulk request threads.
+     * 
+     * @param assignment
+     * @param page
+     * @param pageSize
+     * @param startDate
+     * @param endDate
+     * @param measurementIds
+     * @param interval
+     * @param aggregate
+     * @param maxPoints
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<IChartSeries<Double>> buildChartSeries(IDeviceAssignment assignment, int page, int pageSize,
+	    Date startDate, Date endDate, String[] measurementIds, Long interval, ChartAggregate aggregate,
+	    Integer maxPoints) throws SiteWhereException {
+	BlockingDeviceEventManagement events = new BlockingDeviceEventManagement(getDeviceEventManagement());
+	List<UUID> ids = Collections.singletonList(assignment.getId());
 	ChartBuilder builder = new ChartBuilder();
-	return builder.process(measurements.getResults(), measurementIds);
+	if ((interval == null || interval <= 0) && (maxPoints == null || maxPoints <= 0)) {
+	    IDateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
+	    ISearchResults<IDeviceMeasurement> measurements = events
+		    .listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment, ids, criteria);
+	    return builder.process(measurements.getResults(), measurementIds);
+	}
+
+	builder.setAggregate(aggregate);
+	builder.setInterval((interval != null) ? interval : 0);
+	builder.setMaxPoints((maxPoints != null) ? maxPoints : 0);
+	builder.reset(measurementIds);
+
+	// Stream pages through builder so only aggregated values are kept. Events
+	// are returned newest first, so each page ends at the date of the oldest
+	// event already read rather than skipping over previous pages. Events at
+	// that date are included again and filtered by id.
+	Date pageEndDate = endDate;
+	Set<UUID> boundaryIds = new HashSet<UUID>();
+	int read = 0;
+	while (true) {
+	    IDateRangeSearchCriteria criteria = new DateRangeSearchCriteria(1, AGGREGATION_PAGE_SIZE, startDate,
+		    pageEndDate);
+	    List<IDeviceMeasurement> matches = events
+		    .listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment, ids, criteria).getResults();
+	    List<IDeviceMeasurement> unread = new ArrayList<IDeviceMeasurement>();
+	    for (IDeviceMeasurement match : matches) {
+		if (!boundaryIds.contains(match.getId())) {
+		    unread.add(match);
+		}
+	    }
+	    builder.add(unread);
+	    read += unread.size();
+	    if (matches.size() < AGGREGATION_PAGE_SIZE) {
+		break;
+	    }
+	    if (read >= AGGREGATION_MAX_MEASUREMENTS) {
+		LOGGER.warn("Chart series for assignment '" + assignment.getToken() + "' truncated after " + read
+			+ " measurements.");
+		break;
+	    }
+
+	    Date oldest = matches.get(matches.size() - 1).getEventDate();
+	    if (unread.isEmpty()) {
+		LOGGER.warn("More than " + AGGREGATION_PAGE_SIZE + " measurements for assignment '"
+			+ assignment.getToken() + "' share date " + oldest + ". Skipping remaining at that date.");
+		pageEndDate = new Date(oldest.getTime() - 1);
+		boundaryIds.clear();
+		continue;
+	    }
+	    if (!oldest.equals(pageEndDate)) {
+		boundaryIds.clear();
+	    }
+	    for (IDeviceMeasurement match : matches) {
+		if (oldest.equals(match.getEventDate())) {
+		    boundaryIds.add(match.getId());
+		}
+	    }
+	    pageEndDate = oldest;
+	}
+	return builder.build();
     }
 
     /**
@@ -485,7 +611,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	return new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceLocationsForIndex(DeviceEventIndex.Assignment, ids, criteria);
     }
@@ -557,7 +683,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	return new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceAlertsForIndex(DeviceEventIndex.Assignment, ids, criteria);
     }
@@ -760,7 +886,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	ISearchResults<IDeviceCommandInvocation> matches = new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceCommandInvocationsForIndex(DeviceEventIndex.Assignment, ids, criteria);
 	DeviceCommandInvocationMarshalHelper helper = new DeviceCommandInvocationMarshalHelper(
@@ -850,7 +976,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	return new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceStateChangesForIndex(DeviceEventIndex.Assignment, ids, criteria);
     }
@@ -922,7 +1048,7 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
-	List<UUID> ids = getDeviceAssignmentIds(bulk);
+	List<UUID> ids = getDeviceAssignmentIds(bulk, response);
 	return new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceCommandResponsesForIndex(DeviceEventIndex.Assignment, ids, criteria);
     }
@@ -1034,19 +1160,107 @@ public class Assignments extends RestControllerBase {
 	return assignment;
     }
 
+    /**
+     * Look up a chart aggregate by name. Throw an exception if not found.
+     * 
+     * @param name
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static ChartAggregate assertChartAggregate(String name) throws SiteWhereException {
+	ChartAggregate aggregate = ChartAggregate.fromName(name);
+	if (aggregate == null) {
+	    throw new SiteWhereException("Unknown aggregate '" + name + "'.");
+	}
+	return aggregate;
+    }
+
     /**
      * Get list of assignment ids based on assignment tokens.
      * 
      * @param bulk
+     * @param response
      * @return
      * @throws SiteWhereException
      */
-    protected List<UUID> getDeviceAssignmentIds(DeviceAssignmentBulkRequest bulk) throws SiteWhereException {
-	List<UUID> results = new ArrayList<UUID>();
-	for (String token : bulk.getDeviceAssignmentTokens()) {
-	    IDeviceAssignment assignment = assertDeviceAssignment(token);
-	    results.add(assignment.getId());
+    protected List<UUID> getDeviceAssignmentIds(DeviceAssignmentBulkRequest bulk, HttpServletResponse response)
+	    throws SiteWhereException {
+	return new ArrayList<UUID>(executeBulk(bulk, assignment -> assignment.getId(), response).values());
+    }
+
+    /**
+     * Resolve each assignment in a bulk request and process it. Assignments are
+     * processed in parallel on the shared bulk request executor (with the security
+     * context of the caller), with no more than
+     * {@link #BULK_REQUEST_MAX_CONCURRENCY} running at once for a single request,
+     * and the request as a whole is limited to {@link #BULK_REQUEST_DEADLINE_MS}.
+     * Tokens that fail or do not finish in time are left out of the results and
+     * listed in the {@link #HEADER_FAILED_ASSIGNMENT_TOKENS} response header. If no
+     * token could be processed, the first error is thrown.
+     * 
+     * @param bulk
+     * @param operation
+     * @param response
+     * @return results by assignment token in request order
+     * @throws SiteWhereException
+     */
+    protected <T> Map<String, T> executeBulk(DeviceAssignmentBulkRequest bulk, IBulkAssignmentOperation<T> operation,
+	    HttpServletResponse response) throws SiteWhereException {
+	List<String> tokens = (bulk.getDeviceAssignmentTokens() != null) ? bulk.getDeviceAssignmentTokens()
+		: Collections.emptyList();
+	ExecutorService executor = new DelegatingSecurityContextExecutorService(
+		getMicroservice().getBulkRequestExecutor(), SecurityContextHolder.getContext());
+	CompletionService<T> completion = new ExecutorCompletionService<T>(executor);
+	Map<Future<T>, Integer> running = new HashMap<Future<T>, Integer>();
+	Map<Integer, T> completed = new HashMap<Integer, T>();
+	Throwable error = null;
+	long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BULK_REQUEST_DEADLINE_MS);
+	int next = 0;
+	try {
+	    while ((next < tokens.size()) || (!running.isEmpty())) {
+		while ((next < tokens.size()) && (running.size() < BULK_REQUEST_MAX_CONCURRENCY)) {
+		    String token = tokens.get(next);
+		    running.put(completion.submit(() -> operation.process(assertDeviceAssignment(token))), next++);
+		}
+		Future<T> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		if (done == null) {
+		    error = (error != null) ? error : new SiteWhereException("Deadline exceeded for bulk request.");
+		    break;
+		}
+		Integer index = running.remove(done);
+		try {
+		    completed.put(index, done.get());
+		} catch (ExecutionException e) {
+		    error = (error != null) ? error : e.getCause();
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while processing bulk request.", e);
+	} finally {
+	    for (Future<T> future : running.keySet()) {
+		future.cancel(true);
+	    }
+	}
+
+	Map<String, T> results = new LinkedHashMap<String, T>();
+	List<String> failed = new ArrayList<String>();
+	for (int i = 0; i < tokens.size(); i++) {
+	    if (completed.containsKey(i)) {
+		results.put(tokens.get(i), completed.get(i));
+	    } else {
+		failed.add(tokens.get(i));
+	    }
 	}
+	if (failed.isEmpty()) {
+	    return results;
+	}
+	if (results.isEmpty()) {
+	    throw (error instanceof SiteWhereException) ? (SiteWhereException) error : new SiteWhereException(error);
+	}
+	LOGGER.warn("Bulk request returned partial results. Failed for " + failed.size() + " of " + tokens.size()
+		+ " assignments.");
+	response.setHeader(HEADER_FAILED_ASSIGNMENT_TOKENS, String.join(",", failed));
 	return results;
     }
 
@@ -1092,6 +1306,26 @@ public class Assignments extends RestControllerBase {
 	return null;
     }
 
+    /**
+     * Operation executed for each assignment in a bulk request.
+     * 
+     * @author Derek
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    protected static interface IBulkAssignmentOperation<T> {
+
+	/**
+	 * Process a single assignment.
+	 * 
+	 * @param assignment
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public T process(IDeviceAssignment assignment) throws SiteWhereException;
+    }
+
     private IDeviceManagement getDeviceManagement() {
 	return getMicroservice().getDeviceManagementApiChannel();
     }
@@ -7,6 +7,8 @@
  */
 package com.sitewhere.web.spi.microservice;
 
+import java.util.concurrent.ExecutorService;
+
 import com.sitewhere.grpc.client.spi.client.IAssetManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IBatchManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
@@ -120,4 +122,11 @@ public interface IWebRestMicroservice<T extends IFunctionIdentifier> extends IGl
      * @return
      */
     public ITopologyStateAggregator getTopologyStateAggregator();
+
+    /**
+     * Get bounded thread pool used to fan out work for bulk REST requests.
+     * 
+     * @return
+     */
+    public ExecutorService getBulkRequestExecutor();
 }
\ No newline at end of file
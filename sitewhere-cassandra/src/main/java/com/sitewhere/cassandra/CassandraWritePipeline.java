@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.cassandra;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Executes groups of Cassandra writes asynchronously while bounding the number
+ * of requests in flight across all callers. Statements that target the same
+ * partition of the same table are combined into unlogged batches, which the
+ * token-aware load balancing policy routes directly to a replica for the
+ * partition. Writes to different partitions are never batched together, so no
+ * single coordinator has to fan a batch out across the cluster.
+ *
+ * @author Derek
+ */
+public class CassandraWritePipeline {
+
+    /** Default max number of requests in flight */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    /** Default max number of statements in a single batch */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+
+    /** Max number of milliseconds to wait for capacity before failing a write */
+    private static final long MAX_PERMIT_WAIT = 10000;
+
+    /** Session used to execute statements */
+    private Session session;
+
+    /** Permits for requests in flight */
+    private Semaphore permits;
+
+    /** Max number of statements in a single batch */
+    private int maxBatchSize;
+
+    public CassandraWritePipeline(Session session) {
+	this(session, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public CassandraWritePipeline(Session session, int maxInFlight, int maxBatchSize) {
+	this.session = session;
+	this.permits = new Semaphore(Math.max(1, maxInFlight));
+	this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Write a list of statements. The calling thread blocks if the max number of
+     * requests is already in flight. The returned future completes when all
+     * statements have been written or completes exceptionally if any write
+     * failed.
+     *
+     * @param statements
+     * @return
+     */
+    public CompletableFuture<Void> write(List<BoundStatement> statements) {
+	List<Statement> grouped = groupByPartition(statements);
+	CompletableFuture<?>[] results = new CompletableFuture<?>[grouped.size()];
+	for (int i = 0; i < grouped.size(); i++) {
+	    results[i] = execute(grouped.get(i));
+	}
+	return CompletableFuture.allOf(results);
+    }
+
+    /**
+     * Combine statements that share a table and partition key into unlogged
+     * batches. Statements without a routing key are executed individually.
+     *
+     * @param statements
+     * @return
+     */
+    protected List<Statement> groupByPartition(List<BoundStatement> statements) {
+	ProtocolVersion protocol = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+	CodecRegistry codecs = session.getCluster().getConfiguration().getCodecRegistry();
+
+	List<Statement> grouped = new ArrayList<>();
+	Map<PreparedStatement, Map<ByteBuffer, List<BoundStatement>>> byTable = new LinkedHashMap<>();
+	for (BoundStatement statement : statements) {
+	    ByteBuffer key = statement.getRoutingKey(protocol, codecs);
+	    if (key == null) {
+		grouped.add(statement);
+		continue;
+	    }
+	    Map<ByteBuffer, List<BoundStatement>> byPartition = byTable.get(statement.preparedStatement());
+	    if (byPartition == null) {
+		byPartition = new LinkedHashMap<>();
+		byTable.put(statement.preparedStatement(), byPartition);
+	    }
+	    List<BoundStatement> partition = byPartition.get(key);
+	    if (partition == null) {
+		partition = new ArrayList<>();
+		byPartition.put(key, partition);
+	    }
+	    partition.add(statement);
+	}
+	for (Map<ByteBuffer, List<BoundStatement>> byPartition : byTable.values()) {
+	    for (List<BoundStatement> partition : byPartition.values()) {
+		for (int i = 0; i < partition.size(); i += maxBatchSize) {
+		    List<BoundStatement> chunk = partition.subList(i, Math.min(partition.size(), i + maxBatchSize));
+		    if (chunk.size() == 1) {
+			grouped.add(chunk.get(0));
+		    } else {
+			BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+			batch.addAll(chunk);
+			grouped.add(batch);
+		    }
+		}
+	    }
+	}
+	return grouped;
+    }
+
+    /**
+     * Execute a statement once a permit is available.
+     *
+     * @param statement
+     * @return
+     */
+    protected CompletableFuture<Void> execute(Statement statement) {
+	CompletableFuture<Void> result = new CompletableFuture<>();
+	try {
+	    if (!permits.tryAcquire(MAX_PERMIT_WAIT, TimeUnit.MILLISECONDS)) {
+		result.completeExceptionally(new SiteWhereException("Timed out waiting for Cassandra write capacity."));
+		return result;
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    result.completeExceptionally(new SiteWhereException("Interrupted waiting for Cassandra write capacity.", e));
+	    return result;
+	}
+	try {
+	    ResultSetFuture future = session.executeAsync(statement);
+	    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+		/*
+		 * @see
+		 * com.google.common.util.concurrent.FutureCallback#onSuccess(java.lang.Object)
+		 */
+		@Override
+		public void onSuccess(ResultSet rs) {
+		    permits.release();
+		    result.complete(null);
+		}
+
+		/*
+		 * @see com.google.common.util.concurrent.FutureCallback#onFailure(java.lang.
+		 * Throwable)
+		 */
+		@Override
+		public void onFailure(Throwable t) {
+		    permits.release();
+		    result.completeExceptionally(t);
+		}
+	    }, MoreExecutors.directExecutor());
+	} catch (Throwable t) {
+	    permits.release();
+	    result.completeExceptionally(t);
+	}
+	return result;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.device.kafka;
+
+import java.util.UUID;
+
+import com.sitewhere.spi.device.kafka.DeviceManagementUpdateType;
+import com.sitewhere.spi.device.kafka.IDeviceManagementUpdate;
+
+/**
+ * Model object for a device management update sent via Kafka.
+ * 
+ * @author Derek
+ */
+public class DeviceManagementUpdate implements IDeviceManagementUpdate {
+
+    /** Type of change */
+    private DeviceManagementUpdateType type;
+
+    /** Device id */
+    private UUID deviceId;
+
+    /** Device token */
+    private String deviceToken;
+
+    /** Device assignment id */
+    private UUID deviceAssignmentId;
+
+    /** Device assignment token */
+    private String deviceAssignmentToken;
+
+    /*
+     * @see com.sitewhere.spi.device.kafka.IDeviceManagementUpdate#getType()
+     */
+    @Override
+    public DeviceManagementUpdateType getType() {
+	return type;
+    }
+
+    public void setType(DeviceManagementUpdateType type) {
+	this.type = type;
+    }
+
+    /*
+     * @see com.sitewhere.spi.device.kafka.IDeviceManagementUpdate#getDeviceId()
+     */
+    @Override
+    public UUID getDeviceId() {
+	return deviceId;
+    }
+
+    public void setDeviceId(UUID deviceId) {
+	this.deviceId = deviceId;
+    }
+
+    /*
+     * @see com.sitewhere.spi.device.kafka.IDeviceManagementUpdate#getDeviceToken()
+     */
+    @Override
+    public String getDeviceToken() {
+	return deviceToken;
+    }
+
+    public void setDeviceToken(String deviceToken) {
+	this.deviceToken = deviceToken;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.device.kafka.IDeviceManagementUpdate#getDeviceAssignmentId()
+     */
+    @Override
+    public UUID getDeviceAssignmentId() {
+	return deviceAssignmentId;
+    }
+
+    public void setDeviceAssignmentId(UUID deviceAssignmentId) {
+	this.deviceAssignmentId = deviceAssignmentId;
+    }
+
+    /*
+     * @see com.sitewhere.spi.device.kafka.IDeviceManagementUpdate#
+     * getDeviceAssignmentToken()
+     */
+    @Override
+    public String getDeviceAssignmentToken() {
+	return deviceAssignmentToken;
+    }
+
+    public void setDeviceAssignmentToken(String deviceAssignmentToken) {
+	this.deviceAssignmentToken = deviceAssignmentToken;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.search;
+
+import java.util.Date;
+
+import com.sitewhere.spi.search.IKeysetSearchCriteria;
+
+/**
+ * Model object for keyset search criteria.
+ * 
+ * @author Derek
+ */
+public class KeysetSearchCriteria extends DateRangeSearchCriteria implements IKeysetSearchCriteria {
+
+    /** Token from previous page */
+    private String continuationToken;
+
+    /** Indicates whether exact count is required */
+    private boolean exactCount = true;
+
+    public KeysetSearchCriteria(int pageSize, String continuationToken) {
+	this(pageSize, continuationToken, null, null);
+    }
+
+    public KeysetSearchCriteria(int pageSize, String continuationToken, Date startDate, Date endDate) {
+	super(1, pageSize, startDate, endDate);
+	this.continuationToken = continuationToken;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IKeysetSearchCriteria#getContinuationToken()
+     */
+    @Override
+    public String getContinuationToken() {
+	return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+	this.continuationToken = continuationToken;
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IKeysetSearchCriteria#isExactCount()
+     */
+    @Override
+    public boolean isExactCount() {
+	return exactCount;
+    }
+
+    public void setExactCount(boolean exactCount) {
+	this.exactCount = exactCount;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.search;
+
+import java.util.List;
+
+import com.sitewhere.spi.search.IKeysetSearchResults;
+
+/**
+ * Search results that include a token for requesting the next page.
+ * 
+ * @author Derek
+ *
+ * @param <T>
+ */
+public class KeysetSearchResults<T> extends SearchResults<T> implements IKeysetSearchResults<T> {
+
+    /** Token for next page */
+    private String continuationToken;
+
+    public KeysetSearchResults(List<T> results) {
+	super(results);
+    }
+
+    /*
+     * @see com.sitewhere.spi.search.IKeysetSearchResults#getContinuationToken()
+     */
+    @Override
+    public String getContinuationToken() {
+	return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+	this.continuationToken = continuationToken;
+    }
+}
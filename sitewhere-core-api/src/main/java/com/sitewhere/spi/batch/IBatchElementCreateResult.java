@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.batch;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Outcome of creating a single element in a bulk batch element create call.
+ * Either the element or the error is set.
+ * 
+ * @author Derek
+ */
+public interface IBatchElementCreateResult {
+
+    /**
+     * Get token for device the element was requested for.
+     * 
+     * @return
+     */
+    public String getDeviceToken();
+
+    /**
+     * Get created (or previously existing) element. Null if creation failed.
+     * 
+     * @return
+     */
+    public IBatchElement getElement();
+
+    /**
+     * Get error that prevented the element from being created.
+     * 
+     * @return
+     */
+    public SiteWhereException getError();
+}
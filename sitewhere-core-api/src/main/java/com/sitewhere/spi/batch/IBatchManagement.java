@@ -7,6 +7,7 @@
  */
 package com.sitewhere.spi.batch;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -95,6 +96,21 @@ public interface IBatchManagement extends ITenantEngineLifecycleComponent {
     public IBatchElement createBatchElement(UUID batchOperationId, IBatchElementCreateRequest request)
 	    throws SiteWhereException;
 
+    /**
+     * Create batch elements for a list of device tokens in a single call. The
+     * result has one entry per request in the same order, holding either the
+     * element or the error that prevented it from being created. If an element
+     * already exists for the device, the existing element is returned so that
+     * the call can safely be repeated.
+     * 
+     * @param batchOperationId
+     * @param requests
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IBatchElementCreateResult> createBatchElements(UUID batchOperationId,
+	    List<IBatchElementCreateRequest> requests) throws SiteWhereException;
+
     /**
      * Lists elements for an {@link IBatchOperation} that meet the given criteria.
      * 
@@ -8,12 +8,14 @@
 package com.sitewhere.spi.device.event;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -39,6 +41,26 @@ public interface IDeviceEventManagement extends ITenantEngineLifecycleComponent
     public IDeviceEventBatchResponse addDeviceEventBatch(UUID deviceAssignmentId, IDeviceEventBatch batch)
 	    throws SiteWhereException;
 
+    /**
+     * Add events of any type for one or more device assignments. Each assignment
+     * is resolved once and events are written in as few datastore operations as
+     * the implementation allows. Events are created in the order given for each
+     * assignment. Requests for assignments that can not be resolved are skipped.
+     * 
+     * Ids for the created events may be supplied for each assignment in the
+     * same order as the requests. Ids derived from the source of the events
+     * allow a redelivered batch to be stored again without creating duplicates.
+     * Random ids are used if no ids are supplied. Events that can not be created
+     * because their alternate id is already in use are left out of the result.
+     * 
+     * @param requests
+     * @param eventIds
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException;
+
     /**
      * Get a device event by id.
      * 
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.kafka;
+
+/**
+ * Types of device management changes published for cache invalidation.
+ * 
+ * @author Derek
+ */
+public enum DeviceManagementUpdateType {
+
+    /** Device was updated */
+    DeviceUpdated,
+
+    /** Device was deleted */
+    DeviceDeleted,
+
+    /** Assignment was created */
+    AssignmentCreated,
+
+    /** Assignment was updated */
+    AssignmentUpdated,
+
+    /** Assignment was ended */
+    AssignmentEnded,
+
+    /** Assignment was deleted */
+    AssignmentDeleted;
+}
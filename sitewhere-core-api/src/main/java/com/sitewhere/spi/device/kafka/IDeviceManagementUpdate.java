@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.kafka;
+
+import java.util.UUID;
+
+/**
+ * Notification that a device or one of its assignments has changed. Sent via
+ * Kafka so that microservices holding cached copies can invalidate them.
+ * 
+ * @author Derek
+ */
+public interface IDeviceManagementUpdate {
+
+    /**
+     * Get type of change.
+     * 
+     * @return
+     */
+    public DeviceManagementUpdateType getType();
+
+    /**
+     * Get id of affected device.
+     * 
+     * @return
+     */
+    public UUID getDeviceId();
+
+    /**
+     * Get token of affected device.
+     * 
+     * @return
+     */
+    public String getDeviceToken();
+
+    /**
+     * Get id of affected assignment (null for device changes).
+     * 
+     * @return
+     */
+    public UUID getDeviceAssignmentId();
+
+    /**
+     * Get token of affected assignment (null for device changes).
+     * 
+     * @return
+     */
+    public String getDeviceAssignmentToken();
+}
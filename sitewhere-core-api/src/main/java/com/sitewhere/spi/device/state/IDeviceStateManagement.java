@@ -7,6 +7,8 @@
  */
 package com.sitewhere.spi.device.state;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -49,6 +51,17 @@ public interface IDeviceStateManagement extends ITenantEngineLifecycleComponent
      */
     public IDeviceState getDeviceStateByDeviceAssignmentId(UUID assignmentId) throws SiteWhereException;
 
+    /**
+     * Get device states for multiple device assignments in a single call.
+     * Assignments without a device state are skipped.
+     * 
+     * @param assignmentIds
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDeviceState> getDeviceStatesByDeviceAssignmentIds(List<UUID> assignmentIds)
+	    throws SiteWhereException;
+
     /**
      * Search for device states that match the given criteria.
      * 
@@ -69,6 +82,17 @@ public interface IDeviceStateManagement extends ITenantEngineLifecycleComponent
      */
     public IDeviceState updateDeviceState(UUID id, IDeviceStateCreateRequest request) throws SiteWhereException;
 
+    /**
+     * Update multiple existing device states in a single call. Requests are
+     * mapped by device state id. States that no longer exist are skipped.
+     * 
+     * @param requests
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDeviceState> updateDeviceStates(Map<UUID, IDeviceStateCreateRequest> requests)
+	    throws SiteWhereException;
+
     /**
      * Delete existing device state.
      * 
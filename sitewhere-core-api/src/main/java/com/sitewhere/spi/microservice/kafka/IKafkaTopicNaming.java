@@ -169,4 +169,12 @@ public interface IKafkaTopicNaming {
      * @return
      */
     public String getFailedBatchElementsTopic(ITenant tenant);
+
+    /**
+     * Get topic for device and assignment changes that invalidate cached data.
+     * 
+     * @param tenant
+     * @return
+     */
+    public String getDeviceManagementUpdatesTopic(ITenant tenant);
 }
\ No newline at end of file
@@ -55,10 +55,24 @@ public interface IMicroserviceKafkaConsumer extends ITenantEngineLifecycleCompon
     public List<String> getSourceTopicNames() throws SiteWhereException;
 
     /**
-     * Process a batch of records for a partition.
+     * Process a batch of records for a partition. Implementations throw
+     * {@link KafkaBatchProcessingException} if the batch could not be processed
+     * and offsets for the records should not be committed.
      * 
      * @param topicPartition
      * @param records
      */
     public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records);
+
+    /**
+     * Handle a batch of records that could not be processed after retrying. The
+     * partition is paused and the batch keeps being retried until it succeeds or
+     * the partition is revoked, so offsets for the records are not committed.
+     * 
+     * @param topicPartition
+     * @param records
+     * @param cause
+     */
+    public void processFailed(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records,
+	    Throwable cause);
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.microservice.kafka;
+
+/**
+ * Indicates that a batch of Kafka records was not fully processed, so offsets
+ * for the records must not be committed.
+ * 
+ * @author Derek
+ */
+public class KafkaBatchProcessingException extends RuntimeException {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 4383609713906542177L;
+
+    public KafkaBatchProcessingException(String message, Throwable cause) {
+	super(message, cause);
+    }
+
+    public KafkaBatchProcessingException(String message) {
+	super(message);
+    }
+}
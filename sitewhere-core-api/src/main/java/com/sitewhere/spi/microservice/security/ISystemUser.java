@@ -29,7 +29,8 @@ public interface ISystemUser {
     public Authentication getAuthentication() throws SiteWhereException;
 
     /**
-     * Get authentication for superuser in context of a given tenant.
+     * Get authentication for superuser in context of a given tenant. The result
+     * may be cached and shared between threads, so it should not be modified.
      * 
      * @param tenant
      * @return
@@ -33,7 +33,8 @@ public interface ITokenManagement {
     public String generateToken(IUser user, int expirationInMinutes) throws SiteWhereException;
 
     /**
-     * Get claims for the given token.
+     * Get claims for the given token. Implementations may cache claims for
+     * verified tokens, so returned claims should not be modified.
      * 
      * @param token
      * @return
@@ -22,4 +22,7 @@ public class DeviceStateManagementBeans {
 
     /** Bean id for presence manager in server configuration */
     public static final String BEAN_PRESENCE_MANAGER = "presenceManager";
+
+    /** Bean id for device state processing logic in server configuration */
+    public static final String BEAN_DEVICE_STATE_PROCESSING_LOGIC = "deviceStateProcessingLogic";
 }
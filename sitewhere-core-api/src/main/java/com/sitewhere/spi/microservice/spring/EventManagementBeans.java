@@ -25,4 +25,7 @@ public class EventManagementBeans {
 
     /** Bean id for event management in server configuration */
     public static final String BEAN_EVENT_MANAGEMENT = "eventManagement";
+
+    /** Bean id for core event management configuration */
+    public static final String BEAN_EVENT_MANAGEMENT_CONFIGURATION = "eventManagementConfiguration";
 }
\ No newline at end of file
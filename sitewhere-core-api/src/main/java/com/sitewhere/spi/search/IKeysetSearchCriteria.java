@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.search;
+
+/**
+ * Search criteria that pages by seeking past the last result of the previous
+ * page rather than skipping a number of results. The page number is ignored
+ * and each page costs the same to retrieve no matter how deep it is.
+ * 
+ * @author Derek
+ */
+public interface IKeysetSearchCriteria extends IDateRangeSearchCriteria {
+
+    /**
+     * Get opaque token returned with the previous page of results. A null value
+     * requests the first page.
+     * 
+     * @return
+     */
+    public String getContinuationToken();
+
+    /**
+     * Indicates whether an exact count of matching results is required. If not,
+     * matches are not counted and the number of results is reported as -1.
+     * 
+     * @return
+     */
+    public boolean isExactCount();
+}
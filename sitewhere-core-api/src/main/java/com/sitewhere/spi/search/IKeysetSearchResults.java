@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.search;
+
+/**
+ * Search results for a page requested with {@link IKeysetSearchCriteria}.
+ * 
+ * @author Derek
+ *
+ * @param <T>
+ */
+public interface IKeysetSearchResults<T> extends ISearchResults<T> {
+
+    /**
+     * Get token used to request the next page of results. A null value indicates
+     * there are no more results.
+     * 
+     * @return
+     */
+    public String getContinuationToken();
+}
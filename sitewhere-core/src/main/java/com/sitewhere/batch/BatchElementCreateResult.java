@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.batch;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.batch.IBatchElement;
+import com.sitewhere.spi.batch.IBatchElementCreateResult;
+
+/**
+ * Default implementation of {@link IBatchElementCreateResult}.
+ * 
+ * @author Derek
+ */
+public class BatchElementCreateResult implements IBatchElementCreateResult {
+
+    /** Device token */
+    private String deviceToken;
+
+    /** Created element */
+    private IBatchElement element;
+
+    /** Error if element was not created */
+    private SiteWhereException error;
+
+    public BatchElementCreateResult(String deviceToken, IBatchElement element) {
+	this.deviceToken = deviceToken;
+	this.element = element;
+    }
+
+    public BatchElementCreateResult(String deviceToken, SiteWhereException error) {
+	this.deviceToken = deviceToken;
+	this.error = error;
+    }
+
+    /*
+     * @see com.sitewhere.spi.batch.IBatchElementCreateResult#getDeviceToken()
+     */
+    @Override
+    public String getDeviceToken() {
+	return deviceToken;
+    }
+
+    /*
+     * @see com.sitewhere.spi.batch.IBatchElementCreateResult#getElement()
+     */
+    @Override
+    public IBatchElement getElement() {
+	return element;
+    }
+
+    /*
+     * @see com.sitewhere.spi.batch.IBatchElementCreateResult#getError()
+     */
+    @Override
+    public SiteWhereException getError() {
+	return error;
+    }
+}
@@ -7,11 +7,13 @@
  */
 package com.sitewhere.batch;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponentDecorator;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.batch.IBatchElement;
+import com.sitewhere.spi.batch.IBatchElementCreateResult;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
 import com.sitewhere.spi.batch.request.IBatchCommandInvocationRequest;
@@ -106,6 +108,17 @@ public class BatchManagementDecorator extends TenantEngineLifecycleComponentDeco
 	return getDelegate().createBatchElement(batchOperationId, request);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElementCreateResult> createBatchElements(UUID batchOperationId,
+	    List<IBatchElementCreateRequest> requests) throws SiteWhereException {
+	return getDelegate().createBatchElements(batchOperationId, requests);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#listBatchElements(java.util.UUID,
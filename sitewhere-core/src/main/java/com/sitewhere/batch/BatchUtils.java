@@ -9,7 +9,10 @@ package com.sitewhere.batch;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 import com.sitewhere.rest.model.search.device.DeviceAssignmentSearchCriteria;
 import com.sitewhere.rest.model.search.device.DeviceSearchCriteria;
@@ -29,8 +32,13 @@ import com.sitewhere.spi.error.ErrorLevel;
  */
 public class BatchUtils {
 
+    /** Number of records requested per page when resolving devices */
+    public static final int RESOLVE_PAGE_SIZE = 1000;
+
     /**
-     * Resolve device search criteria to a list of device tokens.
+     * Resolve device search criteria to a list of device tokens. Devices are read
+     * a page at a time and de-duplicated by id since paging is not isolated from
+     * inserts.
      * 
      * @param criteria
      * @param deviceManagement
@@ -44,19 +52,27 @@ public class BatchUtils {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceTypeToken, ErrorLevel.ERROR);
 	}
 
-	DeviceSearchCriteria search = new DeviceSearchCriteria(1, 0, null, null);
-	search.setDeviceTypeToken(criteria.getDeviceTypeToken());
-	List<IDevice> matches = deviceManagement.listDevices(search).getResults();
-
+	Set<UUID> resolved = new HashSet<UUID>();
 	List<String> deviceTokens = new ArrayList<String>();
-	for (IDevice match : matches) {
-	    deviceTokens.add(match.getToken());
+	for (int page = 1;; page++) {
+	    DeviceSearchCriteria search = new DeviceSearchCriteria(page, RESOLVE_PAGE_SIZE, null, null);
+	    search.setDeviceTypeToken(criteria.getDeviceTypeToken());
+	    List<IDevice> matches = deviceManagement.listDevices(search).getResults();
+	    for (IDevice match : matches) {
+		if (resolved.add(match.getId())) {
+		    deviceTokens.add(match.getToken());
+		}
+	    }
+	    if (matches.size() < RESOLVE_PAGE_SIZE) {
+		return deviceTokens;
+	    }
 	}
-	return deviceTokens;
     }
 
     /**
      * Resolve device assignment search criteria to a list of device tokens.
+     * Assignments are read a page at a time and each device is looked up once no
+     * matter how many of its assignments match.
      * 
      * @param criteria
      * @param deviceManagement
@@ -70,20 +86,26 @@ public class BatchUtils {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceTypeToken, ErrorLevel.ERROR);
 	}
 
-	DeviceAssignmentSearchCriteria search = new DeviceAssignmentSearchCriteria(1, 0);
-	search.setDeviceTypeTokens(Collections.singletonList(criteria.getDeviceTypeToken()));
-	search.setCustomerTokens(criteria.getCustomerTokens());
-	search.setAreaTokens(criteria.getAreaTokens());
-	search.setAssetTokens(criteria.getAssetTokens());
-	List<IDeviceAssignment> matches = deviceManagement.listDeviceAssignments(search).getResults();
-
+	Set<UUID> resolved = new HashSet<UUID>();
 	List<String> deviceTokens = new ArrayList<String>();
-	for (IDeviceAssignment match : matches) {
-	    IDevice device = deviceManagement.getDevice(match.getDeviceId());
-	    if (!deviceTokens.contains(device.getToken())) {
-		deviceTokens.add(device.getToken());
+	for (int page = 1;; page++) {
+	    DeviceAssignmentSearchCriteria search = new DeviceAssignmentSearchCriteria(page, RESOLVE_PAGE_SIZE);
+	    search.setDeviceTypeTokens(Collections.singletonList(criteria.getDeviceTypeToken()));
+	    search.setCustomerTokens(criteria.getCustomerTokens());
+	    search.setAreaTokens(criteria.getAreaTokens());
+	    search.setAssetTokens(criteria.getAssetTokens());
+	    List<IDeviceAssignment> matches = deviceManagement.listDeviceAssignments(search).getResults();
+	    for (IDeviceAssignment match : matches) {
+		if (resolved.add(match.getDeviceId())) {
+		    IDevice device = deviceManagement.getDevice(match.getDeviceId());
+		    if (device != null) {
+			deviceTokens.add(device.getToken());
+		    }
+		}
+	    }
+	    if (matches.size() < RESOLVE_PAGE_SIZE) {
+		return deviceTokens;
 	    }
 	}
-	return deviceTokens;
     }
-}
\ No newline at end of file
+}
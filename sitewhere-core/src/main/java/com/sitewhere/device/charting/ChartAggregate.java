@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+/**
+ * Function used to combine the measurements that fall in a time bucket into a
+ * single chart entry.
+ *
+ * @author Derek
+ */
+public enum ChartAggregate {
+
+    /** Smallest value in bucket */
+    Min,
+
+    /** Largest value in bucket */
+    Max,
+
+    /** Average of values in bucket */
+    Avg,
+
+    /** Number of values in bucket */
+    Count,
+
+    /** Value with latest date in bucket */
+    Last;
+
+    /**
+     * Get aggregate by name, ignoring case.
+     *
+     * @param name
+     * @return aggregate or null if not found
+     */
+    public static ChartAggregate fromName(String name) {
+	for (ChartAggregate value : values()) {
+	    if (value.name().equalsIgnoreCase(name)) {
+		return value;
+	    }
+	}
+	return null;
+    }
+}
\ No newline at end of file
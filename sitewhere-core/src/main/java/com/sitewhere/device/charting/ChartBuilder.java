@@ -12,8 +12,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import com.sitewhere.rest.model.device.charting.ChartEntry;
 import com.sitewhere.rest.model.device.charting.ChartSeries;
@@ -22,36 +25,117 @@ import com.sitewhere.spi.device.event.IDeviceMeasurement;
 
 /**
  * Builds chart series from measurements.
+ *
+ * If an interval is set, measurements are grouped into time buckets of that
+ * size as they are added and each bucket is reduced to a single entry with the
+ * configured {@link ChartAggregate}, so only one entry per bucket is kept in
+ * memory no matter how many measurements are added. If a maximum number of
+ * points is set, each series is downsampled with {@link Lttb} once built. When
+ * only a maximum number of points is set, measurements are bucketed with an
+ * interval that starts at one millisecond and is doubled whenever a series has
+ * more than {@link #BUCKETS_PER_POINT} buckets per point, so memory use is
+ * bounded by the number of points rather than the number of measurements.
  */
 public class ChartBuilder {
 
+    /** Max buckets kept per requested point before adaptive interval is doubled */
+    public static final int BUCKETS_PER_POINT = 4;
+
     /** Map of measurement names to series */
     private Map<String, ChartSeries<Double>> seriesByMeasurementName;
 
+    /** Map of measurement names to buckets by start time */
+    private Map<String, TreeMap<Long, ChartBucket>> bucketsByMeasurementName;
+
+    /** Measurement names to include (null for all) */
+    private Set<String> measurementIds;
+
+    /** Bucket size in milliseconds (zero for no bucketing) */
+    private long interval;
+
+    /** Function used to combine values in a bucket */
+    private ChartAggregate aggregate = ChartAggregate.Avg;
+
+    /** Max number of points per series (zero for no limit) */
+    private int maxPoints;
+
+    /** Bucket size used when only max points is set */
+    private long adaptiveInterval;
+
+    public ChartBuilder() {
+	reset(null);
+    }
+
     /**
      * Process measurements into a list of charts series.
-     * 
+     *
      * @param matches
      * @return
      */
     public List<IChartSeries<Double>> process(List<IDeviceMeasurement> matches, String[] measurementIds) {
+	reset(measurementIds);
+	add(matches);
+	return build();
+    }
+
+    /**
+     * Clear any added measurements and set the measurement names to include.
+     *
+     * @param measurementIds
+     */
+    public void reset(String[] measurementIds) {
 	seriesByMeasurementName = new HashMap<String, ChartSeries<Double>>();
-	List<String> mxids = null;
+	bucketsByMeasurementName = new HashMap<String, TreeMap<Long, ChartBucket>>();
+	adaptiveInterval = 1;
+	this.measurementIds = null;
 	if ((measurementIds != null) && (measurementIds.length > 0)) {
-	    mxids = Arrays.asList(measurementIds);
+	    this.measurementIds = new HashSet<String>(Arrays.asList(measurementIds));
 	}
+    }
 
-	// Add all measurements.
+    /**
+     * Add a page of measurements.
+     *
+     * @param matches
+     */
+    public void add(List<IDeviceMeasurement> matches) {
 	for (IDeviceMeasurement mx : matches) {
-	    addSeriesEntry(mx.getName(), mx.getValue(), mx.getEventDate());
+	    if ((measurementIds != null) && (!measurementIds.contains(mx.getName()))) {
+		continue;
+	    }
+	    if ((interval > 0) || (maxPoints > 0)) {
+		addBucketValue(mx.getName(), mx.getValue(), mx.getEventDate());
+	    } else {
+		addSeriesEntry(mx.getName(), mx.getValue(), mx.getEventDate());
+	    }
 	}
+    }
+
+    /**
+     * Build chart series from measurements added so far.
+     *
+     * @return
+     */
+    public List<IChartSeries<Double>> build() {
+	if ((interval > 0) || (maxPoints > 0)) {
+	    for (Map.Entry<String, TreeMap<Long, ChartBucket>> entry : bucketsByMeasurementName.entrySet()) {
+		for (ChartBucket bucket : entry.getValue().values()) {
+		    addSeriesEntry(entry.getKey(), bucket.getValue(getAggregate()), bucket.getStart());
+		}
+	    }
+	    bucketsByMeasurementName.clear();
+	}
+
 	// Sort entries by date.
 	List<IChartSeries<Double>> results = new ArrayList<IChartSeries<Double>>();
-	for (IChartSeries<Double> series : seriesByMeasurementName.values()) {
-	    if ((mxids == null) || (mxids.contains(series.getMeasurementId()))) {
-		Collections.sort(series.getEntries());
-		results.add(series);
+	for (ChartSeries<Double> series : seriesByMeasurementName.values()) {
+	    Collections.sort(series.getEntries());
+	    if (maxPoints > 0) {
+		List<ChartEntry<Double>> sampled = Lttb.downsample(withValues(series.getEntries()), maxPoints);
+		series.getEntries().clear();
+		series.getEntries().addAll(sampled);
 	    }
+	    results.add(series);
 	}
 	return results;
     }
@@ -59,7 +143,7 @@ public class ChartBuilder {
     /**
      * Add a new measurement entry. Create a new series if one does not already
      * exist.
-     * 
+     *
      * @param key
      * @param value
      * @param date
@@ -77,4 +161,179 @@ public class ChartBuilder {
 	seriesEntry.setMeasurementDate(date);
 	series.getEntries().add(seriesEntry);
     }
+
+    /**
+     * Add a value to the bucket that contains its date.
+     *
+     * @param key
+     * @param value
+     * @param date
+     */
+    protected void addBucketValue(String key, Double value, Date date) {
+	if ((value == null) || (date == null)) {
+	    return;
+	}
+	TreeMap<Long, ChartBucket> buckets = bucketsByMeasurementName.get(key);
+	if (buckets == null) {
+	    buckets = new TreeMap<Long, ChartBucket>();
+	    bucketsByMeasurementName.put(key, buckets);
+	}
+	long bucketInterval = getBucketInterval();
+	long start = Math.floorDiv(date.getTime(), bucketInterval) * bucketInterval;
+	ChartBucket bucket = buckets.get(start);
+	if (bucket == null) {
+	    bucket = new ChartBucket(new Date(start));
+	    buckets.put(start, bucket);
+	}
+	bucket.add(value, date.getTime());
+	if ((interval <= 0) && (buckets.size() > (long) maxPoints * BUCKETS_PER_POINT)) {
+	    widenBuckets();
+	}
+    }
+
+    /**
+     * Double the adaptive interval and merge existing buckets for all series into
+     * buckets of the new size. Bucket starts stay aligned since the new interval
+     * is a multiple of the old one.
+     */
+    protected void widenBuckets() {
+	adaptiveInterval *= 2;
+	for (Map.Entry<String, TreeMap<Long, ChartBucket>> entry : bucketsByMeasurementName.entrySet()) {
+	    TreeMap<Long, ChartBucket> merged = new TreeMap<Long, ChartBucket>();
+	    for (ChartBucket bucket : entry.getValue().values()) {
+		long start = Math.floorDiv(bucket.getStart().getTime(), adaptiveInterval) * adaptiveInterval;
+		ChartBucket target = merged.get(start);
+		if (target == null) {
+		    target = new ChartBucket(new Date(start));
+		    merged.put(start, target);
+		}
+		target.merge(bucket);
+	    }
+	    entry.setValue(merged);
+	}
+    }
+
+    /**
+     * Get bucket size currently in use.
+     *
+     * @return
+     */
+    protected long getBucketInterval() {
+	return (interval > 0) ? interval : adaptiveInterval;
+    }
+
+    /**
+     * Get entries that have a value and a date.
+     *
+     * @param entries
+     * @return
+     */
+    protected static List<ChartEntry<Double>> withValues(List<ChartEntry<Double>> entries) {
+	List<ChartEntry<Double>> valid = new ArrayList<ChartEntry<Double>>(entries.size());
+	for (ChartEntry<Double> entry : entries) {
+	    if ((entry.getValue() != null) && (entry.getMeasurementDate() != null)) {
+		valid.add(entry);
+	    }
+	}
+	return valid;
+    }
+
+    public long getInterval() {
+	return interval;
+    }
+
+    public void setInterval(long interval) {
+	this.interval = interval;
+    }
+
+    public ChartAggregate getAggregate() {
+	return aggregate;
+    }
+
+    public void setAggregate(ChartAggregate aggregate) {
+	this.aggregate = aggregate;
+    }
+
+    public int getMaxPoints() {
+	return maxPoints;
+    }
+
+    public void setMaxPoints(int maxPoints) {
+	this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Running totals for values in a time bucket.
+     *
+     * @author Derek
+     */
+    private static class ChartBucket {
+
+	/** Bucket start time */
+	private Date start;
+
+	/** Smallest value */
+	private double min = Double.POSITIVE_INFINITY;
+
+	/** Largest value */
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/** Sum of values */
+	private double sum;
+
+	/** Number of values */
+	private long count;
+
+	/** Value with latest date */
+	private double last;
+
+	/** Latest date */
+	private long lastTime = Long.MIN_VALUE;
+
+	public ChartBucket(Date start) {
+	    this.start = start;
+	}
+
+	public void add(double value, long time) {
+	    min = Math.min(min, value);
+	    max = Math.max(max, value);
+	    sum += value;
+	    count++;
+	    if (time >= lastTime) {
+		last = value;
+		lastTime = time;
+	    }
+	}
+
+	public void merge(ChartBucket other) {
+	    min = Math.min(min, other.min);
+	    max = Math.max(max, other.max);
+	    sum += other.sum;
+	    count += other.count;
+	    if (other.lastTime >= lastTime) {
+		last = other.last;
+		lastTime = other.lastTime;
+	    }
+	}
+
+	public Double getValue(ChartAggregate aggregate) {
+	    switch (aggregate) {
+	    case Min:
+		return min;
+	    case Max:
+		return max;
+	    case Count:
+		return (double) count;
+	    case Last:
+		return last;
+	    case Avg:
+	    default:
+		return sum / count;
+	    }
+	}
+
+	public Date getStart() {
+	    return start;
+	}
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sitewhere.rest.model.device.charting.ChartEntry;
+
+/**
+ * Downsamples chart entries with the Largest-Triangle-Three-Buckets algorithm,
+ * which keeps the points that contribute most to the visual shape of a series.
+ * The first and last entries are always kept. Entries are expected to be
+ * sorted by date and have non-null values.
+ *
+ * @author Derek
+ */
+public class Lttb {
+
+    /**
+     * Downsample entries to at most the given number of points.
+     *
+     * @param entries
+     * @param threshold
+     * @return
+     */
+    public static List<ChartEntry<Double>> downsample(List<ChartEntry<Double>> entries, int threshold) {
+	int size = entries.size();
+	if ((threshold < 3) || (size <= threshold)) {
+	    return entries;
+	}
+	List<ChartEntry<Double>> sampled = new ArrayList<ChartEntry<Double>>(threshold);
+	double every = (double) (size - 2) / (threshold - 2);
+	int a = 0;
+	sampled.add(entries.get(a));
+	for (int i = 0; i < threshold - 2; i++) {
+	    // Average of next bucket is third point of triangle.
+	    int nextStart = (int) Math.floor((i + 1) * every) + 1;
+	    int nextEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+	    double avgX = 0;
+	    double avgY = 0;
+	    for (int j = nextStart; j < nextEnd; j++) {
+		avgX += x(entries.get(j));
+		avgY += entries.get(j).getValue();
+	    }
+	    int count = Math.max(nextEnd - nextStart, 1);
+	    avgX /= count;
+	    avgY /= count;
+
+	    // Pick point in current bucket that forms largest triangle.
+	    int start = (int) Math.floor(i * every) + 1;
+	    int end = (int) Math.floor((i + 1) * every) + 1;
+	    double ax = x(entries.get(a));
+	    double ay = entries.get(a).getValue();
+	    double maxArea = -1;
+	    int selected = start;
+	    for (int j = start; j < end; j++) {
+		double area = Math.abs((ax - avgX) * (entries.get(j).getValue() - ay)
+			- (ax - x(entries.get(j))) * (avgY - ay));
+		if (area > maxArea) {
+		    maxArea = area;
+		    selected = j;
+		}
+	    }
+	    sampled.add(entries.get(selected));
+	    a = selected;
+	}
+	sampled.add(entries.get(size - 1));
+	return sampled;
+    }
+
+    /**
+     * Get x coordinate for an entry.
+     *
+     * @param entry
+     * @return
+     */
+    protected static double x(ChartEntry<Double> entry) {
+	return entry.getMeasurementDate().getTime();
+    }
+}
\ No newline at end of file
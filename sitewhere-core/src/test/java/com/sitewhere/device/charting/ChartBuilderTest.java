@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sitewhere.rest.model.device.charting.ChartEntry;
+import com.sitewhere.rest.model.device.charting.ChartSeries;
+import com.sitewhere.rest.model.device.event.DeviceMeasurement;
+import com.sitewhere.spi.device.charting.IChartSeries;
+import com.sitewhere.spi.device.event.IDeviceMeasurement;
+
+public class ChartBuilderTest {
+
+    /** Delta used for comparing values */
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testAggregates() {
+	// Two buckets of 10 seconds, with values out of date order.
+	List<IDeviceMeasurement> measurements = new ArrayList<IDeviceMeasurement>();
+	measurements.add(measurement("temp", 3, 4000));
+	measurements.add(measurement("temp", 1, 9000));
+	measurements.add(measurement("temp", 5, 1000));
+	measurements.add(measurement("temp", 10, 15000));
+
+	assertValues(measurements, ChartAggregate.Min, new double[] { 1, 10 });
+	assertValues(measurements, ChartAggregate.Max, new double[] { 5, 10 });
+	assertValues(measurements, ChartAggregate.Avg, new double[] { 3, 10 });
+	assertValues(measurements, ChartAggregate.Count, new double[] { 3, 1 });
+	assertValues(measurements, ChartAggregate.Last, new double[] { 1, 10 });
+    }
+
+    @Test
+    public void testBucketsAcrossPages() {
+	ChartBuilder builder = new ChartBuilder();
+	builder.setInterval(10000);
+	builder.setAggregate(ChartAggregate.Avg);
+	builder.reset(null);
+	List<IDeviceMeasurement> first = new ArrayList<IDeviceMeasurement>();
+	first.add(measurement("temp", 2, 12000));
+	first.add(measurement("humidity", 50, 5000));
+	List<IDeviceMeasurement> second = new ArrayList<IDeviceMeasurement>();
+	second.add(measurement("temp", 4, 11000));
+	builder.add(first);
+	builder.add(second);
+
+	List<IChartSeries<Double>> series = builder.build();
+	assertEquals(2, series.size());
+	List<ChartEntry<Double>> temp = entries(series, "temp");
+	assertEquals(1, temp.size());
+	assertEquals(3, temp.get(0).getValue(), DELTA);
+	assertEquals(new Date(10000), temp.get(0).getMeasurementDate());
+    }
+
+    @Test
+    public void testMeasurementIdFilter() {
+	List<IDeviceMeasurement> measurements = new ArrayList<IDeviceMeasurement>();
+	measurements.add(measurement("temp", 1, 1000));
+	measurements.add(measurement("humidity", 50, 1000));
+	List<IChartSeries<Double>> series = new ChartBuilder().process(measurements, new String[] { "temp" });
+	assertEquals(1, series.size());
+	assertEquals("temp", ((ChartSeries<Double>) series.get(0)).getMeasurementId());
+    }
+
+    @Test
+    public void testMaxPointsBoundsBuckets() {
+	ChartBuilder builder = new ChartBuilder();
+	builder.setMaxPoints(20);
+	builder.reset(null);
+	for (int page = 0; page < 100; page++) {
+	    List<IDeviceMeasurement> measurements = new ArrayList<IDeviceMeasurement>();
+	    for (int i = 0; i < 1000; i++) {
+		long time = (page * 1000L + i) * 1000L;
+		measurements.add(measurement("temp", Math.sin(time / 1000000.0), time));
+	    }
+	    builder.add(measurements);
+	}
+
+	// Buckets are widened as values are added rather than keeping every value.
+	assertTrue(builder.getBucketInterval() > 1000);
+	List<ChartEntry<Double>> entries = entries(builder.build(), "temp");
+	assertEquals(20, entries.size());
+	for (int i = 1; i < entries.size(); i++) {
+	    assertTrue(entries.get(i - 1).getMeasurementDate().before(entries.get(i).getMeasurementDate()));
+	}
+    }
+
+    /**
+     * Build series for measurements with ten second buckets and verify values.
+     * 
+     * @param measurements
+     * @param aggregate
+     * @param expected
+     */
+    protected static void assertValues(List<IDeviceMeasurement> measurements, ChartAggregate aggregate,
+	    double[] expected) {
+	ChartBuilder builder = new ChartBuilder();
+	builder.setInterval(10000);
+	builder.setAggregate(aggregate);
+	builder.reset(null);
+	builder.add(measurements);
+	List<ChartEntry<Double>> entries = entries(builder.build(), "temp");
+	assertEquals(expected.length, entries.size());
+	for (int i = 0; i < expected.length; i++) {
+	    assertEquals(aggregate.name(), expected[i], entries.get(i).getValue(), DELTA);
+	}
+    }
+
+    /**
+     * Get entries for a series by measurement id.
+     * 
+     * @param series
+     * @param measurementId
+     * @return
+     */
+    protected static List<ChartEntry<Double>> entries(List<IChartSeries<Double>> series, String measurementId) {
+	for (IChartSeries<Double> current : series) {
+	    ChartSeries<Double> chart = (ChartSeries<Double>) current;
+	    if (measurementId.equals(chart.getMeasurementId())) {
+		return chart.getEntries();
+	    }
+	}
+	throw new AssertionError("No series for " + measurementId);
+    }
+
+    /**
+     * Create a measurement.
+     * 
+     * @param name
+     * @param value
+     * @param time
+     * @return
+     */
+    protected static IDeviceMeasurement measurement(String name, double value, long time) {
+	DeviceMeasurement measurement = new DeviceMeasurement();
+	measurement.setName(name);
+	measurement.setValue(value);
+	measurement.setEventDate(new Date(time));
+	return measurement;
+    }
+}
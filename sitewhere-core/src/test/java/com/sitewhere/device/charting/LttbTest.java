@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sitewhere.rest.model.device.charting.ChartEntry;
+
+public class LttbTest {
+
+    @Test
+    public void testBelowThreshold() {
+	List<ChartEntry<Double>> entries = entries(new double[] { 1, 2, 3, 4, 5 });
+	assertSame(entries, Lttb.downsample(entries, 5));
+	assertSame(entries, Lttb.downsample(entries, 10));
+
+	// Thresholds under three can not keep both end points and a middle point.
+	assertSame(entries, Lttb.downsample(entries, 2));
+    }
+
+    @Test
+    public void testKeepsEndsAndOrder() {
+	double[] values = new double[1000];
+	for (int i = 0; i < values.length; i++) {
+	    values[i] = Math.sin(i / 20.0);
+	}
+	List<ChartEntry<Double>> entries = entries(values);
+	List<ChartEntry<Double>> sampled = Lttb.downsample(entries, 50);
+	assertEquals(50, sampled.size());
+	assertSame(entries.get(0), sampled.get(0));
+	assertSame(entries.get(999), sampled.get(49));
+	for (int i = 1; i < sampled.size(); i++) {
+	    assertTrue(sampled.get(i - 1).getMeasurementDate().before(sampled.get(i).getMeasurementDate()));
+	}
+    }
+
+    @Test
+    public void testKeepsPeak() {
+	double[] values = new double[100];
+	values[37] = 100;
+	List<ChartEntry<Double>> entries = entries(values);
+	List<ChartEntry<Double>> sampled = Lttb.downsample(entries, 10);
+	assertEquals(10, sampled.size());
+	assertTrue(sampled.contains(entries.get(37)));
+    }
+
+    /**
+     * Create entries one second apart with the given values.
+     * 
+     * @param values
+     * @return
+     */
+    protected static List<ChartEntry<Double>> entries(double[] values) {
+	List<ChartEntry<Double>> entries = new ArrayList<ChartEntry<Double>>();
+	for (int i = 0; i < values.length; i++) {
+	    ChartEntry<Double> entry = new ChartEntry<Double>();
+	    entry.setValue(values[i]);
+	    entry.setMeasurementDate(new Date(i * 1000L));
+	    entries.add(entry);
+	}
+	return entries;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.grpc.client.cache;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.rest.model.tenant.Tenant;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.tenant.ITenant;
+
+/**
+ * Measures throughput of cache lookups through {@link CacheProvider} as the
+ * number of reading threads grows. Lookups for existing caches do not lock,
+ * so throughput should keep increasing up to the number of available cores
+ * rather than flattening out on a shared monitor.
+ *
+ * Run with "gradle :sitewhere-grpc-client:jmh".
+ *
+ * @author Derek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheProviderBenchmark {
+
+    /** Number of cached keys per tenant */
+    private static final int KEY_COUNT = 1000;
+
+    /** Number of tenants with caches (zero uses the global cache) */
+    @Param({ "0", "1", "16" })
+    public int tenantCount;
+
+    /** Provider under test */
+    private TestCacheProvider provider;
+
+    /** Tenants with populated caches */
+    private ITenant[] tenants;
+
+    /** Cached keys */
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws SiteWhereException {
+	this.provider = new TestCacheProvider(new CacheConfiguration(KEY_COUNT * 2, 3600));
+	provider.getCacheManager().init();
+
+	this.keys = new String[KEY_COUNT];
+	for (int i = 0; i < KEY_COUNT; i++) {
+	    keys[i] = "device-" + i;
+	}
+	this.tenants = new ITenant[Math.max(1, tenantCount)];
+	for (int i = 0; i < tenants.length; i++) {
+	    if (tenantCount > 0) {
+		Tenant tenant = new Tenant();
+		tenant.setId(UUID.randomUUID());
+		tenant.setToken("tenant-" + i);
+		tenants[i] = tenant;
+	    }
+	    for (String key : keys) {
+		provider.setCacheEntry(tenants[i], key, key);
+	    }
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	provider.getCacheManager().close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String lookup01Thread() throws SiteWhereException {
+	return lookup();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String lookup08Threads() throws SiteWhereException {
+	return lookup();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String lookup32Threads() throws SiteWhereException {
+	return lookup();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String lookup64Threads() throws SiteWhereException {
+	return lookup();
+    }
+
+    /**
+     * Look up a random key for a random tenant.
+     *
+     * @return
+     * @throws SiteWhereException
+     */
+    protected String lookup() throws SiteWhereException {
+	ThreadLocalRandom random = ThreadLocalRandom.current();
+	ITenant tenant = tenants[random.nextInt(tenants.length)];
+	return provider.getCacheEntry(tenant, keys[random.nextInt(KEY_COUNT)]);
+    }
+
+    /**
+     * Cache provider for string values.
+     *
+     * @author Derek
+     */
+    public static class TestCacheProvider extends CacheProvider<String, String> {
+
+	public TestCacheProvider(CacheConfiguration configuration) {
+	    super(CacheIdentifier.DeviceByToken, String.class, String.class, configuration);
+	}
+    }
+}
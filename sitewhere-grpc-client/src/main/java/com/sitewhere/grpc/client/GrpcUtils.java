@@ -7,9 +7,7 @@
  */
 package com.sitewhere.grpc.client;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -51,9 +49,6 @@ public class GrpcUtils {
     /** Static logger instance */
     private static Logger LOGGER = LoggerFactory.getLogger(GrpcUtils.class);
 
-    /** Hashmap of JWT to decoded claims */
-    private static Map<String, Claims> jwtToClaims = new HashMap<String, Claims>();
-
     public static void handleClientMethodEntry(IApiChannel<?> channel, MethodDescriptor<?, ?> method,
 	    DebugParameter... parameters) {
 	LOGGER.debug(channel.getClass().getSimpleName() + " connected to '" + channel.getFunctionIdentifier().getPath()
@@ -119,20 +114,15 @@ public class GrpcUtils {
     }
 
     /**
-     * Get cached claims for JWT.
+     * Get claims for JWT. Token management caches verified claims until the token
+     * expires, so repeated calls with the same token are not verified again.
      * 
      * @param jwt
      * @return
      * @throws SiteWhereException
      */
     protected static Claims getClaimsForJwt(IGrpcApiImplementation api, String jwt) throws SiteWhereException {
-	// TODO: Swap to expiring cache and put limits on number of cached JWTs.
-	Claims claims = jwtToClaims.get(jwt);
-	if (claims == null) {
-	    claims = api.getMicroservice().getTokenManagement().getClaimsForToken(jwt);
-	    jwtToClaims.put(jwt, claims);
-	}
-	return claims;
+	return api.getMicroservice().getTokenManagement().getClaimsForToken(jwt);
     }
 
     /**
@@ -108,12 +108,7 @@ public class CachedAssetManagementApiChannel extends TenantEngineLifecycleCompon
     @Override
     public IAsset getAsset(UUID assetId) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IAsset asset = getAssetByIdCache().getCacheEntry(tenant, assetId);
-	if (asset == null) {
-	    asset = getWrapped().getAsset(assetId);
-	    getAssetByIdCache().setCacheEntry(tenant, assetId, asset);
-	}
-	return asset;
+	return getAssetByIdCache().getCacheEntry(tenant, assetId, key -> getWrapped().getAsset(key));
     }
 
     /*
@@ -123,12 +118,7 @@ public class CachedAssetManagementApiChannel extends TenantEngineLifecycleCompon
     @Override
     public IAsset getAssetByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IAsset asset = getAssetCache().getCacheEntry(tenant, token);
-	if (asset == null) {
-	    asset = getWrapped().getAssetByToken(token);
-	    getAssetCache().setCacheEntry(tenant, token, asset);
-	}
-	return asset;
+	return getAssetCache().getCacheEntry(tenant, token, key -> getWrapped().getAssetByToken(key));
     }
 
     /*
@@ -139,12 +129,7 @@ public class CachedAssetManagementApiChannel extends TenantEngineLifecycleCompon
     @Override
     public IAssetType getAssetType(UUID assetTypeId) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IAssetType assetType = getAssetTypeByIdCache().getCacheEntry(tenant, assetTypeId);
-	if (assetType == null) {
-	    assetType = getWrapped().getAssetType(assetTypeId);
-	    getAssetTypeByIdCache().setCacheEntry(tenant, assetTypeId, assetType);
-	}
-	return assetType;
+	return getAssetTypeByIdCache().getCacheEntry(tenant, assetTypeId, key -> getWrapped().getAssetType(key));
     }
 
     /*
@@ -155,12 +140,7 @@ public class CachedAssetManagementApiChannel extends TenantEngineLifecycleCompon
     @Override
     public IAssetType getAssetTypeByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IAssetType assetType = getAssetTypeCache().getCacheEntry(tenant, token);
-	if (assetType == null) {
-	    assetType = getWrapped().getAssetTypeByToken(token);
-	    getAssetTypeCache().setCacheEntry(tenant, token, assetType);
-	}
-	return assetType;
+	return getAssetTypeCache().getCacheEntry(tenant, token, key -> getWrapped().getAssetTypeByToken(key));
     }
 
     /*
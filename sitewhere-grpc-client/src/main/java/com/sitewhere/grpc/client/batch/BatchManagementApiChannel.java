@@ -7,8 +7,11 @@
  */
 package com.sitewhere.grpc.client.batch;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+import com.sitewhere.batch.BatchElementCreateResult;
 import com.sitewhere.grpc.client.GrpcUtils;
 import com.sitewhere.grpc.client.MultitenantApiChannel;
 import com.sitewhere.grpc.client.common.converter.CommonModelConverter;
@@ -36,6 +39,7 @@ import com.sitewhere.grpc.service.GUpdateBatchOperationRequest;
 import com.sitewhere.grpc.service.GUpdateBatchOperationResponse;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.batch.IBatchElement;
+import com.sitewhere.spi.batch.IBatchElementCreateResult;
 import com.sitewhere.spi.batch.IBatchOperation;
 import com.sitewhere.spi.batch.request.IBatchCommandInvocationRequest;
 import com.sitewhere.spi.batch.request.IBatchElementCreateRequest;
@@ -43,6 +47,7 @@ import com.sitewhere.spi.batch.request.IBatchOperationCreateRequest;
 import com.sitewhere.spi.batch.request.IBatchOperationUpdateRequest;
 import com.sitewhere.spi.microservice.IFunctionIdentifier;
 import com.sitewhere.spi.microservice.MicroserviceIdentifier;
+import com.sitewhere.spi.microservice.ServiceNotAvailableException;
 import com.sitewhere.spi.microservice.grpc.GrpcServiceIdentifier;
 import com.sitewhere.spi.microservice.grpc.IGrpcServiceIdentifier;
 import com.sitewhere.spi.microservice.grpc.IGrpcSettings;
@@ -263,6 +268,30 @@ public class BatchManagementApiChannel extends MultitenantApiChannel<BatchManage
 	}
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElementCreateResult> createBatchElements(UUID batchOperationId,
+	    List<IBatchElementCreateRequest> requests) throws SiteWhereException {
+	// No bulk call in API, so create elements individually and report errors
+	// for each element.
+	List<IBatchElementCreateResult> results = new ArrayList<>(requests.size());
+	for (IBatchElementCreateRequest request : requests) {
+	    try {
+		results.add(new BatchElementCreateResult(request.getDeviceToken(),
+			createBatchElement(batchOperationId, request)));
+	    } catch (ServiceNotAvailableException e) {
+		throw e;
+	    } catch (SiteWhereException e) {
+		results.add(new BatchElementCreateResult(request.getDeviceToken(), e));
+	    }
+	}
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#listBatchElements(java.util.UUID,
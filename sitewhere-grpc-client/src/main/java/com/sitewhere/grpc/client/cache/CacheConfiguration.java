@@ -23,9 +23,17 @@ public class CacheConfiguration implements ICacheConfiguration {
     /** Indicates if cache is enabled */
     private boolean enabled;
 
+    /** Seconds before expiration at which entries are reloaded */
+    private int refreshAheadInSeconds;
+
     public CacheConfiguration(int maximumSize, int ttlInSeconds) {
+	this(maximumSize, ttlInSeconds, 0);
+    }
+
+    public CacheConfiguration(int maximumSize, int ttlInSeconds, int refreshAheadInSeconds) {
 	this.maximumSize = maximumSize;
 	this.ttlInSeconds = ttlInSeconds;
+	this.refreshAheadInSeconds = refreshAheadInSeconds;
 	this.enabled = true;
     }
 
@@ -80,4 +88,22 @@ public class CacheConfiguration implements ICacheConfiguration {
     public void setEnabled(boolean enabled) {
 	this.enabled = enabled;
     }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.cache.ICacheConfiguration#
+     * getRefreshAheadInSeconds()
+     */
+    @Override
+    public int getRefreshAheadInSeconds() {
+	return refreshAheadInSeconds;
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.cache.ICacheConfiguration#
+     * setRefreshAheadInSeconds(int)
+     */
+    @Override
+    public void setRefreshAheadInSeconds(int refreshAheadInSeconds) {
+	this.refreshAheadInSeconds = refreshAheadInSeconds;
+    }
 }
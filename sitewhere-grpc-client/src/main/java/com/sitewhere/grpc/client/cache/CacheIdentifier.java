@@ -32,6 +32,8 @@ public enum CacheIdentifier {
 
     DeviceAssignmentById("device_assignment_by_id"),
 
+    ActiveDeviceAssignmentsByDeviceId("active_device_assignments_by_device_id"),
+
     DeviceTypeByToken("device_type_by_token"),
 
     DeviceTypeById("device_type_by_id"),
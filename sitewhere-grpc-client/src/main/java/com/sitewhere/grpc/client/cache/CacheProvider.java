@@ -8,33 +8,70 @@
 package com.sitewhere.grpc.client.cache;
 
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ehcache.Cache;
 import org.ehcache.CacheManager;
 import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
 import org.ehcache.config.builders.CacheManagerBuilder;
 import org.ehcache.config.builders.ExpiryPolicyBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
+import com.sitewhere.grpc.client.spi.cache.ICacheLoader;
 import com.sitewhere.grpc.client.spi.cache.ICacheProvider;
 import com.sitewhere.server.lifecycle.LifecycleComponent;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.tenant.ITenant;
 
+import io.prometheus.client.Counter;
+
 /**
- * Base class for cache providers.
+ * Base class for cache providers. Caches are created lazily for each tenant
+ * (plus one for global objects) and looked up without locking so that threads
+ * reading different entries do not contend with each other. Entries read
+ * through a loader are loaded once for concurrent misses and, if configured,
+ * reloaded in the background shortly before they expire.
  *
  * @param <K>
  * @param <V>
  */
 public abstract class CacheProvider<K, V> extends LifecycleComponent implements ICacheProvider<K, V> {
 
+    /** Metrics label for cache identifier */
+    private static final String LABEL_CACHE = "cache";
+
+    /** Tenant label value used for global caches */
+    private static final String GLOBAL_TENANT = "global";
+
+    /** Counter for lookups that found a cached value */
+    private static final Counter CACHE_HITS = TenantEngineLifecycleComponent.createCounterMetric("cache_hits",
+	    "Count of cache lookups that found a value", LABEL_CACHE);
+
+    /** Counter for lookups that did not find a cached value */
+    private static final Counter CACHE_MISSES = TenantEngineLifecycleComponent.createCounterMetric("cache_misses",
+	    "Count of cache lookups that did not find a value", LABEL_CACHE);
+
+    /** Counter for entries evicted due to cache size */
+    private static final Counter CACHE_EVICTIONS = TenantEngineLifecycleComponent.createCounterMetric(
+	    "cache_evictions", "Count of cache entries evicted to make room for new entries", LABEL_CACHE);
+
     /** Cache identifier */
     private CacheIdentifier cacheIdentifier;
 
@@ -51,10 +88,13 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
     private ICacheConfiguration cacheConfiguration;
 
     /** Cache for global objects */
-    private Cache<K, V> globalCache;
+    private volatile MeteredCache<K, V> globalCache;
 
     /** Map of tenant-specific caches */
-    private Map<UUID, Cache<K, V>> tenantCaches = new HashMap<>();
+    private Map<UUID, MeteredCache<K, V>> tenantCaches = new ConcurrentHashMap<>();
+
+    /** Executor for refresh-ahead loads (null if disabled) */
+    private ExecutorService refreshExecutor;
 
     public CacheProvider(CacheIdentifier cacheIdentifier, Class<K> keyType, Class<V> valueType,
 	    ICacheConfiguration cacheConfiguration) {
@@ -74,6 +114,9 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
     public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	super.initialize(monitor);
 	getCacheManager().init();
+	if (getCacheConfiguration().getRefreshAheadInSeconds() > 0) {
+	    this.refreshExecutor = Executors.newSingleThreadExecutor(new RefreshThreadFactory());
+	}
     }
 
     /*
@@ -83,6 +126,10 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
      */
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getRefreshExecutor() != null) {
+	    getRefreshExecutor().shutdownNow();
+	    this.refreshExecutor = null;
+	}
 	getCacheManager().close();
 	super.stop(monitor);
     }
@@ -95,11 +142,7 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
     @Override
     public void setCacheEntry(ITenant tenant, K key, V value) throws SiteWhereException {
 	getLogger().debug("Caching value for '" + key.toString() + "'.");
-	if ((value != null) && (getCacheConfiguration().isEnabled())) {
-	    getCache(tenant).put(key, value);
-	} else {
-	    getCache(tenant).remove(key);
-	}
+	putEntry(getMeteredCache(tenant), key, value);
     }
 
     /*
@@ -109,13 +152,44 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
      */
     @Override
     public V getCacheEntry(ITenant tenant, K key) throws SiteWhereException {
-	V result = getCache(tenant).get(key);
+	MeteredCache<K, V> cache = getMeteredCache(tenant);
+	V result = cache.getCache().get(key);
 	if (result != null) {
+	    cache.getHits().inc();
 	    getLogger().debug("Found cached value for '" + key.toString() + "'.");
+	} else {
+	    cache.getMisses().inc();
 	}
 	return result;
     }
 
+    /*
+     * @see
+     * com.sitewhere.grpc.client.spi.cache.ICacheProvider#getCacheEntry(com.sitewhere
+     * .spi.tenant.ITenant, java.lang.Object,
+     * com.sitewhere.grpc.client.spi.cache.ICacheLoader)
+     */
+    @Override
+    public V getCacheEntry(ITenant tenant, K key, ICacheLoader<K, V> loader) throws SiteWhereException {
+	MeteredCache<K, V> cache = getMeteredCache(tenant);
+	V result = cache.getCache().get(key);
+	if (result != null) {
+	    cache.getHits().inc();
+	    refreshAhead(cache, key, loader);
+	    return result;
+	}
+	cache.getMisses().inc();
+	return cache.getLoader().load(key, new ICacheLoader<K, V>() {
+
+	    @Override
+	    public V load(K key) throws SiteWhereException {
+		V loaded = loader.load(key);
+		putEntry(cache, key, loaded);
+		return loaded;
+	    }
+	});
+    }
+
     /*
      * @see
      * com.sitewhere.spi.microservice.ignite.IIgniteCacheProvider#removeCacheEntry(
@@ -123,7 +197,69 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
      */
     @Override
     public void removeCacheEntry(ITenant tenant, K key) throws SiteWhereException {
-	getCache(tenant).remove(key);
+	MeteredCache<K, V> cache = getMeteredCache(tenant);
+	cache.getCache().remove(key);
+	cache.getLoadTimes().remove(key);
+    }
+
+    /**
+     * Store a value in the cache (or remove the entry if value is null).
+     * 
+     * @param cache
+     * @param key
+     * @param value
+     */
+    protected void putEntry(MeteredCache<K, V> cache, K key, V value) {
+	if ((value != null) && (getCacheConfiguration().isEnabled())) {
+	    cache.getCache().put(key, value);
+	    if (getRefreshExecutor() != null) {
+		cache.getLoadTimes().put(key, System.nanoTime());
+	    }
+	} else {
+	    cache.getCache().remove(key);
+	    cache.getLoadTimes().remove(key);
+	}
+    }
+
+    /**
+     * Reload an entry in the background if it is close to expiring. The security
+     * context of the caller is used for the load so that remote calls are made
+     * on behalf of the same user and tenant.
+     * 
+     * @param cache
+     * @param key
+     * @param loader
+     */
+    protected void refreshAhead(MeteredCache<K, V> cache, K key, ICacheLoader<K, V> loader) {
+	ExecutorService executor = getRefreshExecutor();
+	if (executor == null) {
+	    return;
+	}
+	Long loaded = cache.getLoadTimes().get(key);
+	if (loaded == null) {
+	    return;
+	}
+	long age = System.nanoTime() - loaded;
+	long refreshAfter = TimeUnit.SECONDS.toNanos(
+		getCacheConfiguration().getTtlInSeconds() - getCacheConfiguration().getRefreshAheadInSeconds());
+	if (age < refreshAfter) {
+	    return;
+	}
+	Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+	cache.getLoader().loadAsync(key, new ICacheLoader<K, V>() {
+
+	    @Override
+	    public V load(K key) throws SiteWhereException {
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+		try {
+		    V reloaded = loader.load(key);
+		    putEntry(cache, key, reloaded);
+		    return reloaded;
+		} finally {
+		    SecurityContextHolder.clearContext();
+		}
+	    }
+	}, executor);
     }
 
     /**
@@ -133,25 +269,35 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
      * @throws SiteWhereException
      */
     protected Cache<K, V> getCache(ITenant tenant) throws SiteWhereException {
+	return getMeteredCache(tenant).getCache();
+    }
+
+    /**
+     * Get cache along with its metrics (create if not found). Lookups for
+     * existing caches do not lock.
+     * 
+     * @param tenant
+     * @return
+     */
+    protected MeteredCache<K, V> getMeteredCache(ITenant tenant) {
 	if (tenant == null) {
-	    synchronized (tenantCaches) {
-		Cache<K, V> cache = globalCache;
-		if (cache == null) {
-		    cache = createCache(null);
-		    this.globalCache = cache;
-		}
-		return cache;
-	    }
-	} else {
-	    synchronized (tenantCaches) {
-		Cache<K, V> cache = tenantCaches.get(tenant.getId());
-		if (cache == null) {
-		    cache = createCache(tenant);
-		    tenantCaches.put(tenant.getId(), cache);
+	    MeteredCache<K, V> cache = globalCache;
+	    if (cache == null) {
+		synchronized (this) {
+		    cache = globalCache;
+		    if (cache == null) {
+			cache = createCache(null);
+			this.globalCache = cache;
+		    }
 		}
-		return cache;
 	    }
+	    return cache;
+	}
+	MeteredCache<K, V> cache = tenantCaches.get(tenant.getId());
+	if (cache == null) {
+	    cache = tenantCaches.computeIfAbsent(tenant.getId(), id -> createCache(tenant));
 	}
+	return cache;
     }
 
     /**
@@ -160,10 +306,53 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
      * @param tenant
      * @return
      */
-    protected Cache<K, V> createCache(ITenant tenant) {
+    protected MeteredCache<K, V> createCache(ITenant tenant) {
 	String alias = (tenant != null) ? getCacheIdentifier().getCacheKey() + "-" + tenant.getId().toString()
 		: getCacheIdentifier().getCacheKey();
-	return getCacheManager().createCache(alias, buildCacheConfiguration());
+	String[] labels = buildMetricLabels(tenant);
+	Counter.Child evictions = CACHE_EVICTIONS.labels(labels);
+	Map<K, Long> loadTimes = new ConcurrentHashMap<>();
+	CacheEventListener<K, V> listener = new CacheEventListener<K, V>() {
+
+	    /*
+	     * @see org.ehcache.event.CacheEventListener#onEvent(org.ehcache.event.
+	     * CacheEvent)
+	     */
+	    @Override
+	    public void onEvent(CacheEvent<? extends K, ? extends V> event) {
+		if (event.getType() == EventType.EVICTED) {
+		    evictions.inc();
+		}
+		loadTimes.remove(event.getKey());
+	    }
+	};
+
+	// Synchronous so load times are removed before an expired entry is reloaded.
+	CacheConfiguration<K, V> configuration = CacheConfigurationBuilder
+		.newCacheConfigurationBuilder(buildCacheConfiguration())
+		.add(CacheEventListenerConfigurationBuilder
+			.newEventListenerConfiguration(listener, EventType.EVICTED, EventType.EXPIRED).unordered()
+			.synchronous())
+		.build();
+	Cache<K, V> cache = getCacheManager().createCache(alias, configuration);
+	return new MeteredCache<K, V>(cache, CACHE_HITS.labels(labels), CACHE_MISSES.labels(labels), loadTimes);
+    }
+
+    /**
+     * Build values for metric labels (microservice, pod, tenant and cache).
+     * 
+     * @param tenant
+     * @return
+     */
+    protected String[] buildMetricLabels(ITenant tenant) {
+	String microservice = "";
+	String pod = "";
+	if (getMicroservice() != null) {
+	    microservice = getMicroservice().getIdentifier().getPath();
+	    pod = String.valueOf(getMicroservice().getInstanceSettings().getKubernetesPodAddress());
+	}
+	String tenantId = (tenant != null) ? tenant.getId().toString() : GLOBAL_TENANT;
+	return new String[] { microservice, pod, tenantId, getCacheIdentifier().getCacheKey() };
     }
 
     /**
@@ -217,11 +406,81 @@ public abstract class CacheProvider<K, V> extends LifecycleComponent implements
 	return valueType;
     }
 
-    protected Cache<K, V> getGlobalCache() {
+    protected MeteredCache<K, V> getGlobalCache() {
 	return globalCache;
     }
 
-    protected Map<UUID, Cache<K, V>> getTenantCaches() {
+    protected Map<UUID, MeteredCache<K, V>> getTenantCaches() {
 	return tenantCaches;
     }
+
+    protected ExecutorService getRefreshExecutor() {
+	return refreshExecutor;
+    }
+
+    /**
+     * Cache along with metrics resolved for its labels so that lookups do not
+     * need to resolve them again, plus state used for loading entries.
+     *
+     * @param <K>
+     * @param <V>
+     */
+    protected static class MeteredCache<K, V> {
+
+	/** Wrapped cache */
+	private Cache<K, V> cache;
+
+	/** Counter for cache hits */
+	private Counter.Child hits;
+
+	/** Counter for cache misses */
+	private Counter.Child misses;
+
+	/** Time (in nanoseconds) each entry was loaded if refresh-ahead is enabled */
+	private Map<K, Long> loadTimes;
+
+	/** Coalesces concurrent loads */
+	private SingleFlightLoader<K, V> loader = new SingleFlightLoader<>();
+
+	public MeteredCache(Cache<K, V> cache, Counter.Child hits, Counter.Child misses, Map<K, Long> loadTimes) {
+	    this.cache = cache;
+	    this.hits = hits;
+	    this.misses = misses;
+	    this.loadTimes = loadTimes;
+	}
+
+	public Cache<K, V> getCache() {
+	    return cache;
+	}
+
+	public Counter.Child getHits() {
+	    return hits;
+	}
+
+	public Counter.Child getMisses() {
+	    return misses;
+	}
+
+	public Map<K, Long> getLoadTimes() {
+	    return loadTimes;
+	}
+
+	public SingleFlightLoader<K, V> getLoader() {
+	    return loader;
+	}
+    }
+
+    /** Used for naming refresh-ahead threads */
+    private class RefreshThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r,
+		    "Cache Refresh " + getCacheIdentifier().getCacheKey() + " " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
 }
\ No newline at end of file
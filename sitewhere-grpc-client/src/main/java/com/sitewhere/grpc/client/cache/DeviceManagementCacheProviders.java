@@ -7,6 +7,7 @@
  */
 package com.sitewhere.grpc.client.cache;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
@@ -115,4 +116,17 @@ public class DeviceManagementCacheProviders {
 	    super(CacheIdentifier.DeviceAssignmentById, UUID.class, IDeviceAssignment.class, configuration);
 	}
     }
+
+    /**
+     * Cache for active device assignments by device id.
+     * 
+     * @author Derek
+     */
+    public static class ActiveDeviceAssignmentsCache extends CacheProvider<UUID, List<IDeviceAssignment>> {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ActiveDeviceAssignmentsCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.ActiveDeviceAssignmentsByDeviceId, UUID.class, (Class) List.class, configuration);
+	}
+    }
 }
\ No newline at end of file
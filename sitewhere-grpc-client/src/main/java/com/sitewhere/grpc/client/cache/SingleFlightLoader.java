@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.grpc.client.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sitewhere.grpc.client.spi.cache.ICacheLoader;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Coalesces concurrent loads for the same key. The first caller to miss runs
+ * the loader while later callers for the key wait on the same result rather
+ * than each making its own remote call. Failures are returned to all waiting
+ * callers but are not remembered, so the next miss tries again.
+ *
+ * @author Derek
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class SingleFlightLoader<K, V> {
+
+    /** Static logger instance */
+    private static Log LOGGER = LogFactory.getLog(SingleFlightLoader.class);
+
+    /** Loads currently in progress by key */
+    private ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Load value for key, joining a load already in progress if there is one.
+     * 
+     * @param key
+     * @param loader
+     * @return
+     * @throws SiteWhereException
+     */
+    public V load(K key, ICacheLoader<K, V> loader) throws SiteWhereException {
+	CompletableFuture<V> future = new CompletableFuture<>();
+	CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+	if (existing != null) {
+	    return await(existing);
+	}
+	return execute(key, future, loader);
+    }
+
+    /**
+     * Start loading value for key in the background unless a load is already in
+     * progress.
+     * 
+     * @param key
+     * @param loader
+     * @param executor
+     * @return
+     */
+    public boolean loadAsync(K key, ICacheLoader<K, V> loader, Executor executor) {
+	CompletableFuture<V> future = new CompletableFuture<>();
+	if (inFlight.putIfAbsent(key, future) != null) {
+	    return false;
+	}
+	try {
+	    executor.execute(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			execute(key, future, loader);
+		    } catch (SiteWhereException e) {
+			LOGGER.warn("Unable to reload cache entry for '" + key + "'.", e);
+		    }
+		}
+	    });
+	    return true;
+	} catch (RejectedExecutionException e) {
+	    inFlight.remove(key, future);
+	    future.completeExceptionally(new SiteWhereException("Cache reload was rejected.", e));
+	    return false;
+	}
+    }
+
+    /**
+     * Run the loader and publish the result to callers waiting on the future.
+     * 
+     * @param key
+     * @param future
+     * @param loader
+     * @return
+     * @throws SiteWhereException
+     */
+    protected V execute(K key, CompletableFuture<V> future, ICacheLoader<K, V> loader) throws SiteWhereException {
+	try {
+	    V value = loader.load(key);
+	    future.complete(value);
+	    return value;
+	} catch (SiteWhereException e) {
+	    future.completeExceptionally(e);
+	    throw e;
+	} catch (Throwable e) {
+	    future.completeExceptionally(e);
+	    throw new SiteWhereException("Unable to load cache entry.", e);
+	} finally {
+	    inFlight.remove(key, future);
+	}
+    }
+
+    /**
+     * Wait for a load started by another caller.
+     * 
+     * @param future
+     * @return
+     * @throws SiteWhereException
+     */
+    protected V await(CompletableFuture<V> future) throws SiteWhereException {
+	try {
+	    return future.get();
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof SiteWhereException) {
+		throw (SiteWhereException) e.getCause();
+	    }
+	    throw new SiteWhereException("Unable to load cache entry.", e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting for cache entry to load.", e);
+	}
+    }
+
+    /**
+     * Get number of loads in progress.
+     * 
+     * @return
+     */
+    public int getInFlightCount() {
+	return inFlight.size();
+    }
+}
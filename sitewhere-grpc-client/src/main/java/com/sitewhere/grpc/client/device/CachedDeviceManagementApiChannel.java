@@ -38,6 +38,7 @@ import com.sitewhere.spi.device.IDeviceType;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.group.IDeviceGroup;
 import com.sitewhere.spi.device.group.IDeviceGroupElement;
+import com.sitewhere.spi.device.kafka.IDeviceManagementUpdate;
 import com.sitewhere.spi.device.request.IDeviceAlarmCreateRequest;
 import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
 import com.sitewhere.spi.device.request.IDeviceCommandCreateRequest;
@@ -92,6 +93,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     /** Device assignment by id cache */
     private ICacheProvider<UUID, IDeviceAssignment> deviceAssignmentByIdCache;
 
+    /** Active device assignments by device id cache */
+    private ICacheProvider<UUID, List<IDeviceAssignment>> activeDeviceAssignmentsCache;
+
     public CachedDeviceManagementApiChannel(IDeviceManagementApiChannel<?> wrapped, CacheSettings cache) {
 	this.wrapped = wrapped;
 	this.areaCache = new DeviceManagementCacheProviders.AreaByTokenCache(cache.getAreaConfiguration());
@@ -106,6 +110,8 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 		cache.getDeviceAssignmentConfiguration());
 	this.deviceAssignmentByIdCache = new DeviceManagementCacheProviders.DeviceAssignmentByIdCache(
 		cache.getDeviceAssignmentConfiguration());
+	this.activeDeviceAssignmentsCache = new DeviceManagementCacheProviders.ActiveDeviceAssignmentsCache(
+		cache.getActiveDeviceAssignmentsConfiguration());
     }
 
     /*
@@ -124,6 +130,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	initializeNestedComponent(getDeviceByIdCache(), monitor, true);
 	initializeNestedComponent(getDeviceAssignmentCache(), monitor, true);
 	initializeNestedComponent(getDeviceAssignmentByIdCache(), monitor, true);
+	initializeNestedComponent(getActiveDeviceAssignmentsCache(), monitor, true);
     }
 
     /*
@@ -142,6 +149,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	startNestedComponent(getDeviceByIdCache(), monitor, true);
 	startNestedComponent(getDeviceAssignmentCache(), monitor, true);
 	startNestedComponent(getDeviceAssignmentByIdCache(), monitor, true);
+	startNestedComponent(getActiveDeviceAssignmentsCache(), monitor, true);
     }
 
     /*
@@ -160,6 +168,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	stopNestedComponent(getDeviceByIdCache(), monitor);
 	stopNestedComponent(getDeviceAssignmentCache(), monitor);
 	stopNestedComponent(getDeviceAssignmentByIdCache(), monitor);
+	stopNestedComponent(getActiveDeviceAssignmentsCache(), monitor);
     }
 
     /*
@@ -170,12 +179,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IArea getAreaByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IArea area = getAreaCache().getCacheEntry(tenant, token);
-	if (area == null) {
-	    area = getWrapped().getAreaByToken(token);
-	    getAreaCache().setCacheEntry(tenant, token, area);
-	}
-	return area;
+	return getAreaCache().getCacheEntry(tenant, token, key -> getWrapped().getAreaByToken(key));
     }
 
     /*
@@ -186,12 +190,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IArea getArea(UUID id) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IArea area = getAreaByIdCache().getCacheEntry(tenant, id);
-	if (area == null) {
-	    area = getWrapped().getArea(id);
-	    getAreaByIdCache().setCacheEntry(tenant, id, area);
-	}
-	return area;
+	return getAreaByIdCache().getCacheEntry(tenant, id, key -> getWrapped().getArea(key));
     }
 
     /*
@@ -201,12 +200,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceType getDeviceTypeByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDeviceType deviceType = getDeviceTypeCache().getCacheEntry(tenant, token);
-	if (deviceType == null) {
-	    deviceType = getWrapped().getDeviceTypeByToken(token);
-	    getDeviceTypeCache().setCacheEntry(tenant, token, deviceType);
-	}
-	return deviceType;
+	return getDeviceTypeCache().getCacheEntry(tenant, token, key -> getWrapped().getDeviceTypeByToken(key));
     }
 
     /*
@@ -217,12 +211,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceType getDeviceType(UUID id) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDeviceType deviceType = getDeviceTypeByIdCache().getCacheEntry(tenant, id);
-	if (deviceType == null) {
-	    deviceType = getWrapped().getDeviceType(id);
-	    getDeviceTypeByIdCache().setCacheEntry(tenant, id, deviceType);
-	}
-	return deviceType;
+	return getDeviceTypeByIdCache().getCacheEntry(tenant, id, key -> getWrapped().getDeviceType(key));
     }
 
     /*
@@ -233,12 +222,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDevice getDeviceByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDevice device = getDeviceCache().getCacheEntry(tenant, token);
-	if (device == null) {
-	    device = getWrapped().getDeviceByToken(token);
-	    getDeviceCache().setCacheEntry(tenant, token, device);
-	}
-	return device;
+	return getDeviceCache().getCacheEntry(tenant, token, key -> getWrapped().getDeviceByToken(key));
     }
 
     /*
@@ -249,12 +233,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDevice getDevice(UUID deviceId) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDevice device = getDeviceByIdCache().getCacheEntry(tenant, deviceId);
-	if (device == null) {
-	    device = getWrapped().getDevice(deviceId);
-	    getDeviceByIdCache().setCacheEntry(tenant, deviceId, device);
-	}
-	return device;
+	return getDeviceByIdCache().getCacheEntry(tenant, deviceId, key -> getWrapped().getDevice(key));
     }
 
     /*
@@ -264,12 +243,8 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDeviceAssignment assignment = getDeviceAssignmentCache().getCacheEntry(tenant, token);
-	if (assignment == null) {
-	    assignment = getWrapped().getDeviceAssignmentByToken(token);
-	    getDeviceAssignmentCache().setCacheEntry(tenant, token, assignment);
-	}
-	return assignment;
+	return getDeviceAssignmentCache().getCacheEntry(tenant, token,
+		key -> getWrapped().getDeviceAssignmentByToken(key));
     }
 
     /*
@@ -279,12 +254,7 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceAssignment getDeviceAssignment(UUID id) throws SiteWhereException {
 	ITenant tenant = UserContextManager.getCurrentTenant(true);
-	IDeviceAssignment assignment = getDeviceAssignmentByIdCache().getCacheEntry(tenant, id);
-	if (assignment == null) {
-	    assignment = getWrapped().getDeviceAssignment(id);
-	    getDeviceAssignmentByIdCache().setCacheEntry(tenant, id, assignment);
-	}
-	return assignment;
+	return getDeviceAssignmentByIdCache().getCacheEntry(tenant, id, key -> getWrapped().getDeviceAssignment(key));
     }
 
     /*
@@ -499,7 +469,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDevice deleteDevice(UUID deviceId) throws SiteWhereException {
-	return getWrapped().deleteDevice(deviceId);
+	IDevice deleted = getWrapped().deleteDevice(deviceId);
+	getActiveDeviceAssignmentsCache().removeCacheEntry(UserContextManager.getCurrentTenant(true), deviceId);
+	return deleted;
     }
 
     /*
@@ -508,7 +480,10 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDeviceAssignment createDeviceAssignment(IDeviceAssignmentCreateRequest request) throws SiteWhereException {
-	return getWrapped().createDeviceAssignment(request);
+	IDeviceAssignment created = getWrapped().createDeviceAssignment(request);
+	getActiveDeviceAssignmentsCache().removeCacheEntry(UserContextManager.getCurrentTenant(true),
+		created.getDeviceId());
+	return created;
     }
 
     /*
@@ -518,7 +493,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public List<IDeviceAssignment> getActiveDeviceAssignments(UUID deviceId) throws SiteWhereException {
-	return getWrapped().getActiveDeviceAssignments(deviceId);
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	return getActiveDeviceAssignmentsCache().getCacheEntry(tenant, deviceId,
+		key -> getWrapped().getActiveDeviceAssignments(key));
     }
 
     /*
@@ -529,7 +506,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceAssignment updateDeviceAssignment(UUID id, IDeviceAssignmentCreateRequest request)
 	    throws SiteWhereException {
-	return getWrapped().updateDeviceAssignment(id, request);
+	IDeviceAssignment updated = getWrapped().updateDeviceAssignment(id, request);
+	onAssignmentChanged(updated);
+	return updated;
     }
 
     /*
@@ -549,7 +528,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDeviceAssignment endDeviceAssignment(UUID id) throws SiteWhereException {
-	return getWrapped().endDeviceAssignment(id);
+	IDeviceAssignment ended = getWrapped().endDeviceAssignment(id);
+	onAssignmentChanged(ended);
+	return ended;
     }
 
     /*
@@ -559,7 +540,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDeviceAssignment deleteDeviceAssignment(UUID id) throws SiteWhereException {
-	return getWrapped().deleteDeviceAssignment(id);
+	IDeviceAssignment deleted = getWrapped().deleteDeviceAssignment(id);
+	onAssignmentChanged(deleted);
+	return deleted;
     }
 
     /*
@@ -1009,8 +992,41 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     }
 
     /**
-     * Contains default cache settings for device management entities.
+     * Remove cached data affected by a change made in device management. Called
+     * for updates received from Kafka so that changes made through other
+     * microservices are reflected before cache entries expire.
+     * 
+     * @param tenant
+     * @param update
+     * @throws SiteWhereException
+     */
+    public void onDeviceManagementUpdate(ITenant tenant, IDeviceManagementUpdate update) throws SiteWhereException {
+	getActiveDeviceAssignmentsCache().removeCacheEntry(tenant, update.getDeviceId());
+	getDeviceByIdCache().removeCacheEntry(tenant, update.getDeviceId());
+	if (update.getDeviceToken() != null) {
+	    getDeviceCache().removeCacheEntry(tenant, update.getDeviceToken());
+	}
+	if (update.getDeviceAssignmentId() != null) {
+	    getDeviceAssignmentByIdCache().removeCacheEntry(tenant, update.getDeviceAssignmentId());
+	}
+	if (update.getDeviceAssignmentToken() != null) {
+	    getDeviceAssignmentCache().removeCacheEntry(tenant, update.getDeviceAssignmentToken());
+	}
+    }
+
+    /**
+     * Remove cached data for an assignment changed through this channel.
+     * 
+     * @param assignment
+     * @throws SiteWhereException
      */
+    protected void onAssignmentChanged(IDeviceAssignment assignment) throws SiteWhereException {
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	getActiveDeviceAssignmentsCache().removeCacheEntry(tenant, assignment.getDeviceId());
+	getDeviceAssignmentByIdCache().removeCacheEntry(tenant, assignment.getId());
+	getDeviceAssignmentCache().removeCacheEntry(tenant, assignment.getToken());
+    }
+
     public static class CacheSettings {
 
 	/** Cache configuraton for areas */
@@ -1020,10 +1036,13 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	private ICacheConfiguration deviceTypeConfiguration = new CacheConfiguration(1000, 60);
 
 	/** Cache configuration for devices */
-	private ICacheConfiguration deviceConfiguration = new CacheConfiguration(10000, 60);
+	private ICacheConfiguration deviceConfiguration = new CacheConfiguration(10000, 60, 10);
 
 	/** Cache configuration for device assignments */
-	private ICacheConfiguration deviceAssignmentConfiguration = new CacheConfiguration(10000, 60);
+	private ICacheConfiguration deviceAssignmentConfiguration = new CacheConfiguration(10000, 60, 10);
+
+	/** Cache configuration for active device assignments */
+	private ICacheConfiguration activeDeviceAssignmentsConfiguration = new CacheConfiguration(10000, 60, 10);
 
 	public ICacheConfiguration getAreaConfiguration() {
 	    return areaConfiguration;
@@ -1056,6 +1075,14 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	public void setDeviceAssignmentConfiguration(ICacheConfiguration deviceAssignmentConfiguration) {
 	    this.deviceAssignmentConfiguration = deviceAssignmentConfiguration;
 	}
+
+	public ICacheConfiguration getActiveDeviceAssignmentsConfiguration() {
+	    return activeDeviceAssignmentsConfiguration;
+	}
+
+	public void setActiveDeviceAssignmentsConfiguration(ICacheConfiguration activeDeviceAssignmentsConfiguration) {
+	    this.activeDeviceAssignmentsConfiguration = activeDeviceAssignmentsConfiguration;
+	}
     }
 
     public ICacheProvider<String, IArea> getAreaCache() {
@@ -1122,6 +1149,15 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	this.deviceAssignmentByIdCache = deviceAssignmentByIdCache;
     }
 
+    public ICacheProvider<UUID, List<IDeviceAssignment>> getActiveDeviceAssignmentsCache() {
+	return activeDeviceAssignmentsCache;
+    }
+
+    public void setActiveDeviceAssignmentsCache(
+	    ICacheProvider<UUID, List<IDeviceAssignment>> activeDeviceAssignmentsCache) {
+	this.activeDeviceAssignmentsCache = activeDeviceAssignmentsCache;
+    }
+
     public IDeviceManagementApiChannel<?> getWrapped() {
 	return wrapped;
     }
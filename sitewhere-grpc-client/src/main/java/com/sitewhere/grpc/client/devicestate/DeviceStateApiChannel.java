@@ -7,6 +7,9 @@
  */
 package com.sitewhere.grpc.client.devicestate;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.GrpcUtils;
@@ -181,6 +184,40 @@ public class DeviceStateApiChannel extends MultitenantApiChannel<DeviceStateGrpc
 	}
     }
 
+    /*
+     * @see com.sitewhere.spi.device.state.IDeviceStateManagement#
+     * getDeviceStatesByDeviceAssignmentIds(java.util.List)
+     */
+    @Override
+    public List<IDeviceState> getDeviceStatesByDeviceAssignmentIds(List<UUID> assignmentIds)
+	    throws SiteWhereException {
+	// No bulk call in API, so look up states individually.
+	List<IDeviceState> results = new ArrayList<>();
+	for (UUID assignmentId : assignmentIds) {
+	    IDeviceState state = getDeviceStateByDeviceAssignmentId(assignmentId);
+	    if (state != null) {
+		results.add(state);
+	    }
+	}
+	return results;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.device.state.IDeviceStateManagement#updateDeviceStates(java
+     * .util.Map)
+     */
+    @Override
+    public List<IDeviceState> updateDeviceStates(Map<UUID, IDeviceStateCreateRequest> requests)
+	    throws SiteWhereException {
+	// No bulk call in API, so update states individually.
+	List<IDeviceState> results = new ArrayList<>();
+	for (Map.Entry<UUID, IDeviceStateCreateRequest> entry : requests.entrySet()) {
+	    results.add(updateDeviceState(entry.getKey(), entry.getValue()));
+	}
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.state.IDeviceStateManagement#deleteDeviceState(java.
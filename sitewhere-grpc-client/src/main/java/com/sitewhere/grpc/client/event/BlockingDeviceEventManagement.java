@@ -7,13 +7,16 @@
  */
 package com.sitewhere.grpc.client.event;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.DeviceEventIndex;
+import com.sitewhere.spi.device.event.DeviceEventType;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
@@ -27,6 +30,7 @@ import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceEventCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
@@ -60,6 +64,75 @@ public class BlockingDeviceEventManagement extends TenantEngineLifecycleComponen
 	return observer.getResult();
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEvents(java.
+     * util.Map, java.util.Map)
+     */
+    @Override
+    public List<IDeviceEvent> addDeviceEvents(Map<UUID, List<IDeviceEventCreateRequest>> requests,
+	    Map<UUID, List<UUID>> eventIds) throws SiteWhereException {
+	// No bulk call in API, so send consecutive events of the same type together.
+	// Event ids can not be passed through the API, so ids are always assigned
+	// by the remote service.
+	List<IDeviceEvent> result = new ArrayList<>();
+	for (Map.Entry<UUID, List<IDeviceEventCreateRequest>> entry : requests.entrySet()) {
+	    List<IDeviceEventCreateRequest> run = new ArrayList<>();
+	    for (IDeviceEventCreateRequest request : entry.getValue()) {
+		if (!run.isEmpty() && (run.get(0).getEventType() != request.getEventType())) {
+		    result.addAll(addDeviceEventsOfType(entry.getKey(), run));
+		    run.clear();
+		}
+		run.add(request);
+	    }
+	    if (!run.isEmpty()) {
+		result.addAll(addDeviceEventsOfType(entry.getKey(), run));
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * Add a list of events that share the same event type.
+     * 
+     * @param deviceAssignmentId
+     * @param requests
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<? extends IDeviceEvent> addDeviceEventsOfType(UUID deviceAssignmentId,
+	    List<IDeviceEventCreateRequest> requests) throws SiteWhereException {
+	DeviceEventType type = requests.get(0).getEventType();
+	switch (type) {
+	case Measurement: {
+	    return addDeviceMeasurements(deviceAssignmentId,
+		    requests.toArray(new IDeviceMeasurementCreateRequest[requests.size()]));
+	}
+	case Location: {
+	    return addDeviceLocations(deviceAssignmentId,
+		    requests.toArray(new IDeviceLocationCreateRequest[requests.size()]));
+	}
+	case Alert: {
+	    return addDeviceAlerts(deviceAssignmentId, requests.toArray(new IDeviceAlertCreateRequest[requests.size()]));
+	}
+	case CommandInvocation: {
+	    return addDeviceCommandInvocations(deviceAssignmentId,
+		    requests.toArray(new IDeviceCommandInvocationCreateRequest[requests.size()]));
+	}
+	case CommandResponse: {
+	    return addDeviceCommandResponses(deviceAssignmentId,
+		    requests.toArray(new IDeviceCommandResponseCreateRequest[requests.size()]));
+	}
+	case StateChange: {
+	    return addDeviceStateChanges(deviceAssignmentId,
+		    requests.toArray(new IDeviceStateChangeCreateRequest[requests.size()]));
+	}
+	default: {
+	    throw new SiteWhereException("Event type not handled: " + type);
+	}
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceEventById(java
@@ -53,4 +53,19 @@ public interface ICacheConfiguration {
      * @param value
      */
     public void setEnabled(boolean value);
+
+    /**
+     * Get number of seconds before expiration at which an entry that is read is
+     * reloaded in the background. Zero disables refresh-ahead.
+     * 
+     * @return
+     */
+    public int getRefreshAheadInSeconds();
+
+    /**
+     * Set number of seconds before expiration at which entries are reloaded.
+     * 
+     * @param value
+     */
+    public void setRefreshAheadInSeconds(int value);
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.grpc.client.spi.cache;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Loads a value for a cache key when it is not found in the cache.
+ * 
+ * @author Derek
+ *
+ * @param <K>
+ * @param <V>
+ */
+public interface ICacheLoader<K, V> {
+
+    /**
+     * Load value for key. Null if not found.
+     * 
+     * @param key
+     * @return
+     * @throws SiteWhereException
+     */
+    public V load(K key) throws SiteWhereException;
+}
@@ -56,6 +56,18 @@ public interface ICacheProvider<K, V> extends ILifecycleComponent {
      */
     public V getCacheEntry(ITenant tenant, K key) throws SiteWhereException;
 
+    /**
+     * Get a cache entry, using the loader to load and cache the value if not
+     * found. Concurrent misses for the same key share a single load.
+     * 
+     * @param tenant
+     * @param key
+     * @param loader
+     * @return
+     * @throws SiteWhereException
+     */
+    public V getCacheEntry(ITenant tenant, K key, ICacheLoader<K, V> loader) throws SiteWhereException;
+
     /**
      * Remove an existing cache entry.
      * 
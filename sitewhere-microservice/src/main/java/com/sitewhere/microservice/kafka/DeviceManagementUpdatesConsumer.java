@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.grpc.client.device.CachedDeviceManagementApiChannel;
+import com.sitewhere.rest.model.device.kafka.DeviceManagementUpdate;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Listens for device management updates and removes affected entries from a
+ * {@link CachedDeviceManagementApiChannel}. Each microservice instance uses its
+ * own consumer group (keyed by microservice and hostname so that it stays the
+ * same across restarts) so that every instance sees every update, and only
+ * updates sent after the consumer starts are read since older updates can not
+ * affect entries that have not been cached yet.
+ *
+ * @author Derek
+ */
+public class DeviceManagementUpdatesConsumer extends MicroserviceKafkaConsumer {
+
+    /** Suffix for group id */
+    private static String GROUP_ID_SUFFIX = "device-management-updates-";
+
+    /** Cached device management to be updated */
+    private CachedDeviceManagementApiChannel cachedDeviceManagement;
+
+    public DeviceManagementUpdatesConsumer(CachedDeviceManagementApiChannel cachedDeviceManagement) {
+	this.cachedDeviceManagement = cachedDeviceManagement;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#
+     * getConsumerId()
+     */
+    @Override
+    public String getConsumerId() throws SiteWhereException {
+	return GROUP_ID_SUFFIX + getInstanceId();
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#
+     * getConsumerGroupId()
+     */
+    @Override
+    public String getConsumerGroupId() throws SiteWhereException {
+	return getMicroservice().getKafkaTopicNaming().getTenantPrefix(getTenantEngine().getTenant()) + GROUP_ID_SUFFIX
+		+ getInstanceId();
+    }
+
+    /**
+     * Get an id that identifies this microservice instance and is stable across
+     * restarts.
+     * 
+     * @return
+     */
+    protected String getInstanceId() {
+	return getMicroservice().getIdentifier().getPath() + "-" + getMicroservice().getHostname();
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#
+     * getSourceTopicNames()
+     */
+    @Override
+    public List<String> getSourceTopicNames() throws SiteWhereException {
+	List<String> topics = new ArrayList<String>();
+	topics.add(getMicroservice().getKafkaTopicNaming().getDeviceManagementUpdatesTopic(getTenantEngine().getTenant()));
+	return topics;
+    }
+
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * buildConfiguration()
+     */
+    @Override
+    protected Properties buildConfiguration() throws SiteWhereException {
+	Properties config = super.buildConfiguration();
+	config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+	return config;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#process(org.
+     * apache.kafka.common.TopicPartition, java.util.List)
+     */
+    @Override
+    public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	for (ConsumerRecord<String, byte[]> record : records) {
+	    try {
+		DeviceManagementUpdate update = MarshalUtils.unmarshalJson(record.value(), DeviceManagementUpdate.class);
+		getCachedDeviceManagement().onDeviceManagementUpdate(getTenantEngine().getTenant(), update);
+	    } catch (Throwable e) {
+		getLogger().error("Unable to process device management update.", e);
+	    }
+	}
+    }
+
+    public CachedDeviceManagementApiChannel getCachedDeviceManagement() {
+	return cachedDeviceManagement;
+    }
+
+    public void setCachedDeviceManagement(CachedDeviceManagementApiChannel cachedDeviceManagement) {
+	this.cachedDeviceManagement = cachedDeviceManagement;
+    }
+}
@@ -77,6 +77,9 @@ public class KafkaTopicNaming implements IKafkaTopicNaming {
     /** Topic suffix for failed batch elements */
     protected static final String TENANT_TOPIC_FAILED_BATCH_ELEMENTS = "failed-batch-elements";
 
+    /** Topic suffix for device and assignment changes */
+    protected static final String TENANT_TOPIC_DEVICE_MANAGEMENT_UPDATES = "device-management-updates";
+
     @Autowired
     private IInstanceSettings instanceSettings;
 
@@ -256,6 +259,15 @@ public class KafkaTopicNaming implements IKafkaTopicNaming {
 	return getTenantPrefix(tenant) + TENANT_TOPIC_FAILED_BATCH_ELEMENTS;
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.kafka.IKafkaTopicNaming#
+     * getDeviceManagementUpdatesTopic(com.sitewhere.spi.tenant.ITenant)
+     */
+    @Override
+    public String getDeviceManagementUpdatesTopic(ITenant tenant) {
+	return getTenantPrefix(tenant) + TENANT_TOPIC_DEVICE_MANAGEMENT_UPDATES;
+    }
+
     protected IInstanceSettings getInstanceSettings() {
 	return instanceSettings;
     }
@@ -8,17 +8,25 @@
 package com.sitewhere.microservice.kafka;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
@@ -29,6 +37,9 @@ import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
 /**
  * Base class for components that consume messages from a Kafka topic.
  * 
@@ -37,12 +48,49 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleComponent
 	implements IMicroserviceKafkaConsumer {
 
+    /** Default maximum number of records dispatched to lanes but not processed */
+    public static final int DEFAULT_MAX_IN_FLIGHT_RECORDS = 5000;
+
+    /** Poll timeout used when records are processed by lanes */
+    private static final Duration LANE_POLL_TIMEOUT = Duration.ofMillis(100);
+
+    /** Number of seconds to wait for lanes to drain on shutdown */
+    private static final int LANE_SHUTDOWN_TIMEOUT_SECS = 10;
+
+    /** Minimum interval between offset commits for records processed by lanes */
+    private static final long LANE_COMMIT_INTERVAL_MS = 1000;
+
+    /** Gauge for records dispatched to lanes but not processed */
+    private static final Gauge IN_FLIGHT_RECORDS = TenantEngineLifecycleComponent
+	    .createGaugeMetric("kafka_consumer_in_flight_records", "Records dispatched to lanes but not processed",
+		    "consumer");
+
+    /** Gauge for records polled but not yet committable */
+    private static final Gauge COMMIT_LAG = TenantEngineLifecycleComponent.createGaugeMetric(
+	    "kafka_consumer_commit_lag", "Records polled but not yet committable", "consumer", "partition");
+
+    /** Counter for records stalled after repeated processing failures */
+    private static final Counter STALLED_RECORDS = TenantEngineLifecycleComponent.createCounterMetric(
+	    "kafka_consumer_stalled_records", "Records stalled after repeated processing failures", "consumer");
+
     /** Consumer */
     private KafkaConsumer<String, byte[]> consumer;
 
     /** Executor service */
     private ExecutorService executor;
 
+    /** Dispatches records to worker lanes (null if processed on poll thread) */
+    private PartitionLaneDispatcher laneDispatcher;
+
+    /** Tracks completed offsets for records processed by lanes */
+    private OffsetCommitTracker offsetTracker;
+
+    /** Time of last offset commit for records processed by lanes */
+    private long lastLaneCommit;
+
+    /** Indicates all partitions are paused because lanes are saturated */
+    private boolean lanesSaturated;
+
     /*
      * (non-Javadoc)
      * 
@@ -56,6 +104,17 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 		"Consumer connecting to Kafka: " + getMicroservice().getInstanceSettings().getKafkaBootstrapServers());
 	getLogger().info("Will be consuming messages from: " + getSourceTopicNames());
 	this.consumer = new KafkaConsumer<>(buildConfiguration());
+	int laneCount = getProcessingLaneCount();
+	if (laneCount > 0) {
+	    getLogger().info(String.format("Consumer processing records with %d %s and at most %d in-flight records.",
+		    laneCount, laneCount == 1 ? "lane" : "lanes", getMaxInFlightRecords()));
+	    this.offsetTracker = new OffsetCommitTracker();
+	    this.laneDispatcher = new PartitionLaneDispatcher(this, getOffsetTracker(),
+		    "Kafka Consumer " + getComponentName(), laneCount, getMaxInFlightRecords());
+	} else {
+	    this.offsetTracker = null;
+	    this.laneDispatcher = null;
+	}
 	this.executor = Executors.newSingleThreadExecutor(new MicroserviceConsumerThreadFactory());
 	executor.execute(new MessageConsumer());
     }
@@ -74,9 +133,57 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	}
 	if (executor != null) {
 	    executor.shutdown();
+	    if (getLaneDispatcher() != null) {
+		// Allow consumer thread to drain lanes and commit final offsets.
+		try {
+		    executor.awaitTermination(LANE_SHUTDOWN_TIMEOUT_SECS + 5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+		    getLogger().warn("Interrupted while waiting for consumer to shut down.");
+		}
+	    }
 	}
     }
 
+    /**
+     * Get number of worker lanes used to process records in parallel. Records
+     * with the same key are always processed in order by the same lane. Returning
+     * zero processes records directly on the polling thread. Subclasses that use
+     * lanes must not access the wrapped consumer from {@link #process} since
+     * Kafka consumers are not thread-safe.
+     * 
+     * @return
+     */
+    protected int getProcessingLaneCount() {
+	return 0;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#processFailed(
+     * org.apache.kafka.common.TopicPartition, java.util.List, java.lang.Throwable)
+     */
+    @Override
+    public void processFailed(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records,
+	    Throwable cause) {
+	STALLED_RECORDS.labels(buildLabels(getComponentName())).inc(records.size());
+	getLogger().error(String.format(
+		"Unable to process %d records for %s (offsets %d to %d) after repeated failures. "
+			+ "Pausing partition until records are processed.",
+		records.size(), topicPartition, records.get(0).offset(), records.get(records.size() - 1).offset()),
+		cause);
+    }
+
+    /**
+     * Get maximum number of records that may be dispatched to lanes without
+     * having been processed. Partitions are paused when the limit is reached and
+     * resumed once lanes have drained half of the backlog.
+     * 
+     * @return
+     */
+    protected int getMaxInFlightRecords() {
+	return DEFAULT_MAX_IN_FLIGHT_RECORDS;
+    }
+
     /**
      * Build configuration settings used by Kafka streams.
      * 
@@ -109,6 +216,14 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	this.consumer = consumer;
     }
 
+    protected PartitionLaneDispatcher getLaneDispatcher() {
+	return laneDispatcher;
+    }
+
+    protected OffsetCommitTracker getOffsetTracker() {
+	return offsetTracker;
+    }
+
     /**
      * Thread that polls Kafka for records arriving on the specified topic.
      * 
@@ -123,7 +238,7 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 		try {
 		    getLogger()
 			    .debug(String.format("Kafka consumer subscribing to %s", getSourceTopicNames().toString()));
-		    getConsumer().subscribe(getSourceTopicNames());
+		    getConsumer().subscribe(getSourceTopicNames(), new LaneRebalanceListener());
 		    break;
 		} catch (SiteWhereException e) {
 		    getLogger().error("Unable to subscribe to topics.", e);
@@ -138,21 +253,37 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	    }
 	    try {
 		while (true) {
-		    ConsumerRecords<String, byte[]> records = getConsumer().poll(Duration.ofMillis(Long.MAX_VALUE));
+		    PartitionLaneDispatcher lanes = getLaneDispatcher();
+		    ConsumerRecords<String, byte[]> records = getConsumer()
+			    .poll((lanes != null) ? LANE_POLL_TIMEOUT : Duration.ofMillis(Long.MAX_VALUE));
 		    getLogger().debug(String.format("Kafka consumer received %d records on poll.", records.count()));
 		    for (TopicPartition topicPartition : records.partitions()) {
 			try {
 			    List<ConsumerRecord<String, byte[]>> topicRecords = records.records(topicPartition);
 			    getLogger().debug(String.format("Kafka consumer processing %d records for %s partition %s.",
 				    topicRecords.size(), topicPartition.topic(), topicPartition.partition()));
-			    process(topicPartition, topicRecords);
+			    if (lanes != null) {
+				lanes.dispatch(topicPartition, topicRecords);
+			    } else {
+				process(topicPartition, topicRecords);
+			    }
 			} catch (Throwable e) {
 			    getLogger().error("Unhandled exception in consumer processing.", e);
 			}
 		    }
+		    if (lanes != null) {
+			if ((System.currentTimeMillis() - lastLaneCommit) >= LANE_COMMIT_INTERVAL_MS) {
+			    commitLaneOffsets();
+			}
+			applyBackpressure(lanes);
+		    }
 		}
 	    } catch (WakeupException e) {
 		getLogger().info("Consumer thread received shutdown request.");
+		if (getLaneDispatcher() != null) {
+		    getLaneDispatcher().shutdown(LANE_SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS);
+		    commitLaneOffsetsSync(getOffsetTracker().getCommittableOffsets());
+		}
 		getConsumer().unsubscribe();
 	    } finally {
 		getConsumer().close();
@@ -160,6 +291,116 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	}
     }
 
+    /**
+     * Commit the highest contiguous offsets for records that lanes have finished
+     * processing and update commit lag metrics. Called from the polling thread.
+     */
+    protected void commitLaneOffsets() {
+	this.lastLaneCommit = System.currentTimeMillis();
+	Map<TopicPartition, OffsetAndMetadata> committable = getOffsetTracker().getCommittableOffsets();
+	if (!committable.isEmpty()) {
+	    getConsumer().commitAsync(committable, new OffsetCommitCallback() {
+		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
+		    if (e != null) {
+			getLogger().error("Commit failed for offsets " + committable, e);
+		    } else {
+			getOffsetTracker().committed(offsets);
+		    }
+		}
+	    });
+	}
+	for (Map.Entry<TopicPartition, Long> lag : getOffsetTracker().getCommitLag().entrySet()) {
+	    COMMIT_LAG.labels(buildLabels(getComponentName(), lag.getKey().toString())).set(lag.getValue());
+	}
+    }
+
+    /**
+     * Synchronously commit offsets before partitions are revoked or the consumer
+     * is closed. Called from the polling thread.
+     * 
+     * @param committable
+     */
+    protected void commitLaneOffsetsSync(Map<TopicPartition, OffsetAndMetadata> committable) {
+	if (!committable.isEmpty()) {
+	    try {
+		getConsumer().commitSync(committable);
+		getOffsetTracker().committed(committable);
+	    } catch (Throwable e) {
+		getLogger().error("Commit failed for offsets " + committable, e);
+	    }
+	}
+    }
+
+    /**
+     * Pause all assigned partitions if lanes are saturated and resume them once
+     * lanes have drained. Partitions with stalled batches stay paused until the
+     * batches have been processed. Called from the polling thread so that the
+     * consumer keeps its group membership while paused.
+     * 
+     * @param lanes
+     */
+    protected void applyBackpressure(PartitionLaneDispatcher lanes) {
+	IN_FLIGHT_RECORDS.labels(buildLabels(getComponentName())).set(lanes.getInFlightRecords());
+	if (!lanesSaturated && lanes.isSaturated()) {
+	    getLogger().debug(String.format("Pausing consumer with %d in-flight records.", lanes.getInFlightRecords()));
+	    this.lanesSaturated = true;
+	} else if (lanesSaturated && lanes.canResume()) {
+	    getLogger().debug(String.format("Resuming consumer with %d in-flight records.", lanes.getInFlightRecords()));
+	    this.lanesSaturated = false;
+	}
+	Set<TopicPartition> target = new HashSet<>(getConsumer().assignment());
+	if (!lanesSaturated) {
+	    target.retainAll(getOffsetTracker().getStalledPartitions());
+	}
+	Set<TopicPartition> pause = new HashSet<>(target);
+	pause.removeAll(getConsumer().paused());
+	if (!pause.isEmpty()) {
+	    getConsumer().pause(pause);
+	}
+	Set<TopicPartition> resume = new HashSet<>(getConsumer().paused());
+	resume.removeAll(target);
+	if (!resume.isEmpty()) {
+	    getConsumer().resume(resume);
+	}
+    }
+
+    /**
+     * Commits completed offsets for partitions being revoked and keeps newly
+     * assigned partitions paused while lanes are saturated.
+     * 
+     * @author Derek
+     */
+    private class LaneRebalanceListener implements ConsumerRebalanceListener {
+
+	/*
+	 * @see org.apache.kafka.clients.consumer.ConsumerRebalanceListener#
+	 * onPartitionsRevoked(java.util.Collection)
+	 */
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+	    OffsetCommitTracker offsets = getOffsetTracker();
+	    if (offsets != null) {
+		commitLaneOffsetsSync(offsets.getCommittableOffsets(partitions));
+		offsets.release(partitions);
+		for (TopicPartition partition : partitions) {
+		    COMMIT_LAG.remove(buildLabels(getComponentName(), partition.toString()));
+		}
+	    }
+	}
+
+
+	/*
+	 * @see org.apache.kafka.clients.consumer.ConsumerRebalanceListener#
+	 * onPartitionsAssigned(java.util.Collection)
+	 */
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+	    if ((getLaneDispatcher() != null) && lanesSaturated) {
+		getConsumer().pause(partitions);
+	    }
+	}
+    }
+
     /** Used for naming microservice consumer thread */
     private class MicroserviceConsumerThreadFactory implements ThreadFactory {
 
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Tracks offsets of records that have been polled from Kafka and records when
+ * processing of each one completes. Records may complete in any order, but only
+ * the highest contiguous completed offset for a partition is made available
+ * for commit, so a crash never causes a record that was still being processed
+ * to be skipped on restart.
+ *
+ * Offsets are registered and committed from the polling thread while
+ * completions arrive from lane threads. A batch that keeps failing holds the
+ * commit point in place until it is processed, and its partition is reported as
+ * stalled so that the polling thread can pause it. An offset is only considered
+ * committed once the broker has acknowledged the commit, so offsets from a
+ * failed commit are returned again on the next call.
+ *
+ * @author Derek
+ */
+public class OffsetCommitTracker {
+
+    /** Offsets tracked for each assigned partition */
+    private Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Register records that have been polled for a partition. The returned
+     * handle is used to report completion so that completions for a partition
+     * that has since been revoked are ignored.
+     *
+     * @param topicPartition
+     * @param records
+     * @return
+     */
+    public PartitionOffsets track(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	PartitionOffsets offsets = partitions.computeIfAbsent(topicPartition, tp -> new PartitionOffsets());
+	offsets.polled(records);
+	return offsets;
+    }
+
+    /**
+     * Get offsets that have advanced past the last acknowledged commit.
+     *
+     * @return
+     */
+    public Map<TopicPartition, OffsetAndMetadata> getCommittableOffsets() {
+	return getCommittableOffsets(partitions.keySet());
+    }
+
+    /**
+     * Get offsets that have advanced past the last acknowledged commit for the
+     * given partitions.
+     *
+     * @param topicPartitions
+     * @return
+     */
+    public Map<TopicPartition, OffsetAndMetadata> getCommittableOffsets(Collection<TopicPartition> topicPartitions) {
+	Map<TopicPartition, OffsetAndMetadata> committable = new HashMap<>();
+	for (TopicPartition topicPartition : topicPartitions) {
+	    PartitionOffsets offsets = partitions.get(topicPartition);
+	    if (offsets != null) {
+		long offset = offsets.getCommittable();
+		if (offset >= 0) {
+		    committable.put(topicPartition, new OffsetAndMetadata(offset));
+		}
+	    }
+	}
+	return committable;
+    }
+
+    /**
+     * Record that the broker acknowledged a commit for the given offsets.
+     *
+     * @param committed
+     */
+    public void committed(Map<TopicPartition, OffsetAndMetadata> committed) {
+	for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+	    PartitionOffsets offsets = partitions.get(entry.getKey());
+	    if (offsets != null) {
+		offsets.committed(entry.getValue().offset());
+	    }
+	}
+    }
+
+    /**
+     * Get partitions with at least one batch that is stalled after repeated
+     * processing failures.
+     *
+     * @return
+     */
+    public Set<TopicPartition> getStalledPartitions() {
+	Set<TopicPartition> stalled = new HashSet<>();
+	for (Map.Entry<TopicPartition, PartitionOffsets> entry : partitions.entrySet()) {
+	    if (entry.getValue().isStalled()) {
+		stalled.add(entry.getKey());
+	    }
+	}
+	return stalled;
+    }
+
+    /**
+     * Get number of polled records that are not yet committable for each
+     * partition.
+     *
+     * @return
+     */
+    public Map<TopicPartition, Long> getCommitLag() {
+	Map<TopicPartition, Long> lag = new HashMap<>();
+	for (Map.Entry<TopicPartition, PartitionOffsets> entry : partitions.entrySet()) {
+	    lag.put(entry.getKey(), entry.getValue().getCommitLag());
+	}
+	return lag;
+    }
+
+    /**
+     * Stop tracking partitions that have been revoked. Completions reported
+     * against their handles are ignored from this point on.
+     *
+     * @param topicPartitions
+     */
+    public void release(Collection<TopicPartition> topicPartitions) {
+	for (TopicPartition topicPartition : topicPartitions) {
+	    PartitionOffsets offsets = partitions.remove(topicPartition);
+	    if (offsets != null) {
+		offsets.close();
+	    }
+	}
+    }
+
+    /**
+     * Offsets for a single partition.
+     *
+     * @author Derek
+     */
+    public static class PartitionOffsets {
+
+	/** Offsets polled but not yet committable, in poll order */
+	private ArrayDeque<Long> pending = new ArrayDeque<>();
+
+	/** Offsets completed out of order */
+	private Set<Long> completed = new HashSet<>();
+
+	/** Next offset to consume as seen by the poll thread */
+	private long position = -1;
+
+	/** Next offset to commit */
+	private long committable = -1;
+
+	/** Last offset acknowledged by the broker */
+	private long committed = -1;
+
+	/** Number of batches being retried after repeated failures */
+	private int stalledBatches = 0;
+
+	/** Indicates partition has been revoked */
+	private boolean closed = false;
+
+	/**
+	 * Register polled records.
+	 *
+	 * @param records
+	 */
+	protected synchronized void polled(List<ConsumerRecord<String, byte[]>> records) {
+	    for (ConsumerRecord<String, byte[]> record : records) {
+		pending.add(record.offset());
+		position = record.offset() + 1;
+	    }
+	}
+
+	/**
+	 * Record that processing has completed for the given records.
+	 *
+	 * @param records
+	 */
+	public synchronized void completed(List<ConsumerRecord<String, byte[]>> records) {
+	    if (closed) {
+		return;
+	    }
+	    for (ConsumerRecord<String, byte[]> record : records) {
+		completed.add(record.offset());
+	    }
+	    while (!pending.isEmpty() && completed.remove(pending.peekFirst())) {
+		committable = pending.pollFirst() + 1;
+	    }
+	}
+
+	/**
+	 * Record that a batch could not be processed after repeated attempts and
+	 * is still being retried. Offsets do not advance past the batch until it
+	 * is reported as completed.
+	 */
+	public synchronized void stalled() {
+	    stalledBatches++;
+	}
+
+	/**
+	 * Record that a stalled batch is no longer being retried, either because
+	 * it completed or because processing was abandoned.
+	 */
+	public synchronized void unstalled() {
+	    stalledBatches = Math.max(0, stalledBatches - 1);
+	}
+
+	/**
+	 * Get committable offset if it advanced past the last acknowledged commit.
+	 *
+	 * @return offset or -1 if nothing new to commit
+	 */
+	protected synchronized long getCommittable() {
+	    return (committable > committed) ? committable : -1;
+	}
+
+	/**
+	 * Record that the broker acknowledged a commit up to the given offset.
+	 *
+	 * @param offset
+	 */
+	protected synchronized void committed(long offset) {
+	    committed = Math.max(committed, offset);
+	}
+
+	/**
+	 * Indicates whether the partition has been revoked.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isClosed() {
+	    return closed;
+	}
+
+	/**
+	 * Indicates whether a batch for the partition is stalled.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isStalled() {
+	    return !closed && (stalledBatches > 0);
+	}
+
+	/**
+	 * Get number of records between committable offset and poll position.
+	 *
+	 * @return
+	 */
+	protected synchronized long getCommitLag() {
+	    if (pending.isEmpty()) {
+		return 0;
+	    }
+	    return position - pending.peekFirst();
+	}
+
+	protected synchronized void close() {
+	    this.closed = true;
+	    pending.clear();
+	    completed.clear();
+	}
+    }
+}
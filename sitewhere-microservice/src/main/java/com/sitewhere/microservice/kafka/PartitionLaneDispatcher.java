@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer;
+import com.sitewhere.spi.microservice.kafka.KafkaBatchProcessingException;
+
+/**
+ * Distributes records polled by a Kafka consumer across a fixed number of
+ * single-threaded worker lanes. Records are assigned to a lane based on their
+ * key (or partition if no key is present), so all records for a given device
+ * are processed in order by the same lane while unrelated devices are processed
+ * in parallel. The number of records dispatched but not yet processed is
+ * tracked so that the polling thread can pause partitions when lanes fall
+ * behind, and completed records are reported to an {@link OffsetCommitTracker}
+ * so that offsets are only committed once processing has finished. A batch
+ * that fails is retried on its lane with exponential backoff. If it still fails
+ * after several attempts, the consumer is notified and the partition is
+ * reported as stalled so that polling for it is paused, while the batch keeps
+ * being retried until it succeeds or the partition is revoked. Offsets never
+ * advance past a batch that has not been processed.
+ *
+ * @author Derek
+ */
+public class PartitionLaneDispatcher {
+
+    /** Static logger instance */
+    private static Log LOGGER = LogFactory.getLog(PartitionLaneDispatcher.class);
+
+    /** Number of times a failed batch is retried before it is reported stalled */
+    private static final int MAX_BATCH_RETRIES = 3;
+
+    /** Delay before first retry of a failed batch (doubled on each attempt) */
+    private static final long BATCH_RETRY_BACKOFF_MS = 500;
+
+    /** Maximum delay between retries of a failed batch */
+    private static final long MAX_BATCH_RETRY_BACKOFF_MS = 30000;
+
+    /** Consumer that processes record batches */
+    private IMicroserviceKafkaConsumer consumer;
+
+    /** Tracks completion of dispatched records */
+    private OffsetCommitTracker offsetTracker;
+
+    /** Single-threaded executor for each lane */
+    private ExecutorService[] lanes;
+
+    /** Maximum number of records dispatched but not processed */
+    private int maxInFlightRecords;
+
+    /** Number of records dispatched but not processed */
+    private AtomicInteger inFlightRecords = new AtomicInteger();
+
+    public PartitionLaneDispatcher(IMicroserviceKafkaConsumer consumer, OffsetCommitTracker offsetTracker, String name,
+	    int laneCount, int maxInFlightRecords) {
+	this.consumer = consumer;
+	this.offsetTracker = offsetTracker;
+	this.maxInFlightRecords = maxInFlightRecords;
+	this.lanes = new ExecutorService[Math.max(1, laneCount)];
+	for (int i = 0; i < lanes.length; i++) {
+	    lanes[i] = Executors.newSingleThreadExecutor(new LaneThreadFactory(name, i + 1));
+	}
+    }
+
+    /**
+     * Split records for a partition into per-lane batches (preserving record
+     * order) and submit each batch to its lane.
+     *
+     * @param topicPartition
+     * @param records
+     */
+    public void dispatch(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	OffsetCommitTracker.PartitionOffsets offsets = offsetTracker.track(topicPartition, records);
+	List<List<ConsumerRecord<String, byte[]>>> batches = new ArrayList<>(lanes.length);
+	for (int i = 0; i < lanes.length; i++) {
+	    batches.add(null);
+	}
+	for (ConsumerRecord<String, byte[]> record : records) {
+	    int lane = getLaneIndex(record);
+	    List<ConsumerRecord<String, byte[]>> batch = batches.get(lane);
+	    if (batch == null) {
+		batch = new ArrayList<>();
+		batches.set(lane, batch);
+	    }
+	    batch.add(record);
+	}
+	for (int i = 0; i < lanes.length; i++) {
+	    List<ConsumerRecord<String, byte[]>> batch = batches.get(i);
+	    if (batch != null) {
+		inFlightRecords.addAndGet(batch.size());
+		lanes[i].execute(new LaneBatchProcessor(topicPartition, offsets, batch));
+	    }
+	}
+    }
+
+    /**
+     * Get index of lane that processes the given record.
+     *
+     * @param record
+     * @return
+     */
+    protected int getLaneIndex(ConsumerRecord<String, byte[]> record) {
+	int hash = (record.key() != null) ? record.key().hashCode() : record.partition();
+	return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * Indicates whether the number of in-flight records has reached the
+     * configured maximum.
+     *
+     * @return
+     */
+    public boolean isSaturated() {
+	return inFlightRecords.get() >= maxInFlightRecords;
+    }
+
+    /**
+     * Indicates whether lanes have drained enough to accept more records after
+     * being saturated.
+     *
+     * @return
+     */
+    public boolean canResume() {
+	return inFlightRecords.get() <= (maxInFlightRecords / 2);
+    }
+
+    /**
+     * Stop accepting work and wait for lanes to finish queued batches.
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+	for (ExecutorService lane : lanes) {
+	    lane.shutdown();
+	}
+	long deadline = System.nanoTime() + unit.toNanos(timeout);
+	try {
+	    for (ExecutorService lane : lanes) {
+		if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+		    LOGGER.warn("Kafka consumer lane did not terminate within timeout period.");
+		    lane.shutdownNow();
+		}
+	    }
+	} catch (InterruptedException e) {
+	    LOGGER.warn("Interrupted while waiting for Kafka consumer lanes to terminate.");
+	}
+    }
+
+    public int getLaneCount() {
+	return lanes.length;
+    }
+
+    public int getMaxInFlightRecords() {
+	return maxInFlightRecords;
+    }
+
+    public int getInFlightRecords() {
+	return inFlightRecords.get();
+    }
+
+    /**
+     * Processes a batch of records on a lane thread.
+     *
+     * @author Derek
+     */
+    private class LaneBatchProcessor implements Runnable {
+
+	/** Partition records were read from */
+	private TopicPartition topicPartition;
+
+	/** Offsets for partition */
+	private OffsetCommitTracker.PartitionOffsets offsets;
+
+	/** Records to process */
+	private List<ConsumerRecord<String, byte[]>> records;
+
+	public LaneBatchProcessor(TopicPartition topicPartition, OffsetCommitTracker.PartitionOffsets offsets,
+		List<ConsumerRecord<String, byte[]>> records) {
+	    this.topicPartition = topicPartition;
+	    this.offsets = offsets;
+	    this.records = records;
+	}
+
+	/*
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+	    boolean stalled = false;
+	    try {
+		for (int attempt = 0;; attempt++) {
+		    try {
+			consumer.process(topicPartition, records);
+			offsets.completed(records);
+			if (stalled) {
+			    LOGGER.info("Consumer lane processed stalled batch for " + topicPartition + " after "
+				    + (attempt + 1) + " attempts.");
+			}
+			return;
+		    } catch (Throwable e) {
+			String message = (e instanceof KafkaBatchProcessingException)
+				? "Consumer lane was unable to process batch for " + topicPartition + "."
+				: "Unhandled exception in consumer lane processing for " + topicPartition + ".";
+			if (attempt < MAX_BATCH_RETRIES) {
+			    LOGGER.warn(message + " Retrying (attempt " + (attempt + 1) + " of " + MAX_BATCH_RETRIES
+				    + ").", e);
+			} else if (!stalled) {
+			    stalled = true;
+			    offsets.stalled();
+			    notifyFailed(e);
+			} else {
+			    LOGGER.debug(message + " Retrying stalled batch (attempt " + (attempt + 1) + ").", e);
+			}
+		    }
+		    if (offsets.isClosed()) {
+			// Partition was revoked and records will be redelivered elsewhere.
+			return;
+		    }
+		    Thread.sleep(getRetryBackoff(attempt));
+		}
+	    } catch (InterruptedException e) {
+		// Leave offsets uncommitted so records are redelivered on restart.
+		LOGGER.warn("Consumer lane interrupted while retrying batch. Offsets for " + topicPartition
+			+ " will not advance past " + records.get(0).offset() + ".");
+	    } finally {
+		if (stalled) {
+		    offsets.unstalled();
+		}
+		inFlightRecords.addAndGet(-records.size());
+	    }
+	}
+
+	/**
+	 * Notify consumer that the batch has stalled.
+	 *
+	 * @param cause
+	 */
+	protected void notifyFailed(Throwable cause) {
+	    try {
+		consumer.processFailed(topicPartition, records, cause);
+	    } catch (Throwable e) {
+		LOGGER.error("Unhandled exception reporting stalled batch for " + topicPartition + ".", e);
+	    }
+	}
+
+	/**
+	 * Get delay before the next attempt to process the batch.
+	 *
+	 * @param attempt
+	 * @return
+	 */
+	protected long getRetryBackoff(int attempt) {
+	    return Math.min(BATCH_RETRY_BACKOFF_MS << Math.min(attempt, 16), MAX_BATCH_RETRY_BACKOFF_MS);
+	}
+    }
+
+    /** Used for naming lane threads */
+    private static class LaneThreadFactory implements ThreadFactory {
+
+	/** Consumer name */
+	private String name;
+
+	/** Lane number */
+	private int lane;
+
+	public LaneThreadFactory(String name, int lane) {
+	    this.name = name;
+	    this.lane = lane;
+	}
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, name + " Lane " + lane);
+	}
+    }
+}
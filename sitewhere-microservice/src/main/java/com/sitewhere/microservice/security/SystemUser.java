@@ -10,6 +10,9 @@ package com.sitewhere.microservice.security;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +34,11 @@ import com.sitewhere.spi.user.SiteWhereAuthority;
  * Bean that provides a system "superuser" that allows microservices to
  * authenticate with other microservices.
  * 
+ * Authentication is built once and reused until the JWT is renewed. A separate
+ * authentication is kept for each tenant so that callers for different tenants
+ * never share (and overwrite the tenant of) the same instance. Returned
+ * authentication instances are shared and must not be modified.
+ * 
  * @author Derek
  */
 public class SystemUser implements ISystemUser {
@@ -52,10 +60,13 @@ public class SystemUser implements ISystemUser {
     private List<IGrantedAuthority> auths = SystemUser.getNonGroupAuthorities();
 
     /** Last authentication result */
-    private SitewhereAuthentication last = null;
+    private volatile SitewhereAuthentication last = null;
 
     /** Last time JWT was generated */
-    private long lastGenerated = 0;
+    private volatile long lastGenerated = 0;
+
+    /** Authentication for each tenant based on last result */
+    private Map<UUID, SitewhereAuthentication> tenantAuths = new ConcurrentHashMap<UUID, SitewhereAuthentication>();
 
     /*
      * (non-Javadoc)
@@ -65,10 +76,15 @@ public class SystemUser implements ISystemUser {
     @Override
     public SitewhereAuthentication getAuthentication() throws SiteWhereException {
 	if ((System.currentTimeMillis() - lastGenerated) > (RENEW_INTERVAL_SEC * 1000)) {
-	    String jwt = tokenManagement.generateToken(user, SYSTEM_USER_TOKEN_EXPIRATION_IN_MINS);
-	    SitewhereUserDetails details = new SitewhereUserDetails(user, auths);
-	    this.last = new SitewhereAuthentication(details, jwt);
-	    this.lastGenerated = System.currentTimeMillis();
+	    synchronized (this) {
+		if ((System.currentTimeMillis() - lastGenerated) > (RENEW_INTERVAL_SEC * 1000)) {
+		    String jwt = tokenManagement.generateToken(user, SYSTEM_USER_TOKEN_EXPIRATION_IN_MINS);
+		    SitewhereUserDetails details = new SitewhereUserDetails(user, auths);
+		    this.last = new SitewhereAuthentication(details, jwt);
+		    this.lastGenerated = System.currentTimeMillis();
+		    tenantAuths.clear();
+		}
+	    }
 	}
 	return this.last;
     }
@@ -81,8 +97,14 @@ public class SystemUser implements ISystemUser {
      */
     @Override
     public Authentication getAuthenticationForTenant(ITenant tenant) throws SiteWhereException {
-	SitewhereAuthentication auth = getAuthentication();
-	auth.setTenant(tenant);
+	SitewhereAuthentication base = getAuthentication();
+	SitewhereAuthentication auth = tenantAuths.get(tenant.getId());
+	if ((auth == null) || (auth.getTenant() != tenant) || (auth.getCredentials() != base.getCredentials())) {
+	    auth = new SitewhereAuthentication((SitewhereUserDetails) base.getDetails(),
+		    (String) base.getCredentials());
+	    auth.setTenant(tenant);
+	    tenantAuths.put(tenant.getId(), auth);
+	}
 	return auth;
     }
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.security;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.IMicroservice;
+import com.sitewhere.spi.tenant.ITenant;
+
+/**
+ * Variation of {@link SystemUserRunnable} for hot paths that processes a list
+ * of items as the system user. The security context is bound once for the
+ * whole list rather than once per item, and a failure processing one item is
+ * logged without stopping the others.
+ *
+ * @author Derek
+ */
+public abstract class SystemUserBatchRunnable<T> extends SystemUserRunnable {
+
+    /** Static logger instance */
+    private static Log LOGGER = LogFactory.getLog(SystemUserBatchRunnable.class);
+
+    /** Items to be processed */
+    private List<T> items;
+
+    public SystemUserBatchRunnable(IMicroservice<?> microservice, ITenant tenant, List<T> items) {
+	super(microservice, tenant);
+	this.items = items;
+    }
+
+    /**
+     * Implemented in subclasses to process a single item as the system user.
+     *
+     * @param item
+     * @throws SiteWhereException
+     */
+    public abstract void processAsSystemUser(T item) throws SiteWhereException;
+
+    /*
+     * @see com.sitewhere.microservice.security.SystemUserRunnable#runAsSystemUser()
+     */
+    @Override
+    public void runAsSystemUser() throws SiteWhereException {
+	for (T item : items) {
+	    try {
+		processAsSystemUser(item);
+	    } catch (Throwable e) {
+		handleFailure(item, e);
+	    }
+	}
+    }
+
+    /**
+     * Called when an item could not be processed. Logs the error by default.
+     *
+     * @param item
+     * @param e
+     */
+    protected void handleFailure(T item, Throwable e) {
+	LOGGER.error("Unhandled exception.", e);
+    }
+
+    protected List<T> getItems() {
+	return items;
+    }
+}
\ No newline at end of file
@@ -8,11 +8,18 @@
 package com.sitewhere.microservice.security;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
 
 import com.sitewhere.rest.model.user.GrantedAuthority;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.IMicroservice;
 import com.sitewhere.spi.microservice.security.ITokenManagement;
 import com.sitewhere.spi.user.IGrantedAuthority;
 import com.sitewhere.spi.user.IUser;
@@ -24,10 +31,19 @@ import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.UnsupportedJwtException;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 
 /**
  * Manages creation and validation of JWT tokens.
  * 
+ * Claims for tokens that pass verification are cached so that the same token
+ * presented repeatedly (as with the system user token passed on every gRPC
+ * call) is only verified once. Cached claims are only used until the token
+ * expires or the cache time limit is reached, whichever comes first, and the
+ * least recently used tokens are evicted once the cache is full. Claims returned from the cache are shared
+ * and must not be modified.
+ * 
  * @author Derek
  */
 public class TokenManagement implements ITokenManagement {
@@ -38,12 +54,58 @@ public class TokenManagement implements ITokenManagement {
     /** Claim identifier for granted authorities */
     private static final String CLAIM_GRANTED_AUTHORITIES = "auth";
 
+    /** Default max number of verified tokens cached */
+    private static final int DEFAULT_MAX_CACHED_TOKENS = 10000;
+
+    /** Default max time in milliseconds claims are cached (1 minute) */
+    private static final long DEFAULT_CACHED_CLAIMS_TTL = 60 * 1000;
+
+    /** Tenant label value since tokens are not specific to a tenant */
+    private static final String GLOBAL_TENANT = "global";
+
+    /** Histogram for time taken to verify tokens */
+    private static final Histogram VERIFICATION_TIME = TenantEngineLifecycleComponent
+	    .createHistogramMetric("jwt_verification_duration", "Time taken to verify a JWT and decode its claims");
+
+    /** Counter for tokens whose claims were found in cache */
+    private static final Counter CACHE_HITS = TenantEngineLifecycleComponent.createCounterMetric(
+	    "jwt_claims_cache_hits", "Count of JWTs whose verified claims were found in cache");
+
+    /** Counter for tokens that had to be verified */
+    private static final Counter CACHE_MISSES = TenantEngineLifecycleComponent.createCounterMetric(
+	    "jwt_claims_cache_misses", "Count of JWTs that were not cached and had to be verified");
+
+    /** Microservice used for metric labels (not available in tests) */
+    @Autowired(required = false)
+    private IMicroservice<?> microservice;
+
+    /** Metric label values */
+    private volatile String[] metricLabels;
+
     /** Secret used for encoding */
     private String secret = "secret";
 
     /** Signature algorithm */
     private SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
 
+    /** Max number of verified tokens cached */
+    private int maxCachedTokens = DEFAULT_MAX_CACHED_TOKENS;
+
+    /** Max time in milliseconds claims are cached */
+    private long cachedClaimsTtl = DEFAULT_CACHED_CLAIMS_TTL;
+
+    /** Verified claims by token in least recently used order */
+    private Map<String, CachedClaims> verified = Collections
+	    .synchronizedMap(new LinkedHashMap<String, CachedClaims>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = -1393473961213565347L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+		    return size() > getMaxCachedTokens();
+		}
+	    });
+
     /*
      * (non-Javadoc)
      * 
@@ -69,6 +131,35 @@ public class TokenManagement implements ITokenManagement {
      * getClaimsForToken(java.lang.String)
      */
     public Claims getClaimsForToken(String token) throws SiteWhereException {
+	long now = System.currentTimeMillis();
+	CachedClaims cached = verified.get(token);
+	if (cached != null) {
+	    if (now < cached.getExpires()) {
+		CACHE_HITS.labels(getMetricLabels()).inc();
+		return cached.getClaims();
+	    }
+	    verified.remove(token, cached);
+	}
+	CACHE_MISSES.labels(getMetricLabels()).inc();
+	Claims claims;
+	Histogram.Timer timer = VERIFICATION_TIME.labels(getMetricLabels()).startTimer();
+	try {
+	    claims = verifyToken(token);
+	} finally {
+	    timer.observeDuration();
+	}
+	cacheClaims(token, claims, now);
+	return claims;
+    }
+
+    /**
+     * Verify token signature and expiration and decode its claims.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Claims verifyToken(String token) throws SiteWhereException {
 	try {
 	    return Jwts.parser().setSigningKey(getSecret()).parseClaimsJws(token).getBody();
 	} catch (ExpiredJwtException e) {
@@ -82,6 +173,57 @@ public class TokenManagement implements ITokenManagement {
 	}
     }
 
+    /**
+     * Cache verified claims until the token expires or the cache time limit is
+     * reached. If the cache is full, the least recently used token is evicted.
+     * 
+     * @param token
+     * @param claims
+     * @param now
+     */
+    protected void cacheClaims(String token, Claims claims, long now) {
+	if (getMaxCachedTokens() <= 0) {
+	    return;
+	}
+	long expires = now + getCachedClaimsTtl();
+	if (claims.getExpiration() != null) {
+	    expires = Math.min(expires, claims.getExpiration().getTime());
+	}
+	verified.put(token, new CachedClaims(claims, expires));
+    }
+
+    /**
+     * Get values for metric labels (microservice, pod and tenant). Tokens are
+     * shared by all tenants, so the tenant label is always global.
+     * 
+     * @return
+     */
+    protected String[] getMetricLabels() {
+	String[] labels = metricLabels;
+	if (labels == null) {
+	    String microservicePath = "";
+	    String pod = "";
+	    if (getMicroservice() != null) {
+		microservicePath = getMicroservice().getIdentifier().getPath();
+		pod = String.valueOf(getMicroservice().getInstanceSettings().getKubernetesPodAddress());
+	    }
+	    labels = new String[] { microservicePath, pod, GLOBAL_TENANT };
+	    if (getMicroservice() != null) {
+		metricLabels = labels;
+	    }
+	}
+	return labels;
+    }
+
+    /**
+     * Get number of tokens with cached claims.
+     * 
+     * @return
+     */
+    public int getCachedTokenCount() {
+	return verified.size();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -142,5 +284,59 @@ public class TokenManagement implements ITokenManagement {
 
     public void setSecret(String secret) {
 	this.secret = secret;
+	verified.clear();
+    }
+
+    public int getMaxCachedTokens() {
+	return maxCachedTokens;
+    }
+
+    public void setMaxCachedTokens(int maxCachedTokens) {
+	this.maxCachedTokens = maxCachedTokens;
+    }
+
+    public IMicroservice<?> getMicroservice() {
+	return microservice;
+    }
+
+    public void setMicroservice(IMicroservice<?> microservice) {
+	this.microservice = microservice;
+	this.metricLabels = null;
+    }
+
+    public long getCachedClaimsTtl() {
+	return cachedClaimsTtl;
+    }
+
+    public void setCachedClaimsTtl(long cachedClaimsTtl) {
+	this.cachedClaimsTtl = cachedClaimsTtl;
+	verified.clear();
+    }
+
+    /**
+     * Claims for a verified token along with the time they may be used until.
+     * 
+     * @author Derek
+     */
+    private static class CachedClaims {
+
+	/** Verified claims */
+	private Claims claims;
+
+	/** Time at which cached claims expire */
+	private long expires;
+
+	public CachedClaims(Claims claims, long expires) {
+	    this.claims = claims;
+	    this.expires = expires;
+	}
+
+	public Claims getClaims() {
+	    return claims;
+	}
+
+	public long getExpires() {
+	    return expires;
+	}
     }
 }
\ No newline at end of file
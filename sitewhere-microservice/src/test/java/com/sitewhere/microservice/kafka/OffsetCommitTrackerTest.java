@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+public class OffsetCommitTrackerTest {
+
+    /** Partition used for tests */
+    private static TopicPartition PARTITION = new TopicPartition("events", 0);
+
+    @Test
+    public void testOutOfOrderCompletion() {
+	OffsetCommitTracker tracker = new OffsetCommitTracker();
+	List<ConsumerRecord<String, byte[]>> records = records(10, 15);
+	OffsetCommitTracker.PartitionOffsets offsets = tracker.track(PARTITION, records);
+
+	// Later records completing first must not advance the commit point.
+	offsets.completed(records.subList(2, 5));
+	assertTrue(tracker.getCommittableOffsets().isEmpty());
+	assertEquals(Long.valueOf(5), tracker.getCommitLag().get(PARTITION));
+
+	// Completing the head releases everything contiguous behind it.
+	offsets.completed(records.subList(0, 1));
+	Map<TopicPartition, OffsetAndMetadata> committable = tracker.getCommittableOffsets();
+	assertEquals(11, committable.get(PARTITION).offset());
+	tracker.committed(committable);
+
+	offsets.completed(records.subList(1, 2));
+	committable = tracker.getCommittableOffsets();
+	assertEquals(15, committable.get(PARTITION).offset());
+	assertEquals(Long.valueOf(0), tracker.getCommitLag().get(PARTITION));
+	tracker.committed(committable);
+
+	// Nothing new to commit.
+	assertTrue(tracker.getCommittableOffsets().isEmpty());
+    }
+
+    @Test
+    public void testStalledBatch() {
+	OffsetCommitTracker tracker = new OffsetCommitTracker();
+	List<ConsumerRecord<String, byte[]>> records = records(0, 6);
+	OffsetCommitTracker.PartitionOffsets offsets = tracker.track(PARTITION, records);
+
+	// A stalled batch in the middle holds the commit point until processed.
+	offsets.completed(records.subList(0, 2));
+	offsets.stalled();
+	offsets.completed(records.subList(4, 6));
+	assertEquals(2, tracker.getCommittableOffsets().get(PARTITION).offset());
+	assertEquals(Collections.singleton(PARTITION), tracker.getStalledPartitions());
+
+	offsets.completed(records.subList(2, 4));
+	offsets.unstalled();
+	assertEquals(6, tracker.getCommittableOffsets().get(PARTITION).offset());
+	assertEquals(Long.valueOf(0), tracker.getCommitLag().get(PARTITION));
+	assertTrue(tracker.getStalledPartitions().isEmpty());
+
+	// Revoked partitions are no longer reported as stalled.
+	offsets.stalled();
+	tracker.release(Collections.singletonList(PARTITION));
+	assertTrue(tracker.getStalledPartitions().isEmpty());
+    }
+
+    @Test
+    public void testCommitFailure() {
+	OffsetCommitTracker tracker = new OffsetCommitTracker();
+	List<ConsumerRecord<String, byte[]>> records = records(0, 10);
+	OffsetCommitTracker.PartitionOffsets offsets = tracker.track(PARTITION, records);
+	offsets.completed(records.subList(0, 5));
+
+	// Commit not acknowledged, so the same offset is offered again.
+	assertEquals(5, tracker.getCommittableOffsets().get(PARTITION).offset());
+	assertEquals(5, tracker.getCommittableOffsets().get(PARTITION).offset());
+
+	// Late acknowledgement of an older commit does not move the mark back.
+	offsets.completed(records.subList(5, 10));
+	Map<TopicPartition, OffsetAndMetadata> committable = tracker.getCommittableOffsets();
+	assertEquals(10, committable.get(PARTITION).offset());
+	tracker.committed(committable);
+	tracker.committed(Collections.singletonMap(PARTITION, new OffsetAndMetadata(5)));
+	assertTrue(tracker.getCommittableOffsets().isEmpty());
+    }
+
+    @Test
+    public void testGapsInOffsets() {
+	OffsetCommitTracker tracker = new OffsetCommitTracker();
+	List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+	records.add(record(3));
+	records.add(record(7));
+	OffsetCommitTracker.PartitionOffsets offsets = tracker.track(PARTITION, records);
+	offsets.completed(records);
+	assertEquals(8, tracker.getCommittableOffsets().get(PARTITION).offset());
+    }
+
+    @Test
+    public void testCompletionAfterRelease() {
+	OffsetCommitTracker tracker = new OffsetCommitTracker();
+	List<ConsumerRecord<String, byte[]>> records = records(0, 5);
+	OffsetCommitTracker.PartitionOffsets offsets = tracker.track(PARTITION, records);
+	tracker.release(Collections.singletonList(PARTITION));
+
+	// Partition reassigned and redelivered from the start.
+	OffsetCommitTracker.PartitionOffsets reassigned = tracker.track(PARTITION, records);
+	offsets.completed(records);
+	assertTrue(tracker.getCommittableOffsets().isEmpty());
+	reassigned.completed(records);
+	assertEquals(5, tracker.getCommittableOffsets().get(PARTITION).offset());
+    }
+
+    protected static List<ConsumerRecord<String, byte[]>> records(long from, long to) {
+	List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+	for (long offset = from; offset < to; offset++) {
+	    records.add(record(offset));
+	}
+	return records;
+    }
+
+    protected static ConsumerRecord<String, byte[]> record(long offset) {
+	return new ConsumerRecord<String, byte[]>(PARTITION.topic(), PARTITION.partition(), offset, "device",
+		new byte[0]);
+    }
+}
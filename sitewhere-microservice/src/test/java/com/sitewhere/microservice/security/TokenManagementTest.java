@@ -8,6 +8,8 @@
 package com.sitewhere.microservice.security;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.List;
@@ -35,4 +37,39 @@ public class TokenManagementTest {
 	String username = tokens.getUsernameFromToken(token);
 	assertEquals(username, USERNAME);
     }
+
+    @Test
+    public void testCachedClaims() throws SiteWhereException {
+	TokenManagement tokens = new TokenManagement();
+	String token = tokens.generateToken(createUser(USERNAME), 60);
+	assertSame(tokens.getClaimsForToken(token), tokens.getClaimsForToken(token));
+	assertEquals(1, tokens.getCachedTokenCount());
+    }
+
+    @Test
+    public void testCacheIsBounded() throws SiteWhereException {
+	TokenManagement tokens = new TokenManagement();
+	tokens.setMaxCachedTokens(2);
+	for (int i = 0; i < 5; i++) {
+	    String token = tokens.generateToken(createUser(USERNAME + i), 60);
+	    assertEquals(USERNAME + i, tokens.getUsernameFromToken(token));
+	}
+	assertTrue(tokens.getCachedTokenCount() <= 2);
+    }
+
+    @Test(expected = SiteWhereException.class)
+    public void testSecretChangeClearsCache() throws SiteWhereException {
+	TokenManagement tokens = new TokenManagement();
+	String token = tokens.generateToken(createUser(USERNAME), 60);
+	tokens.getClaimsForToken(token);
+	tokens.setSecret("changed");
+	tokens.getClaimsForToken(token);
+    }
+
+    protected static User createUser(String username) {
+	User user = new User();
+	user.setUsername(username);
+	user.setAuthorities(AUTHS);
+	return user;
+    }
 }
\ No newline at end of file
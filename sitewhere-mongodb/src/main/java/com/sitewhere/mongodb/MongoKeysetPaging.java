@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Helper methods for keyset (seek) pagination. A continuation token captures
+ * the sort key values and id of the last document on a page. The next page is
+ * found by querying for documents that sort after those values, which uses the
+ * same index as the sort instead of skipping over earlier results.
+ *
+ * Missing and null sort values are handled using the MongoDB sort order, in
+ * which they come before all other values.
+ *
+ * @author Derek
+ */
+public class MongoKeysetPaging {
+
+    /** Id field used to break ties between equal sort values */
+    private static final String ID_FIELD = "_id";
+
+    /** Token field holding sort field names */
+    private static final String TOKEN_FIELDS = "f";
+
+    /** Token field holding sort values */
+    private static final String TOKEN_VALUES = "v";
+
+    /** Settings for writing token values without losing type information */
+    private static final JsonWriterSettings TOKEN_JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED)
+	    .build();
+
+    /**
+     * Add the id field to a sort so that every document has a unique position.
+     *
+     * @param sort
+     * @return
+     */
+    public static Document getKeysetSort(Document sort) {
+	Document keyset = new Document(sort);
+	if (!keyset.containsKey(ID_FIELD)) {
+	    Object direction = sort.isEmpty() ? 1 : new ArrayList<>(sort.values()).get(sort.size() - 1);
+	    keyset.put(ID_FIELD, direction);
+	}
+	return keyset;
+    }
+
+    /**
+     * Restrict a query to documents that sort after the position captured in a
+     * continuation token.
+     *
+     * @param query
+     * @param keysetSort
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    public static Document getKeysetQuery(Document query, Document keysetSort, String token)
+	    throws SiteWhereException {
+	if (token == null) {
+	    return query;
+	}
+	List<Object> values = parseToken(keysetSort, token);
+	List<String> fields = new ArrayList<>(keysetSort.keySet());
+	List<Document> clauses = new ArrayList<>();
+	for (int i = 0; i < fields.size(); i++) {
+	    boolean descending = isDescending(keysetSort.get(fields.get(i)));
+	    Object value = values.get(i);
+	    if ((value == null) && descending) {
+		// Nothing sorts after a missing value in descending order.
+		continue;
+	    }
+	    Document clause = new Document();
+	    for (int j = 0; j < i; j++) {
+		// Matching null also matches documents without the field.
+		clause.append(fields.get(j), values.get(j));
+	    }
+	    if (value == null) {
+		clause.append(fields.get(i), new Document("$ne", null));
+	    } else if (descending && !ID_FIELD.equals(fields.get(i))) {
+		// Missing values come after all others in descending order.
+		List<Document> after = new ArrayList<>();
+		after.add(new Document(fields.get(i), new Document("$lt", value)));
+		after.add(new Document(fields.get(i), null));
+		clause.append("$or", after);
+	    } else {
+		clause.append(fields.get(i), new Document(descending ? "$lt" : "$gt", value));
+	    }
+	    clauses.add(clause);
+	}
+	Document seek = new Document("$or", clauses);
+	if (query.isEmpty()) {
+	    return seek;
+	}
+	List<Document> all = new ArrayList<>();
+	all.add(query);
+	all.add(seek);
+	return new Document("$and", all);
+    }
+
+    /**
+     * Create a continuation token for the position of the given document.
+     *
+     * @param keysetSort
+     * @param last
+     * @return
+     */
+    public static String createToken(Document keysetSort, Document last) {
+	List<String> fields = new ArrayList<>(keysetSort.keySet());
+	List<Object> values = new ArrayList<>();
+	for (String field : fields) {
+	    values.add(getFieldValue(last, field));
+	}
+	Document token = new Document(TOKEN_FIELDS, fields).append(TOKEN_VALUES, values);
+	return Base64.getUrlEncoder().withoutPadding()
+		.encodeToString(token.toJson(TOKEN_JSON).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse sort values from a continuation token, verifying that it was created
+     * for the same sort.
+     *
+     * @param keysetSort
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    @SuppressWarnings("unchecked")
+    protected static List<Object> parseToken(Document keysetSort, String token) throws SiteWhereException {
+	try {
+	    String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+	    Document parsed = Document.parse(json);
+	    List<String> fields = (List<String>) parsed.get(TOKEN_FIELDS);
+	    List<Object> values = (List<Object>) parsed.get(TOKEN_VALUES);
+	    if ((fields == null) || (values == null) || !fields.equals(new ArrayList<>(keysetSort.keySet()))
+		    || (values.size() != fields.size())) {
+		throw new SiteWhereException("Continuation token does not match search.");
+	    }
+	    return values;
+	} catch (IllegalArgumentException | JsonParseException | ClassCastException e) {
+	    throw new SiteWhereException("Invalid continuation token.", e);
+	}
+    }
+
+    /**
+     * Get value of a field that may be a dotted path into embedded documents.
+     *
+     * @param document
+     * @param field
+     * @return
+     */
+    protected static Object getFieldValue(Document document, String field) {
+	Object current = document;
+	for (String part : field.split("\\.")) {
+	    if (!(current instanceof Map)) {
+		return null;
+	    }
+	    current = ((Map<?, ?>) current).get(part);
+	}
+	return current;
+    }
+
+    /**
+     * Indicates whether a sort direction is descending.
+     *
+     * @param direction
+     * @return
+     */
+    protected static boolean isDescending(Object direction) {
+	return (direction instanceof Number) && (((Number) direction).intValue() < 0);
+    }
+}
@@ -24,11 +24,13 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.DeleteResult;
+import com.sitewhere.rest.model.search.KeysetSearchResults;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ResourceExistsException;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.IKeysetSearchCriteria;
 import com.sitewhere.spi.search.ISearchCriteria;
 
 /**
@@ -41,6 +43,9 @@ public class MongoPersistence {
     /** Static logger instance */
     private static Logger LOGGER = LoggerFactory.getLogger(MongoPersistence.class);
 
+    /** Number of results reported when matches are not counted */
+    public static final long UNKNOWN_RESULT_COUNT = -1;
+
     /**
      * Common handler for creating new objects. Assures that errors are handled in a
      * consistent way.
@@ -134,7 +139,9 @@ public class MongoPersistence {
 
     /**
      * Search the given collection using the provided query and sort. Return the
-     * paged seaerch results.
+     * paged seaerch results. If {@link IKeysetSearchCriteria} are passed, the
+     * page is found by seeking past the continuation token instead of skipping
+     * results.
      * 
      * @param api
      * @param collection
@@ -147,6 +154,9 @@ public class MongoPersistence {
      */
     public static <T> SearchResults<T> search(Class<T> api, MongoCollection<Document> collection, Document query,
 	    Document sort, ISearchCriteria criteria, IMongoConverterLookup lookup) throws SiteWhereException {
+	if ((criteria instanceof IKeysetSearchCriteria) && (criteria.getPageSize() > 0)) {
+	    return searchKeyset(api, collection, query, sort, (IKeysetSearchCriteria) criteria, lookup);
+	}
 	try {
 	    FindIterable<Document> found;
 	    long start = System.currentTimeMillis();
@@ -181,6 +191,60 @@ public class MongoPersistence {
 	}
     }
 
+    /**
+     * Search the given collection for the page after the position in the
+     * continuation token. One extra result is requested to determine whether a
+     * token for the next page is needed. Matches are only counted if an exact
+     * count is requested, otherwise the number of results is reported as
+     * {@link #UNKNOWN_RESULT_COUNT}.
+     * 
+     * @param api
+     * @param collection
+     * @param query
+     * @param sort
+     * @param criteria
+     * @param lookup
+     * @return
+     * @throws SiteWhereException
+     */
+    public static <T> KeysetSearchResults<T> searchKeyset(Class<T> api, MongoCollection<Document> collection,
+	    Document query, Document sort, IKeysetSearchCriteria criteria, IMongoConverterLookup lookup)
+	    throws SiteWhereException {
+	try {
+	    long start = System.currentTimeMillis();
+	    Document keysetSort = MongoKeysetPaging.getKeysetSort(sort);
+	    Document keysetQuery = MongoKeysetPaging.getKeysetQuery(query, keysetSort, criteria.getContinuationToken());
+	    int pageSize = criteria.getPageSize();
+	    MongoCursor<Document> cursor = collection.find(keysetQuery).sort(keysetSort).limit(pageSize + 1)
+		    .iterator();
+	    LOGGER.trace("Keyset search took " + (System.currentTimeMillis() - start) + " ms.");
+
+	    List<T> matches = new ArrayList<T>();
+	    KeysetSearchResults<T> results = new KeysetSearchResults<T>(matches);
+	    MongoConverter<T> converter = lookup.getConverterFor(api);
+	    try {
+		Document last = null;
+		while (cursor.hasNext() && (matches.size() < pageSize)) {
+		    last = cursor.next();
+		    matches.add(converter.convert(last));
+		}
+		if (cursor.hasNext()) {
+		    results.setContinuationToken(MongoKeysetPaging.createToken(keysetSort, last));
+		}
+	    } finally {
+		cursor.close();
+	    }
+	    if (criteria.isExactCount()) {
+		results.setNumResults(collection.countDocuments(query));
+	    } else {
+		results.setNumResults(UNKNOWN_RESULT_COUNT);
+	    }
+	    return results;
+	} catch (MongoClientException e) {
+	    throw handleClientException(e);
+	}
+    }
+
     /**
      * Search the given collection using the provided query and sort.
      * 